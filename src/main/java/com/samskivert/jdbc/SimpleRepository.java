@@ -8,6 +8,7 @@ package com.samskivert.jdbc;
 import java.sql.*;
 
 import com.samskivert.io.PersistenceException;
+import com.samskivert.util.LatencyHistogram;
 import com.samskivert.util.StringUtil;
 
 import static com.samskivert.jdbc.Log.log;
@@ -80,6 +81,18 @@ public class SimpleRepository extends Repository
         }
     }
 
+    /**
+     * Returns a snapshot of the time (in microseconds) taken by the operations executed by this
+     * repository, including time spent waiting for a connection and retrying after transient
+     * failures. This may be called from any thread.
+     *
+     * @param reset if true, the recorded times are cleared once the snapshot is taken.
+     */
+    public LatencyHistogram getOperationTimes (boolean reset)
+    {
+        return reset ? _opTimes.snapshotAndReset() : _opTimes.snapshot();
+    }
+
     /**
      * Executes the supplied read-only operation. In the event of a transient failure, the
      * repository will attempt to reestablish the database connection and try the operation again.
@@ -118,6 +131,21 @@ public class SimpleRepository extends Repository
      */
     protected <V> V execute (Operation<V> op, boolean retryOnTransientFailure, boolean readOnly)
         throws PersistenceException
+    {
+        long start = System.nanoTime();
+        try {
+            return executeOperation(op, retryOnTransientFailure, readOnly);
+        } finally {
+            _opTimes.record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * Does the actual work for {@link #execute(Operation,boolean,boolean)}.
+     */
+    protected <V> V executeOperation (
+        Operation<V> op, boolean retryOnTransientFailure, boolean readOnly)
+        throws PersistenceException
     {
         Connection conn = null;
         DatabaseLiaison liaison = null;
@@ -241,7 +269,7 @@ public class SimpleRepository extends Repository
         // we'll only fall through here if the above code failed due to a transient exception (the
         // connection was closed for being idle, for example) and we've been asked to retry; so
         // let's do so
-        return execute(op, false, readOnly);
+        return executeOperation(op, false, readOnly);
     }
 
     /**
@@ -389,5 +417,8 @@ public class SimpleRepository extends Repository
 
     protected String _dbident;
 
+    /** The time taken by each operation executed by this repository, in microseconds. */
+    protected LatencyHistogram _opTimes = new LatencyHistogram();
+
     protected static PreCondition _precond;
 }
@@ -27,7 +27,7 @@ import com.samskivert.jdbc.JDBCUtil;
 import com.samskivert.jdbc.SimpleRepository;
 
 import com.samskivert.util.ArrayUtil;
-import com.samskivert.util.HashIntMap;
+import com.samskivert.util.ConcurrentIntMap;
 
 import static com.samskivert.servlet.Log.log;
 
@@ -138,14 +138,13 @@ public class JDBCTableSiteIdentifier implements SiteIdentifier
         site.siteString = siteString;
         _repo.insertNewSite(site);
 
-        // add it to our two mapping tables, taking care to avoid causing enumerateSites() to choke
+        // add it to our two mapping tables; our id mapping is safe for concurrent use (and
+        // enumerateSites() is weakly consistent), but we must copy our string mapping
         @SuppressWarnings("unchecked") HashMap<String,Site> newStrings =
             (HashMap<String,Site>)_sitesByString.clone();
-        HashIntMap<Site> newIds = _sitesById.clone();
-        newIds.put(site.siteId, site);
         newStrings.put(site.siteString, site);
+        _sitesById.put(site.siteId, site);
         _sitesByString = newStrings;
-        _sitesById = newIds;
 
         return site;
     }
@@ -198,7 +197,7 @@ public class JDBCTableSiteIdentifier implements SiteIdentifier
                 // first load up the list of sites
                 String query = "select siteId, siteString from sites";
                 ResultSet rs = stmt.executeQuery(query);
-                HashIntMap<Site> sites = new HashIntMap<Site>();
+                ConcurrentIntMap<Site> sites = new ConcurrentIntMap<Site>();
                 HashMap<String,Site> strings = new HashMap<String,Site>();
                 while (rs.next()) {
                     Site site = new Site(rs.getInt(1), rs.getString(2));
@@ -305,7 +304,7 @@ public class JDBCTableSiteIdentifier implements SiteIdentifier
     protected volatile ArrayList<SiteMapping> _mappings = new ArrayList<SiteMapping>();
 
     /** The mapping from integer site identifiers to string site identifiers. */
-    protected volatile HashIntMap<Site> _sitesById = new HashIntMap<Site>();
+    protected volatile ConcurrentIntMap<Site> _sitesById = new ConcurrentIntMap<Site>();
 
     /** The mapping from string site identifiers to integer site identifiers. */
     protected volatile HashMap<String,Site> _sitesByString = new HashMap<String,Site>();
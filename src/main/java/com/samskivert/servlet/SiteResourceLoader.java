@@ -17,7 +17,7 @@ import java.util.jar.JarFile;
 
 import javax.servlet.http.HttpServletRequest;
 
-import com.samskivert.util.HashIntMap;
+import com.samskivert.util.ConcurrentIntMap;
 
 import static com.samskivert.servlet.Log.log;
 
@@ -179,18 +179,8 @@ public class SiteResourceLoader
      */
     protected Object getLock (int siteId)
     {
-        Object lock = null;
-
-        synchronized (_locks) {
-            lock = _locks.get(siteId);
-
-            // create a lock object if we haven't one already
-            if (lock == null) {
-                _locks.put(siteId, lock = new Object());
-            }
-        }
-
-        return lock;
+        // create a lock object if we haven't one already
+        return _locks.computeIfAbsent(siteId, LOCK_CREATOR);
     }
 
     /**
@@ -349,14 +339,23 @@ public class SiteResourceLoader
     protected String _jarPath;
 
     /** We synchronize on a per-site basis. */
-    protected HashIntMap<Object> _locks = new HashIntMap<Object>();
+    protected ConcurrentIntMap<Object> _locks = new ConcurrentIntMap<Object>();
 
-    /** The table of site-specific jar file information. */
-    protected HashIntMap<SiteResourceBundle> _bundles =
-        new HashIntMap<SiteResourceBundle>();
+    /** The table of site-specific jar file information. These tables are modified while holding
+     * only the lock for the site in question, so they must be safe for concurrent use. */
+    protected ConcurrentIntMap<SiteResourceBundle> _bundles =
+        new ConcurrentIntMap<SiteResourceBundle>();
 
     /** The table of site-specific class loaders. */
-    protected HashIntMap<ClassLoader> _loaders = new HashIntMap<ClassLoader>();
+    protected ConcurrentIntMap<ClassLoader> _loaders = new ConcurrentIntMap<ClassLoader>();
+
+    /** Creates our per-site lock objects. */
+    protected static final ConcurrentIntMap.Creator<Object> LOCK_CREATOR =
+        new ConcurrentIntMap.Creator<Object>() {
+        public Object create (int siteId) {
+            return new Object();
+        }
+    };
 
     /** The default path to the site-specific jar files. This won't be
      * used without logging a complaint first. */
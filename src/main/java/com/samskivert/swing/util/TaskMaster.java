@@ -7,8 +7,11 @@ package com.samskivert.swing.util;
 
 import java.lang.reflect.Method;
 import java.util.Hashtable;
+import java.util.concurrent.ThreadFactory;
 import javax.swing.SwingUtilities;
 
+import com.samskivert.util.ThreadFactories;
+
 import static com.samskivert.swing.Log.log;
 
 /**
@@ -20,9 +23,9 @@ import static com.samskivert.swing.Log.log;
  *
  * <p/> Each task is run in it's own thread. Tasks are assumed to be
  * infrequently run and expensive, so the overhead of creating a new
- * thread to run each task is considered acceptable. If the need arises,
- * the task master can be extended to support more sophisticated thread
- * pooling but we'll cross that bridge when we come to it.
+ * thread to run each task is considered acceptable. Where that is not the
+ * case, a different thread factory can be configured via {@link
+ * #setThreadFactory}, for example one that creates virtual threads.
  */
 public class TaskMaster
 {
@@ -38,7 +41,18 @@ public class TaskMaster
         TaskRunner runner = new TaskRunner(name, task, observer);
         _tasks.put(name, runner);
         // then start the runner up
-        runner.start();
+        _factory.newThread(runner).start();
+    }
+
+    /**
+     * Configures the factory used to create the threads on which tasks are
+     * run. By default a new platform thread is created for each task. {@link
+     * ThreadFactories#virtual} can be used to run tasks on virtual threads
+     * where the JVM supports them.
+     */
+    public static void setThreadFactory (ThreadFactory factory)
+    {
+        _factory = factory;
     }
 
     /**
@@ -65,6 +79,11 @@ public class TaskMaster
         _tasks.remove(name);
     }
 
+    /**
+     * Runs a task and reports its result. A runner is run on a thread
+     * obtained from our thread factory; it remains a thread itself only so
+     * that code written when each runner started itself continues to work.
+     */
     protected static class TaskRunner extends Thread
     {
         public TaskRunner (String name, Task task, TaskObserver observer) {
@@ -159,5 +178,9 @@ public class TaskMaster
         protected Object _source;
     }
 
+    /** Creates the threads on which we run tasks. */
+    protected static volatile ThreadFactory _factory =
+        ThreadFactories.platform("TaskMaster", false);
+
     protected static Hashtable<String, TaskRunner> _tasks = new Hashtable<String, TaskRunner>();
 }
@@ -133,6 +133,45 @@ public abstract class AbstractIntSet extends AbstractSet<Integer>
         return vals;
     }
 
+    /**
+     * Returns an array containing all of the elements in this set, reusing the supplied array if
+     * it is large enough. The elements are written to the start of the array, and any elements of
+     * the array beyond the first {@link #size} are left unchanged. See also {@link
+     * IntSets#toIntArray(IntSet,int[])}, which works with any {@link IntSet}.
+     *
+     * <p>This implementation fills the array with the elements returned by the interator.
+     *
+     * @param reuse the array to fill, or null.
+     *
+     * @return the supplied array, or a newly created array of exactly the size of the set if the
+     * supplied array was null or too small.
+     */
+    public int[] toIntArray (int[] reuse)
+    {
+        int size = size();
+        int[] vals = (reuse != null && reuse.length >= size) ? reuse : new int[size];
+        int ii = 0;
+        for (Interator it = interator(); it.hasNext(); ) {
+            vals[ii++] = it.nextInt();
+        }
+        return vals;
+    }
+
+    /**
+     * Applies the supplied operation to each element of this set, without boxing the elements.
+     * The set must not be modified by the operation. See also {@link
+     * IntSets#forEachInt(IntSet,IntConsumer)}, which works with any {@link IntSet}.
+     *
+     * <p>This implementation applies the operation to the elements returned by the interator,
+     * and so allocates the interator. Override if you can do better.
+     */
+    public void forEachInt (IntConsumer op)
+    {
+        for (Interator it = interator(); it.hasNext(); ) {
+            op.accept(it.nextInt());
+        }
+    }
+
     @Override // from AbstractSet<Integer>
     public Iterator<Integer> iterator ()
     {
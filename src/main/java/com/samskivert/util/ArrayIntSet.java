@@ -40,7 +40,10 @@ public class ArrayIntSet extends AbstractIntSet
     {
         this(values.size());
         _size = values.size();
-        if (values instanceof Interable) {
+        if (values instanceof IntList) {
+            ((IntList)values).toIntArray(_values, 0);
+
+        } else if (values instanceof Interable) {
             Interator iter = ((Interable) values).interator();
             for (int ii = 0; iter.hasNext(); ii++) {
                 _values[ii] = iter.nextInt();
@@ -217,6 +220,21 @@ public class ArrayIntSet extends AbstractIntSet
         return values;
     }
 
+    @Override // from interface IntSet
+    public int[] toIntArray (int[] reuse)
+    {
+        return toIntArray((reuse != null && reuse.length >= _size) ? reuse : new int[_size], 0);
+    }
+
+    @Override // from interface IntSet
+    public void forEachInt (IntConsumer op)
+    {
+        int[] values = _values;
+        for (int ii = 0, size = _size; ii < size; ii++) {
+            op.accept(values[ii]);
+        }
+    }
+
     @Override // from AbstractCollection<Integer>
     public int size ()
     {
@@ -229,10 +247,60 @@ public class ArrayIntSet extends AbstractIntSet
         return (_size == 0);
     }
 
+    @Override // from AbstractIntSet
+    public boolean containsAll (Collection<?> c)
+    {
+        if (c instanceof ArrayIntSet) {
+            ArrayIntSet other = (ArrayIntSet)c;
+            return (ArrayUtil.intersectionSize(_values, _size, other._values, other._size) ==
+                    other._size);
+        }
+        return super.containsAll(c);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean addAll (Collection<? extends Integer> c)
+    {
+        if (c instanceof ArrayIntSet) {
+            ArrayIntSet other = (ArrayIntSet)c;
+            if (other._size == 0) {
+                return false;
+            }
+            // merge our sorted arrays, rather than inserting their values one by one
+            int[] values = new int[Math.max(DEFAULT_CAPACITY, _size + other._size)];
+            int nsize = ArrayUtil.union(_values, _size, other._values, other._size, values);
+            if (nsize == _size) {
+                return false;
+            }
+            _values = values;
+            _size = nsize;
+            return true;
+        }
+        return super.addAll(c);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean removeAll (Collection<?> c)
+    {
+        if (c instanceof ArrayIntSet) {
+            ArrayIntSet other = (ArrayIntSet)c;
+            int osize = _size;
+            _size = ArrayUtil.difference(_values, _size, other._values, other._size, _values);
+            return (_size != osize);
+        }
+        return super.removeAll(c);
+    }
+
     @Override // from AbstractIntSet
     public boolean retainAll (Collection<?> c)
     {
-        if (c instanceof IntSet) {
+        if (c instanceof ArrayIntSet) {
+            ArrayIntSet other = (ArrayIntSet)c;
+            int osize = _size;
+            _size = ArrayUtil.intersect(_values, _size, other._values, other._size, _values);
+            return (_size != osize);
+
+        } else if (c instanceof IntSet) {
             IntSet other = (IntSet)c;
             int removals = 0;
 
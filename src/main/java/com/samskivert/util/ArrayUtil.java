@@ -7,9 +7,16 @@ package com.samskivert.util;
 
 import java.lang.reflect.Array;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Miscellaneous utility routines for working with arrays.
@@ -428,6 +435,648 @@ public class ArrayUtil
         return -(low + 1); // key not found.
     }
 
+    /**
+     * Locates each of the supplied keys in a sorted array, as if by {@link
+     * java.util.Arrays#binarySearch(int[],int)}, writing the index of each key (or
+     * <code>(-(<i>insertion point</i>) - 1)</code> if it was not found) into the corresponding
+     * element of <code>results</code>. Each search begins where the previous one ended, and
+     * probes outward at exponentially increasing distances before binary searching, so a batch
+     * of sorted (or otherwise nearby) keys is located in far fewer probes than it would be by
+     * separate searches. If more than one element equals a key, the index of the first is
+     * returned.
+     *
+     * @param array the sorted array to be searched.
+     * @param offset the index of the first element in the array to be considered.
+     * @param length the number of elements including and following the
+     * element at <code>offset</code> to consider when searching.
+     */
+    public static void binarySearch (
+        int[] array, int offset, int length, int[] keys, int[] results)
+    {
+        searchRange(array, offset, offset + length, keys, 0, keys.length, results);
+    }
+
+    /**
+     * Locates each of the supplied keys in a sorted array, dividing the keys among the threads of
+     * the supplied executor if there are enough of them to make that worthwhile. See {@link
+     * #binarySearch(int[],int,int,int[],int[])}.
+     *
+     * @param parallelism the maximum number of threads (including the calling thread) to use.
+     */
+    public static void binarySearch (
+        final int[] array, final int offset, final int length, final int[] keys,
+        final int[] results, Executor executor, int parallelism)
+    {
+        if (keys.length < PARALLEL_SEARCH_THRESHOLD || parallelism < 2) {
+            binarySearch(array, offset, length, keys, results);
+            return;
+        }
+        final int end = offset + length;
+        inParallel(executor, parallelism, keys.length, PARALLEL_SEARCH_THRESHOLD / 2,
+                   new RangeTask() {
+            public void run (int from, int to) {
+                searchRange(array, offset, end, keys, from, to, results);
+            }
+        });
+    }
+
+    /**
+     * Locates each of the supplied keys in an array sorted in the order defined by the supplied
+     * comparator, writing the index of each key (or <code>(-(<i>insertion point</i>) - 1)</code>
+     * if it was not found) into the corresponding element of <code>results</code>. Each search
+     * begins where the previous one ended. See {@link #binarySearch(int[],int,int,int[],int[])}.
+     *
+     * @param array the sorted array to be searched.
+     * @param offset the index of the first element in the array to be considered.
+     * @param length the number of elements including and following the
+     * element at <code>offset</code> to consider when searching.
+     */
+    public static <T> void binarySearch (
+        T[] array, int offset, int length, T[] keys, Comparator<? super T> comp, int[] results)
+    {
+        searchRange(array, offset, offset + length, keys, 0, keys.length, comp, results);
+    }
+
+    /**
+     * Locates each of the supplied keys in an array sorted in the order defined by the supplied
+     * comparator, dividing the keys among the threads of the supplied executor if there are
+     * enough of them to make that worthwhile. See {@link
+     * #binarySearch(Object[],int,int,Object[],Comparator,int[])}.
+     *
+     * @param parallelism the maximum number of threads (including the calling thread) to use.
+     */
+    public static <T> void binarySearch (
+        final T[] array, final int offset, final int length, final T[] keys,
+        final Comparator<? super T> comp, final int[] results, Executor executor,
+        int parallelism)
+    {
+        if (keys.length < PARALLEL_SEARCH_THRESHOLD || parallelism < 2) {
+            binarySearch(array, offset, length, keys, comp, results);
+            return;
+        }
+        final int end = offset + length;
+        inParallel(executor, parallelism, keys.length, PARALLEL_SEARCH_THRESHOLD / 2,
+                   new RangeTask() {
+            public void run (int from, int to) {
+                searchRange(array, offset, end, keys, from, to, comp, results);
+            }
+        });
+    }
+
+    /**
+     * Sorts the supplied array, dividing the work among the threads of a shared pool with one
+     * thread per processor. Arrays too small to benefit, or sorted on a single processor, are
+     * sorted on the calling thread.
+     */
+    public static void parallelSort (int[] a)
+    {
+        parallelSort(a, getSortPool(), PROCESSORS);
+    }
+
+    /**
+     * Sorts the supplied array by sorting pieces of it on the threads of the supplied executor
+     * (and the calling thread, which blocks until the sort is complete) and then merging them.
+     * Arrays smaller than {@link #PARALLEL_SORT_THRESHOLD} are sorted on the calling thread.
+     * The calling thread sorts any piece that has not been started by the executor by the time
+     * the calling thread is free to do so, so the sort completes even if the executor is busy.
+     *
+     * @param parallelism the maximum number of threads (including the calling thread) to use.
+     */
+    public static void parallelSort (final int[] a, Executor executor, int parallelism)
+    {
+        if (a.length < PARALLEL_SORT_THRESHOLD || parallelism < 2) {
+            QuickSort.radixSort(a);
+            return;
+        }
+        final int[] tmp = new int[a.length];
+        parallelMergeSort(executor, parallelism, a.length, new MergeSorter() {
+            public void sort (int from, int to) {
+                QuickSort.radixSort(a, from, to - 1);
+            }
+            public void merge (int from, int mid, int to) {
+                // if the runs are already in order, there's nothing to do
+                if (a[mid - 1] <= a[mid]) {
+                    return;
+                }
+                System.arraycopy(a, from, tmp, from, mid - from);
+                int ii = from, jj = mid, kk = from;
+                while (ii < mid && jj < to) {
+                    a[kk++] = (a[jj] < tmp[ii]) ? a[jj++] : tmp[ii++];
+                }
+                System.arraycopy(tmp, ii, a, kk, mid - ii);
+            }
+        });
+    }
+
+    /**
+     * Sorts the supplied array, dividing the work among the threads of a shared pool with one
+     * thread per processor. See {@link #parallelSort(int[])}.
+     */
+    public static void parallelSort (long[] a)
+    {
+        parallelSort(a, getSortPool(), PROCESSORS);
+    }
+
+    /**
+     * Sorts the supplied array by sorting pieces of it on the threads of the supplied executor
+     * and then merging them. See {@link #parallelSort(int[],Executor,int)}.
+     *
+     * @param parallelism the maximum number of threads (including the calling thread) to use.
+     */
+    public static void parallelSort (final long[] a, Executor executor, int parallelism)
+    {
+        if (a.length < PARALLEL_SORT_THRESHOLD || parallelism < 2) {
+            QuickSort.radixSort(a);
+            return;
+        }
+        final long[] tmp = new long[a.length];
+        parallelMergeSort(executor, parallelism, a.length, new MergeSorter() {
+            public void sort (int from, int to) {
+                QuickSort.radixSort(a, from, to - 1);
+            }
+            public void merge (int from, int mid, int to) {
+                if (a[mid - 1] <= a[mid]) {
+                    return;
+                }
+                System.arraycopy(a, from, tmp, from, mid - from);
+                int ii = from, jj = mid, kk = from;
+                while (ii < mid && jj < to) {
+                    a[kk++] = (a[jj] < tmp[ii]) ? a[jj++] : tmp[ii++];
+                }
+                System.arraycopy(tmp, ii, a, kk, mid - ii);
+            }
+        });
+    }
+
+    /**
+     * Sorts the supplied array, dividing the work among the threads of a shared pool with one
+     * thread per processor. The values are ordered as by {@link java.util.Arrays#sort(double[])}.
+     * See {@link #parallelSort(int[])}.
+     */
+    public static void parallelSort (double[] a)
+    {
+        parallelSort(a, getSortPool(), PROCESSORS);
+    }
+
+    /**
+     * Sorts the supplied array by sorting pieces of it on the threads of the supplied executor
+     * and then merging them. The values are ordered as by {@link
+     * java.util.Arrays#sort(double[])}. See {@link #parallelSort(int[],Executor,int)}.
+     *
+     * @param parallelism the maximum number of threads (including the calling thread) to use.
+     */
+    public static void parallelSort (final double[] a, Executor executor, int parallelism)
+    {
+        if (a.length < PARALLEL_SORT_THRESHOLD || parallelism < 2) {
+            Arrays.sort(a);
+            return;
+        }
+        final double[] tmp = new double[a.length];
+        parallelMergeSort(executor, parallelism, a.length, new MergeSorter() {
+            public void sort (int from, int to) {
+                Arrays.sort(a, from, to);
+            }
+            public void merge (int from, int mid, int to) {
+                // Double.compare orders -0.0 before 0.0 and NaN last, as does Arrays.sort
+                if (Double.compare(a[mid - 1], a[mid]) <= 0) {
+                    return;
+                }
+                System.arraycopy(a, from, tmp, from, mid - from);
+                int ii = from, jj = mid, kk = from;
+                while (ii < mid && jj < to) {
+                    a[kk++] = (Double.compare(a[jj], tmp[ii]) < 0) ? a[jj++] : tmp[ii++];
+                }
+                System.arraycopy(tmp, ii, a, kk, mid - ii);
+            }
+        });
+    }
+
+    /**
+     * Sorts the supplied array with the supplied comparator, dividing the work among the threads
+     * of a shared pool with one thread per processor. The sort is stable. See {@link
+     * #parallelSort(int[])}.
+     */
+    public static <T> void parallelSort (T[] a, Comparator<? super T> comp)
+    {
+        parallelSort(a, comp, getSortPool(), PROCESSORS);
+    }
+
+    /**
+     * Sorts the supplied array with the supplied comparator by sorting pieces of it on the
+     * threads of the supplied executor and then merging them. The sort is stable, and the
+     * comparator must be safe to call from many threads at once. See {@link
+     * #parallelSort(int[],Executor,int)}.
+     *
+     * @param parallelism the maximum number of threads (including the calling thread) to use.
+     */
+    public static <T> void parallelSort (
+        final T[] a, final Comparator<? super T> comp, Executor executor, int parallelism)
+    {
+        if (a.length < PARALLEL_SORT_THRESHOLD || parallelism < 2) {
+            QuickSort.stableSort(a, 0, a.length - 1, comp);
+            return;
+        }
+        @SuppressWarnings("unchecked") final T[] tmp = (T[])new Object[a.length];
+        parallelMergeSort(executor, parallelism, a.length, new MergeSorter() {
+            public void sort (int from, int to) {
+                QuickSort.stableSort(a, from, to - 1, comp);
+            }
+            public void merge (int from, int mid, int to) {
+                if (comp.compare(a[mid - 1], a[mid]) <= 0) {
+                    return;
+                }
+                System.arraycopy(a, from, tmp, from, mid - from);
+                int ii = from, jj = mid, kk = from;
+                while (ii < mid && jj < to) {
+                    // take from the right run only if strictly less, which keeps the sort stable
+                    a[kk++] = (comp.compare(a[jj], tmp[ii]) < 0) ? a[jj++] : tmp[ii++];
+                }
+                System.arraycopy(tmp, ii, a, kk, mid - ii);
+            }
+        });
+    }
+
+    /**
+     * Computes the union of two sorted arrays of distinct ints, writing the result (which is
+     * also sorted and distinct) into <code>dest</code>.
+     *
+     * @param dest the array into which to write the union, which must be able to hold
+     * <code>alen + blen</code> values and must not be either of the source arrays.
+     *
+     * @return the number of values written to <code>dest</code>.
+     */
+    public static int union (int[] a, int alen, int[] b, int blen, int[] dest)
+    {
+        int ii = 0, jj = 0, kk = 0;
+        // the merge steps are written as conditional moves, rather than branches on
+        // comparisons of essentially random data that the CPU would often mispredict
+        while (ii < alen && jj < blen) {
+            int av = a[ii], bv = b[jj];
+            dest[kk++] = (av <= bv) ? av : bv;
+            ii += (av <= bv) ? 1 : 0;
+            jj += (bv <= av) ? 1 : 0;
+        }
+        System.arraycopy(a, ii, dest, kk, alen - ii);
+        kk += alen - ii;
+        System.arraycopy(b, jj, dest, kk, blen - jj);
+        return kk + blen - jj;
+    }
+
+    /**
+     * Computes the intersection of two sorted arrays of distinct ints, writing the result (which
+     * is also sorted and distinct) into <code>dest</code>. When one array is much smaller than
+     * the other, its values are located in the larger array by galloping search rather than
+     * stepping through every value of the larger array.
+     *
+     * @param dest the array into which to write the intersection, which must be able to hold
+     * <code>min(alen, blen)</code> values. This may be <code>a</code> (or <code>b</code>), in
+     * which case the intersection is computed in place.
+     *
+     * @return the number of values written to <code>dest</code>.
+     */
+    public static int intersect (int[] a, int alen, int[] b, int blen, int[] dest)
+    {
+        if (alen < blen / GALLOP_RATIO) {
+            return gallopIntersect(a, alen, b, blen, dest);
+        } else if (blen < alen / GALLOP_RATIO) {
+            return gallopIntersect(b, blen, a, alen, dest);
+        }
+        int ii = 0, jj = 0, kk = 0;
+        while (ii < alen && jj < blen) {
+            int av = a[ii], bv = b[jj];
+            // always write the value, but only keep it if it was in both arrays
+            dest[kk] = av;
+            kk += (av == bv) ? 1 : 0;
+            ii += (av <= bv) ? 1 : 0;
+            jj += (bv <= av) ? 1 : 0;
+        }
+        return kk;
+    }
+
+    /**
+     * Computes the number of values in the intersection of two sorted arrays of distinct ints,
+     * without materializing the intersection.
+     */
+    public static int intersectionSize (int[] a, int alen, int[] b, int blen)
+    {
+        if (alen < blen / GALLOP_RATIO) {
+            return gallopIntersect(a, alen, b, blen, null);
+        } else if (blen < alen / GALLOP_RATIO) {
+            return gallopIntersect(b, blen, a, alen, null);
+        }
+        int ii = 0, jj = 0, count = 0;
+        while (ii < alen && jj < blen) {
+            int av = a[ii], bv = b[jj];
+            count += (av == bv) ? 1 : 0;
+            ii += (av <= bv) ? 1 : 0;
+            jj += (bv <= av) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Computes the values of one sorted array of distinct ints that are not in another, writing
+     * the result (which is also sorted and distinct) into <code>dest</code>.
+     *
+     * @param dest the array into which to write the difference, which must be able to hold
+     * <code>alen</code> values. This may be <code>a</code>, in which case the difference is
+     * computed in place.
+     *
+     * @return the number of values written to <code>dest</code>.
+     */
+    public static int difference (int[] a, int alen, int[] b, int blen, int[] dest)
+    {
+        int ii = 0, jj = 0, kk = 0;
+        if (alen < blen / GALLOP_RATIO) {
+            for (; ii < alen; ii++) {
+                int av = a[ii];
+                jj = gallop(b, jj, blen, av);
+                if (jj == blen || b[jj] != av) {
+                    dest[kk++] = av;
+                }
+            }
+            return kk;
+        }
+        while (ii < alen && jj < blen) {
+            int av = a[ii], bv = b[jj];
+            dest[kk] = av;
+            kk += (av < bv) ? 1 : 0;
+            ii += (av <= bv) ? 1 : 0;
+            jj += (bv <= av) ? 1 : 0;
+        }
+        System.arraycopy(a, ii, dest, kk, alen - ii);
+        return kk + alen - ii;
+    }
+
+    /**
+     * Intersects a small sorted array with a much larger one by galloping through the larger
+     * array. If <code>dest</code> is null, the intersection is only counted.
+     */
+    protected static int gallopIntersect (
+        int[] small, int slen, int[] large, int llen, int[] dest)
+    {
+        int kk = 0;
+        for (int ii = 0, jj = 0; ii < slen && jj < llen; ii++) {
+            int value = small[ii];
+            jj = gallop(large, jj, llen, value);
+            if (jj < llen && large[jj] == value) {
+                if (dest != null) {
+                    dest[kk] = value;
+                }
+                kk++;
+            }
+        }
+        return kk;
+    }
+
+    /**
+     * Returns the index of the first value in <code>values[from, length)</code> that is greater
+     * than or equal to <code>key</code>, or <code>length</code> if there is no such value. Probes
+     * at exponentially increasing distances from <code>from</code> and then binary searches the
+     * bracketed range, so that a search costs time logarithmic in the distance advanced.
+     */
+    protected static int gallop (int[] values, int from, int length, int key)
+    {
+        int low = from, step = 1, high = from;
+        while (high < length && values[high] < key) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, length);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Locates <code>keys[from, to)</code> in <code>array[offset, end)</code>, starting each search
+     * where the previous one ended.
+     */
+    protected static void searchRange (
+        int[] array, int offset, int end, int[] keys, int from, int to, int[] results)
+    {
+        int pos = offset;
+        for (int ii = from; ii < to; ii++) {
+            int key = keys[ii];
+            if (pos < end && array[pos] < key) {
+                pos = gallop(array, pos + 1, end, key);
+            } else {
+                // gallop backwards to the first value that is less than the key
+                int high = pos, low = pos - 1, step = 1;
+                while (low >= offset && array[low] >= key) {
+                    high = low;
+                    low = pos - (step <<= 1);
+                }
+                low = Math.max(low + 1, offset);
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (array[mid] < key) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                pos = low;
+            }
+            results[ii] = (pos < end && array[pos] == key) ? pos : -(pos + 1);
+        }
+    }
+
+    /**
+     * Locates <code>keys[from, to)</code> in <code>array[offset, end)</code>, starting each search
+     * where the previous one ended.
+     */
+    protected static <T> void searchRange (
+        T[] array, int offset, int end, T[] keys, int from, int to, Comparator<? super T> comp,
+        int[] results)
+    {
+        int pos = offset;
+        for (int ii = from; ii < to; ii++) {
+            T key = keys[ii];
+            int low, high;
+            if (pos < end && comp.compare(array[pos], key) < 0) {
+                // gallop forwards to a value that is no less than the key
+                int start = pos + 1;
+                low = high = start;
+                for (int step = 1; high < end && comp.compare(array[high], key) < 0; step <<= 1) {
+                    low = high + 1;
+                    high = start + step;
+                }
+                high = Math.min(high, end);
+            } else {
+                // gallop backwards to a value that is less than the key
+                high = pos;
+                low = pos - 1;
+                for (int step = 1; low >= offset && comp.compare(array[low], key) >= 0; ) {
+                    high = low;
+                    low = pos - (step <<= 1);
+                }
+                low = Math.max(low + 1, offset);
+            }
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comp.compare(array[mid], key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            pos = low;
+            results[ii] = (pos < end && comp.compare(array[pos], key) == 0) ? pos : -(pos + 1);
+        }
+    }
+
+    /** Sorts and merges ranges of an array on behalf of {@link #parallelMergeSort}. */
+    protected static interface MergeSorter
+    {
+        /** Sorts the elements in <code>[from, to)</code>. */
+        public void sort (int from, int to);
+
+        /** Merges the sorted runs <code>[from, mid)</code> and <code>[mid, to)</code>. */
+        public void merge (int from, int mid, int to);
+    }
+
+    /** Performs some operation on a range of indices on behalf of {@link #inParallel}. */
+    protected static interface RangeTask
+    {
+        /** Performs the operation on the indices in <code>[from, to)</code>. */
+        public void run (int from, int to);
+    }
+
+    /**
+     * Sorts <code>length</code> elements by dividing them into pieces (a power of two of them),
+     * sorting the pieces in parallel and then merging adjacent pairs of sorted pieces, again in
+     * parallel, until all are merged.
+     */
+    protected static void parallelMergeSort (
+        Executor executor, int parallelism, final int length, final MergeSorter sorter)
+    {
+        // use a few pieces per thread so that threads that finish early can help those that don't
+        int pieces = 1;
+        while (pieces < parallelism * 4 && length / (pieces * 2) >= PARALLEL_SORT_THRESHOLD / 2) {
+            pieces *= 2;
+        }
+        final int count = pieces;
+        inParallel(executor, parallelism, count, new RangeTask() {
+            public void run (int from, int to) {
+                for (int ii = from; ii < to; ii++) {
+                    sorter.sort(bound(length, count, ii), bound(length, count, ii + 1));
+                }
+            }
+        });
+        for (int width = 1; width < count; width *= 2) {
+            final int span = width * 2;
+            inParallel(executor, parallelism, count / span, new RangeTask() {
+                public void run (int from, int to) {
+                    for (int ii = from; ii < to; ii++) {
+                        int first = ii * span;
+                        sorter.merge(bound(length, count, first),
+                                     bound(length, count, first + span / 2),
+                                     bound(length, count, first + span));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the index at which the specified piece of <code>length</code> elements divided
+     * into <code>count</code> pieces begins.
+     */
+    protected static int bound (int length, int count, int piece)
+    {
+        return (int)((long)length * piece / count);
+    }
+
+    /**
+     * Performs the supplied task on each of <code>count</code> indices, one at a time, using up
+     * to <code>parallelism</code> threads. See {@link #inParallel(Executor,int,int,int,RangeTask)}.
+     */
+    protected static void inParallel (
+        Executor executor, int parallelism, int count, RangeTask task)
+    {
+        inParallel(executor, parallelism, count, 1, task);
+    }
+
+    /**
+     * Performs the supplied task on the indices <code>[0, count)</code>, in batches of
+     * <code>batch</code> indices, using the calling thread and up to <code>parallelism -
+     * 1</code> threads of the supplied executor. The threads claim batches until none remain, so
+     * the calling thread performs any batch that the executor has not started by then, and this
+     * method returns once every batch has been performed. If the task throws an exception
+     * in any thread, the first such exception is rethrown on the calling thread.
+     */
+    protected static void inParallel (
+        Executor executor, int parallelism, final int count, final int batch,
+        final RangeTask task)
+    {
+        final int batches = (count + batch - 1) / batch;
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(batches);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Runnable worker = new Runnable() {
+            public void run () {
+                for (int bb; (bb = next.getAndIncrement()) < batches; done.countDown()) {
+                    try {
+                        task.run(bb * batch, Math.min(count, (bb + 1) * batch));
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            }
+        };
+        for (int ii = 1, helpers = Math.min(parallelism, batches); ii < helpers; ii++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException ree) {
+                break; // we'll do the work ourselves
+            }
+        }
+        worker.run();
+
+        // the task is operating on our caller's data, so we must wait for it to finish even if
+        // we're interrupted
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException)t;
+        } else if (t instanceof Error) {
+            throw (Error)t;
+        }
+    }
+
+    /**
+     * Returns the pool on which {@link #parallelSort(int[])} and friends run, creating it if
+     * necessary.
+     */
+    protected static synchronized Executor getSortPool ()
+    {
+        if (_sortPool == null) {
+            _sortPool = Executors.newFixedThreadPool(
+                PROCESSORS, ThreadFactories.platform("ArrayUtil", true));
+        }
+        return _sortPool;
+    }
+
     /**
      * Creates and returns a new array sized to fit and populated with the
      * subset of values from indexes <code>0</code> to </code>offset -
@@ -891,6 +1540,23 @@ public class ArrayUtil
         return dest;
     }
 
+    /** When one sorted array is this many times larger than another, we gallop through it rather
+     * than merging. */
+    protected static final int GALLOP_RATIO = 32;
+
+    /** Arrays smaller than this are sorted on the calling thread by {@link #parallelSort}. */
+    public static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+    /** Batches of fewer keys than this are searched on the calling thread by {@link
+     * #binarySearch(int[],int,int,int[],int[],Executor,int)}. */
+    protected static final int PARALLEL_SEARCH_THRESHOLD = 1 << 12;
+
+    /** The number of processors available to the JVM. */
+    protected static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    /** The pool on which parallel sorts run by default, created on first use. */
+    protected static Executor _sortPool;
+
     /** The default random object used when shuffling an array. */
     protected static final Random _rnd = new Random();
 }
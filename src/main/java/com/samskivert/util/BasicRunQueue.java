@@ -25,14 +25,76 @@ public class BasicRunQueue extends LoopingThread
      * Construct a BasicRunQueue with a default Queue implementation and the given name.
      */
     public BasicRunQueue (String name)
+    {
+        this(name, new Queue<Runnable>());
+    }
+
+    /**
+     * Construct a BasicRunQueue with the given name that uses the supplied queue. Supply a {@link
+     * LockFreeQueue} to allow many threads to post runnables without contending for a lock.
+     */
+    public BasicRunQueue (String name, Queue<Runnable> queue)
     {
         super(name);
-        _queue = new Queue<Runnable>();
+        _queue = queue;
+    }
+
+    /**
+     * Limits the number of runnables that may be waiting on this run queue. When a runnable is
+     * posted to a full queue, the supplied policy determines whether the posting thread blocks,
+     * the runnable is rejected, the oldest waiting runnable is dropped or the runnable is run
+     * directly on the posting thread. This should be called before any runnables are posted.
+     *
+     * @param capacity the maximum number of waiting runnables, or zero for no limit.
+     */
+    public void setCapacity (int capacity, QueueLimiter.Policy policy)
+    {
+        if (policy == QueueLimiter.Policy.DROP_OLDEST && _queue instanceof LockFreeQueue<?>) {
+            throw new IllegalArgumentException(
+                "DROP_OLDEST cannot be used with a single consumer queue.");
+        }
+        _limiter = (capacity == 0) ? null : new QueueLimiter(capacity, policy);
+    }
+
+    /**
+     * Returns the limiter that bounds this run queue, or null if it is unbounded.
+     */
+    public QueueLimiter getLimiter ()
+    {
+        return _limiter;
+    }
+
+    /**
+     * Returns the largest number of runnables that have been waiting on this run queue at once
+     * since it was created or since the last call to {@link #resetQueueHighWaterMark}.
+     */
+    public int getQueueHighWaterMark ()
+    {
+        return _queue.getHighWaterMark();
+    }
+
+    /**
+     * Resets the queue high water mark to the number of runnables currently waiting.
+     */
+    public void resetQueueHighWaterMark ()
+    {
+        _queue.resetHighWaterMark();
     }
 
     // from interface RunQueue
     public void postRunnable (Runnable r)
     {
+        QueueLimiter limiter = _limiter;
+        if (limiter != null) {
+            if (limiter.getPolicy() == QueueLimiter.Policy.BLOCK && isDispatchThread()) {
+                // blocking our own thread would deadlock, as it alone can make room
+                limiter.forceAdmit();
+            } else if (!limiter.admit(_queue)) {
+                // we're full and configured to run the runnable on the caller's thread
+                runSafely(r);
+                return;
+            }
+        }
         _queue.append(r);
     }
 
@@ -53,27 +115,48 @@ public class BasicRunQueue extends LoopingThread
     protected void iterate ()
     {
         Runnable r = _queue.get();
-        try {
-            r.run();
-
-        } catch (Throwable t) {
-            log.warning("Runnable posted to RunQueue barfed.", t);
+        QueueLimiter limiter = _limiter;
+        if (limiter != null) {
+            limiter.release(1);
         }
+        runSafely(r);
     }
 
     @Override // from LoopingThread
     protected void kick ()
     {
-        postRunnable(new Runnable() {
+        // bypass our limiter's policy, we don't want to block or be rejected, but count our
+        // runnable as admitted because iterate() will release it like any other
+        QueueLimiter limiter = _limiter;
+        if (limiter != null) {
+            limiter.forceAdmit();
+        }
+        _queue.append(new Runnable() {
             public void run () {
                 // nothing
             }
         });
     }
 
+    /**
+     * Runs the supplied runnable, logging any failure.
+     */
+    protected void runSafely (Runnable r)
+    {
+        try {
+            r.run();
+
+        } catch (Throwable t) {
+            log.warning("Runnable posted to RunQueue barfed.", t);
+        }
+    }
+
     /** The queue of things to run. */
     protected Queue<Runnable> _queue;
 
+    /** Limits the number of runnables waiting on our queue, or null. */
+    protected volatile QueueLimiter _limiter;
+
     /** Our dispatcher thread (may == this or may be something else if we're being used directly
      * rather than in separate thread mode). */
     protected Thread _dispatcher;
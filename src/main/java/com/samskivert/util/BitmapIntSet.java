@@ -0,0 +1,1197 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link IntSet} that stores its contents as a compressed bitmap, in the manner of a Roaring
+ * bitmap. The ints are partitioned by their high sixteen bits into chunks and each chunk's low
+ * sixteen bits are stored in whichever kind of container suits it: a sorted array of chars for
+ * sparse chunks, a 65536 bit bitmap for dense chunks or a list of runs for chunks made up of
+ * long stretches of consecutive values. A set of millions of mostly consecutive ids thus costs
+ * little more than a bit per id (or much less, once {@link #optimize}d into runs), rather than
+ * the four or more bytes per id of an {@link ArrayIntSet} or {@link HashIntSet}.
+ *
+ * <p> Lookups, insertions and removals examine a single container. {@link #and}, {@link #or} and
+ * {@link #andNot} combine sets a container at a time (using word-at-a-time operations where both
+ * containers are bitmaps) and {@link #size} is maintained as elements are added and removed.
+ * Iteration is in ascending order.
+ */
+public class BitmapIntSet extends AbstractIntSet
+    implements Cloneable, Serializable
+{
+    /**
+     * Constructs an empty set.
+     */
+    public BitmapIntSet ()
+    {
+        _highs = new char[DEFAULT_CONTAINERS];
+        _containers = new Container[DEFAULT_CONTAINERS];
+    }
+
+    /**
+     * Constructs a set with the specified starting values.
+     */
+    public BitmapIntSet (int[] values)
+    {
+        this();
+        add(values);
+    }
+
+    /**
+     * Constructs a set with the specified starting values. Populating the set from a sorted set,
+     * like an {@link ArrayIntSet}, is especially efficient.
+     *
+     * @throws NullPointerException if the collection contains any null values.
+     */
+    public BitmapIntSet (Collection<Integer> values)
+    {
+        this();
+        addAll(values);
+    }
+
+    /**
+     * Adds all of the ints from <code>first</code> to <code>last</code> (inclusive) to this set.
+     * The range is added a chunk at a time, and chunks that are wholly contained in the range
+     * are stored as a single run.
+     *
+     * @return true if the set was modified.
+     */
+    public boolean addRange (int first, int last)
+    {
+        if (first > last) {
+            return false;
+        }
+        int osize = _size;
+        for (int high = highBits(first), lhigh = highBits(last); high <= lhigh; high++) {
+            int from = (high == highBits(first)) ? (first & 0xFFFF) : 0;
+            int to = (high == lhigh) ? (last & 0xFFFF) : 0xFFFF;
+            Container run = new RunContainer(new char[] { (char)from },
+                                             new char[] { (char)(to - from) }, 1);
+            int idx = indexOf((char)high);
+            if (idx < 0) {
+                insertContainer(-(idx+1), (char)high, run);
+                _size += run.cardinality();
+            } else {
+                Container ocont = _containers[idx];
+                Container ncont = or(ocont, run);
+                _containers[idx] = ncont;
+                _size += ncont.cardinality() - ocont.cardinality();
+            }
+        }
+        _modCount++;
+        return (_size != osize);
+    }
+
+    /**
+     * Returns a new set containing the ints that are in both this set and the supplied set.
+     */
+    public BitmapIntSet and (BitmapIntSet other)
+    {
+        BitmapIntSet result = new BitmapIntSet(Math.min(_count, other._count));
+        for (int ii = 0, jj = 0; ii < _count && jj < other._count; ) {
+            char ihigh = _highs[ii], jhigh = other._highs[jj];
+            if (ihigh < jhigh) {
+                ii++;
+            } else if (ihigh > jhigh) {
+                jj++;
+            } else {
+                result.append(ihigh, and(_containers[ii++], other._containers[jj++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set containing the ints that are in either this set or the supplied set.
+     */
+    public BitmapIntSet or (BitmapIntSet other)
+    {
+        BitmapIntSet result = new BitmapIntSet(_count + other._count);
+        int ii = 0, jj = 0;
+        while (ii < _count && jj < other._count) {
+            char ihigh = _highs[ii], jhigh = other._highs[jj];
+            if (ihigh < jhigh) {
+                result.append(ihigh, _containers[ii++].copy());
+            } else if (ihigh > jhigh) {
+                result.append(jhigh, other._containers[jj++].copy());
+            } else {
+                result.append(ihigh, or(_containers[ii++], other._containers[jj++]));
+            }
+        }
+        for (; ii < _count; ii++) {
+            result.append(_highs[ii], _containers[ii].copy());
+        }
+        for (; jj < other._count; jj++) {
+            result.append(other._highs[jj], other._containers[jj].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set containing the ints that are in this set but not in the supplied set.
+     */
+    public BitmapIntSet andNot (BitmapIntSet other)
+    {
+        BitmapIntSet result = new BitmapIntSet(_count);
+        for (int ii = 0, jj = 0; ii < _count; ) {
+            char ihigh = _highs[ii];
+            if (jj >= other._count || ihigh < other._highs[jj]) {
+                result.append(ihigh, _containers[ii++].copy());
+            } else if (ihigh > other._highs[jj]) {
+                jj++;
+            } else {
+                result.append(ihigh, andNot(_containers[ii++], other._containers[jj++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts each container to run form if that is the most compact representation of its
+     * contents. Sets that contain long stretches of consecutive ints should be optimized once
+     * they have been populated. A run container that is subsequently modified reverts to an
+     * array or bitmap.
+     *
+     * @return true if any container was converted.
+     */
+    public boolean optimize ()
+    {
+        boolean converted = false;
+        for (int ii = 0; ii < _count; ii++) {
+            Container ocont = _containers[ii];
+            Container ncont = ocont.optimize();
+            if (ncont != ocont) {
+                _containers[ii] = ncont;
+                converted = true;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Returns the approximate number of bytes used to store this set's contents.
+     */
+    public long getSizeInBytes ()
+    {
+        long bytes = _highs.length * 2L + _containers.length * 4L;
+        for (int ii = 0; ii < _count; ii++) {
+            bytes += _containers[ii].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns an {@link ArrayIntSet} containing the contents of this set.
+     */
+    public ArrayIntSet toArrayIntSet ()
+    {
+        // our values are already sorted, so we need not have the array set sort them again
+        ArrayIntSet set = new ArrayIntSet(0);
+        set._values = toIntArray();
+        set._size = set._values.length;
+        return set;
+    }
+
+    @Override // from AbstractIntSet
+    public boolean contains (int value)
+    {
+        int idx = indexOf(highBits(value));
+        return (idx >= 0) && _containers[idx].contains(value & 0xFFFF);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean add (int value)
+    {
+        char high = highBits(value);
+        int low = value & 0xFFFF;
+        int idx = indexOf(high);
+        if (idx >= 0) {
+            Container cont = _containers[idx];
+            if (cont.contains(low)) {
+                return false;
+            }
+            _containers[idx] = cont.add(low);
+        } else {
+            insertContainer(-(idx+1), high, new ArrayContainer(4).add(low));
+        }
+        _size++;
+        _modCount++;
+        return true;
+    }
+
+    @Override // from AbstractIntSet
+    public boolean remove (int value)
+    {
+        int idx = indexOf(highBits(value));
+        if (idx < 0) {
+            return false;
+        }
+        Container cont = _containers[idx];
+        int low = value & 0xFFFF;
+        if (!cont.contains(low)) {
+            return false;
+        }
+        if (cont.cardinality() == 1) {
+            removeContainer(idx);
+        } else {
+            _containers[idx] = cont.remove(low);
+        }
+        _size--;
+        _modCount++;
+        return true;
+    }
+
+    @Override // from AbstractIntSet
+    public int size ()
+    {
+        return _size;
+    }
+
+    @Override // from AbstractIntSet
+    public boolean isEmpty ()
+    {
+        return (_size == 0);
+    }
+
+    // from interface IntSet
+    public Interator interator ()
+    {
+        return new AbstractInterator() {
+            { // initializer
+                advance(0, 0);
+            }
+
+            public boolean hasNext () {
+                checkMods();
+                return _hasNext;
+            }
+
+            public int nextInt () {
+                checkMods();
+                if (!_hasNext) {
+                    throw new NoSuchElementException();
+                }
+                int value = _nextValue;
+                _last = value;
+                _canRemove = true;
+                advance(_cidx, (value & 0xFFFF) + 1);
+                return value;
+            }
+
+            @Override public void remove () {
+                checkMods();
+                if (!_canRemove) {
+                    throw new IllegalStateException();
+                }
+                BitmapIntSet.this.remove(_last);
+                _canRemove = false;
+                _expectedMods = _modCount;
+                // removing may have removed a container, shifting the one we're in
+                if (_hasNext) {
+                    _cidx = indexOf(highBits(_nextValue));
+                }
+            }
+
+            protected void advance (int cidx, int from) {
+                for (; cidx < _count; cidx++, from = 0) {
+                    int low = (from > 0xFFFF) ? -1 : _containers[cidx].nextValue(from);
+                    if (low >= 0) {
+                        _cidx = cidx;
+                        _nextValue = toValue(_highs[cidx], low);
+                        _hasNext = true;
+                        return;
+                    }
+                }
+                _hasNext = false;
+            }
+
+            protected void checkMods () {
+                if (_modCount != _expectedMods) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+
+            protected int _cidx, _nextValue, _last;
+            protected boolean _hasNext, _canRemove;
+            protected int _expectedMods = _modCount;
+        };
+    }
+
+    @Override // from AbstractIntSet
+    public int[] toIntArray ()
+    {
+        return toIntArray(null);
+    }
+
+    @Override // from AbstractIntSet
+    public int[] toIntArray (int[] reuse)
+    {
+        int[] values = (reuse != null && reuse.length >= _size) ? reuse : new int[_size];
+        for (int ii = 0, off = 0; ii < _count; ii++) {
+            off = _containers[ii].fill(values, off, toValue(_highs[ii], 0));
+        }
+        return values;
+    }
+
+    @Override // from AbstractIntSet
+    public void forEachInt (IntConsumer op)
+    {
+        int expectedMods = _modCount;
+        for (int ii = 0; ii < _count; ii++) {
+            _containers[ii].forEach(op, toValue(_highs[ii], 0));
+            if (_modCount != expectedMods) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    @Override // from AbstractIntSet
+    public boolean addAll (Collection<? extends Integer> c)
+    {
+        if (c instanceof BitmapIntSet) {
+            return replaceWith(or((BitmapIntSet)c));
+        }
+        return super.addAll(c);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean removeAll (Collection<?> c)
+    {
+        if (c instanceof BitmapIntSet) {
+            return replaceWith(andNot((BitmapIntSet)c));
+        }
+        return super.removeAll(c);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean retainAll (Collection<?> c)
+    {
+        if (c instanceof BitmapIntSet) {
+            return replaceWith(and((BitmapIntSet)c));
+        }
+        return super.retainAll(c);
+    }
+
+    @Override // from AbstractSet<Integer>
+    public void clear ()
+    {
+        if (_count > 0) {
+            _highs = new char[DEFAULT_CONTAINERS];
+            _containers = new Container[DEFAULT_CONTAINERS];
+            _count = 0;
+            _size = 0;
+            _modCount++;
+        }
+    }
+
+    @Override
+    public BitmapIntSet clone ()
+    {
+        try {
+            BitmapIntSet nset = (BitmapIntSet)super.clone();
+            nset._highs = _highs.clone();
+            nset._containers = _containers.clone();
+            for (int ii = 0; ii < _count; ii++) {
+                nset._containers[ii] = _containers[ii].copy();
+            }
+            return nset;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    /**
+     * Creates an empty set with room for the specified number of containers.
+     */
+    protected BitmapIntSet (int containers)
+    {
+        containers = Math.max(containers, 1);
+        _highs = new char[containers];
+        _containers = new Container[containers];
+    }
+
+    /**
+     * Returns the index of the container for the specified high bits, or (-(insertion point) - 1)
+     * if we have no such container.
+     */
+    protected int indexOf (char high)
+    {
+        // sets are often populated in ascending order, so check our last container first
+        if (_count > 0 && _highs[_count-1] == high) {
+            return _count-1;
+        }
+        int low = 0, hi = _count-1;
+        while (low <= hi) {
+            int mid = (low + hi) >>> 1;
+            char mhigh = _highs[mid];
+            if (mhigh < high) {
+                low = mid + 1;
+            } else if (mhigh > high) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Inserts a container at the specified index.
+     */
+    protected void insertContainer (int idx, char high, Container cont)
+    {
+        if (_count == _highs.length) {
+            int ncount = _count * 2;
+            char[] highs = new char[ncount];
+            System.arraycopy(_highs, 0, highs, 0, _count);
+            _highs = highs;
+            Container[] containers = new Container[ncount];
+            System.arraycopy(_containers, 0, containers, 0, _count);
+            _containers = containers;
+        }
+        System.arraycopy(_highs, idx, _highs, idx+1, _count-idx);
+        System.arraycopy(_containers, idx, _containers, idx+1, _count-idx);
+        _highs[idx] = high;
+        _containers[idx] = cont;
+        _count++;
+    }
+
+    /**
+     * Removes the container at the specified index.
+     */
+    protected void removeContainer (int idx)
+    {
+        _count--;
+        System.arraycopy(_highs, idx+1, _highs, idx, _count-idx);
+        System.arraycopy(_containers, idx+1, _containers, idx, _count-idx);
+        _containers[_count] = null;
+    }
+
+    /**
+     * Appends a container with high bits greater than those of all of our current containers.
+     * Used when constructing the results of set operations. A null container is ignored.
+     */
+    protected void append (char high, Container cont)
+    {
+        if (cont != null) {
+            insertContainer(_count, high, cont);
+            _size += cont.cardinality();
+        }
+    }
+
+    /**
+     * Replaces our contents with those of the supplied set.
+     *
+     * @return true if our contents changed.
+     */
+    protected boolean replaceWith (BitmapIntSet other)
+    {
+        // our operations can only add or only remove, so a change in size means a change
+        boolean changed = (other._size != _size);
+        _highs = other._highs;
+        _containers = other._containers;
+        _count = other._count;
+        _size = other._size;
+        _modCount++;
+        return changed;
+    }
+
+    /**
+     * Custom serializer.
+     */
+    private void writeObject (ObjectOutputStream out)
+        throws IOException
+    {
+        out.defaultWriteObject();
+        out.writeInt(_count);
+        for (int ii = 0; ii < _count; ii++) {
+            out.writeChar(_highs[ii]);
+            _containers[ii].write(out);
+        }
+    }
+
+    /**
+     * Custom deserializer.
+     */
+    private void readObject (ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        int count = in.readInt();
+        _highs = new char[Math.max(count, 1)];
+        _containers = new Container[Math.max(count, 1)];
+        for (int ii = 0; ii < count; ii++) {
+            char high = in.readChar();
+            append(high, Container.read(in));
+        }
+    }
+
+    /**
+     * Returns the key of the chunk that holds the specified value. The sign bit is flipped so
+     * that chunks sort (as unsigned chars) in the same order as the signed values they hold.
+     */
+    protected static char highBits (int value)
+    {
+        return (char)((value >>> 16) ^ 0x8000);
+    }
+
+    /**
+     * Reassembles a value from its chunk key and low bits.
+     */
+    protected static int toValue (char high, int low)
+    {
+        return ((high ^ 0x8000) << 16) | low;
+    }
+
+    /**
+     * Returns a container holding the values in both of the supplied containers, or null if
+     * there are none.
+     */
+    protected static Container and (Container a, Container b)
+    {
+        if (b instanceof ArrayContainer) {
+            return ((ArrayContainer)b).filter(a, true);
+        } else if (a instanceof ArrayContainer) {
+            return ((ArrayContainer)a).filter(b, true);
+        }
+        long[] words = a.toWords(), bwords = b.words();
+        for (int ii = 0; ii < WORDS; ii++) {
+            words[ii] &= bwords[ii];
+        }
+        return fromWords(words);
+    }
+
+    /**
+     * Returns a container holding the values in either of the supplied containers.
+     */
+    protected static Container or (Container a, Container b)
+    {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer &&
+                a.cardinality() + b.cardinality() <= ARRAY_MAX) {
+            return ((ArrayContainer)a).merge((ArrayContainer)b);
+        }
+        long[] words = a.toWords();
+        b.orInto(words);
+        return fromWords(words);
+    }
+
+    /**
+     * Returns a container holding the values in the first container but not the second, or null
+     * if there are none.
+     */
+    protected static Container andNot (Container a, Container b)
+    {
+        if (a instanceof ArrayContainer) {
+            return ((ArrayContainer)a).filter(b, false);
+        }
+        long[] words = a.toWords(), bwords = b.words();
+        for (int ii = 0; ii < WORDS; ii++) {
+            words[ii] &= ~bwords[ii];
+        }
+        return fromWords(words);
+    }
+
+    /**
+     * Returns an array or bitmap container (whichever is smaller) holding the values in the
+     * supplied bitmap, which the container may adopt, or null if the bitmap is empty.
+     */
+    protected static Container fromWords (long[] words)
+    {
+        int card = 0;
+        for (long word : words) {
+            card += Long.bitCount(word);
+        }
+        if (card == 0) {
+            return null;
+        } else if (card > ARRAY_MAX) {
+            return new BitmapContainer(words, card);
+        }
+        ArrayContainer cont = new ArrayContainer(card);
+        for (int ii = 0; ii < WORDS; ii++) {
+            for (long word = words[ii]; word != 0; word &= word - 1) {
+                cont.values[cont.card++] = (char)(ii * 64 + Long.numberOfTrailingZeros(word));
+            }
+        }
+        return cont;
+    }
+
+    /**
+     * Sets the bits from <code>from</code> (inclusive) to <code>to</code> (exclusive).
+     */
+    protected static void setRange (long[] words, int from, int to)
+    {
+        if (from >= to) {
+            return;
+        }
+        int fword = from >>> 6, lword = (to - 1) >>> 6;
+        long fmask = -1L << from, lmask = -1L >>> -to;
+        if (fword == lword) {
+            words[fword] |= (fmask & lmask);
+        } else {
+            words[fword] |= fmask;
+            for (int ii = fword + 1; ii < lword; ii++) {
+                words[ii] = -1L;
+            }
+            words[lword] |= lmask;
+        }
+    }
+
+    /**
+     * Holds the low sixteen bits of the values in a single chunk. Containers are never empty.
+     */
+    protected static abstract class Container
+    {
+        /** Returns the number of values in this container. */
+        public abstract int cardinality ();
+
+        /** Returns true if this container holds the specified low bits. */
+        public abstract boolean contains (int low);
+
+        /** Adds the specified (absent) low bits, returning this or a replacement container. */
+        public abstract Container add (int low);
+
+        /** Removes the specified (present) low bits, returning this or a replacement container.
+         * Must not be called to remove our last value. */
+        public abstract Container remove (int low);
+
+        /** Returns the smallest value in this container that is at least <code>from</code> (which
+         * must be in [0, 65535]), or -1. */
+        public abstract int nextValue (int from);
+
+        /** Writes our values, offset by <code>base</code>, into the supplied array starting at the
+         * specified offset, returning the offset after the last value written. */
+        public abstract int fill (int[] values, int off, int base);
+
+        /** Applies the supplied operation to each of our values, offset by <code>base</code>. */
+        public abstract void forEach (IntConsumer op, int base);
+
+        /** Sets the bits for our values in the supplied bitmap. */
+        public abstract void orInto (long[] words);
+
+        /** Returns a copy of this container. */
+        public abstract Container copy ();
+
+        /** Returns the approximate number of bytes used by this container. */
+        public abstract int sizeInBytes ();
+
+        /** Returns our values as a bitmap, which may be shared and must not be modified. */
+        public long[] words () {
+            return toWords();
+        }
+
+        /** Returns our values as a newly created bitmap. */
+        public long[] toWords () {
+            long[] words = new long[WORDS];
+            orInto(words);
+            return words;
+        }
+
+        /** Returns the most compact container holding our values. */
+        public Container optimize () {
+            int card = cardinality(), runs = countRuns();
+            int runBytes = RunContainer.sizeInBytes(runs);
+            if (runBytes < Math.min(ArrayContainer.sizeInBytes(card), BitmapContainer.BYTES)) {
+                return RunContainer.fromContainer(this, runs);
+            }
+            return this;
+        }
+
+        /** Returns the number of runs of consecutive values in this container. */
+        protected abstract int countRuns ();
+
+        /** Writes this container to the supplied stream. */
+        protected abstract void write (ObjectOutputStream out) throws IOException;
+
+        /** Reads a container written by {@link #write}. */
+        protected static Container read (ObjectInputStream in)
+            throws IOException
+        {
+            switch (in.readByte()) {
+            case ArrayContainer.TYPE: return ArrayContainer.read(in);
+            case BitmapContainer.TYPE: return BitmapContainer.read(in);
+            case RunContainer.TYPE: return RunContainer.read(in);
+            default: throw new IOException("Unknown container type");
+            }
+        }
+    }
+
+    /** Stores a sparse chunk as a sorted array of low bits. */
+    protected static class ArrayContainer extends Container
+    {
+        public static final byte TYPE = 0;
+
+        public char[] values;
+        public int card;
+
+        public static int sizeInBytes (int card) {
+            return 2 * card;
+        }
+
+        public static ArrayContainer read (ObjectInputStream in)
+            throws IOException
+        {
+            int card = in.readInt();
+            ArrayContainer cont = new ArrayContainer(card);
+            for (int ii = 0; ii < card; ii++) {
+                cont.values[ii] = in.readChar();
+            }
+            cont.card = card;
+            return cont;
+        }
+
+        public ArrayContainer (int capacity) {
+            values = new char[capacity];
+        }
+
+        @Override public int cardinality () {
+            return card;
+        }
+
+        @Override public boolean contains (int low) {
+            return Arrays.binarySearch(values, 0, card, (char)low) >= 0;
+        }
+
+        @Override public Container add (int low) {
+            if (card >= ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            // appending in order is common, so check for that before searching
+            int pos = (card == 0 || values[card-1] < low) ? card :
+                -(Arrays.binarySearch(values, 0, card, (char)low) + 1);
+            if (card == values.length) {
+                char[] nvalues = new char[Math.min(Math.max(card * 2, 4), ARRAY_MAX)];
+                System.arraycopy(values, 0, nvalues, 0, card);
+                values = nvalues;
+            }
+            System.arraycopy(values, pos, values, pos+1, card-pos);
+            values[pos] = (char)low;
+            card++;
+            return this;
+        }
+
+        @Override public Container remove (int low) {
+            int pos = Arrays.binarySearch(values, 0, card, (char)low);
+            System.arraycopy(values, pos+1, values, pos, card-pos-1);
+            card--;
+            return this;
+        }
+
+        @Override public int nextValue (int from) {
+            int pos = Arrays.binarySearch(values, 0, card, (char)from);
+            if (pos < 0) {
+                pos = -(pos + 1);
+            }
+            return (pos < card) ? values[pos] : -1;
+        }
+
+        @Override public int fill (int[] dest, int off, int base) {
+            for (int ii = 0; ii < card; ii++) {
+                dest[off++] = base | values[ii];
+            }
+            return off;
+        }
+
+        @Override public void forEach (IntConsumer op, int base) {
+            for (int ii = 0; ii < card; ii++) {
+                op.accept(base | values[ii]);
+            }
+        }
+
+        @Override public void orInto (long[] words) {
+            for (int ii = 0; ii < card; ii++) {
+                int low = values[ii];
+                words[low >>> 6] |= (1L << low);
+            }
+        }
+
+        @Override public Container copy () {
+            ArrayContainer cont = new ArrayContainer(card);
+            System.arraycopy(values, 0, cont.values, 0, card);
+            cont.card = card;
+            return cont;
+        }
+
+        @Override public int sizeInBytes () {
+            return 2 * values.length;
+        }
+
+        /**
+         * Returns a container holding those of our values that are (or are not) in the supplied
+         * container, or null if there are none.
+         */
+        public ArrayContainer filter (Container other, boolean keep) {
+            ArrayContainer result = new ArrayContainer(card);
+            for (int ii = 0; ii < card; ii++) {
+                if (other.contains(values[ii]) == keep) {
+                    result.values[result.card++] = values[ii];
+                }
+            }
+            return (result.card == 0) ? null : result;
+        }
+
+        /**
+         * Returns a container holding our values and those of the supplied container, whose
+         * combined cardinality must not exceed {@link #ARRAY_MAX}.
+         */
+        public ArrayContainer merge (ArrayContainer other) {
+            ArrayContainer result = new ArrayContainer(card + other.card);
+            char[] ovalues = other.values, rvalues = result.values;
+            int ii = 0, jj = 0, rr = 0;
+            while (ii < card && jj < other.card) {
+                char a = values[ii], b = ovalues[jj];
+                if (a < b) {
+                    rvalues[rr++] = a;
+                    ii++;
+                } else if (a > b) {
+                    rvalues[rr++] = b;
+                    jj++;
+                } else {
+                    rvalues[rr++] = a;
+                    ii++;
+                    jj++;
+                }
+            }
+            while (ii < card) {
+                rvalues[rr++] = values[ii++];
+            }
+            while (jj < other.card) {
+                rvalues[rr++] = ovalues[jj++];
+            }
+            result.card = rr;
+            return result;
+        }
+
+        protected BitmapContainer toBitmap () {
+            long[] words = new long[WORDS];
+            orInto(words);
+            return new BitmapContainer(words, card);
+        }
+
+        @Override protected int countRuns () {
+            int runs = 0;
+            for (int ii = 0; ii < card; ii++) {
+                if (ii == 0 || values[ii] != values[ii-1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+
+        @Override protected void write (ObjectOutputStream out) throws IOException {
+            out.writeByte(TYPE);
+            out.writeInt(card);
+            for (int ii = 0; ii < card; ii++) {
+                out.writeChar(values[ii]);
+            }
+        }
+    }
+
+    /** Stores a dense chunk as a bitmap. */
+    protected static class BitmapContainer extends Container
+    {
+        public static final byte TYPE = 1;
+
+        /** The number of bytes used by a bitmap container. */
+        public static final int BYTES = WORDS * 8;
+
+        public final long[] bits;
+        public int card;
+
+        public static BitmapContainer read (ObjectInputStream in)
+            throws IOException
+        {
+            long[] words = new long[WORDS];
+            int card = 0;
+            for (int ii = 0; ii < WORDS; ii++) {
+                card += Long.bitCount(words[ii] = in.readLong());
+            }
+            return new BitmapContainer(words, card);
+        }
+
+        public BitmapContainer (long[] words, int card) {
+            this.bits = words;
+            this.card = card;
+        }
+
+        @Override public int cardinality () {
+            return card;
+        }
+
+        @Override public boolean contains (int low) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override public Container add (int low) {
+            bits[low >>> 6] |= (1L << low);
+            card++;
+            return this;
+        }
+
+        @Override public Container remove (int low) {
+            bits[low >>> 6] &= ~(1L << low);
+            card--;
+            return (card <= ARRAY_MAX) ? fromWords(bits) : this;
+        }
+
+        @Override public int nextValue (int from) {
+            int idx = from >>> 6;
+            long word = bits[idx] & (-1L << from);
+            while (word == 0) {
+                if (++idx == WORDS) {
+                    return -1;
+                }
+                word = bits[idx];
+            }
+            return idx * 64 + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override public int fill (int[] dest, int off, int base) {
+            for (int ii = 0; ii < WORDS; ii++) {
+                for (long word = bits[ii]; word != 0; word &= word - 1) {
+                    dest[off++] = base | (ii * 64 + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return off;
+        }
+
+        @Override public void forEach (IntConsumer op, int base) {
+            for (int ii = 0; ii < WORDS; ii++) {
+                for (long word = bits[ii]; word != 0; word &= word - 1) {
+                    op.accept(base | (ii * 64 + Long.numberOfTrailingZeros(word)));
+                }
+            }
+        }
+
+        @Override public void orInto (long[] words) {
+            for (int ii = 0; ii < WORDS; ii++) {
+                words[ii] |= bits[ii];
+            }
+        }
+
+        @Override public long[] words () {
+            return bits;
+        }
+
+        @Override public long[] toWords () {
+            return bits.clone();
+        }
+
+        @Override public Container copy () {
+            return new BitmapContainer(bits.clone(), card);
+        }
+
+        @Override public int sizeInBytes () {
+            return BYTES;
+        }
+
+        @Override protected int countRuns () {
+            // a run starts at each set bit whose predecessor is clear
+            int runs = 0;
+            long prev = 0;
+            for (int ii = 0; ii < WORDS; ii++) {
+                long word = bits[ii];
+                runs += Long.bitCount(word & ~((word << 1) | (prev >>> 63)));
+                prev = word;
+            }
+            return runs;
+        }
+
+        @Override protected void write (ObjectOutputStream out) throws IOException {
+            out.writeByte(TYPE);
+            for (int ii = 0; ii < WORDS; ii++) {
+                out.writeLong(bits[ii]);
+            }
+        }
+    }
+
+    /**
+     * Stores a chunk as a sorted list of runs of consecutive values. Run containers are created
+     * by {@link BitmapIntSet#optimize} and {@link BitmapIntSet#addRange} and revert to an array or
+     * bitmap when modified.
+     */
+    protected static class RunContainer extends Container
+    {
+        public static final byte TYPE = 2;
+
+        /** The first value in each run and the number of values in the run minus one. */
+        public final char[] starts, lengths;
+        public final int runs, card;
+
+        public static int sizeInBytes (int runs) {
+            return 4 * runs;
+        }
+
+        public static RunContainer fromContainer (Container cont, int runs) {
+            char[] starts = new char[runs], lengths = new char[runs];
+            int value = cont.nextValue(0);
+            for (int rr = 0; value >= 0; rr++) {
+                int end = value;
+                while (end < 0xFFFF && cont.nextValue(end + 1) == end + 1) {
+                    end++;
+                }
+                starts[rr] = (char)value;
+                lengths[rr] = (char)(end - value);
+                value = (end < 0xFFFF) ? cont.nextValue(end + 1) : -1;
+            }
+            return new RunContainer(starts, lengths, runs);
+        }
+
+        public static RunContainer read (ObjectInputStream in)
+            throws IOException
+        {
+            int runs = in.readInt();
+            char[] starts = new char[runs], lengths = new char[runs];
+            for (int ii = 0; ii < runs; ii++) {
+                starts[ii] = in.readChar();
+                lengths[ii] = in.readChar();
+            }
+            return new RunContainer(starts, lengths, runs);
+        }
+
+        public RunContainer (char[] starts, char[] lengths, int runs) {
+            this.starts = starts;
+            this.lengths = lengths;
+            this.runs = runs;
+            int card = 0;
+            for (int ii = 0; ii < runs; ii++) {
+                card += lengths[ii] + 1;
+            }
+            this.card = card;
+        }
+
+        @Override public int cardinality () {
+            return card;
+        }
+
+        @Override public boolean contains (int low) {
+            int idx = runFor(low);
+            return (idx >= 0) && (low <= starts[idx] + lengths[idx]);
+        }
+
+        @Override public Container add (int low) {
+            return expand().add(low);
+        }
+
+        @Override public Container remove (int low) {
+            return expand().remove(low);
+        }
+
+        @Override public int nextValue (int from) {
+            int idx = runFor(from);
+            if (idx >= 0 && from <= starts[idx] + lengths[idx]) {
+                return from;
+            }
+            return (idx + 1 < runs) ? starts[idx + 1] : -1;
+        }
+
+        @Override public int fill (int[] dest, int off, int base) {
+            for (int ii = 0; ii < runs; ii++) {
+                for (int vv = starts[ii], end = vv + lengths[ii]; vv <= end; vv++) {
+                    dest[off++] = base | vv;
+                }
+            }
+            return off;
+        }
+
+        @Override public void forEach (IntConsumer op, int base) {
+            for (int ii = 0; ii < runs; ii++) {
+                for (int vv = starts[ii], end = vv + lengths[ii]; vv <= end; vv++) {
+                    op.accept(base | vv);
+                }
+            }
+        }
+
+        @Override public void orInto (long[] words) {
+            for (int ii = 0; ii < runs; ii++) {
+                setRange(words, starts[ii], starts[ii] + lengths[ii] + 1);
+            }
+        }
+
+        @Override public Container copy () {
+            return this; // we're immutable
+        }
+
+        @Override public int sizeInBytes () {
+            return sizeInBytes(runs);
+        }
+
+        @Override public Container optimize () {
+            return this;
+        }
+
+        /**
+         * Returns the index of the last run that starts at or before the specified value, or -1.
+         */
+        protected int runFor (int low) {
+            int lo = 0, hi = runs - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= low) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo - 1;
+        }
+
+        /** Converts this container to an (modifiable) array or bitmap container. */
+        protected Container expand () {
+            return fromWords(toWords());
+        }
+
+        @Override protected int countRuns () {
+            return runs;
+        }
+
+        @Override protected void write (ObjectOutputStream out) throws IOException {
+            out.writeByte(TYPE);
+            out.writeInt(runs);
+            for (int ii = 0; ii < runs; ii++) {
+                out.writeChar(starts[ii]);
+                out.writeChar(lengths[ii]);
+            }
+        }
+    }
+
+    /** The high bits of each of our containers, in ascending order. */
+    protected transient char[] _highs;
+
+    /** Our containers, parallel to {@link #_highs}. */
+    protected transient Container[] _containers;
+
+    /** The number of containers in use. */
+    protected transient int _count;
+
+    /** The number of elements in the set. */
+    protected transient int _size;
+
+    /** Incremented on each set modification, used to track concurrent changes. */
+    protected transient int _modCount;
+
+    /** The number of containers for which we initially make room. */
+    protected static final int DEFAULT_CONTAINERS = 4;
+
+    /** The number of 64 bit words in a bitmap container. */
+    protected static final int WORDS = 1024;
+
+    /** The maximum number of values in an array container; beyond this a bitmap is smaller. */
+    protected static final int ARRAY_MAX = 4096;
+
+    /** Change this if the fields or inheritance hierarchy ever changes (extremely unlikely). */
+    private static final long serialVersionUID = 1L;
+}
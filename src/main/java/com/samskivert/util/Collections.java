@@ -311,6 +311,10 @@ public class Collections
             }
         }
 
+        public void forEachEntry (IntObjectConsumer<? super V> op) {
+            synchronized(mutex) {IntMaps.forEachEntry(m, op);}
+        }
+
         public Collection<V> values () {
             synchronized(mutex) {
                 if (values == null) {
@@ -393,6 +397,14 @@ public class Collections
             synchronized(mutex) {return _i.toIntArray();}
         }
 
+        public int[] toIntArray (int[] reuse) {
+            synchronized(mutex) {return IntSets.toIntArray(_i, reuse);}
+        }
+
+        public void forEachInt (IntConsumer op) {
+            synchronized(mutex) {IntSets.forEachInt(_i, op);}
+        }
+
         @Override
         public boolean equals (Object o) {
             synchronized(mutex) {return _i.equals(o);}
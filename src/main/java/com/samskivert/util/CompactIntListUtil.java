@@ -9,7 +9,8 @@ package com.samskivert.util;
  * This class manages compact arrays of ints. It is similar to {@link
  * IntListUtil} except that the int arrays never contain empty slots and
  * expansion is done one element at a time. In spite of its reduced
- * computational efficiency, compact int lists are at times required.
+ * computational efficiency, compact int lists are at times required. When
+ * they are not, an {@link IntList} grows far more cheaply.
  */
 public class CompactIntListUtil
 {
@@ -34,6 +34,16 @@ public class ComparableArrayList<T extends Comparable<? super T>>
         sort(_comp);
     }
 
+    /**
+     * Sorts the elements in this list using the specified algorithm. The
+     * elements must implement {@link Comparable} and all be mutually
+     * comparable.
+     */
+    public void sort (Algorithm algo)
+    {
+        sort(_comp, algo);
+    }
+
     /**
      * Sorts the elements in this list using the quick sort algorithm
      * according to their reverse natural ordering. The elements must
@@ -0,0 +1,197 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe counterpart to {@link CountMap} and {@link CountHashMap}, for counters that are
+ * updated by many threads, such as request and error counts. Each key's count is kept in a
+ * {@link StripedCounter}, so threads updating the same key seldom contend, and no lock is held by
+ * any operation. Incrementing the count for a key that is already present allocates nothing.
+ *
+ * <p> The counts can be read via {@link #snapshot} or read and reset via {@link #drain}, which
+ * suits metrics that are reported and cleared periodically. Keys remain in the map after they
+ * are drained, so that the next increment for a key need not recreate its counter; {@link
+ * #compress} can be used to remove keys that have not been updated since the last drain.
+ *
+ * @see ConcurrentIntCountMap
+ */
+public class ConcurrentCountMap<K>
+{
+    /**
+     * Creates an empty count map.
+     */
+    public ConcurrentCountMap ()
+    {
+        _counters = new ConcurrentHashMap<K, StripedCounter>();
+    }
+
+    /**
+     * Adds one to the count for the specified key.
+     */
+    public void increment (K key)
+    {
+        add(key, 1);
+    }
+
+    /**
+     * Subtracts one from the count for the specified key.
+     */
+    public void decrement (K key)
+    {
+        add(key, -1);
+    }
+
+    /**
+     * Adds the specified amount to the count for the specified key. Adding zero ensures that the
+     * key is present in the map.
+     */
+    public void add (K key, long amount)
+    {
+        StripedCounter counter = _counters.get(key);
+        if (counter == null) {
+            StripedCounter ncounter = new StripedCounter();
+            counter = _counters.putIfAbsent(key, ncounter);
+            if (counter == null) {
+                counter = ncounter;
+            }
+        }
+        counter.add(amount);
+    }
+
+    /**
+     * Returns the count for the specified key, or zero if the key is not present.
+     */
+    public long getCount (K key)
+    {
+        StripedCounter counter = _counters.get(key);
+        return (counter == null) ? 0 : counter.sum();
+    }
+
+    /**
+     * Returns the sum of the counts for all keys.
+     */
+    public long getTotalCount ()
+    {
+        long total = 0;
+        for (StripedCounter counter : _counters.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns true if the specified key is present in the map.
+     */
+    public boolean containsKey (K key)
+    {
+        return _counters.containsKey(key);
+    }
+
+    /**
+     * Returns the keys in this map. The set is a live view: it is weakly consistent in the manner
+     * of {@link ConcurrentHashMap}'s views, and removing a key from it removes its count.
+     */
+    public Set<K> keySet ()
+    {
+        return _counters.keySet();
+    }
+
+    /**
+     * Returns the number of keys in this map.
+     */
+    public int size ()
+    {
+        return _counters.size();
+    }
+
+    /**
+     * Returns true if there are no keys in this map.
+     */
+    public boolean isEmpty ()
+    {
+        return _counters.isEmpty();
+    }
+
+    /**
+     * Returns a newly created map of each key to its current count. The snapshot is not atomic:
+     * counts updated while it is being taken may or may not include those updates.
+     */
+    public Map<K, Long> snapshot ()
+    {
+        Map<K, Long> counts = new HashMap<K, Long>();
+        for (Map.Entry<K, StripedCounter> entry : _counters.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Returns a newly created map of each key with a non-zero count to that count, resetting the
+     * counts to zero. Unlike {@link #snapshot}, no update is lost or counted twice: each addition
+     * is reflected in exactly one call to this method, or in the counts that remain.
+     */
+    public Map<K, Long> drain ()
+    {
+        Map<K, Long> counts = new HashMap<K, Long>();
+        for (Map.Entry<K, StripedCounter> entry : _counters.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            if (count != 0) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Removes the specified key and its count.
+     *
+     * @return the count for the key at the time it was removed, or zero if it was not present.
+     */
+    public long remove (K key)
+    {
+        StripedCounter counter = _counters.remove(key);
+        return (counter == null) ? 0 : counter.sum();
+    }
+
+    /**
+     * Removes any keys for which the count is currently zero. An update to such a key that is
+     * made concurrently with its removal may be lost.
+     */
+    public void compress ()
+    {
+        for (Iterator<Map.Entry<K, StripedCounter>> it = _counters.entrySet().iterator();
+             it.hasNext(); ) {
+            Map.Entry<K, StripedCounter> entry = it.next();
+            if (entry.getValue().sum() == 0) {
+                _counters.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes all keys and their counts. Updates made concurrently with the clear may be lost.
+     */
+    public void clear ()
+    {
+        _counters.clear();
+    }
+
+    @Override
+    public String toString ()
+    {
+        return _counters.toString();
+    }
+
+    /** Maps each key to its counter. */
+    protected ConcurrentMap<K, StripedCounter> _counters;
+}
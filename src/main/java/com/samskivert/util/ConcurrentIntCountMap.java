@@ -0,0 +1,261 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+/**
+ * A thread-safe map of int keys to int counts, for counters that are updated by many threads. The
+ * keys are divided among a number of stripes, each an {@link IntIntMap} guarded by its own lock,
+ * so threads updating different keys seldom contend. Counts are stored unboxed, and incrementing
+ * the count for a key that is already present allocates nothing.
+ *
+ * <p> {@link #drain} swaps each stripe's map for an empty one, holding each stripe's lock only
+ * for the swap, which makes it cheap to report and reset the counts periodically.
+ *
+ * @see ConcurrentCountMap
+ */
+public class ConcurrentIntCountMap
+{
+    /** The default number of threads expected to update the map concurrently. */
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    /**
+     * Creates a map with the default concurrency.
+     */
+    public ConcurrentIntCountMap ()
+    {
+        this(DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Creates a map divided into enough stripes to allow the specified number of threads to
+     * update it without contention.
+     */
+    public ConcurrentIntCountMap (int concurrency)
+    {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Invalid concurrency " + concurrency);
+        }
+        int shift = 0, stripes = 1;
+        while (stripes < Math.min(concurrency, MAX_STRIPES)) {
+            stripes <<= 1;
+            shift++;
+        }
+        _stripeShift = 32 - shift;
+        _stripeMask = stripes - 1;
+        _stripes = new Stripe[stripes];
+        for (int ii = 0; ii < stripes; ii++) {
+            _stripes[ii] = new Stripe();
+        }
+    }
+
+    /**
+     * Adds one to the count for the specified key.
+     *
+     * @return the new count for the key.
+     */
+    public int increment (int key)
+    {
+        return add(key, 1);
+    }
+
+    /**
+     * Subtracts one from the count for the specified key.
+     *
+     * @return the new count for the key.
+     */
+    public int decrement (int key)
+    {
+        return add(key, -1);
+    }
+
+    /**
+     * Adds the specified amount to the count for the specified key. Adding zero ensures that the
+     * key is present in the map.
+     *
+     * @return the new count for the key.
+     */
+    public int add (int key, int amount)
+    {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.counts.increment(key, amount);
+        }
+    }
+
+    /**
+     * Returns the count for the specified key, or zero if the key is not present.
+     */
+    public int getCount (int key)
+    {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.counts.getOrElse(key, 0);
+        }
+    }
+
+    /**
+     * Returns true if the specified key is present in the map.
+     */
+    public boolean containsKey (int key)
+    {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.counts.containsKey(key);
+        }
+    }
+
+    /**
+     * Removes the specified key and its count.
+     *
+     * @return the count for the key, or zero if it was not present.
+     */
+    public int remove (int key)
+    {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.counts.removeOrElse(key, 0);
+        }
+    }
+
+    /**
+     * Returns the sum of the counts for all keys.
+     */
+    public long getTotalCount ()
+    {
+        final long[] total = new long[1];
+        forEachEntry(new IntIntConsumer() {
+            public void accept (int key, int count) {
+                total[0] += count;
+            }
+        });
+        return total[0];
+    }
+
+    /**
+     * Returns the number of keys in this map.
+     */
+    public int size ()
+    {
+        int size = 0;
+        for (Stripe stripe : _stripes) {
+            synchronized (stripe) {
+                size += stripe.counts.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns true if there are no keys in this map.
+     */
+    public boolean isEmpty ()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Applies the supplied operation to each key and its count. Each stripe is locked while its
+     * counts are visited, so the operation should be quick and must not update this map.
+     */
+    public void forEachEntry (IntIntConsumer op)
+    {
+        for (Stripe stripe : _stripes) {
+            synchronized (stripe) {
+                stripe.counts.forEachEntry(op);
+            }
+        }
+    }
+
+    /**
+     * Returns a newly created map of each key to its current count. Each stripe is copied
+     * atomically, but the stripes are copied one after another.
+     */
+    public IntIntMap snapshot ()
+    {
+        final IntIntMap counts = new IntIntMap();
+        forEachEntry(new IntIntConsumer() {
+            public void accept (int key, int count) {
+                counts.put(key, count);
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Returns a map of each key to its count, removing all keys from this map. No update is lost
+     * or counted twice: each addition is reflected in exactly one call to this method, or in the
+     * counts that remain.
+     */
+    public IntIntMap drain ()
+    {
+        IntIntMap[] drained = new IntIntMap[_stripes.length];
+        int total = 0;
+        for (int ii = 0; ii < _stripes.length; ii++) {
+            Stripe stripe = _stripes[ii];
+            synchronized (stripe) {
+                drained[ii] = stripe.counts;
+                // the keys we drain are likely to be counted again, so make room for them
+                stripe.counts = new IntIntMap();
+                stripe.counts.ensureCapacity(drained[ii].size());
+            }
+            total += drained[ii].size();
+        }
+
+        final IntIntMap counts = new IntIntMap();
+        counts.ensureCapacity(total);
+        for (IntIntMap stripeCounts : drained) {
+            stripeCounts.forEachEntry(new IntIntConsumer() {
+                public void accept (int key, int count) {
+                    counts.put(key, count);
+                }
+            });
+        }
+        return counts;
+    }
+
+    /**
+     * Removes all keys and their counts.
+     */
+    public void clear ()
+    {
+        for (Stripe stripe : _stripes) {
+            synchronized (stripe) {
+                stripe.counts.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        return snapshot().toString();
+    }
+
+    /**
+     * Returns the stripe that holds the specified key.
+     */
+    protected Stripe stripeFor (int key)
+    {
+        // use the high bits of the hash, as each stripe's map uses the low bits to pick a bucket
+        return _stripes[((key * 0x9E3779B9) >>> _stripeShift) & _stripeMask];
+    }
+
+    /** A lock and the counts it guards. */
+    protected static class Stripe
+    {
+        /** The counts for the keys in this stripe. */
+        public IntIntMap counts = new IntIntMap();
+    }
+
+    /** Our stripes, of which there are a power of two. */
+    protected Stripe[] _stripes;
+
+    /** Used to select a stripe from a hash. */
+    protected final int _stripeShift, _stripeMask;
+
+    /** The maximum number of stripes into which a map is divided. */
+    protected static final int MAX_STRIPES = 1 << 16;
+}
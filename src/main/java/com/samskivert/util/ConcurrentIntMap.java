@@ -0,0 +1,798 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe {@link IntMap} that allows lookups to proceed without locking and updates to
+ * proceed concurrently. Unlike a map wrapped with {@link Collections#synchronizedIntMap}, no
+ * monitor is held across calls: the mappings are divided among a number of segments, each of
+ * which is locked only while it is being modified, and lookups never lock at all.
+ *
+ * <p> In addition to the standard {@link ConcurrentMap} operations, int-keyed versions of {@link
+ * #putIfAbsent(int,Object)}, {@link #remove(int,Object)} and {@link #replace(int,Object,Object)}
+ * are provided, as is {@link #computeIfAbsent}, which atomically creates and maps a value for a
+ * key the first time it is needed.
+ *
+ * <p> Iterators and the views returned by {@link #intKeySet}, {@link #values} and {@link
+ * #entrySet} are weakly consistent: they never throw {@link
+ * java.util.ConcurrentModificationException}, they see every mapping that existed when the
+ * iterator was created and was not subsequently removed, and they may or may not see mappings
+ * added thereafter. Like {@link java.util.concurrent.ConcurrentHashMap}, null values are not
+ * permitted.
+ */
+public class ConcurrentIntMap<V> extends AbstractMap<Integer,V>
+    implements IntMap<V>, ConcurrentMap<Integer,V>
+{
+    /**
+     * Creates values for {@link ConcurrentIntMap#computeIfAbsent}.
+     */
+    public static interface Creator<V>
+    {
+        /**
+         * Returns the value to be mapped to the supplied key, or null if no mapping should be
+         * made.
+         */
+        V create (int key);
+    }
+
+    /** The default initial capacity of the map. */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /** The default number of threads expected to update the map concurrently. */
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    /**
+     * Creates a map with the default capacity and concurrency.
+     */
+    public ConcurrentIntMap ()
+    {
+        this(DEFAULT_CAPACITY, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Creates a map with room for the specified number of mappings and the default concurrency.
+     */
+    public ConcurrentIntMap (int capacity)
+    {
+        this(capacity, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Creates a map with room for the specified number of mappings, divided into enough segments
+     * to allow the specified number of threads to update it without contention.
+     */
+    public ConcurrentIntMap (int capacity, int concurrency)
+    {
+        if (capacity < 0 || concurrency <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid map parameters [capacity=" + capacity + ", concurrency=" + concurrency +
+                "]");
+        }
+
+        int shift = 0, segments = 1;
+        while (segments < Math.min(concurrency, MAX_SEGMENTS)) {
+            segments <<= 1;
+            shift++;
+        }
+        _segmentShift = 32 - shift;
+        _segmentMask = segments - 1;
+
+        int perSegment = 1;
+        while (perSegment * segments < capacity) {
+            perSegment <<= 1;
+        }
+        @SuppressWarnings({ "unchecked", "rawtypes" }) Segment<V>[] segs =
+            new Segment[segments];
+        for (int ii = 0; ii < segments; ii++) {
+            segs[ii] = new Segment<V>(Math.max(MIN_SEGMENT_BUCKETS, perSegment * 4 / 3));
+        }
+        _segments = segs;
+    }
+
+    @Override
+    public int size ()
+    {
+        long size = 0;
+        for (Segment<V> seg : _segments) {
+            size += seg.count;
+        }
+        return (int)Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty ()
+    {
+        for (Segment<V> seg : _segments) {
+            if (seg.count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey (Object key)
+    {
+        return (key instanceof Integer) && containsKey(((Integer)key).intValue());
+    }
+
+    // documentation inherited from interface IntMap
+    public boolean containsKey (int key)
+    {
+        return (get(key) != null);
+    }
+
+    @Override
+    public boolean containsValue (Object value)
+    {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        for (Segment<V> seg : _segments) {
+            AtomicReferenceArray<Node<V>> table = seg.table;
+            for (int ii = 0, ll = table.length(); ii < ll; ii++) {
+                for (Node<V> node = table.get(ii); node != null; node = node.next) {
+                    if (value.equals(node.value)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get (Object key)
+    {
+        return (key instanceof Integer) ? get(((Integer)key).intValue()) : null;
+    }
+
+    // documentation inherited from interface IntMap
+    public V get (int key)
+    {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    @Override
+    public V put (Integer key, V value)
+    {
+        return put(key.intValue(), value);
+    }
+
+    // documentation inherited from interface IntMap
+    public V put (int key, V value)
+    {
+        requireValue(value);
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    // from interface ConcurrentMap
+    public V putIfAbsent (Integer key, V value)
+    {
+        return putIfAbsent(key.intValue(), value);
+    }
+
+    /**
+     * Maps the supplied value to the specified key unless the key is already mapped.
+     *
+     * @return the value already mapped to the key, or null if the supplied value was mapped.
+     */
+    public V putIfAbsent (int key, V value)
+    {
+        requireValue(value);
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * Returns the value mapped to the specified key, creating and mapping one with the supplied
+     * creator if the key is not yet mapped. The check and the creation are performed atomically,
+     * so the creator is called at most once per key. Other updates to the same segment of the
+     * map wait while the creator runs, so it should be quick and must not itself update this
+     * map.
+     *
+     * @return the existing or newly created value, or null if the creator returned null.
+     */
+    public V computeIfAbsent (int key, Creator<? extends V> creator)
+    {
+        int hash = hash(key);
+        Segment<V> seg = segmentFor(hash);
+        V value = seg.get(key, hash);
+        return (value != null) ? value : seg.computeIfAbsent(key, hash, creator);
+    }
+
+    @Override
+    public V remove (Object key)
+    {
+        return (key instanceof Integer) ? remove(((Integer)key).intValue()) : null;
+    }
+
+    // documentation inherited from interface IntMap
+    public V remove (int key)
+    {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    // from interface ConcurrentMap
+    public boolean remove (Object key, Object value)
+    {
+        return (key instanceof Integer) && remove(((Integer)key).intValue(), value);
+    }
+
+    /**
+     * Removes the mapping for the specified key only if it is currently mapped to the supplied
+     * value.
+     *
+     * @return true if the mapping was removed.
+     */
+    public boolean remove (int key, Object value)
+    {
+        if (value == null) {
+            return false;
+        }
+        int hash = hash(key);
+        return (segmentFor(hash).remove(key, hash, value) != null);
+    }
+
+    // from interface ConcurrentMap
+    public boolean replace (Integer key, V oldValue, V newValue)
+    {
+        return replace(key.intValue(), oldValue, newValue);
+    }
+
+    /**
+     * Maps the new value to the specified key only if it is currently mapped to the old value.
+     *
+     * @return true if the value was replaced.
+     */
+    public boolean replace (int key, V oldValue, V newValue)
+    {
+        requireValue(oldValue);
+        requireValue(newValue);
+        int hash = hash(key);
+        return segmentFor(hash).replace(key, hash, oldValue, newValue);
+    }
+
+    // from interface ConcurrentMap
+    public V replace (Integer key, V value)
+    {
+        return replace(key.intValue(), value);
+    }
+
+    /**
+     * Maps the supplied value to the specified key only if it is currently mapped to some value.
+     *
+     * @return the previously mapped value, or null if the key was not mapped.
+     */
+    public V replace (int key, V value)
+    {
+        requireValue(value);
+        int hash = hash(key);
+        return segmentFor(hash).replace(key, hash, value);
+    }
+
+    @Override
+    public void clear ()
+    {
+        for (Segment<V> seg : _segments) {
+            seg.clear();
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer,V>> entrySet ()
+    {
+        return new AbstractSet<Entry<Integer,V>>() {
+            @Override public int size () {
+                return ConcurrentIntMap.this.size();
+            }
+            @Override public Iterator<Entry<Integer,V>> iterator () {
+                return new EntryIterator<Entry<Integer,V>>();
+            }
+        };
+    }
+
+    // documentation inherited from interface IntMap
+    public Set<IntEntry<V>> intEntrySet ()
+    {
+        return new AbstractSet<IntEntry<V>>() {
+            @Override public int size () {
+                return ConcurrentIntMap.this.size();
+            }
+            @Override public Iterator<IntEntry<V>> iterator () {
+                return new EntryIterator<IntEntry<V>>();
+            }
+        };
+    }
+
+    // documentation inherited from interface IntMap
+    public IntSet intKeySet ()
+    {
+        if (_keySet == null) {
+            _keySet = new AbstractIntSet() {
+                public Interator interator () {
+                    return new KeyInterator();
+                }
+                @Override public int size () {
+                    return ConcurrentIntMap.this.size();
+                }
+                @Override public boolean contains (int t) {
+                    return ConcurrentIntMap.this.containsKey(t);
+                }
+                @Override public boolean remove (int value) {
+                    return (ConcurrentIntMap.this.remove(value) != null);
+                }
+                @Override public void clear () {
+                    ConcurrentIntMap.this.clear();
+                }
+                @Override public void forEachInt (IntConsumer op) {
+                    for (Segment<V> seg : _segments) {
+                        AtomicReferenceArray<Node<V>> table = seg.table;
+                        for (int ii = 0, ll = table.length(); ii < ll; ii++) {
+                            for (Node<V> node = table.get(ii); node != null; node = node.next) {
+                                op.accept(node.key);
+                            }
+                        }
+                    }
+                }
+            };
+        }
+        return _keySet;
+    }
+
+    /**
+     * Applies the supplied operation to each mapping in this map, without allocating an iterator
+     * or an entry for each mapping. Like our iterators, this is weakly consistent, and the map
+     * may be modified (by any thread) while it is in progress.
+     *
+     * @see IntMaps#forEachEntry
+     */
+    public void forEachEntry (IntObjectConsumer<? super V> op)
+    {
+        for (Segment<V> seg : _segments) {
+            AtomicReferenceArray<Node<V>> table = seg.table;
+            for (int ii = 0, ll = table.length(); ii < ll; ii++) {
+                for (Node<V> node = table.get(ii); node != null; node = node.next) {
+                    op.accept(node.key, node.value);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<Integer> keySet ()
+    {
+        return intKeySet();
+    }
+
+    @Override
+    public Collection<V> values ()
+    {
+        return new AbstractCollection<V>() {
+            @Override public int size () {
+                return ConcurrentIntMap.this.size();
+            }
+            @Override public Iterator<V> iterator () {
+                return new ValueIterator();
+            }
+            @Override public boolean contains (Object o) {
+                return ConcurrentIntMap.this.containsValue(o);
+            }
+        };
+    }
+
+    /**
+     * Returns the segment responsible for the supplied hash.
+     */
+    protected final Segment<V> segmentFor (int hash)
+    {
+        return _segments[(hash >>> _segmentShift) & _segmentMask];
+    }
+
+    /**
+     * Spreads the bits of the supplied key so that both the high bits (which select a segment)
+     * and the low bits (which select a bucket) vary with every bit of the key.
+     */
+    protected static int hash (int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    protected static void requireValue (Object value)
+    {
+        if (value == null) {
+            throw new NullPointerException("ConcurrentIntMap does not permit null values.");
+        }
+    }
+
+    /**
+     * A single mapping. Everything but the value is immutable, so a reader that reaches a node
+     * through a (volatile) bucket reference sees a consistent chain. Removing a node replaces the
+     * nodes that precede it in its chain rather than unlinking it.
+     */
+    protected static class Node<V>
+    {
+        public final int key, hash;
+        public final Node<V> next;
+        public volatile V value;
+
+        public Node (int key, int hash, V value, Node<V> next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A hash table holding a portion of our mappings. Readers use the table without locking;
+     * writers hold the segment's lock.
+     */
+    protected static class Segment<V> extends ReentrantLock
+    {
+        /** The number of mappings in this segment. */
+        public volatile int count;
+
+        /** Our buckets, replaced wholesale when we grow. */
+        public volatile AtomicReferenceArray<Node<V>> table;
+
+        public Segment (int buckets) {
+            int capacity = MIN_SEGMENT_BUCKETS;
+            while (capacity < buckets) {
+                capacity <<= 1;
+            }
+            setTable(new AtomicReferenceArray<Node<V>>(capacity));
+        }
+
+        public V get (int key, int hash) {
+            if (count != 0) {
+                AtomicReferenceArray<Node<V>> table = this.table;
+                for (Node<V> node = table.get(hash & (table.length()-1)); node != null;
+                     node = node.next) {
+                    if (node.key == key) {
+                        return node.value;
+                    }
+                }
+            }
+            return null;
+        }
+
+        public V put (int key, int hash, V value, boolean onlyIfAbsent) {
+            lock();
+            try {
+                Node<V> node = find(key, hash);
+                if (node != null) {
+                    V ovalue = node.value;
+                    if (!onlyIfAbsent) {
+                        node.value = value;
+                    }
+                    return ovalue;
+                }
+                insert(key, hash, value);
+                return null;
+            } finally {
+                unlock();
+            }
+        }
+
+        public V computeIfAbsent (int key, int hash, Creator<? extends V> creator) {
+            lock();
+            try {
+                Node<V> node = find(key, hash);
+                if (node != null) {
+                    return node.value;
+                }
+                V value = creator.create(key);
+                if (value != null) {
+                    insert(key, hash, value);
+                }
+                return value;
+            } finally {
+                unlock();
+            }
+        }
+
+        public boolean replace (int key, int hash, V oldValue, V newValue) {
+            lock();
+            try {
+                Node<V> node = find(key, hash);
+                if (node != null && oldValue.equals(node.value)) {
+                    node.value = newValue;
+                    return true;
+                }
+                return false;
+            } finally {
+                unlock();
+            }
+        }
+
+        public V replace (int key, int hash, V value) {
+            lock();
+            try {
+                Node<V> node = find(key, hash);
+                if (node == null) {
+                    return null;
+                }
+                V ovalue = node.value;
+                node.value = value;
+                return ovalue;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Removes the mapping for the specified key if it exists and (when a value is supplied)
+         * is mapped to an equal value.
+         *
+         * @return the removed value or null if nothing was removed.
+         */
+        public V remove (int key, int hash, Object value) {
+            lock();
+            try {
+                AtomicReferenceArray<Node<V>> table = this.table;
+                int idx = hash & (table.length()-1);
+                Node<V> first = table.get(idx), node = first;
+                while (node != null && node.key != key) {
+                    node = node.next;
+                }
+                if (node == null || (value != null && !value.equals(node.value))) {
+                    return null;
+                }
+                // copy the nodes ahead of the removed node onto the nodes that follow it; readers
+                // already traversing the old chain continue to see a consistent (old) view
+                Node<V> head = node.next;
+                for (Node<V> pn = first; pn != node; pn = pn.next) {
+                    head = new Node<V>(pn.key, pn.hash, pn.value, head);
+                }
+                table.set(idx, head);
+                count = count - 1;
+                return node.value;
+            } finally {
+                unlock();
+            }
+        }
+
+        public void clear () {
+            if (count != 0) {
+                lock();
+                try {
+                    setTable(new AtomicReferenceArray<Node<V>>(table.length()));
+                    count = 0;
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        /** Locates the node for the specified key. Must be called with the lock held. */
+        protected Node<V> find (int key, int hash) {
+            AtomicReferenceArray<Node<V>> table = this.table;
+            for (Node<V> node = table.get(hash & (table.length()-1)); node != null;
+                 node = node.next) {
+                if (node.key == key) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        /** Adds a node for an unmapped key. Must be called with the lock held. */
+        protected void insert (int key, int hash, V value) {
+            if (count >= _threshold) {
+                grow();
+            }
+            AtomicReferenceArray<Node<V>> table = this.table;
+            int idx = hash & (table.length()-1);
+            table.set(idx, new Node<V>(key, hash, value, table.get(idx)));
+            count = count + 1;
+        }
+
+        /** Doubles the size of our table. Must be called with the lock held. */
+        protected void grow () {
+            AtomicReferenceArray<Node<V>> otable = table;
+            int ocapacity = otable.length();
+            if (ocapacity >= MAX_SEGMENT_BUCKETS) {
+                return;
+            }
+            AtomicReferenceArray<Node<V>> ntable =
+                new AtomicReferenceArray<Node<V>>(ocapacity << 1);
+            int mask = ntable.length() - 1;
+            for (int ii = 0; ii < ocapacity; ii++) {
+                // the old chains are left intact for any readers still traversing them
+                for (Node<V> node = otable.get(ii); node != null; node = node.next) {
+                    int idx = node.hash & mask;
+                    ntable.set(idx, new Node<V>(node.key, node.hash, node.value, ntable.get(idx)));
+                }
+            }
+            setTable(ntable);
+        }
+
+        protected void setTable (AtomicReferenceArray<Node<V>> table) {
+            _threshold = (int)(table.length() * LOAD_FACTOR);
+            this.table = table;
+        }
+
+        /** The number of mappings beyond which we grow our table. */
+        protected int _threshold;
+    }
+
+    /**
+     * Iterates over the nodes in every segment. Each table is traversed as it existed when we
+     * reached it, so mappings are never reported twice.
+     */
+    protected abstract class NodeIterator
+    {
+        public NodeIterator () {
+            _segIdx = _segments.length;
+            advance();
+        }
+
+        public boolean hasNext () {
+            return (_next != null);
+        }
+
+        public void remove () {
+            if (_last == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentIntMap.this.remove(_last.key);
+            _last = null;
+        }
+
+        protected Node<V> nextNode () {
+            if (_next == null) {
+                throw new NoSuchElementException();
+            }
+            _last = _next;
+            _next = _next.next;
+            if (_next == null) {
+                advance();
+            }
+            return _last;
+        }
+
+        /** Moves {@link #_next} to the first node of the next non-empty bucket. */
+        protected void advance () {
+            while (true) {
+                while (_table != null && _bucketIdx > 0) {
+                    if ((_next = _table.get(--_bucketIdx)) != null) {
+                        return;
+                    }
+                }
+                if (_segIdx == 0) {
+                    return;
+                }
+                _table = _segments[--_segIdx].table;
+                _bucketIdx = _table.length();
+            }
+        }
+
+        protected int _segIdx, _bucketIdx;
+        protected AtomicReferenceArray<Node<V>> _table;
+        protected Node<V> _next, _last;
+    }
+
+    protected class KeyInterator extends NodeIterator
+        implements Interator
+    {
+        public int nextInt () {
+            return nextNode().key;
+        }
+
+        public Integer next () {
+            return Integer.valueOf(nextInt());
+        }
+    }
+
+    protected class ValueIterator extends NodeIterator
+        implements Iterator<V>
+    {
+        public V next () {
+            return nextNode().value;
+        }
+    }
+
+    protected class EntryIterator<E> extends NodeIterator
+        implements Iterator<E>
+    {
+        @SuppressWarnings("unchecked")
+        public E next () {
+            Node<V> node = nextNode();
+            return (E)new WriteThroughEntry(node.key, node.value);
+        }
+    }
+
+    /** An entry whose {@link #setValue} updates the map. */
+    protected class WriteThroughEntry
+        implements IntEntry<V>
+    {
+        public WriteThroughEntry (int key, V value)
+        {
+            _key = key;
+            _value = value;
+        }
+
+        public Integer getKey ()
+        {
+            return Integer.valueOf(_key);
+        }
+
+        public int getIntKey ()
+        {
+            return _key;
+        }
+
+        public V getValue ()
+        {
+            return _value;
+        }
+
+        public V setValue (V value)
+        {
+            requireValue(value);
+            V ovalue = _value;
+            _value = value;
+            put(_key, value);
+            return ovalue;
+        }
+
+        @Override public boolean equals (Object o)
+        {
+            if (!(o instanceof Entry<?,?>)) {
+                return false;
+            }
+            Entry<?,?> that = (Entry<?,?>)o;
+            return getKey().equals(that.getKey()) && _value.equals(that.getValue());
+        }
+
+        @Override public int hashCode ()
+        {
+            return _key ^ _value.hashCode();
+        }
+
+        @Override public String toString ()
+        {
+            return _key + "=" + StringUtil.toString(_value);
+        }
+
+        protected int _key;
+        protected V _value;
+    }
+
+    /** Our segments, indexed by the high bits of a key's hash. */
+    protected final Segment<V>[] _segments;
+
+    /** Used to select a segment from a hash. */
+    protected final int _segmentShift, _segmentMask;
+
+    /** A stateless view of our keys, so we re-use it. */
+    protected transient volatile IntSet _keySet;
+
+    /** The maximum number of segments. */
+    protected static final int MAX_SEGMENTS = 1 << 16;
+
+    /** The minimum and maximum number of buckets in a segment. */
+    protected static final int MIN_SEGMENT_BUCKETS = 2, MAX_SEGMENT_BUCKETS = 1 << 30;
+
+    /** The ratio of mappings to buckets beyond which a segment grows. */
+    protected static final float LOAD_FACTOR = 0.75f;
+}
@@ -18,6 +18,9 @@ import com.samskivert.annotation.ReplacedBy;
  *
  * This implementation should change so that we extend AbstractMap, do our own hashing, and can use
  * our own Entry class.
+ *
+ * <p> This class is not thread-safe; see {@link ConcurrentCountMap} for counts that are updated
+ * by many threads.
  */
 @ReplacedBy("com.google.common.collect.HashMultiset")
 public class CountHashMap<K> extends HashMap<K, int[]>
@@ -17,6 +17,9 @@ import com.samskivert.annotation.ReplacedBy;
 /**
  * A CountMap maps keys to non-null Integers and provides methods for efficiently adding
  * to the count.
+ *
+ * <p> This class is not thread-safe; see {@link ConcurrentCountMap} for counts that are updated
+ * by many threads.
  */
 @ReplacedBy("com.google.common.collect.HashMultiset")
 public class CountMap<K> extends AbstractMap<K, Integer>
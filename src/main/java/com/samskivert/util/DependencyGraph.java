@@ -6,10 +6,21 @@
 package com.samskivert.util;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 /**
  * Maintains a bidirectional graph to manage the order that the items are removed.  Children must
  * wait until their parents are accessed - thus removing an available element means that a node
@@ -20,6 +31,132 @@ import java.util.Map;
  */
 public class DependencyGraph<T>
 {
+    /**
+     * An action that is performed on every element of a graph by {@link #execute}.
+     */
+    public static interface Action<T>
+    {
+        /** Performs this action on the supplied element. */
+        public void run (T element) throws Exception;
+    }
+
+    /**
+     * Reports the outcome and timing of a call to {@link #execute}. Times are in milliseconds.
+     */
+    public static class Report<T>
+    {
+        /**
+         * Returns the time that elapsed between the start of execution and the completion of the
+         * last element.
+         */
+        public long getElapsed ()
+        {
+            return toMillis(_elapsed);
+        }
+
+        /**
+         * Returns the sum of the time taken by every element, which is roughly the time that
+         * executing the graph one element at a time would have taken.
+         */
+        public long getSerialTime ()
+        {
+            long total = 0L;
+            for (long duration : _durations.values()) {
+                total += duration;
+            }
+            return toMillis(total);
+        }
+
+        /**
+         * Returns the time taken by the specified element, or zero if it was not run.
+         */
+        public long getDuration (T element)
+        {
+            Long duration = _durations.get(element);
+            return (duration == null) ? 0L : toMillis(duration);
+        }
+
+        /**
+         * Returns the chain of elements that determined the elapsed time: the last element to
+         * complete, preceded by the dependee that it waited on longest, and so on back to an
+         * element with no dependees. Speeding up any other element would not have reduced the
+         * elapsed time.
+         */
+        public List<T> getCriticalPath ()
+        {
+            return _criticalPath;
+        }
+
+        /**
+         * Returns the elements that failed, mapped to the exception they threw, in the order in
+         * which they failed.
+         */
+        public Map<T,Throwable> getFailures ()
+        {
+            return _failures;
+        }
+
+        /**
+         * Returns the elements that were not run because an element failed before they became
+         * available.
+         */
+        public List<T> getSkipped ()
+        {
+            return _skipped;
+        }
+
+        @Override public String toString ()
+        {
+            StringBuilder buf = new StringBuilder();
+            buf.append("elapsed=").append(getElapsed()).append("ms, serial=");
+            buf.append(getSerialTime()).append("ms, critical path:");
+            for (T element : _criticalPath) {
+                buf.append("\n  ").append(element).append(" ");
+                buf.append(getDuration(element)).append("ms");
+            }
+            for (Map.Entry<T,Throwable> entry : _failures.entrySet()) {
+                buf.append("\nfailed: ").append(entry.getKey());
+                buf.append(" ").append(entry.getValue());
+            }
+            if (!_skipped.isEmpty()) {
+                buf.append("\nskipped: ").append(_skipped);
+            }
+            return buf.toString();
+        }
+
+        protected static long toMillis (long nanos)
+        {
+            return nanos / 1000000L;
+        }
+
+        protected long _elapsed;
+        protected Map<T,Long> _durations = new HashMap<T,Long>();
+        protected List<T> _criticalPath = new ArrayList<T>();
+        protected Map<T,Throwable> _failures = new LinkedHashMap<T,Throwable>();
+        protected List<T> _skipped = new ArrayList<T>();
+    }
+
+    /**
+     * Thrown by {@link #execute} if any element failed. The cause is the first failure and the
+     * report describes all of them.
+     */
+    public static class FailedException extends ExecutionException
+    {
+        public FailedException (Report<?> report, Throwable cause)
+        {
+            super("Dependency graph execution failed " + report.getFailures().keySet(), cause);
+            _report = report;
+        }
+
+        /** Returns the report of the failed execution. */
+        public Report<?> getReport ()
+        {
+            return _report;
+        }
+
+        protected Report<?> _report;
+    }
+
     /**
      * Adds an element with no initial dependencies from the graph.
      */
@@ -148,6 +285,200 @@ public class DependencyGraph<T>
         return list;
     }
 
+    /**
+     * Performs the supplied action on every element of this graph using a pool of the specified
+     * number of threads, which is created for the purpose and shut down afterwards. See {@link
+     * #execute(Executor,Action)}.
+     */
+    public Report<T> execute (int threads, Action<? super T> action)
+        throws InterruptedException, FailedException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(
+            threads, ThreadFactories.platform("DependencyGraph", true));
+        try {
+            return execute(pool, action);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Performs the supplied action on every element of this graph, running elements in parallel
+     * on the supplied executor. Each element is run as soon as all of the elements on which it
+     * depends have completed: the thread that completes an element dispatches every dependant
+     * that has become available to the executor, save one, which it runs itself. The graph is
+     * not modified and must not be modified until this method returns.
+     *
+     * <p> If an element fails, no further elements are started, the elements that are running
+     * are allowed to complete, and a {@link FailedException} is thrown. The calling thread
+     * blocks until execution completes.
+     *
+     * @return a report of the time taken by each element and the critical path through the
+     * graph.
+     */
+    public Report<T> execute (Executor executor, Action<? super T> action)
+        throws InterruptedException, FailedException
+    {
+        Execution<T> exec = new Execution<T>(_nodes.values(), executor, action);
+        Report<T> report = exec.run();
+        if (!report.getFailures().isEmpty()) {
+            throw new FailedException(report, report.getFailures().values().iterator().next());
+        }
+        return report;
+    }
+
+    /** Tracks the state of a single call to {@link #execute}. */
+    protected static class Execution<T>
+    {
+        public Execution (Collection<DependencyNode<T>> nodes, Executor executor,
+                          Action<? super T> action) {
+            _executor = executor;
+            _action = action;
+            int count = nodes.size();
+            _elements = new ArrayList<T>(count);
+            Map<DependencyNode<T>,Integer> indices = new HashMap<DependencyNode<T>,Integer>();
+            for (DependencyNode<T> node : nodes) {
+                indices.put(node, _elements.size());
+                _elements.add(node.content);
+            }
+            _parents = new int[count][];
+            _children = new int[count][];
+            _pending = new AtomicIntegerArray(count);
+            for (DependencyNode<T> node : nodes) {
+                int idx = indices.get(node);
+                _parents[idx] = toIndices(node.parents, indices);
+                _children[idx] = toIndices(node.children, indices);
+                _pending.set(idx, node.parents.size());
+            }
+            _started = new long[count];
+            _finished = new long[count];
+            _errors = new Throwable[count];
+            _skipped = new boolean[count];
+            _done = new CountDownLatch(count);
+        }
+
+        public Report<T> run () throws InterruptedException {
+            _start = System.nanoTime();
+            for (int ii = 0; ii < _elements.size(); ii++) {
+                if (_parents[ii].length == 0) {
+                    dispatch(ii);
+                }
+            }
+            _done.await();
+            return makeReport();
+        }
+
+        /** Runs the specified element on our executor (or on this thread if it is rejected). */
+        protected void dispatch (final int idx) {
+            try {
+                _executor.execute(new Runnable() {
+                    public void run () {
+                        process(idx);
+                    }
+                });
+            } catch (RuntimeException re) {
+                process(idx);
+            }
+        }
+
+        /** Runs (or skips) the specified element and then each dependant that it releases. */
+        protected void process (int idx) {
+            for (int next = idx; next >= 0; ) {
+                idx = next;
+                next = -1;
+                _started[idx] = System.nanoTime();
+                if (_failed) {
+                    _skipped[idx] = true;
+                } else {
+                    try {
+                        _action.run(_elements.get(idx));
+                    } catch (Throwable t) {
+                        _errors[idx] = t;
+                        _failed = true;
+                    }
+                }
+                _finished[idx] = System.nanoTime();
+
+                // release our dependants, keeping one for ourselves
+                for (int child : _children[idx]) {
+                    if (_pending.decrementAndGet(child) == 0) {
+                        if (next < 0) {
+                            next = child;
+                        } else {
+                            dispatch(child);
+                        }
+                    }
+                }
+                _done.countDown();
+            }
+        }
+
+        protected Report<T> makeReport () {
+            Report<T> report = new Report<T>();
+            int last = -1;
+            List<Integer> failed = new ArrayList<Integer>();
+            for (int ii = 0; ii < _elements.size(); ii++) {
+                T element = _elements.get(ii);
+                if (_errors[ii] != null) {
+                    failed.add(ii);
+                }
+                if (_skipped[ii]) {
+                    report._skipped.add(element);
+                    continue;
+                }
+                report._durations.put(element, _finished[ii] - _started[ii]);
+                if (last < 0 || _finished[ii] > _finished[last]) {
+                    last = ii;
+                }
+            }
+            // order the failures by the time at which they happened
+            Collections.sort(failed, new Comparator<Integer>() {
+                public int compare (Integer one, Integer two) {
+                    return Long.signum(_finished[one] - _finished[two]);
+                }
+            });
+            for (int idx : failed) {
+                report._failures.put(_elements.get(idx), _errors[idx]);
+            }
+            if (last >= 0) {
+                report._elapsed = _finished[last] - _start;
+                // walk back from the last element through the dependee each waited on longest
+                for (int idx = last; idx >= 0; ) {
+                    report._criticalPath.add(0, _elements.get(idx));
+                    int waited = -1;
+                    for (int parent : _parents[idx]) {
+                        if (waited < 0 || _finished[parent] > _finished[waited]) {
+                            waited = parent;
+                        }
+                    }
+                    idx = waited;
+                }
+            }
+            return report;
+        }
+
+        protected static <T> int[] toIndices (
+            List<DependencyNode<T>> nodes, Map<DependencyNode<T>,Integer> indices) {
+            int[] idxs = new int[nodes.size()];
+            for (int ii = 0; ii < idxs.length; ii++) {
+                idxs[ii] = indices.get(nodes.get(ii));
+            }
+            return idxs;
+        }
+
+        protected final Executor _executor;
+        protected final Action<? super T> _action;
+        protected final List<T> _elements;
+        protected final int[][] _parents, _children;
+        protected final AtomicIntegerArray _pending;
+        protected final long[] _started, _finished;
+        protected final Throwable[] _errors;
+        protected final boolean[] _skipped;
+        protected final CountDownLatch _done;
+        protected long _start;
+        protected volatile boolean _failed;
+    }
+
     /** All the nodes included in the graph. */
     protected Map<T, DependencyNode<T>> _nodes = new HashMap<T, DependencyNode<T>>();
 
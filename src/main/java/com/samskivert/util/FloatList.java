@@ -0,0 +1,603 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.Serializable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of floats, which stores its values in a <code>float[]</code> rather than boxing
+ * them. The array grows by half again whenever it fills, so appending is amortized constant time.
+ *
+ * <p> The list is also a <code>List&lt;Float&gt;</code>. Use the methods that take and return
+ * <code>float</code>s ({@link #getFloat}, {@link #add(float)}, {@link #removeAt}, etc.) to avoid
+ * boxing. Values are compared as by {@link Float#equals}, so <code>NaN</code> can be found and
+ * <code>-0f</code> and <code>0f</code> are distinct. See {@link IntList}.
+ */
+public class FloatList extends AbstractList<Float>
+    implements RandomAccess, Cloneable, Serializable
+{
+    /**
+     * Creates a list with the specified starting values.
+     */
+    public FloatList (float[] values)
+    {
+        this(values.length);
+        addAll(values, 0, values.length);
+    }
+
+    /**
+     * Creates a list with the specified starting values.
+     *
+     * @throws NullPointerException if the collection contains any null values.
+     */
+    public FloatList (Collection<Float> values)
+    {
+        this(values.size());
+        addAll(values);
+    }
+
+    /**
+     * Creates a list with the specified initial capacity.
+     */
+    public FloatList (int initialCapacity)
+    {
+        _values = new float[initialCapacity];
+    }
+
+    /**
+     * Creates an empty list with the default initial capacity.
+     */
+    public FloatList ()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the value at the specified index.
+     */
+    public float getFloat (int index)
+    {
+        checkIndex(index);
+        return _values[index];
+    }
+
+    /**
+     * Replaces the value at the specified index.
+     *
+     * @return the value previously at that index.
+     */
+    public float setFloat (int index, float value)
+    {
+        checkIndex(index);
+        float ovalue = _values[index];
+        _values[index] = value;
+        return ovalue;
+    }
+
+    /**
+     * Appends the specified value to the end of this list.
+     *
+     * @return true, as specified by {@link Collection#add}.
+     */
+    public boolean add (float value)
+    {
+        if (_size == _values.length) {
+            grow(_size + 1);
+        }
+        _values[_size++] = value;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Inserts the specified value at the specified index, shifting the value at that index (if
+     * any) and those after it up by one.
+     */
+    public void add (int index, float value)
+    {
+        if (index < 0 || index > _size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        }
+        if (_size == _values.length) {
+            grow(_size + 1);
+        }
+        System.arraycopy(_values, index, _values, index + 1, _size - index);
+        _values[index] = value;
+        _size++;
+        modCount++;
+    }
+
+    /**
+     * Appends all of the specified values to the end of this list.
+     *
+     * @return true if the list changed as a result of the call.
+     */
+    public boolean addAll (float[] values)
+    {
+        return addAll(values, 0, values.length);
+    }
+
+    /**
+     * Appends <code>length</code> values, starting at <code>offset</code>, from the supplied array
+     * to the end of this list.
+     *
+     * @return true if the list changed as a result of the call.
+     */
+    public boolean addAll (float[] values, int offset, int length)
+    {
+        if (length == 0) {
+            return false;
+        }
+        ensureCapacity(_size + length);
+        System.arraycopy(values, offset, _values, _size, length);
+        _size += length;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the value at the specified index, shifting those after it down by one.
+     *
+     * @return the removed value.
+     */
+    public float removeAt (int index)
+    {
+        checkIndex(index);
+        float value = _values[index];
+        System.arraycopy(_values, index + 1, _values, index, _size - index - 1);
+        _size--;
+        modCount++;
+        return value;
+    }
+
+    /**
+     * Removes the first occurrence of the specified value from this list.
+     *
+     * @return true if the value was found and removed.
+     */
+    public boolean removeValue (float value)
+    {
+        int index = indexOf(value);
+        if (index == -1) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Returns true if this list contains the specified value.
+     */
+    public boolean contains (float value)
+    {
+        return (indexOf(value) != -1);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the specified value in this list, or -1 if it
+     * is not in the list.
+     */
+    public int indexOf (float value)
+    {
+        int bits = Float.floatToIntBits(value);
+        for (int ii = 0; ii < _size; ii++) {
+            if (Float.floatToIntBits(_values[ii]) == bits) {
+                return ii;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last occurrence of the specified value in this list, or -1 if it
+     * is not in the list.
+     */
+    public int lastIndexOf (float value)
+    {
+        int bits = Float.floatToIntBits(value);
+        for (int ii = _size - 1; ii >= 0; ii--) {
+            if (Float.floatToIntBits(_values[ii]) == bits) {
+                return ii;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a new array containing the values in this list.
+     */
+    public float[] toFloatArray ()
+    {
+        float[] values = new float[_size];
+        System.arraycopy(_values, 0, values, 0, _size);
+        return values;
+    }
+
+    /**
+     * Copies the values in this list into the supplied array at the specified offset.
+     *
+     * @return the supplied array.
+     */
+    public float[] toFloatArray (float[] target, int offset)
+    {
+        System.arraycopy(_values, 0, target, offset, _size);
+        return target;
+    }
+
+    /**
+     * Sorts the values in this list into ascending order.
+     */
+    public void sort ()
+    {
+        Arrays.sort(_values, 0, _size);
+        modCount++;
+    }
+
+    /**
+     * Grows the capacity of this list, if necessary, such that it can hold at least the specified
+     * number of values without growing again.
+     */
+    public void ensureCapacity (int minCapacity)
+    {
+        if (minCapacity > _values.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Shrinks the capacity of this list to its current size.
+     */
+    public void trimToSize ()
+    {
+        if (_size < _values.length) {
+            float[] values = new float[_size];
+            System.arraycopy(_values, 0, values, 0, _size);
+            _values = values;
+        }
+    }
+
+    @Override // from AbstractList<Float>
+    public Iterator<Float> iterator ()
+    {
+        return new Iterator<Float>() {
+            public boolean hasNext () {
+                return (_pos < _size);
+            }
+
+            public Float next () {
+                if (modCount != _expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (_pos >= _size) {
+                    throw new NoSuchElementException();
+                }
+                _last = _pos;
+                return _values[_pos++];
+            }
+
+            public void remove () {
+                if (_last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != _expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(_last);
+                _pos = _last;
+                _last = -1;
+                _expectedModCount = modCount;
+            }
+
+            protected int _pos, _last = -1;
+            protected int _expectedModCount = modCount;
+        };
+    }
+
+    @Override // from AbstractList<Float>
+    public Float get (int index)
+    {
+        return getFloat(index);
+    }
+
+    @Override // from AbstractList<Float>
+    public Float set (int index, Float value)
+    {
+        return setFloat(index, value);
+    }
+
+    @Override // from AbstractList<Float>
+    public boolean add (Float value)
+    {
+        return add(value.floatValue());
+    }
+
+    @Override // from AbstractList<Float>
+    public void add (int index, Float value)
+    {
+        add(index, value.floatValue());
+    }
+
+    @Override // from AbstractList<Float>
+    public Float remove (int index)
+    {
+        return removeAt(index);
+    }
+
+    @Override // from AbstractCollection<Float>
+    public boolean addAll (Collection<? extends Float> c)
+    {
+        if (c instanceof FloatList) {
+            FloatList other = (FloatList)c;
+            return addAll(other._values, 0, other._size);
+        }
+        ensureCapacity(_size + c.size());
+        return super.addAll(c);
+    }
+
+    @Override // from AbstractCollection<Float>
+    public boolean removeAll (Collection<?> c)
+    {
+        return batchRemove(c, false);
+    }
+
+    @Override // from AbstractCollection<Float>
+    public boolean retainAll (Collection<?> c)
+    {
+        return batchRemove(c, true);
+    }
+
+    @Override // from AbstractList<Float>
+    public void removeRange (int fromIndex, int toIndex)
+    {
+        if (fromIndex < 0 || toIndex > _size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                "From: " + fromIndex + ", To: " + toIndex + ", Size: " + _size);
+        }
+        System.arraycopy(_values, toIndex, _values, fromIndex, _size - toIndex);
+        _size -= (toIndex - fromIndex);
+        modCount++;
+    }
+
+    /**
+     * Returns a view of the portion of this list between <code>fromIndex</code> (inclusive) and
+     * <code>toIndex</code> (exclusive), which reads and writes this list's values directly rather
+     * than copying them. The view's values can be changed, and it can be cleared (which removes
+     * its values from this list), but its size can otherwise not be changed. If this list's size
+     * is changed other than through the view, the view becomes invalid.
+     */
+    @Override // from AbstractList<Float>
+    public SubList subList (int fromIndex, int toIndex)
+    {
+        if (fromIndex < 0 || toIndex > _size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                "From: " + fromIndex + ", To: " + toIndex + ", Size: " + _size);
+        }
+        return new SubList(fromIndex, toIndex - fromIndex);
+    }
+
+    @Override // from AbstractCollection<Float>
+    public int size ()
+    {
+        return _size;
+    }
+
+    @Override // from AbstractCollection<Float>
+    public boolean contains (Object o)
+    {
+        return (o instanceof Float) && contains(((Float)o).floatValue());
+    }
+
+    @Override // from AbstractList<Float>
+    public int indexOf (Object o)
+    {
+        return (o instanceof Float) ? indexOf(((Float)o).floatValue()) : -1;
+    }
+
+    @Override // from AbstractList<Float>
+    public int lastIndexOf (Object o)
+    {
+        return (o instanceof Float) ? lastIndexOf(((Float)o).floatValue()) : -1;
+    }
+
+    @Override // from AbstractList<Float>
+    public void clear ()
+    {
+        _size = 0;
+        modCount++;
+    }
+
+    @Override // from AbstractList<Float>
+    public boolean equals (Object o)
+    {
+        if (o instanceof FloatList) {
+            FloatList other = (FloatList)o;
+            if (other._size != _size) {
+                return false;
+            }
+            for (int ii = 0; ii < _size; ii++) {
+                if (Float.floatToIntBits(_values[ii]) != Float.floatToIntBits(other._values[ii])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override // from AbstractList<Float>
+    public int hashCode ()
+    {
+        // as specified by List.hashCode() and Float.hashCode()
+        int h = 1;
+        for (int ii = 0; ii < _size; ii++) {
+            h = 31 * h + Float.floatToIntBits(_values[ii]);
+        }
+        return h;
+    }
+
+    @Override
+    public FloatList clone ()
+    {
+        try {
+            FloatList nlist = (FloatList)super.clone();
+            nlist._values = toFloatArray();
+            return nlist;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    /**
+     * A view of a portion of an {@link FloatList}. See {@link FloatList#subList}.
+     */
+    public class SubList extends AbstractList<Float>
+        implements RandomAccess
+    {
+        /**
+         * Returns the value at the specified index of this view.
+         */
+        public float getFloat (int index)
+        {
+            return _values[toListIndex(index)];
+        }
+
+        /**
+         * Replaces the value at the specified index of this view.
+         *
+         * @return the value previously at that index.
+         */
+        public float setFloat (int index, float value)
+        {
+            int lindex = toListIndex(index);
+            float ovalue = _values[lindex];
+            _values[lindex] = value;
+            return ovalue;
+        }
+
+        /**
+         * Returns a new array containing the values in this view.
+         */
+        public float[] toFloatArray ()
+        {
+            checkModCount();
+            float[] values = new float[_length];
+            System.arraycopy(_values, _offset, values, 0, _length);
+            return values;
+        }
+
+        @Override // from AbstractList<Float>
+        public Float get (int index)
+        {
+            return getFloat(index);
+        }
+
+        @Override // from AbstractList<Float>
+        public Float set (int index, Float value)
+        {
+            return setFloat(index, value);
+        }
+
+        @Override // from AbstractCollection<Float>
+        public int size ()
+        {
+            checkModCount();
+            return _length;
+        }
+
+        @Override // from AbstractList<Float>
+        public void clear ()
+        {
+            checkModCount();
+            FloatList.this.removeRange(_offset, _offset + _length);
+            _length = 0;
+            _expectedModCount = FloatList.this.modCount;
+        }
+
+        protected SubList (int offset, int length)
+        {
+            _offset = offset;
+            _length = length;
+        }
+
+        protected int toListIndex (int index)
+        {
+            checkModCount();
+            if (index < 0 || index >= _length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _length);
+            }
+            return _offset + index;
+        }
+
+        protected void checkModCount ()
+        {
+            if (FloatList.this.modCount != _expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        protected int _offset, _length;
+        protected int _expectedModCount = FloatList.this.modCount;
+    }
+
+    /**
+     * Removes the values that are (or, if <code>retain</code> is true, are not) in the supplied
+     * collection, sliding the values that remain down over those removed.
+     */
+    protected boolean batchRemove (Collection<?> c, boolean retain)
+    {
+        int kept = 0;
+        for (int ii = 0; ii < _size; ii++) {
+            float value = _values[ii];
+            if (c.contains(value) == retain) {
+                _values[kept++] = value;
+            }
+        }
+        if (kept == _size) {
+            return false;
+        }
+        _size = kept;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Grows our values array by at least half again, and such that it can hold at least
+     * <code>minCapacity</code> values.
+     */
+    protected void grow (int minCapacity)
+    {
+        float[] values = new float[Math.max(minCapacity,
+                                        Math.max(DEFAULT_CAPACITY, _values.length * 3 / 2 + 1))];
+        System.arraycopy(_values, 0, values, 0, _size);
+        _values = values;
+    }
+
+    protected void checkIndex (int index)
+    {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        }
+    }
+
+    /** Our values; only the first {@link #_size} are meaningful. */
+    protected float[] _values;
+
+    /** The number of values in the list. */
+    protected int _size;
+
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    private static final long serialVersionUID = 1;
+}
@@ -10,9 +10,12 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
+import java.util.AbstractCollection;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -24,6 +27,10 @@ import com.samskivert.annotation.ReplacedBy;
  * the annoyance of having to create integer objects every time we want to
  * lookup or insert values. The hash int map is an int map that uses a
  * hashtable mechanism to store its key/value mappings.
+ *
+ * <p> The keys and values are stored in parallel arrays using open addressing with linear probing,
+ * so no object is allocated per mapping and a lookup examines consecutive array slots rather than
+ * following a chain of records. Iterating over the keys or values allocates nothing per element.
  */
 @ReplacedBy(value="java.util.Map",
             reason="Boxing shouldn't be a major concern. It's probably better to stick to " +
@@ -39,22 +46,25 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
     /**
      * The default load factor.
      */
-    public final static float DEFAULT_LOAD_FACTOR = 1.75f;
+    public final static float DEFAULT_LOAD_FACTOR = 0.75f;
 
     /**
      * Constructs an empty hash int map with the specified number of hash
      * buckets.
+     *
+     * @param loadFactor the maximum ratio of mappings to buckets. Load factors of one or more
+     * (which were meaningful when this map chained its entries) are replaced by the default.
      */
     public HashIntMap (int buckets, float loadFactor)
     {
+        _loadFactor = (loadFactor > 0 && loadFactor < 1) ? loadFactor : DEFAULT_LOAD_FACTOR;
+
         // force the capacity to be a power of 2
-        int capacity = 1;
+        int capacity = DEFAULT_BUCKETS;
         while (capacity < buckets) {
             capacity <<= 1;
         }
-
-        _buckets = createBuckets(capacity);
-        _loadFactor = loadFactor;
+        createBuckets(capacity);
     }
 
     /**
@@ -81,17 +91,18 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
     // documentation inherited
     public boolean containsKey (int key)
     {
-        return (null != getImpl(key));
+        return (key == 0) ? _hasZero : (indexOf(key) >= 0);
     }
 
     @Override
     public boolean containsValue (Object o)
     {
-        for (Record<V> bucket : _buckets) {
-            for (Record<V> r = bucket; r != null; r = r.next) {
-                if (ObjectUtil.equals(r.value, o)) {
-                    return true;
-                }
+        if (_hasZero && ObjectUtil.equals(_zeroValue, o)) {
+            return true;
+        }
+        for (int ii = 0; ii < _keys.length; ii++) {
+            if (_keys[ii] != 0 && ObjectUtil.equals(_values[ii], o)) {
+                return true;
             }
         }
         return false;
@@ -106,8 +117,20 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
     // documentation inherited
     public V get (int key)
     {
-        Record<V> rec = getImpl(key);
-        return (rec == null) ? null : rec.value;
+        if (key == 0) {
+            return _zeroValue;
+        }
+        // this is indexOf() inlined, as this is our most frequently called method
+        int[] keys = _keys;
+        int mask = keys.length - 1;
+        for (int idx = keyToIndex(key); ; idx = (idx + 1) & mask) {
+            int ikey = keys[idx];
+            if (ikey == key) {
+                return _values[idx];
+            } else if (ikey == 0) {
+                return null;
+            }
+        }
     }
 
     @Override
@@ -119,33 +142,36 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
     // documentation inherited
     public V put (int key, V value)
     {
-        // check to see if we've passed our load factor, if so: resize
-        ensureCapacity(_size + 1);
-
-        int index = keyToIndex(key);
-        Record<V> rec = _buckets[index];
-
-        // either we start a new chain
-        if (rec == null) {
-            _buckets[index] = new Record<V>(key, value);
-            _size++; // we're bigger
-            return null;
+        if (key == 0) {
+            V ovalue = _zeroValue;
+            if (!_hasZero) {
+                _hasZero = true;
+                _size++;
+                _modCount++;
+            }
+            _zeroValue = value;
+            return ovalue;
         }
 
-        // or we replace an element in an existing chain
-        Record<V> prev = rec;
-        for (; rec != null; rec = rec.next) {
-            if (rec.key == key) {
-                V ovalue = rec.value;
-                rec.value = value; // we're not bigger
+        int[] keys = _keys;
+        int mask = keys.length - 1;
+        int idx = keyToIndex(key);
+        for (int ikey; (ikey = keys[idx]) != 0; idx = (idx + 1) & mask) {
+            if (ikey == key) {
+                V ovalue = _values[idx];
+                _values[idx] = value; // we're not bigger
                 return ovalue;
             }
-            prev = rec;
         }
 
-        // or we append it to this chain
-        prev.next = new Record<V>(key, value);
-        _size++; // we're bigger
+        // we found an empty slot, so we're adding a new mapping
+        keys[idx] = key;
+        _values[idx] = value;
+        _size++;
+        _modCount++;
+        if (_size > _threshold) {
+            resizeBuckets(_keys.length * 2);
+        }
         return null;
     }
 
@@ -158,55 +184,26 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
     // documentation inherited
     public V remove (int key)
     {
-        Record<V> removed = removeImpl(key, true);
-        return (removed == null) ? null : removed.value;
-    }
-
-    /**
-     * Locate the record with the specified key.
-     */
-    protected Record<V> getImpl (int key)
-    {
-        for (Record<V> rec = _buckets[keyToIndex(key)]; rec != null; rec = rec.next) {
-            if (rec.key == key) {
-                return rec;
-            }
+        if (key == 0) {
+            V ovalue = _zeroValue;
+            removeZero();
+            return ovalue;
         }
-        return null;
-    }
-
-    /**
-     * Remove an element with optional checking to see if we should shrink.
-     * When this is called from our iterator, checkShrink==false to avoid booching the buckets.
-     */
-    protected Record<V> removeImpl (int key, boolean checkShrink)
-    {
-        int index = keyToIndex(key);
-
-        // go through the chain looking for a match
-        for (Record<V> prev = null, rec = _buckets[index]; rec != null; rec = rec.next) {
-            if (rec.key == key) {
-                if (prev == null) {
-                    _buckets[index] = rec.next;
-                } else {
-                    prev.next = rec.next;
-                }
-                _size--;
-                if (checkShrink) {
-                    checkShrink();
-                }
-                return rec;
-            }
-            prev = rec;
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return null;
         }
-
-        return null;
+        V ovalue = _values[idx];
+        removeAt(idx);
+        checkShrink();
+        return ovalue;
     }
 
     // documentation inherited
     public void putAll (IntMap<V> t)
     {
         // if we can, avoid creating Integer objects while copying
+        ensureCapacity(_size + t.size());
         for (IntEntry<V> entry : t.intEntrySet()) {
             put(entry.getIntKey(), entry.getValue());
         }
@@ -215,10 +212,12 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
     @Override
     public void clear ()
     {
-        // abandon all of our hash chains (the joy of garbage collection)
-        Arrays.fill(_buckets, null);
-        // zero out our size
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_values, null);
+        _hasZero = false;
+        _zeroValue = null;
         _size = 0;
+        _modCount++;
     }
 
     /**
@@ -228,11 +227,8 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
      */
     public void ensureCapacity (int minCapacity)
     {
-        int size = _buckets.length;
-        while (minCapacity > (int) (size * _loadFactor)) {
-            size *= 2;
-        }
-        if (size != _buckets.length) {
+        int size = capacityFor(minCapacity, _loadFactor);
+        if (size > _keys.length) {
             resizeBuckets(size);
         }
     }
@@ -242,13 +238,89 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
      */
     protected final int keyToIndex (int key)
     {
-        // we lift the hash-fixing function from HashMap because Sun
-        // wasn't kind enough to make it public
-        key += ~(key << 9);
-        key ^=  (key >>> 14);
-        key +=  (key << 4);
-        key ^=  (key >>> 10);
-        return key & (_buckets.length - 1);
+        // spread the bits of the key with a multiplicative hash so that sequential keys do not
+        // fill runs of adjacent slots
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (_keys.length - 1);
+    }
+
+    /**
+     * Returns the slot that holds the specified (non-zero) key, or -1 if it is not in the table.
+     */
+    protected int indexOf (int key)
+    {
+        int[] keys = _keys;
+        int mask = keys.length - 1;
+        for (int idx = keyToIndex(key); ; idx = (idx + 1) & mask) {
+            int ikey = keys[idx];
+            if (ikey == key) {
+                return idx;
+            } else if (ikey == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping for the zero key, if we have one.
+     */
+    protected void removeZero ()
+    {
+        if (_hasZero) {
+            _hasZero = false;
+            _zeroValue = null;
+            _size--;
+            _modCount++;
+        }
+    }
+
+    /**
+     * Removes the mapping in the specified slot, shifting any following mappings that would no
+     * longer be found back into the vacated slot. Does not shrink the table, so that our
+     * iterators may call this.
+     */
+    protected void removeAt (int idx)
+    {
+        int[] keys = _keys;
+        V[] values = _values;
+        int mask = keys.length - 1;
+        for (int last = idx; ; ) {
+            idx = (idx + 1) & mask;
+            int ikey = keys[idx];
+            if (ikey == 0) {
+                keys[last] = 0;
+                values[last] = null;
+                break;
+            }
+            // a key may move into the vacated slot if that slot lies (cyclically) between the key's
+            // home slot and its current slot
+            int home = keyToIndex(ikey);
+            if (last <= idx ? (home <= last || home > idx) : (home <= last && home > idx)) {
+                keys[last] = ikey;
+                values[last] = values[idx];
+                last = idx;
+            }
+        }
+        _size--;
+        _modCount++;
+    }
+
+    /**
+     * Copies our keys into the start of the supplied array, which must be large enough to hold
+     * them, and returns it.
+     */
+    protected int[] copyKeys (int[] dest)
+    {
+        int dex = 0;
+        if (_hasZero) {
+            dest[dex++] = 0;
+        }
+        for (int key : _keys) {
+            if (key != 0) {
+                dest[dex++] = key;
+            }
+        }
+        return dest;
     }
 
     /**
@@ -256,9 +328,9 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
      */
     protected void checkShrink ()
     {
-        if ((_buckets.length > DEFAULT_BUCKETS) &&
-                (_size < (int) (_buckets.length * _loadFactor * .125))) {
-            resizeBuckets(Math.max(DEFAULT_BUCKETS, _buckets.length >> 1));
+        if ((_keys.length > DEFAULT_BUCKETS) &&
+                (_size < (int) (_keys.length * _loadFactor * .125))) {
+            resizeBuckets(Math.max(DEFAULT_BUCKETS, _keys.length >> 1));
         }
     }
 
@@ -269,25 +341,51 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
      */
     protected void resizeBuckets (int newsize)
     {
-        Record<V>[] oldbuckets = _buckets;
-        _buckets = createBuckets(newsize);
-
-        // we shuffle the records around without allocating new ones
-        int index = oldbuckets.length;
-        while (index-- > 0) {
-            Record<V> oldrec = oldbuckets[index];
-            while (oldrec != null) {
-                Record<V> newrec = oldrec;
-                oldrec = oldrec.next;
-
-                // always put the newrec at the start of a chain
-                int newdex = keyToIndex(newrec.key);
-                newrec.next = _buckets[newdex];
-                _buckets[newdex] = newrec;
+        int[] okeys = _keys;
+        V[] ovalues = _values;
+        createBuckets(newsize);
+
+        int[] keys = _keys;
+        int mask = newsize - 1;
+        for (int ii = 0; ii < okeys.length; ii++) {
+            int key = okeys[ii];
+            if (key != 0) {
+                int idx = keyToIndex(key);
+                while (keys[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = key;
+                _values[idx] = ovalues[ii];
             }
         }
     }
 
+    /**
+     * (Re)creates our key and value arrays with the specified size, which must be a power of two.
+     */
+    protected void createBuckets (int size)
+    {
+        _keys = new int[size];
+        @SuppressWarnings("unchecked") V[] values = (V[])new Object[size];
+        _values = values;
+        // always leave at least one empty slot so that probes terminate
+        _threshold = Math.min((int)(size * _loadFactor), size - 1);
+    }
+
+    /**
+     * Returns the (power of two) number of buckets needed to hold the specified number of
+     * mappings at the specified load factor.
+     */
+    protected static int capacityFor (int mappings, float loadFactor)
+    {
+        int needed = (int)Math.ceil(mappings / loadFactor);
+        int capacity = DEFAULT_BUCKETS;
+        while (capacity < needed || capacity <= mappings) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
     @Override
     public Set<Entry<Integer,V>> entrySet ()
     {
@@ -314,69 +412,93 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
         };
     }
 
-    protected abstract class RecordIterator<E>
-        implements Iterator<E>
+    /**
+     * Iterates over the slots that contain mappings. Iteration begins just after an empty slot
+     * and proceeds forward; removing a mapping only ever shifts not yet visited mappings back
+     * into the vacated slot (never across an empty slot), so we revisit that slot after a removal
+     * and see every mapping exactly once.
+     */
+    protected abstract class SlotIterator
     {
-        public boolean hasNext ()
-        {
-            // if we're pointing to an entry, we're good
-            if (_record != null) {
-                return true;
-            }
+        public SlotIterator () {
+            _remaining = _size;
+            _zeroPending = _hasZero;
+            while (_keys[_idx++] != 0); // there is always at least one empty slot
+        }
 
-            // search backward through the buckets looking for the next non-empty hash chain
-            while (_index-- > 0) {
-                if ((_record = _buckets[_index]) != null) {
-                    return true;
-                }
-            }
+        public boolean hasNext () {
+            checkMods();
+            return _remaining > 0;
+        }
 
-            // found no non-empty hash chains, we're done
-            return false;
+        public void remove () {
+            checkMods();
+            if (_last == NONE) {
+                throw new IllegalStateException();
+            }
+            if (_last == ZERO) {
+                removeZero();
+            } else {
+                removeAt(_last);
+                _idx--; // revisit the slot into which a later mapping may have shifted
+            }
+            _last = NONE;
+            _expectedMods = _modCount;
         }
 
-        public Record<V> nextRecord ()
-        {
-            // if we're not pointing to an entry, search for the next
-            // non-empty hash chain
-            if (_record == null) {
-                if (!hasNext()) {
-                    throw new NoSuchElementException();
-                }
+        /** Returns the slot of the next mapping, or {@link #ZERO} for the zero key. */
+        protected int nextSlot () {
+            checkMods();
+            if (_remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            _remaining--;
+            if (_zeroPending) {
+                _zeroPending = false;
+                return (_last = ZERO);
+            }
+            int[] keys = _keys;
+            int mask = keys.length - 1;
+            while (keys[_idx & mask] == 0) {
+                _idx++;
             }
+            return (_last = (_idx++ & mask));
+        }
 
-            // keep track of the last thing we returned, our next record, and return
-            _last = _record;
-            _record = _record.next;
-            return _last;
+        protected int keyAt (int slot) {
+            return (slot == ZERO) ? 0 : _keys[slot];
         }
 
-        public void remove ()
-        {
-            if (_last == null) {
-                throw new IllegalStateException();
-            }
+        protected V valueAt (int slot) {
+            return (slot == ZERO) ? _zeroValue : _values[slot];
+        }
 
-            // remove the record the hard way, avoiding any major changes to the buckets
-            HashIntMap.this.removeImpl(_last.key, false);
-            _last = null;
+        protected void checkMods () {
+            if (_modCount != _expectedMods) {
+                throw new ConcurrentModificationException();
+            }
         }
 
-        protected int _index = _buckets.length;
-        protected Record<V> _record, _last;
+        protected int _idx, _remaining, _last = NONE;
+        protected boolean _zeroPending;
+        protected int _expectedMods = _modCount;
     }
 
-    protected class IntEntryIterator extends RecordIterator<IntEntry<V>>
+    protected class IntEntryIterator extends SlotIterator
+        implements Iterator<IntEntry<V>>
     {
         public IntEntry<V> next () {
-            return nextRecord();
+            int slot = nextSlot();
+            return new MapEntry(keyAt(slot), valueAt(slot));
         }
     }
 
-    protected class MapEntryIterator extends RecordIterator<Entry<Integer,V>>
+    protected class MapEntryIterator extends SlotIterator
+        implements Iterator<Entry<Integer,V>>
     {
         public Entry<Integer,V> next () {
-            return nextRecord();
+            int slot = nextSlot();
+            return new MapEntry(keyAt(slot), valueAt(slot));
         }
     }
 
@@ -387,18 +509,7 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
         if (_keySet == null) {
             _keySet = new AbstractIntSet() {
                 public Interator interator () {
-                    return new AbstractInterator () {
-                        public boolean hasNext () {
-                            return i.hasNext();
-                        }
-                        public int nextInt () {
-                            return i.next().getIntKey();
-                        }
-                        @Override public void remove () {
-                            i.remove();
-                        }
-                        private Iterator<IntEntry<V>> i = intEntrySet().iterator();
-                    };
+                    return keys();
                 }
 
                 @Override public int size () {
@@ -410,14 +521,65 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
                 }
 
                 @Override public boolean remove (int value) {
-                    Record<V> removed = removeImpl(value, true);
-                    return (removed != null);
+                    if (!HashIntMap.this.containsKey(value)) {
+                        return false;
+                    }
+                    HashIntMap.this.remove(value);
+                    return true;
+                }
+
+                @Override public int[] toIntArray () {
+                    return copyKeys(new int[_size]);
+                }
+
+                @Override public int[] toIntArray (int[] reuse) {
+                    return copyKeys((reuse != null && reuse.length >= _size) ? reuse :
+                                    new int[_size]);
+                }
+
+                @Override public void forEachInt (IntConsumer op) {
+                    int mods = _modCount;
+                    if (_hasZero) {
+                        op.accept(0);
+                    }
+                    for (int key : _keys) {
+                        if (key != 0) {
+                            op.accept(key);
+                        }
+                    }
+                    if (_modCount != mods) {
+                        throw new ConcurrentModificationException();
+                    }
                 }
             };
         }
         return _keySet;
     }
 
+    /**
+     * Applies the supplied operation to each mapping in this map, without allocating an iterator
+     * or an entry for each mapping. The map must not be modified by the operation.
+     *
+     * @see IntMaps#forEachEntry
+     */
+    public void forEachEntry (IntObjectConsumer<? super V> op)
+    {
+        int mods = _modCount;
+        if (_hasZero) {
+            op.accept(0, _zeroValue);
+        }
+        int[] keys = _keys;
+        V[] values = _values;
+        for (int ii = 0; ii < keys.length; ii++) {
+            if (keys[ii] != 0) {
+                op.accept(keys[ii], values[ii]);
+            }
+        }
+        if (_modCount != mods) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
     @Override
     public Set<Integer> keySet ()
     {
@@ -429,7 +591,20 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
      */
     public Interator keys ()
     {
-        return intKeySet().interator();
+        return new KeyInterator();
+    }
+
+    @Override
+    public Collection<V> values ()
+    {
+        return new AbstractCollection<V>() {
+            @Override public int size () {
+                return _size;
+            }
+            @Override public Iterator<V> iterator () {
+                return new ValueIterator();
+            }
+        };
     }
 
     /**
@@ -448,12 +623,8 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
             @SuppressWarnings("unchecked")
             HashIntMap<V> result = (HashIntMap<V>) super.clone();
             result._keySet = null;
-            Record<V>[] buckets = result._buckets = result._buckets.clone();
-            for (int ii = buckets.length - 1; ii >= 0; ii--) {
-                if (buckets[ii] != null) {
-                    buckets[ii] = buckets[ii].clone();
-                }
-            }
+            result._keys = _keys.clone();
+            result._values = _values.clone();
             return result;
 
         } catch (CloneNotSupportedException cnse) {
@@ -468,7 +639,7 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
         throws IOException
     {
         // write out number of buckets
-        s.writeInt(_buckets.length);
+        s.writeInt(_keys.length);
         s.writeFloat(_loadFactor);
 
         // write out size (number of mappings)
@@ -488,12 +659,15 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
     private void readObject (ObjectInputStream s)
          throws IOException, ClassNotFoundException
     {
-        // read in number of buckets and allocate the bucket array
-        _buckets = createBuckets(s.readInt());
-        _loadFactor = s.readFloat();
+        // skip the number of buckets, we size our table based on the number of mappings; streams
+        // written when we chained our entries may have a load factor greater than one
+        s.readInt();
+        float loadFactor = s.readFloat();
+        _loadFactor = (loadFactor > 0 && loadFactor < 1) ? loadFactor : DEFAULT_LOAD_FACTOR;
 
         // read in size (number of mappings)
         int size = s.readInt();
+        createBuckets(capacityFor(size, _loadFactor));
 
         // read the keys and values
         for (int i=0; i<size; i++) {
@@ -503,58 +677,70 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
         }
     }
 
-    protected Record<V>[] createBuckets (int size)
+    /** Iterates over our keys without allocating. */
+    protected class KeyInterator extends SlotIterator
+        implements Interator
     {
-        @SuppressWarnings("unchecked") Record<V>[] recs = (Record<V>[])new Record<?>[size];
-        return recs;
+        public int nextInt () {
+            return keyAt(nextSlot());
+        }
+
+        public Integer next () {
+            return Integer.valueOf(nextInt());
+        }
     }
 
-    protected static class Record<V>
-        implements Cloneable, IntEntry<V>
+    /** Iterates over our values without allocating. */
+    protected class ValueIterator extends SlotIterator
+        implements Iterator<V>
     {
-        public Record<V> next;
-        public int key;
-        public V value;
+        public V next () {
+            return valueAt(nextSlot());
+        }
+    }
 
-        public Record (int key, V value)
+    /** A mapping returned by our entry iterators. */
+    protected class MapEntry
+        implements IntEntry<V>
+    {
+        public MapEntry (int key, V value)
         {
-            this.key = key;
-            this.value = value;
+            _key = key;
+            _value = value;
         }
 
         public Integer getKey ()
         {
-            return Integer.valueOf(key);
+            return Integer.valueOf(_key);
         }
 
         public int getIntKey ()
         {
-            return key;
+            return _key;
         }
 
         public V getValue ()
         {
-            return value;
+            return _value;
         }
 
         public V setValue (V value)
         {
-            V ovalue = this.value;
-            this.value = value;
-            return ovalue;
+            // the key is mapped, so this does not change the structure of the table
+            _value = value;
+            return put(_key, value);
         }
 
         @Override public boolean equals (Object o)
         {
             if (o instanceof IntEntry<?>) {
                 IntEntry<?> that = (IntEntry<?>)o;
-                return (this.key == that.getIntKey()) &&
-                    ObjectUtil.equals(this.value, that.getValue());
+                return (_key == that.getIntKey()) && ObjectUtil.equals(_value, that.getValue());
 
             } else if (o instanceof Entry<?,?>) {
                 Entry<?,?> that = (Entry<?,?>)o;
-                return (this.getKey().equals(that.getKey())) &&
-                    ObjectUtil.equals(this.value, that.getValue());
+                return (getKey().equals(that.getKey())) &&
+                    ObjectUtil.equals(_value, that.getValue());
 
             } else {
                 return false;
@@ -563,38 +749,45 @@ public class HashIntMap<V> extends AbstractMap<Integer,V>
 
         @Override public int hashCode ()
         {
-            return key ^ ((value == null) ? 0 : value.hashCode());
+            return _key ^ ((_value == null) ? 0 : _value.hashCode());
         }
 
         @Override public String toString ()
         {
-            return key + "=" + StringUtil.toString(value);
+            return _key + "=" + StringUtil.toString(_value);
         }
 
-        @Override public Record<V> clone ()
-        {
-            try {
-                @SuppressWarnings("unchecked")
-                Record<V> result = (Record<V>) super.clone();
-                // value is not cloned
-                if (result.next != null) {
-                    result.next = result.next.clone();
-                }
-                return result;
-
-            } catch (CloneNotSupportedException cnse) {
-                throw new AssertionError(cnse); // won't happen; we are Cloneable.
-            }
-        }
+        protected int _key;
+        protected V _value;
     }
 
-    protected Record<V>[] _buckets;
+    /** The keys of our mappings, zero marks an empty slot. */
+    protected transient int[] _keys;
+
+    /** The values of our mappings, parallel to {@link #_keys}. */
+    protected transient V[] _values;
+
+    /** The value mapped to the zero key, which cannot be stored in {@link #_keys}. */
+    protected transient V _zeroValue;
+
+    /** Whether or not we have a mapping for the zero key. */
+    protected transient boolean _hasZero;
+
+    /** The number of mappings beyond which we grow the table. */
+    protected transient int _threshold;
+
+    /** Incremented on each structural modification, used to detect concurrent changes. */
+    protected transient int _modCount;
+
     protected int _size;
     protected float _loadFactor;
 
     /** A stateless view of our keys, so we re-use it. */
     protected transient volatile IntSet _keySet = null;
 
+    /** Used by our iterators to indicate the zero key's mapping or no mapping at all. */
+    protected static final int ZERO = -1, NONE = -2;
+
     /** Change this if the fields or inheritance hierarchy ever changes
      * (which is extremely unlikely). We override this because I'm tired
      * of serialized crap not working depending on whether I compiled with
@@ -256,6 +256,39 @@ public class HashIntSet extends AbstractIntSet
         throw new RuntimeException("Ran out of buckets removing value " + value);
     }
 
+    @Override // documentation inherited
+    public int[] toIntArray (int[] reuse)
+    {
+        int[] values = (reuse != null && reuse.length >= _size) ? reuse : new int[_size];
+        int dex = 0;
+        for (int value : _buckets) {
+            if (value != _sentinel) {
+                values[dex++] = value;
+            }
+        }
+        return values;
+    }
+
+    @Override // documentation inherited
+    public int[] toIntArray ()
+    {
+        return toIntArray(null);
+    }
+
+    @Override // documentation inherited
+    public void forEachInt (IntConsumer op)
+    {
+        int omodcount = _modcount;
+        for (int value : _buckets) {
+            if (value != _sentinel) {
+                op.accept(value);
+            }
+        }
+        if (_modcount != omodcount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
     @Override // documentation inherited
     public void clear ()
     {
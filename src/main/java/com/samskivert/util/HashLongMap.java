@@ -0,0 +1,716 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link LongMap} that uses a hashtable mechanism to store its key/value mappings. Like {@link
+ * HashIntMap}, it avoids the creation of a <code>Long</code> object every time we want to look
+ * up or insert a value.
+ *
+ * <p> The keys and values are stored in parallel arrays using open addressing with linear probing,
+ * so no object is allocated per mapping and a lookup examines consecutive array slots rather than
+ * following a chain of records. Iterating over the keys or values allocates nothing per element.
+ */
+public class HashLongMap<V> extends AbstractMap<Long,V>
+    implements LongMap<V>, Cloneable, Serializable
+{
+    /**
+     * The default number of buckets to use for the hash table.
+     */
+    public final static int DEFAULT_BUCKETS = 16;
+
+    /**
+     * The default load factor.
+     */
+    public final static float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * Constructs an empty hash long map with the specified number of hash
+     * buckets.
+     *
+     * @param loadFactor the maximum ratio of mappings to buckets, which must be less than one
+     * (other values are replaced by the default).
+     */
+    public HashLongMap (int buckets, float loadFactor)
+    {
+        _loadFactor = (loadFactor > 0 && loadFactor < 1) ? loadFactor : DEFAULT_LOAD_FACTOR;
+
+        // force the capacity to be a power of 2
+        int capacity = DEFAULT_BUCKETS;
+        while (capacity < buckets) {
+            capacity <<= 1;
+        }
+        createBuckets(capacity);
+    }
+
+    /**
+     * Constructs an empty hash long map with the default number of hash
+     * buckets.
+     */
+    public HashLongMap ()
+    {
+        this(DEFAULT_BUCKETS, DEFAULT_LOAD_FACTOR);
+    }
+
+    @Override
+    public int size ()
+    {
+        return _size;
+    }
+
+    @Override
+    public boolean containsKey (Object key)
+    {
+        return (key instanceof Long) && containsKey(((Long)key).longValue());
+    }
+
+    // documentation inherited
+    public boolean containsKey (long key)
+    {
+        return (key == 0) ? _hasZero : (indexOf(key) >= 0);
+    }
+
+    @Override
+    public boolean containsValue (Object o)
+    {
+        if (_hasZero && ObjectUtil.equals(_zeroValue, o)) {
+            return true;
+        }
+        for (int ii = 0; ii < _keys.length; ii++) {
+            if (_keys[ii] != 0 && ObjectUtil.equals(_values[ii], o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get (Object key)
+    {
+        return (key instanceof Long) ? get(((Long)key).longValue()) : null;
+    }
+
+    // documentation inherited
+    public V get (long key)
+    {
+        if (key == 0) {
+            return _zeroValue;
+        }
+        // this is indexOf() inlined, as this is our most frequently called method
+        long[] keys = _keys;
+        int mask = keys.length - 1;
+        for (int idx = keyToIndex(key); ; idx = (idx + 1) & mask) {
+            long ikey = keys[idx];
+            if (ikey == key) {
+                return _values[idx];
+            } else if (ikey == 0) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public V put (Long key, V value)
+    {
+        return put(key.longValue(), value);
+    }
+
+    // documentation inherited
+    public V put (long key, V value)
+    {
+        if (key == 0) {
+            V ovalue = _zeroValue;
+            if (!_hasZero) {
+                _hasZero = true;
+                _size++;
+                _modCount++;
+            }
+            _zeroValue = value;
+            return ovalue;
+        }
+
+        long[] keys = _keys;
+        int mask = keys.length - 1;
+        int idx = keyToIndex(key);
+        for (long ikey; (ikey = keys[idx]) != 0; idx = (idx + 1) & mask) {
+            if (ikey == key) {
+                V ovalue = _values[idx];
+                _values[idx] = value; // we're not bigger
+                return ovalue;
+            }
+        }
+
+        // we found an empty slot, so we're adding a new mapping
+        keys[idx] = key;
+        _values[idx] = value;
+        _size++;
+        _modCount++;
+        if (_size > _threshold) {
+            resizeBuckets(_keys.length * 2);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove (Object key)
+    {
+        return (key instanceof Long) ? remove(((Long)key).longValue()) : null;
+    }
+
+    // documentation inherited
+    public V remove (long key)
+    {
+        if (key == 0) {
+            V ovalue = _zeroValue;
+            removeZero();
+            return ovalue;
+        }
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return null;
+        }
+        V ovalue = _values[idx];
+        removeAt(idx);
+        checkShrink();
+        return ovalue;
+    }
+
+    // documentation inherited
+    public void putAll (LongMap<V> t)
+    {
+        // if we can, avoid creating Long objects while copying
+        ensureCapacity(_size + t.size());
+        for (LongEntry<V> entry : t.longEntrySet()) {
+            put(entry.getLongKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void clear ()
+    {
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_values, null);
+        _hasZero = false;
+        _zeroValue = null;
+        _size = 0;
+        _modCount++;
+    }
+
+    /**
+     * Ensure that the hash can comfortably hold the specified number
+     * of elements. Calling this method is not necessary, but can improve
+     * performance if done prior to adding many elements.
+     */
+    public void ensureCapacity (int minCapacity)
+    {
+        int size = capacityFor(minCapacity, _loadFactor);
+        if (size > _keys.length) {
+            resizeBuckets(size);
+        }
+    }
+
+    /**
+     * Turn the specified key into an index.
+     */
+    protected final int keyToIndex (long key)
+    {
+        // spread the bits of the key with a multiplicative hash so that sequential keys do not
+        // fill runs of adjacent slots, then fold the high word (where the spread bits end up)
+        // into the low
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32)) & (_keys.length - 1);
+    }
+
+    /**
+     * Returns the slot that holds the specified (non-zero) key, or -1 if it is not in the table.
+     */
+    protected int indexOf (long key)
+    {
+        long[] keys = _keys;
+        int mask = keys.length - 1;
+        for (int idx = keyToIndex(key); ; idx = (idx + 1) & mask) {
+            long ikey = keys[idx];
+            if (ikey == key) {
+                return idx;
+            } else if (ikey == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping for the zero key, if we have one.
+     */
+    protected void removeZero ()
+    {
+        if (_hasZero) {
+            _hasZero = false;
+            _zeroValue = null;
+            _size--;
+            _modCount++;
+        }
+    }
+
+    /**
+     * Removes the mapping in the specified slot, shifting any following mappings that would no
+     * longer be found back into the vacated slot. Does not shrink the table, so that our
+     * iterators may call this.
+     */
+    protected void removeAt (int idx)
+    {
+        long[] keys = _keys;
+        V[] values = _values;
+        int mask = keys.length - 1;
+        for (int last = idx; ; ) {
+            idx = (idx + 1) & mask;
+            long ikey = keys[idx];
+            if (ikey == 0) {
+                keys[last] = 0;
+                values[last] = null;
+                break;
+            }
+            // a key may move into the vacated slot if that slot lies (cyclically) between the key's
+            // home slot and its current slot
+            int home = keyToIndex(ikey);
+            if (last <= idx ? (home <= last || home > idx) : (home <= last && home > idx)) {
+                keys[last] = ikey;
+                values[last] = values[idx];
+                last = idx;
+            }
+        }
+        _size--;
+        _modCount++;
+    }
+
+    /**
+     * Check to see if we want to shrink the table.
+     */
+    protected void checkShrink ()
+    {
+        if ((_keys.length > DEFAULT_BUCKETS) &&
+                (_size < (int) (_keys.length * _loadFactor * .125))) {
+            resizeBuckets(Math.max(DEFAULT_BUCKETS, _keys.length >> 1));
+        }
+    }
+
+    /**
+     * Resize the hashtable.
+     *
+     * @param newsize MUST be a power of 2.
+     */
+    protected void resizeBuckets (int newsize)
+    {
+        long[] okeys = _keys;
+        V[] ovalues = _values;
+        createBuckets(newsize);
+
+        long[] keys = _keys;
+        int mask = newsize - 1;
+        for (int ii = 0; ii < okeys.length; ii++) {
+            long key = okeys[ii];
+            if (key != 0) {
+                int idx = keyToIndex(key);
+                while (keys[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = key;
+                _values[idx] = ovalues[ii];
+            }
+        }
+    }
+
+    /**
+     * (Re)creates our key and value arrays with the specified size, which must be a power of two.
+     */
+    protected void createBuckets (int size)
+    {
+        _keys = new long[size];
+        @SuppressWarnings("unchecked") V[] values = (V[])new Object[size];
+        _values = values;
+        // always leave at least one empty slot so that probes terminate
+        _threshold = Math.min((int)(size * _loadFactor), size - 1);
+    }
+
+    /**
+     * Returns the (power of two) number of buckets needed to hold the specified number of
+     * mappings at the specified load factor.
+     */
+    protected static int capacityFor (int mappings, float loadFactor)
+    {
+        int needed = (int)Math.ceil(mappings / loadFactor);
+        int capacity = DEFAULT_BUCKETS;
+        while (capacity < needed || capacity <= mappings) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    @Override
+    public Set<Entry<Long,V>> entrySet ()
+    {
+        return new AbstractSet<Entry<Long,V>>() {
+            @Override public int size () {
+                return _size;
+            }
+            @Override public Iterator<Entry<Long,V>> iterator () {
+                return new MapEntryIterator();
+            }
+        };
+    }
+
+    // documentation inherited
+    public Set<LongEntry<V>> longEntrySet ()
+    {
+        return new AbstractSet<LongEntry<V>>() {
+            @Override public int size () {
+                return _size;
+            }
+            @Override public Iterator<LongEntry<V>> iterator () {
+                return new LongEntryIterator();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the slots that contain mappings. Iteration begins just after an empty slot
+     * and proceeds forward; removing a mapping only ever shifts not yet visited mappings back
+     * into the vacated slot (never across an empty slot), so we revisit that slot after a removal
+     * and see every mapping exactly once.
+     */
+    protected abstract class SlotIterator
+    {
+        public SlotIterator () {
+            _remaining = _size;
+            _zeroPending = _hasZero;
+            while (_keys[_idx++] != 0); // there is always at least one empty slot
+        }
+
+        public boolean hasNext () {
+            checkMods();
+            return _remaining > 0;
+        }
+
+        public void remove () {
+            checkMods();
+            if (_last == NONE) {
+                throw new IllegalStateException();
+            }
+            if (_last == ZERO) {
+                removeZero();
+            } else {
+                removeAt(_last);
+                _idx--; // revisit the slot into which a later mapping may have shifted
+            }
+            _last = NONE;
+            _expectedMods = _modCount;
+        }
+
+        /** Returns the slot of the next mapping, or {@link #ZERO} for the zero key. */
+        protected int nextSlot () {
+            checkMods();
+            if (_remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            _remaining--;
+            if (_zeroPending) {
+                _zeroPending = false;
+                return (_last = ZERO);
+            }
+            long[] keys = _keys;
+            int mask = keys.length - 1;
+            while (keys[_idx & mask] == 0) {
+                _idx++;
+            }
+            return (_last = (_idx++ & mask));
+        }
+
+        protected long keyAt (int slot) {
+            return (slot == ZERO) ? 0 : _keys[slot];
+        }
+
+        protected V valueAt (int slot) {
+            return (slot == ZERO) ? _zeroValue : _values[slot];
+        }
+
+        protected void checkMods () {
+            if (_modCount != _expectedMods) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        protected int _idx, _remaining, _last = NONE;
+        protected boolean _zeroPending;
+        protected int _expectedMods = _modCount;
+    }
+
+    protected class LongEntryIterator extends SlotIterator
+        implements Iterator<LongEntry<V>>
+    {
+        public LongEntry<V> next () {
+            int slot = nextSlot();
+            return new MapEntry(keyAt(slot), valueAt(slot));
+        }
+    }
+
+    protected class MapEntryIterator extends SlotIterator
+        implements Iterator<Entry<Long,V>>
+    {
+        public Entry<Long,V> next () {
+            int slot = nextSlot();
+            return new MapEntry(keyAt(slot), valueAt(slot));
+        }
+    }
+
+    // documentation inherited from interface LongMap
+    public LongSet longKeySet ()
+    {
+        // AbstractMap's 'keySet' field has default access, so we can't share it
+        if (_keySet == null) {
+            _keySet = new AbstractLongSet() {
+                public LongIterator longIterator () {
+                    return keys();
+                }
+
+                @Override public int size () {
+                    return HashLongMap.this.size();
+                }
+
+                @Override public boolean contains (long t) {
+                    return HashLongMap.this.containsKey(t);
+                }
+
+                @Override public boolean remove (long value) {
+                    if (!HashLongMap.this.containsKey(value)) {
+                        return false;
+                    }
+                    HashLongMap.this.remove(value);
+                    return true;
+                }
+            };
+        }
+        return _keySet;
+    }
+
+    @Override
+    public Set<Long> keySet ()
+    {
+        return longKeySet();
+    }
+
+    /**
+     * Returns an iteration over the keys of this hash long map.
+     */
+    public LongIterator keys ()
+    {
+        return new KeyIterator();
+    }
+
+    @Override
+    public Collection<V> values ()
+    {
+        return new AbstractCollection<V>() {
+            @Override public int size () {
+                return _size;
+            }
+            @Override public Iterator<V> iterator () {
+                return new ValueIterator();
+            }
+        };
+    }
+
+    /**
+     * Returns an iteration over the elements (values) of this hash long
+     * map.
+     */
+    public Iterator<V> elements ()
+    {
+        return values().iterator();
+    }
+
+    @Override
+    public HashLongMap<V> clone ()
+    {
+        try {
+            @SuppressWarnings("unchecked")
+            HashLongMap<V> result = (HashLongMap<V>) super.clone();
+            result._keySet = null;
+            result._keys = _keys.clone();
+            result._values = _values.clone();
+            return result;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    /**
+     * Save the state of this instance to a stream (i.e., serialize it).
+     */
+    private void writeObject (ObjectOutputStream s)
+        throws IOException
+    {
+        s.writeFloat(_loadFactor);
+
+        // write out size (number of mappings)
+        s.writeInt(_size);
+
+        // write out keys and values
+        for (LongEntry<V> entry : longEntrySet()) {
+            s.writeLong(entry.getLongKey());
+            s.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Reconstitute the <tt>HashLongMap</tt> instance from a stream (i.e.,
+     * deserialize it).
+     */
+    private void readObject (ObjectInputStream s)
+         throws IOException, ClassNotFoundException
+    {
+        _loadFactor = s.readFloat();
+
+        // read in size (number of mappings)
+        int size = s.readInt();
+        createBuckets(capacityFor(size, _loadFactor));
+
+        // read the keys and values
+        for (int i=0; i<size; i++) {
+            long key = s.readLong();
+            @SuppressWarnings("unchecked") V value = (V)s.readObject();
+            put(key, value);
+        }
+    }
+
+    /** Iterates over our keys without allocating. */
+    protected class KeyIterator extends SlotIterator
+        implements LongIterator
+    {
+        public long nextLong () {
+            return keyAt(nextSlot());
+        }
+
+        public Long next () {
+            return Long.valueOf(nextLong());
+        }
+    }
+
+    /** Iterates over our values without allocating. */
+    protected class ValueIterator extends SlotIterator
+        implements Iterator<V>
+    {
+        public V next () {
+            return valueAt(nextSlot());
+        }
+    }
+
+    /** A mapping returned by our entry iterators. */
+    protected class MapEntry
+        implements LongEntry<V>
+    {
+        public MapEntry (long key, V value)
+        {
+            _key = key;
+            _value = value;
+        }
+
+        public Long getKey ()
+        {
+            return Long.valueOf(_key);
+        }
+
+        public long getLongKey ()
+        {
+            return _key;
+        }
+
+        public V getValue ()
+        {
+            return _value;
+        }
+
+        public V setValue (V value)
+        {
+            // the key is mapped, so this does not change the structure of the table
+            _value = value;
+            return put(_key, value);
+        }
+
+        @Override public boolean equals (Object o)
+        {
+            if (o instanceof LongEntry<?>) {
+                LongEntry<?> that = (LongEntry<?>)o;
+                return (_key == that.getLongKey()) && ObjectUtil.equals(_value, that.getValue());
+
+            } else if (o instanceof Entry<?,?>) {
+                Entry<?,?> that = (Entry<?,?>)o;
+                return (getKey().equals(that.getKey())) &&
+                    ObjectUtil.equals(_value, that.getValue());
+
+            } else {
+                return false;
+            }
+        }
+
+        @Override public int hashCode ()
+        {
+            return (int)(_key ^ (_key >>> 32)) ^ ((_value == null) ? 0 : _value.hashCode());
+        }
+
+        @Override public String toString ()
+        {
+            return _key + "=" + StringUtil.toString(_value);
+        }
+
+        protected long _key;
+        protected V _value;
+    }
+
+    /** The keys of our mappings, zero marks an empty slot. */
+    protected transient long[] _keys;
+
+    /** The values of our mappings, parallel to {@link #_keys}. */
+    protected transient V[] _values;
+
+    /** The value mapped to the zero key, which cannot be stored in {@link #_keys}. */
+    protected transient V _zeroValue;
+
+    /** Whether or not we have a mapping for the zero key. */
+    protected transient boolean _hasZero;
+
+    /** The number of mappings beyond which we grow the table. */
+    protected transient int _threshold;
+
+    /** Incremented on each structural modification, used to detect concurrent changes. */
+    protected transient int _modCount;
+
+    protected int _size;
+    protected float _loadFactor;
+
+    /** A stateless view of our keys, so we re-use it. */
+    protected transient volatile LongSet _keySet = null;
+
+    /** Used by our iterators to indicate the zero key's mapping or no mapping at all. */
+    protected static final int ZERO = -1, NONE = -2;
+
+    /** Change this if the fields or inheritance hierarchy ever changes. */
+    private static final long serialVersionUID = 1;
+}
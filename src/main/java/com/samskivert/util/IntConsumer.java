@@ -0,0 +1,18 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+/**
+ * An operation that is applied to each int in a collection by its <code>forEachInt</code> method,
+ * which avoids allocating an {@link Interator} and boxing the values.
+ */
+public interface IntConsumer
+{
+    /**
+     * Called once for each int in the collection.
+     */
+    public void accept (int value);
+}
@@ -11,6 +11,7 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -20,6 +21,10 @@ import java.util.Set;
  * An int int map is like an int map, but with integers as values as well as keys. Be careful:
  * {@link #get} and {@link #remove} return -1 to indicate that no previous mapping existed. Use
  * {@link #getOrElse} and {@link #removeOrElse} to use a different "default" value.
+ *
+ * <p> The keys and values are stored in parallel int arrays using open addressing with linear
+ * probing, so no object is allocated per mapping and iterating over the keys or values allocates
+ * nothing per element.
  */
 public class IntIntMap
     implements Serializable
@@ -39,12 +44,21 @@ public class IntIntMap
     /**
      * The default load factor.
      */
-    public final static float DEFAULT_LOAD_FACTOR = 1.75f;
+    public final static float DEFAULT_LOAD_FACTOR = 0.75f;
 
+    /**
+     * Creates a map with the specified initial number of buckets and load factor. Load factors of
+     * one or more (which were meaningful when this map chained its entries) are replaced by the
+     * default.
+     */
     public IntIntMap (int buckets, float loadFactor)
     {
-        _buckets = new Record[buckets];
-        _loadFactor = loadFactor;
+        _loadFactor = (loadFactor > 0 && loadFactor < 1) ? loadFactor : DEFAULT_LOAD_FACTOR;
+        int capacity = DEFAULT_BUCKETS;
+        while (capacity < buckets) {
+            capacity <<= 1;
+        }
+        createBuckets(capacity);
     }
 
     public IntIntMap (int buckets)
@@ -75,34 +89,12 @@ public class IntIntMap
      */
     public void put (int key, int value)
     {
-        _modCount++;
-
-        // check to see if we've passed our load factor, if so: resize
-        ensureCapacity(_size + 1);
-
-        int index = Math.abs(key)%_buckets.length;
-        Record rec = _buckets[index];
-
-        // either we start a new chain
-        if (rec == null) {
-            _buckets[index] = new Record(key, value);
-            _size++; // we're bigger
-            return;
-        }
-
-        // or we replace an element in an existing chain
-        Record prev = rec;
-        for (; rec != null; rec = rec.next) {
-            if (rec.key == key) {
-                rec.value = value; // we're not bigger
-                return;
-            }
-            prev = rec;
+        int idx = insertionIndex(key);
+        if (idx == ZERO) {
+            _zeroValue = value;
+        } else {
+            _values[idx] = value;
         }
-
-        // or we append it to this chain
-        prev.next = new Record(key, value);
-        _size++; // we're bigger
     }
 
     /**
@@ -119,8 +111,19 @@ public class IntIntMap
      */
     public int getOrElse (int key, int defval)
     {
-        Record rec = locateRecord(key);
-        return (rec == null) ? defval : rec.value;
+        if (key == 0) {
+            return _hasZero ? _zeroValue : defval;
+        }
+        int[] keys = _keys;
+        int mask = keys.length - 1;
+        for (int idx = keyToIndex(key); ; idx = (idx + 1) & mask) {
+            int ikey = keys[idx];
+            if (ikey == key) {
+                return _values[idx];
+            } else if (ikey == 0) {
+                return defval;
+            }
+        }
     }
 
     /**
@@ -132,12 +135,12 @@ public class IntIntMap
      */
     public int increment (int key, int amount)
     {
-        Record rec = locateRecord(key);
-        if (rec == null) {
-            put(key, amount);
-            return amount;
+        // a newly inserted mapping has a value of zero
+        int idx = insertionIndex(key);
+        if (idx == ZERO) {
+            return (_zeroValue += amount);
         } else {
-            return (rec.value += amount);
+            return (_values[idx] += amount);
         }
     }
 
@@ -149,7 +152,7 @@ public class IntIntMap
     @Deprecated
     public boolean contains (int key)
     {
-        return (null != locateRecord(key));
+        return containsKey(key);
     }
 
     /**
@@ -157,7 +160,7 @@ public class IntIntMap
      */
     public boolean containsKey (int key)
     {
-        return (null != locateRecord(key));
+        return (key == 0) ? _hasZero : (indexOf(key) >= 0);
     }
 
     /**
@@ -178,7 +181,6 @@ public class IntIntMap
      */
     public int removeOrElse (int key, int defval)
     {
-        _modCount++;
         int removed = removeImpl(key, defval);
         checkShrink();
         return removed;
@@ -190,12 +192,8 @@ public class IntIntMap
     public void clear ()
     {
         _modCount++;
-
-        // abandon all of our hash chains (the joy of garbage collection)
-        for (int i = 0; i < _buckets.length; i++) {
-            _buckets[i] = null;
-        }
-        // zero out our size
+        Arrays.fill(_keys, 0);
+        _hasZero = false;
         _size = 0;
     }
 
@@ -205,27 +203,73 @@ public class IntIntMap
      */
     public void ensureCapacity (int minCapacity)
     {
-        int size = _buckets.length;
-        while (minCapacity > (int) (size * _loadFactor)) {
-            size *= 2;
-        }
-        if (size != _buckets.length) {
+        int size = capacityFor(minCapacity, _loadFactor);
+        if (size > _keys.length) {
             resizeBuckets(size);
         }
     }
 
     /**
-     * Internal method to locate the record for the specified key.
+     * Turns the specified key into an index.
      */
-    protected Record locateRecord (int key)
+    protected final int keyToIndex (int key)
     {
-        int index = Math.abs(key)%_buckets.length;
-        for (Record rec = _buckets[index]; rec != null; rec = rec.next) {
-            if (rec.key == key) {
-                return rec;
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (_keys.length - 1);
+    }
+
+    /**
+     * Returns the slot that holds the specified (non-zero) key, or -1 if it is not in the table.
+     */
+    protected int indexOf (int key)
+    {
+        int[] keys = _keys;
+        int mask = keys.length - 1;
+        for (int idx = keyToIndex(key); ; idx = (idx + 1) & mask) {
+            int ikey = keys[idx];
+            if (ikey == key) {
+                return idx;
+            } else if (ikey == 0) {
+                return -1;
             }
         }
-        return null;
+    }
+
+    /**
+     * Returns the slot that holds the specified key (or {@link #ZERO} for the zero key), adding
+     * a mapping to zero if there is no mapping for the key.
+     */
+    protected int insertionIndex (int key)
+    {
+        if (key == 0) {
+            if (!_hasZero) {
+                _hasZero = true;
+                _zeroValue = 0;
+                _size++;
+                _modCount++;
+            }
+            return ZERO;
+        }
+
+        int[] keys = _keys;
+        int mask = keys.length - 1;
+        int idx = keyToIndex(key);
+        for (int ikey; (ikey = keys[idx]) != 0; idx = (idx + 1) & mask) {
+            if (ikey == key) {
+                return idx;
+            }
+        }
+
+        // grow first if need be so that the slot we return remains valid
+        if (_size + 1 > _threshold) {
+            resizeBuckets(_keys.length * 2);
+            return insertionIndex(key);
+        }
+        keys[idx] = key;
+        _values[idx] = 0;
+        _size++;
+        _modCount++;
+        return idx;
     }
 
     /**
@@ -233,24 +277,51 @@ public class IntIntMap
      */
     protected int removeImpl (int key, int defval)
     {
-        int index = Math.abs(key)%_buckets.length;
-        Record prev = null;
-
-        // go through the chain looking for a match
-        for (Record rec = _buckets[index]; rec != null; rec = rec.next) {
-            if (rec.key == key) {
-                if (prev == null) {
-                    _buckets[index] = rec.next;
-                } else {
-                    prev.next = rec.next;
-                }
-                _size--;
-                return rec.value;
+        if (key == 0) {
+            if (!_hasZero) {
+                return defval;
             }
-            prev = rec;
+            _hasZero = false;
+            _size--;
+            _modCount++;
+            return _zeroValue;
+        }
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return defval; // not found
         }
+        int ovalue = _values[idx];
+        removeAt(idx);
+        return ovalue;
+    }
 
-        return defval; // not found
+    /**
+     * Removes the mapping in the specified slot, shifting any following mappings that would no
+     * longer be found back into the vacated slot. Does not shrink the table, so that our
+     * iterators may call this.
+     */
+    protected void removeAt (int idx)
+    {
+        int[] keys = _keys, values = _values;
+        int mask = keys.length - 1;
+        for (int last = idx; ; ) {
+            idx = (idx + 1) & mask;
+            int ikey = keys[idx];
+            if (ikey == 0) {
+                keys[last] = 0;
+                break;
+            }
+            // a key may move into the vacated slot if that slot lies (cyclically) between the key's
+            // home slot and its current slot
+            int home = keyToIndex(ikey);
+            if (last <= idx ? (home <= last || home > idx) : (home <= last && home > idx)) {
+                keys[last] = ikey;
+                values[last] = values[idx];
+                last = idx;
+            }
+        }
+        _size--;
+        _modCount++;
     }
 
     /**
@@ -258,46 +329,73 @@ public class IntIntMap
      */
     protected void checkShrink ()
     {
-        if ((_buckets.length > DEFAULT_BUCKETS) &&
-                (_size < (int) (_buckets.length * _loadFactor * .125))) {
-            resizeBuckets(Math.max(DEFAULT_BUCKETS, _buckets.length >> 1));
+        if ((_keys.length > DEFAULT_BUCKETS) &&
+                (_size < (int) (_keys.length * _loadFactor * .125))) {
+            resizeBuckets(Math.max(DEFAULT_BUCKETS, _keys.length >> 1));
         }
     }
 
     /**
      * Resize the hashtable.
      *
-     * @param newsize The new number of buckets to allocate.
+     * @param newsize The new number of buckets to allocate, which must be a power of two.
      */
     protected void resizeBuckets (int newsize)
     {
-        Record[] oldbuckets = _buckets;
-        _buckets = new Record[newsize];
-
-        // we shuffle the records around without allocating new ones
-        int index = oldbuckets.length;
-        while (index-- > 0) {
-            Record oldrec = oldbuckets[index];
-            while (oldrec != null) {
-                Record newrec = oldrec;
-                oldrec = oldrec.next;
-
-                // always put the newrec at the start of a chain
-                int newdex = Math.abs(newrec.key)%_buckets.length;
-                newrec.next = _buckets[newdex];
-                _buckets[newdex] = newrec;
+        int[] okeys = _keys, ovalues = _values;
+        createBuckets(newsize);
+
+        int[] keys = _keys;
+        int mask = newsize - 1;
+        for (int ii = 0; ii < okeys.length; ii++) {
+            int key = okeys[ii];
+            if (key != 0) {
+                int idx = keyToIndex(key);
+                while (keys[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = key;
+                _values[idx] = ovalues[ii];
             }
         }
     }
 
+    /**
+     * (Re)creates our key and value arrays with the specified size, which must be a power of two.
+     */
+    protected void createBuckets (int size)
+    {
+        _keys = new int[size];
+        _values = new int[size];
+        // always leave at least one empty slot so that probes terminate
+        _threshold = Math.min((int)(size * _loadFactor), size - 1);
+    }
+
+    /**
+     * Returns the (power of two) number of buckets needed to hold the specified number of
+     * mappings at the specified load factor.
+     */
+    protected static int capacityFor (int mappings, float loadFactor)
+    {
+        int needed = (int)Math.ceil(mappings / loadFactor);
+        int capacity = DEFAULT_BUCKETS;
+        while (capacity < needed || capacity <= mappings) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
     public Interator keys ()
     {
-        return new KeyValueInterator(true, new IntEntryIterator());
+        return new KeyValueInterator(true);
     }
 
     public IntSet keySet ()
     {
-        return new AbstractIntSet() {
+        if (_keySet != null) {
+            return _keySet;
+        }
+        return _keySet = new AbstractIntSet() {
             public Interator interator () {
                 return IntIntMap.this.keys();
             }
@@ -319,12 +417,24 @@ public class IntIntMap
                 IntIntMap.this.remove(value);
                 return true;
             }
+
+            @Override public int[] toIntArray () {
+                return getKeys();
+            }
+
+            @Override public int[] toIntArray (int[] reuse) {
+                return getKeys(reuse);
+            }
+
+            @Override public void forEachInt (IntConsumer op) {
+                forEachKey(op);
+            }
         };
     }
 
     public Interator values ()
     {
-        return new KeyValueInterator(false, new IntEntryIterator());
+        return new KeyValueInterator(false);
     }
 
     /**
@@ -332,7 +442,16 @@ public class IntIntMap
      */
     public int[] getKeys ()
     {
-        return toIntArray(true);
+        return toIntArray(true, null);
+    }
+
+    /**
+     * Get an array of the unique keys in this map, filling the supplied array if it is large
+     * enough to hold them. Any slots of the array beyond {@link #size} are left unchanged.
+     */
+    public int[] getKeys (int[] reuse)
+    {
+        return toIntArray(true, reuse);
     }
 
     /**
@@ -341,7 +460,57 @@ public class IntIntMap
      */
     public int[] getValues ()
     {
-        return toIntArray(false);
+        return toIntArray(false, null);
+    }
+
+    /**
+     * Get an array of the values that may be in this map, filling the supplied array if it is
+     * large enough to hold them. Any slots of the array beyond {@link #size} are left unchanged.
+     */
+    public int[] getValues (int[] reuse)
+    {
+        return toIntArray(false, reuse);
+    }
+
+    /**
+     * Applies the supplied operation to every mapping in this map, without allocating an
+     * iterator or any entries.
+     *
+     * @exception ConcurrentModificationException if the operation modifies the map.
+     */
+    public void forEachEntry (IntIntConsumer op)
+    {
+        int mods = _modCount;
+        if (_hasZero) {
+            op.accept(0, _zeroValue);
+        }
+        int[] keys = _keys, values = _values;
+        for (int ii = 0; ii < keys.length; ii++) {
+            if (keys[ii] != 0) {
+                op.accept(keys[ii], values[ii]);
+            }
+        }
+        checkMods(mods);
+    }
+
+    /**
+     * Applies the supplied operation to every key in this map, without allocating an iterator.
+     *
+     * @exception ConcurrentModificationException if the operation modifies the map.
+     */
+    public void forEachKey (IntConsumer op)
+    {
+        forEach(true, op);
+    }
+
+    /**
+     * Applies the supplied operation to every value in this map, without allocating an iterator.
+     *
+     * @exception ConcurrentModificationException if the operation modifies the map.
+     */
+    public void forEachValue (IntConsumer op)
+    {
+        forEach(false, op);
     }
 
     @Override
@@ -358,20 +527,43 @@ public class IntIntMap
         return buf.append("]").toString();
     }
 
-    protected int[] toIntArray (boolean keys)
+    protected int[] toIntArray (boolean keys, int[] reuse)
     {
-        int[] ret = new int[_size];
-
+        int[] ret = (reuse != null && reuse.length >= _size) ? reuse : new int[_size];
         int dex = 0;
-        for (Record r : _buckets) {
-            while (r != null) {
-                ret[dex++] = keys ? r.key : r.value;
-                r = r.next;
+        if (_hasZero) {
+            ret[dex++] = keys ? 0 : _zeroValue;
+        }
+        for (int ii = 0; ii < _keys.length; ii++) {
+            if (_keys[ii] != 0) {
+                ret[dex++] = keys ? _keys[ii] : _values[ii];
             }
         }
         return ret;
     }
 
+    protected void forEach (boolean keys, IntConsumer op)
+    {
+        int mods = _modCount;
+        if (_hasZero) {
+            op.accept(keys ? 0 : _zeroValue);
+        }
+        int[] ikeys = _keys, values = _values;
+        for (int ii = 0; ii < ikeys.length; ii++) {
+            if (ikeys[ii] != 0) {
+                op.accept(keys ? ikeys[ii] : values[ii]);
+            }
+        }
+        checkMods(mods);
+    }
+
+    protected void checkMods (int expectedMods)
+    {
+        if (_modCount != expectedMods) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
     /**
      * Get a set of all the entries in this map.
      */
@@ -395,7 +587,7 @@ public class IntIntMap
         throws IOException
     {
         // write out number of buckets
-        s.writeInt(_buckets.length);
+        s.writeInt(_keys.length);
         s.writeFloat(_loadFactor);
 
         // write out size (number of mappings)
@@ -415,12 +607,15 @@ public class IntIntMap
     private void readObject (ObjectInputStream s)
          throws IOException, ClassNotFoundException
     {
-        // read in number of buckets and allocate the bucket array
-        _buckets = new Record[s.readInt()];
-        _loadFactor = s.readFloat();
+        // skip the number of buckets, we size our table based on the number of mappings; streams
+        // written when we chained our entries may have a load factor greater than one
+        s.readInt();
+        float loadFactor = s.readFloat();
+        _loadFactor = (loadFactor > 0 && loadFactor < 1) ? loadFactor : DEFAULT_LOAD_FACTOR;
 
         // read in size (number of mappings)
         int size = s.readInt();
+        createBuckets(capacityFor(size, _loadFactor));
 
         // read the keys and values
         for (int i=0; i<size; i++) {
@@ -428,31 +623,28 @@ public class IntIntMap
         }
     }
 
-    protected static class Record implements IntIntEntry
+    /** A mapping returned by our entry iterator. */
+    protected class Entry implements IntIntEntry
     {
-        public Record next;
-        public int key;
-        public int value;
-
-        public Record (int key, int value) {
-            this.key = key;
-            this.value = value;
+        public Entry (int key, int value) {
+            _key = key;
+            _value = value;
         }
 
         public Integer getKey () {
-            return Integer.valueOf(key);
+            return Integer.valueOf(_key);
         }
 
         public int getIntKey () {
-            return key;
+            return _key;
         }
 
         public Integer getValue () {
-            return Integer.valueOf(value);
+            return Integer.valueOf(_value);
         }
 
         public int getIntValue () {
-            return value;
+            return _value;
         }
 
         public Integer setValue (Integer v) {
@@ -460,132 +652,152 @@ public class IntIntMap
         }
 
         public int setIntValue (int v) {
-            int oldVal = value;
-            value = v;
+            // the key is mapped, so this does not change the structure of the table
+            int oldVal = _value;
+            put(_key, _value = v);
             return oldVal;
         }
 
         @Override public boolean equals (Object o) {
             if (o instanceof IntIntEntry) {
                 IntIntEntry that = (IntIntEntry) o;
-                return (this.key == that.getIntKey()) &&
-                    (this.value == that.getIntValue());
+                return (_key == that.getIntKey()) && (_value == that.getIntValue());
             }
             return false;
         }
 
         @Override public int hashCode () {
-            return key;
+            return _key;
         }
+
+        protected int _key, _value;
     }
 
-    class IntEntryIterator implements Iterator<IntIntEntry>
+    /**
+     * Iterates over the slots that contain mappings. Iteration begins just after an empty slot
+     * and proceeds forward; removing a mapping only ever shifts not yet visited mappings back
+     * into the vacated slot, so we revisit that slot after a removal and see every mapping
+     * exactly once.
+     */
+    protected abstract class SlotIterator
     {
-        public IntEntryIterator () {
-            this._modCount = IntIntMap.this._modCount;
-            _index = _buckets.length;
+        public SlotIterator () {
+            _remaining = _size;
+            _zeroPending = _hasZero;
+            while (_keys[_idx++] != 0); // there is always at least one empty slot
         }
 
         public boolean hasNext () {
             checkMods();
-            // if we're pointing to an entry, we've got more entries
-            if (_next != null) {
-                return true;
-            }
-            // search backward through the buckets looking for the next non-empty hash chain
-            while (_index-- > 0) {
-                if ((_next = _buckets[_index]) != null) {
-                    return true;
-                }
-            }
-            // found no non-empty hash chains, we're done
-            return false;
+            return _remaining > 0;
         }
 
-        public IntIntEntry next () {
-            // if we're not pointing to an entry, search for the next non-empty hash chain
-            if (hasNext()) {
-                _prev = _next;
-                _next = _next.next;
-                return _prev;
+        public void remove () {
+            checkMods();
+            if (_last == NONE) {
+                throw new IllegalStateException("IntIntMapIterator");
+            }
+            if (_last == ZERO) {
+                removeImpl(0, -1);
             } else {
-                throw new NoSuchElementException("IntIntMapIterator");
+                removeAt(_last);
+                _idx--; // revisit the slot into which a later mapping may have shifted
             }
+            _last = NONE;
+            _expectedMods = _modCount;
         }
 
-        public void remove () {
+        /** Returns the slot of the next mapping, or {@link #ZERO} for the zero key. */
+        protected int nextSlot () {
             checkMods();
-            if (_prev == null) {
-                throw new IllegalStateException("IntIntMapIterator");
+            if (_remaining <= 0) {
+                throw new NoSuchElementException("IntIntMapIterator");
+            }
+            _remaining--;
+            if (_zeroPending) {
+                _zeroPending = false;
+                return (_last = ZERO);
             }
-            // otherwise remove the hard way
-            removeImpl(_prev.key, -1);
-            _prev = null;
+            int[] keys = _keys;
+            int mask = keys.length - 1;
+            while (keys[_idx & mask] == 0) {
+                _idx++;
+            }
+            return (_last = (_idx++ & mask));
+        }
+
+        protected int keyAt (int slot) {
+            return (slot == ZERO) ? 0 : _keys[slot];
+        }
+
+        protected int valueAt (int slot) {
+            return (slot == ZERO) ? _zeroValue : _values[slot];
         }
 
         protected void checkMods () {
-            if (this._modCount != IntIntMap.this._modCount) {
+            if (_modCount != _expectedMods) {
                 throw new ConcurrentModificationException("IntIntMapIterator");
             }
         }
 
-        private int _index;
-        private Record _next, _prev;
-        private int _modCount;
+        protected int _idx, _remaining, _last = NONE;
+        protected boolean _zeroPending;
+        protected int _expectedMods = _modCount;
     }
 
-    protected static class KeyValueInterator extends AbstractInterator
+    protected class IntEntryIterator extends SlotIterator
+        implements Iterator<IntIntEntry>
     {
-        public KeyValueInterator (boolean keys, IntEntryIterator eiter) {
-            _keys = keys;
-            _eiter = eiter;
+        public IntIntEntry next () {
+            int slot = nextSlot();
+            return new Entry(keyAt(slot), valueAt(slot));
         }
+    }
 
-        public int nextInt () {
-            IntIntEntry entry = _eiter.next();
-            return _keys ? entry.getIntKey() : entry.getIntValue();
+    /** Iterates over our keys or values without allocating. */
+    protected class KeyValueInterator extends SlotIterator
+        implements Interator
+    {
+        public KeyValueInterator (boolean keys) {
+            _wantKeys = keys;
         }
 
-        public boolean hasNext () {
-            return _eiter.hasNext();
+        public int nextInt () {
+            int slot = nextSlot();
+            return _wantKeys ? keyAt(slot) : valueAt(slot);
         }
 
-        @Override public void remove () {
-            _eiter.remove();
+        public Integer next () {
+            return Integer.valueOf(nextInt());
         }
 
-        protected boolean _keys;
-        protected IntEntryIterator _eiter;
+        protected boolean _wantKeys;
     }
 
-//     public static void main (String[] args)
-//     {
-//         IntIntMap table = new IntIntMap();
+    /** The keys of our mappings, zero marks an empty slot. */
+    protected transient int[] _keys;
+
+    /** The values of our mappings, parallel to {@link #_keys}. */
+    protected transient int[] _values;
 
-//         System.out.print("Inserting: ");
-//         for (int i = 10; i < 100; i++) {
-//             table.put(i, i);
-//             System.out.print("(" + i + "," + i + ")");
-//         }
-//         System.out.println("");
+    /** The value mapped to the zero key, which cannot be stored in {@link #_keys}. */
+    protected transient int _zeroValue;
 
-//         System.out.print("Looking up: ");
-//         for (int i = 10; i < 100; i++) {
-//             System.out.print("(" + i + "," + table.get(i) + ")");
-//         }
-//         System.out.println("");
+    /** Whether or not we have a mapping for the zero key. */
+    protected transient boolean _hasZero;
 
-//         System.out.print("Removing: ");
-//         for (int i = 10; i < 100; i++) {
-//             System.out.print("(" + i + "," + table.remove(i) + ")");
-//         }
-//         System.out.println("");
-//     }
+    /** The number of mappings beyond which we grow the table. */
+    protected transient int _threshold;
+
+    /** A view of our keys, created on demand. */
+    protected transient IntSet _keySet;
 
-    private Record[] _buckets;
     private int _size;
     protected float _loadFactor;
-    protected int _modCount = 0;
+    protected transient int _modCount = 0;
+
+    /** Used by our iterators to indicate the zero key's mapping or no mapping at all. */
+    protected static final int ZERO = -1, NONE = -2;
 
     /** Change this if the fields or inheritance hierarchy ever changes. */
     private static final long serialVersionUID = 1;
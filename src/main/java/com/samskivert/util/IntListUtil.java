@@ -5,7 +5,6 @@
 
 package com.samskivert.util;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -43,7 +42,9 @@ import java.util.List;
  * assumed to be an emty slot.
  *
  * <p> See the documentation for the individual functions for their exact
- * behavior.
+ * behavior. Code that appends to a list in a loop should generally use an
+ * {@link IntList} instead, which grows its array geometrically and needs
+ * no sentinel values.
  */
 public class IntListUtil
 {
@@ -492,18 +493,12 @@ public class IntListUtil
     }
 
     /**
-     * Converts an array of primitives to a list of Integers.
+     * Converts an array of primitives to a list of Integers. The list is an {@link IntList}, which
+     * stores the values without boxing them.
      */
     public static List<Integer> asList (int[] list)
     {
-        if (list == null) {
-            return null;
-        }
-        List<Integer> ilist = new ArrayList<Integer>(list.length);
-        for (int ii = 0; ii < list.length; ii++) {
-            ilist.add(list[ii]);
-        }
-        return ilist;
+        return (list == null) ? null : new IntList(list);
     }
 
     /**
@@ -529,6 +524,9 @@ public class IntListUtil
         if (list == null) {
             return null;
         }
+        if (list instanceof IntList) {
+            return ((IntList)list).toIntArray();
+        }
         int[] unboxed = new int[list.size()];
         int ii = 0;
         for (Integer value : list) {
@@ -32,4 +32,24 @@ public class IntMaps
     {
         return new HashIntMap<V>();
     }
+
+    /**
+     * Applies the supplied operation to each mapping in the supplied map. The maps in this
+     * library do so without allocating an iterator or an entry for each mapping, others via their
+     * {@link IntMap#intEntrySet}. The map must not be modified by the operation.
+     */
+    public static <V> void forEachEntry (IntMap<V> map, IntObjectConsumer<? super V> op)
+    {
+        if (map instanceof HashIntMap<?>) {
+            ((HashIntMap<V>)map).forEachEntry(op);
+        } else if (map instanceof ConcurrentIntMap<?>) {
+            ((ConcurrentIntMap<V>)map).forEachEntry(op);
+        } else if (map instanceof Collections.SynchronizedIntMap<?>) {
+            ((Collections.SynchronizedIntMap<V>)map).forEachEntry(op);
+        } else {
+            for (IntMap.IntEntry<V> entry : map.intEntrySet()) {
+                op.accept(entry.getIntKey(), entry.getValue());
+            }
+        }
+    }
 }
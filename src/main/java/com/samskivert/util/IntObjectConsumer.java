@@ -0,0 +1,18 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+/**
+ * An operation that is applied to each mapping in an {@link IntMap} by its
+ * <code>forEachEntry</code> method, which avoids allocating an iterator, or an entry per mapping.
+ */
+public interface IntObjectConsumer<V>
+{
+    /**
+     * Called once for each mapping in the map.
+     */
+    public void accept (int key, V value);
+}
@@ -75,8 +75,24 @@ public class IntSets
     public static IntSet and (IntSet... sets)
     {
         checkNotNull(sets);
-        IntSet result = create();
         int len = sets.length;
+        if (len > 0 && allArrays(sets)) {
+            // intersect the sorted arrays directly, starting with the smallest
+            ArrayIntSet smallest = (ArrayIntSet)sets[0];
+            for (IntSet set : sets) {
+                if (set.size() < smallest.size()) {
+                    smallest = (ArrayIntSet)set;
+                }
+            }
+            ArrayIntSet result = smallest.clone();
+            for (IntSet set : sets) {
+                if (set != smallest) {
+                    result.retainAll(set);
+                }
+            }
+            return result;
+        }
+        IntSet result = create();
         if (len > 0) {
             OUTER:
             for (Interator it = sets[0].interator(); it.hasNext(); ) {
@@ -109,6 +125,7 @@ public class IntSets
     {
         checkNotNull(sets);
         IntSet result = create();
+        // our result is array-backed, so array-backed sets are merged into it wholesale
         for (IntSet set : sets) {
             result.addAll(set);
         }
@@ -130,9 +147,40 @@ public class IntSets
      */
     public static IntSet difference (IntSet set1, IntSet set2)
     {
+        if (set1 instanceof ArrayIntSet && set2 instanceof ArrayIntSet) {
+            ArrayIntSet result = ((ArrayIntSet)set1).clone();
+            result.removeAll(set2);
+            return result;
+        }
         return and(set1, notView(set2));
     }
 
+    /**
+     * Returns the number of ints that are contained in both of the specified sets, without
+     * creating a set to hold them.
+     */
+    public static int intersectionSize (IntSet set1, IntSet set2)
+    {
+        checkNotNull(set1);
+        checkNotNull(set2);
+        if (set1 instanceof ArrayIntSet && set2 instanceof ArrayIntSet) {
+            ArrayIntSet a1 = (ArrayIntSet)set1, a2 = (ArrayIntSet)set2;
+            return ArrayUtil.intersectionSize(a1._values, a1._size, a2._values, a2._size);
+        }
+        if (set1.size() > set2.size()) {
+            IntSet tmp = set1;
+            set1 = set2;
+            set2 = tmp;
+        }
+        int count = 0;
+        for (Interator it = set1.interator(); it.hasNext(); ) {
+            if (set2.contains(it.nextInt())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Returns an <b>immutable</b> view containing the ints contained in set1 but not in set2.
      * Set2 may also contain elements not present in set1, these are ignored.
@@ -142,6 +190,51 @@ public class IntSets
         return andView(set1, notView(set2));
     }
 
+    /**
+     * Returns an array containing all of the elements in the supplied set, reusing the supplied
+     * array if it is large enough. The elements are written to the start of the array, and any
+     * elements of the array beyond the first <code>set.size()</code> are left unchanged. Sets
+     * derived from {@link AbstractIntSet} fill the array directly, others via their interator.
+     *
+     * @param reuse the array to fill, or null.
+     *
+     * @return the supplied array, or a newly created array of exactly the size of the set if the
+     * supplied array was null or too small.
+     */
+    public static int[] toIntArray (IntSet set, int[] reuse)
+    {
+        if (set instanceof AbstractIntSet) {
+            return ((AbstractIntSet)set).toIntArray(reuse);
+        } else if (set instanceof Collections.SynchronizedIntSet) {
+            return ((Collections.SynchronizedIntSet)set).toIntArray(reuse);
+        }
+        int size = set.size();
+        int[] vals = (reuse != null && reuse.length >= size) ? reuse : new int[size];
+        int ii = 0;
+        for (Interator it = set.interator(); it.hasNext(); ) {
+            vals[ii++] = it.nextInt();
+        }
+        return vals;
+    }
+
+    /**
+     * Applies the supplied operation to each element of the supplied set, without boxing the
+     * elements. Sets derived from {@link AbstractIntSet} iterate internally, others via their
+     * interator. The set must not be modified by the operation.
+     */
+    public static void forEachInt (IntSet set, IntConsumer op)
+    {
+        if (set instanceof AbstractIntSet) {
+            ((AbstractIntSet)set).forEachInt(op);
+        } else if (set instanceof Collections.SynchronizedIntSet) {
+            ((Collections.SynchronizedIntSet)set).forEachInt(op);
+        } else {
+            for (Interator it = set.interator(); it.hasNext(); ) {
+                op.accept(it.nextInt());
+            }
+        }
+    }
+
     /**
      * Returns a <b>immutable</b> view of the underlying set.
      *
@@ -154,6 +247,20 @@ public class IntSets
         return new NotIntSetView(set);
     }
 
+    /**
+     * Returns true if all of the supplied sets are array-backed, and can thus be combined by
+     * merging their sorted arrays.
+     */
+    protected static boolean allArrays (IntSet[] sets)
+    {
+        for (IntSet set : sets) {
+            if (!(set instanceof ArrayIntSet)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Validate the specified argument.
      */
@@ -209,6 +316,7 @@ public class IntSets
         @Override public boolean contains (int value) { return false; }
         @Override public int size () { return 0; }
         @Override public boolean isEmpty () { return true; }
+        @Override public void forEachInt (IntConsumer op) {}
 
         public Interator interator () {
             return EMPTY_INTERATOR;
@@ -232,6 +340,9 @@ public class IntSets
         @Override public boolean contains (int value) { return _s.contains(value); }
         @Override public int size () { return _s.size(); }
         @Override public boolean isEmpty () { return _s.isEmpty(); }
+        @Override public int[] toIntArray () { return _s.toIntArray(); }
+        @Override public int[] toIntArray (int[] reuse) { return IntSets.toIntArray(_s, reuse); }
+        @Override public void forEachInt (IntConsumer op) { IntSets.forEachInt(_s, op); }
 
         public Interator interator () {
             return new AbstractInterator() {
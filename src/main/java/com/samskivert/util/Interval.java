@@ -6,8 +6,6 @@
 package com.samskivert.util;
 
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import static com.samskivert.util.UtilLog.log;
 
@@ -15,6 +13,11 @@ import static com.samskivert.util.UtilLog.log;
  * An interface for doing operations after some delay. Allows expiration to occur on a specific
  * thread, and guarantees that any queued expiration will not run if the Interval has since been
  * cancelled or rescheduled.
+ *
+ * <p> All intervals are scheduled on a shared {@link TimingWheel}, so scheduling and cancelling
+ * are constant time operations and intervals may expire up to {@link #TIMER_TICK} milliseconds
+ * after their scheduled time. The wheel is split into one shard by default, more can be requested
+ * via the <code>com.samskivert.util.Interval.shards</code> system property.
  */
 public abstract class Interval
 {
@@ -37,6 +40,9 @@ public abstract class Interval
         }
     };
 
+    /** The granularity (in milliseconds) of the timer on which intervals are scheduled. */
+    public static final long TIMER_TICK = 10L;
+
     /**
      * An interface for entities that create, and keep track of, intervals. The intended use case
      * is for repeating intervals to be created via a factory that tracks all such intervals, and
@@ -176,11 +182,11 @@ public abstract class Interval
      * RunQueue is shutdown when the interval expires, the interval will cancel itself and log a
      * warning message. </p>
      *
-     * @param fixedRate - if true, this interval schedules repeated expirations using
-     * {@link Timer#scheduleAtFixedRate(TimerTask, long, long)} ensuring that the number of
-     * expired calls will match the amount of time elapsed. If false, it uses
-     * {@link Timer#schedule(TimerTask, long, long)} which ensures that there will be close to
-     * <code>repeateDelay</code> milliseconds between expirations.
+     * @param fixedRate - if true, this interval schedules repeated expirations relative to the
+     * time at which the previous expiration was scheduled, ensuring that the number of expired
+     * calls will match the amount of time elapsed. If false, it schedules them relative to the
+     * time at which the previous expiration actually happened, which ensures that there will be
+     * close to <code>repeateDelay</code> milliseconds between expirations.
      *
      * @exception IllegalArgumentException if fixedRate is false and a RunQueue has been specified.
      * That doesn't make sense because the fixed delay cannot account for the time that the
@@ -194,16 +200,21 @@ public abstract class Interval
 
         // try twice to schedule the task- see comment inside the catch
         try {
-            scheduleTask(initialDelay, repeatDelay, fixedRate);
+            scheduleTask(task, initialDelay, repeatDelay, fixedRate);
 
         } catch (IllegalStateException ise) {
-            // Timer.schedule will only throw this if the TimerThead was shut down.
+            // if we were cancelled while scheduling, TimingWheel.schedule refuses the task, and
+            // that's just fine
+            if (task._cancelled) {
+                return;
+            }
+            // otherwise it only throws this if the wheel was shut down.
             // This may happen automatically in Applets, so we need to create a new
-            // Timer now. Note that in a multithreaded environment it may be possible
-            // to have more than one Timer after this happens. That would be slightly
+            // wheel now. Note that in a multithreaded environment it may be possible
+            // to have more than one wheel after this happens. That would be slightly
             // undesirable but should not break anything.
             _timer = createTimer();
-            scheduleTask(initialDelay, repeatDelay, fixedRate);
+            scheduleTask(task, initialDelay, repeatDelay, fixedRate);
         }
     }
 
@@ -221,16 +232,26 @@ public abstract class Interval
     }
 
     protected final void scheduleTask (long initialDelay, long repeatDelay, boolean fixedRate)
+    {
+        scheduleTask(_task, initialDelay, repeatDelay, fixedRate);
+    }
+
+    /**
+     * Schedules the supplied task, which we pass explicitly because a concurrent {@link #cancel}
+     * may clear {@link #_task} at any time.
+     */
+    protected final void scheduleTask (
+        IntervalTask task, long initialDelay, long repeatDelay, boolean fixedRate)
     {
         if (repeatDelay == 0L) {
-            _timer.schedule(_task, initialDelay);
+            _timer.schedule(task, initialDelay);
         } else if (fixedRate) {
-            _timer.scheduleAtFixedRate(_task, initialDelay, repeatDelay);
+            _timer.schedule(task, initialDelay, repeatDelay, true);
         } else if (_runQueue != RUN_DIRECT) {
             throw new IllegalArgumentException(
                 "Cannot schedule at a fixed delay when using a RunQueue.");
         } else {
-            _timer.schedule(_task, initialDelay, repeatDelay);
+            _timer.schedule(task, initialDelay, repeatDelay, false);
         }
     }
 
@@ -252,7 +273,7 @@ public abstract class Interval
             // 2) ThreadB calls schedule(), gets a handle on taskA, cancel()s, which sets _task to
             //    null, then sets up taskB, returns.
             // 3) ThreadA resumes, sets _task to null and re-cancels taskA.  taskB is now an active
-            //    TimerTask but is not referenced anywhere.  In case this is taskB, we cancel it so
+            //    task but is not referenced anywhere.  In case this is taskB, we cancel it so
             //    that it doesn't ineffectually expire repeatedly until the JVM exists.
             task.cancel();
         }
@@ -267,15 +288,16 @@ public abstract class Interval
                     "queue", _runQueue, "interval", this);
     }
 
-    protected static Timer createTimer ()
+    protected static TimingWheel createTimer ()
     {
-        return new Timer("samskivert Interval Timer", true);
+        return new TimingWheel("samskivert Interval Timer", TIMER_TICK, 512,
+                               ConfigUtil.getSystemProperty(TIMER_SHARDS_PROP, 1));
     }
 
     /**
      * The task that schedules actually runs the interval.
      */
-    protected static class IntervalTask extends TimerTask
+    protected static class IntervalTask extends TimingWheel.Task
     {
         public IntervalTask (Interval interval)
         {
@@ -286,7 +308,7 @@ public abstract class Interval
         @Override public boolean cancel ()
         {
             // remove the reference back to the interval, allowing the Interval itself
-            // to be gc'd even as this Task potentially sits on the Timer queue.
+            // to be gc'd even as this Task potentially sits on a RunQueue.
             _interval = null;
             return super.cancel();
         }
@@ -342,10 +364,10 @@ public abstract class Interval
         protected RunBuddy _runner;
 
         /** The interval this task is for. We have this reference back to our interval rather
-         * than just being a non-static inner class because when a TimerTask is cancelled
-         * it still sits on the Timer's queue until its execution time is reached. We want
-         * any references held by the interval to be collectable during this period, so our
-         * cancel removes the reference back to the Interval. */
+         * than just being a non-static inner class because a task that has expired may sit on
+         * a RunQueue (as our RunBuddy) after its interval is cancelled. We want any references
+         * held by the interval to be collectable during this period, so our cancel removes the
+         * reference back to the Interval. */
         protected Interval _interval;
 
         /** The class name of the interval (so that we can identify it after cancellation). */
@@ -357,9 +379,12 @@ public abstract class Interval
      * indicate that the interval should be executed directly on the Inteval timer thread. */
     protected RunQueue _runQueue;
 
-    /** The task that actually schedules our execution with the static Timer. */
+    /** The task that actually schedules our execution with the static timer. */
     protected volatile IntervalTask _task;
 
-    /** The daemon timer used to schedule all intervals. */
-    protected static Timer _timer = createTimer();
+    /** The timing wheel used to schedule all intervals. */
+    protected static TimingWheel _timer = createTimer();
+
+    /** The system property that configures the number of shards in our timing wheel. */
+    protected static final String TIMER_SHARDS_PROP = "com.samskivert.util.Interval.shards";
 }
@@ -5,8 +5,12 @@
 
 package com.samskivert.util;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 
 import static com.samskivert.util.UtilLog.log;
@@ -21,6 +25,10 @@ import static com.samskivert.util.UtilLog.log;
  * the main thread. For example, an interactive application might provide an invoker on which to
  * run database queries.
  *
+ * <p> An invoker normally runs on its own thread, but it may instead be started on a thread
+ * obtained from a thread factory via {@link #start(java.util.concurrent.ThreadFactory)}, for
+ * example a virtual thread from {@link ThreadFactories#virtual}.
+ *
  * <p> Bear in mind that each invoker instance runs units on its own thread and care must be taken
  * to ensure that code running on separate invokers properly synchronizes access to shared
  * information. Where possible, complete isolation of the services provided by a particular invoker
@@ -39,6 +47,12 @@ public class Invoker extends LoopingThread
         /** The time at which this unit was placed on the queue. */
         public long queueStamp;
 
+        /** The value of {@link System#nanoTime} when this unit was placed on the queue. */
+        public long queueNanos;
+
+        /** The number of units that were waiting on the queue when this unit was posted. */
+        public int queueDepth;
+
         /** The default constructor. */
         public Unit ()
         {
@@ -100,6 +114,30 @@ public class Invoker extends LoopingThread
             return null;
         }
 
+        /**
+         * Returns the key that determines the order in which this unit is run relative to other
+         * units on an invoker that runs units on multiple threads (see {@link PooledInvoker}).
+         * Units with equal keys are invoked one at a time in the order in which they were posted,
+         * units with different keys may be invoked in parallel. The default, null, places no
+         * ordering constraints on this unit. A standard invoker runs all units in order
+         * regardless of their key.
+         */
+        public Object getOrderingKey ()
+        {
+            return null;
+        }
+
+        /**
+         * Returns the lane in which this unit waits to be invoked on an invoker that has been
+         * configured with lanes (see {@link Invoker#setLanes}). Lanes are numbered from zero and
+         * the default is lane zero. Units posted to an invoker without lanes all wait in a single
+         * queue regardless of their lane.
+         */
+        public int getLane ()
+        {
+            return 0;
+        }
+
         /** Returns the name of this invoker. */
         @Override public String toString ()
         {
@@ -109,6 +147,207 @@ public class Invoker extends LoopingThread
         protected String _name;
     }
 
+    /**
+     * An interface that may be implemented by units whose work can be combined with that of other
+     * units. When an invoker is in batching mode (see {@link #setBatching}), every unit that is
+     * drained in the same pass is offered to each earlier mergeable unit in that pass.
+     */
+    public static interface Mergeable
+    {
+        /**
+         * Called on the invoker thread when this unit is waiting to be invoked and another unit
+         * was posted after it.
+         *
+         * @return true if the other unit's work was merged into this unit and the other unit
+         * does not need to be invoked.
+         */
+        boolean merge (Unit other);
+    }
+
+    /**
+     * The times that units of a particular class (or all units, or the units in a particular
+     * lane) spent waiting on the queue and executing, and the depth of the queue when they were
+     * posted. Times are in microseconds.
+     */
+    public static class UnitProfile
+    {
+        /** Returns the time units spent waiting on the queue before being invoked. */
+        public LatencyHistogram getWaitTimes ()
+        {
+            return _waits;
+        }
+
+        /** Returns the time units spent executing (including the posting of their results). */
+        public LatencyHistogram getRunTimes ()
+        {
+            return _runs;
+        }
+
+        /** Returns the number of units that were already waiting when each unit was posted. */
+        public LatencyHistogram getQueueDepths ()
+        {
+            return _depths;
+        }
+
+        /** Records the timings for a single unit. */
+        public void record (long waited, long ran, int depth)
+        {
+            _waits.record(waited);
+            _runs.record(ran);
+            _depths.record(depth);
+        }
+
+        /** Returns a copy of this profile, optionally resetting this profile. */
+        public UnitProfile snapshot (boolean reset)
+        {
+            UnitProfile snap = new UnitProfile();
+            snap._waits = reset ? _waits.snapshotAndReset() : _waits.snapshot();
+            snap._runs = reset ? _runs.snapshotAndReset() : _runs.snapshot();
+            snap._depths = reset ? _depths.snapshotAndReset() : _depths.snapshot();
+            return snap;
+        }
+
+        @Override public String toString ()
+        {
+            return "[wait=" + _waits + ", run=" + _runs + ", depth=" + _depths + "]";
+        }
+
+        // a profile is kept for every unit class (and per worker in a pooled invoker), so only
+        // the run times are recorded with full precision; coarse waits and depths suffice
+        protected LatencyHistogram _waits = new LatencyHistogram(WAIT_PRECISION_BITS);
+        protected LatencyHistogram _runs = new LatencyHistogram();
+        protected LatencyHistogram _depths = new LatencyHistogram(DEPTH_PRECISION_BITS);
+
+        /** The precision with which wait times are recorded, roughly 12% error. */
+        protected static final int WAIT_PRECISION_BITS = 3;
+
+        /** The precision with which queue depths are recorded, roughly 25% error. */
+        protected static final int DEPTH_PRECISION_BITS = 2;
+    }
+
+    /**
+     * A stack trace captured from a unit that was still running after the slow unit threshold
+     * elapsed. See {@link #setSlowUnitSampling}.
+     */
+    public static class SlowUnitSample
+    {
+        /** The class of the unit. */
+        public final Class<?> unitClass;
+
+        /** The unit's description (its {@link Unit#toString}). */
+        public final String unit;
+
+        /** The name of the thread running the unit. */
+        public final String thread;
+
+        /** The time at which the sample was taken. */
+        public final long when;
+
+        /** The number of milliseconds the unit had been running when the sample was taken. */
+        public final long elapsed;
+
+        /** The stack of the thread running the unit. */
+        public final StackTraceElement[] stack;
+
+        public SlowUnitSample (Unit unit, Thread thread, long elapsed, StackTraceElement[] stack)
+        {
+            this.unitClass = unit.getClass();
+            this.unit = String.valueOf(unit);
+            this.thread = thread.getName();
+            this.when = System.currentTimeMillis();
+            this.elapsed = elapsed;
+            this.stack = stack;
+        }
+
+        @Override public String toString ()
+        {
+            StringBuilder buf = new StringBuilder();
+            buf.append(unit).append(" (").append(unitClass.getName()).append(") running ");
+            buf.append(elapsed).append("ms on ").append(thread);
+            for (StackTraceElement elem : stack) {
+                buf.append("\n  at ").append(elem);
+            }
+            return buf.toString();
+        }
+    }
+
+    /**
+     * A snapshot of an invoker's state and of the unit profiles and slow unit samples collected
+     * since the last time they were reset. See {@link #getSnapshot}.
+     */
+    public static class Snapshot
+    {
+        /** The name of the invoker. */
+        public String name;
+
+        /** The time at which this snapshot was taken. */
+        public long when;
+
+        /** The number of milliseconds since the profiles were last reset (or the invoker was
+         * created). */
+        public long elapsed;
+
+        /** The number of threads on which the invoker runs units. */
+        public int threads;
+
+        /** The number of units waiting on the queue. */
+        public int pendingUnits;
+
+        /** The largest number of units that have waited on the queue at once. */
+        public int queueHighWater;
+
+        /** The unit profiles, keyed as described in {@link #getUnitProfiles}. */
+        public Map<Object,UnitProfile> profiles;
+
+        /** The slow unit samples, oldest first. */
+        public List<SlowUnitSample> slowUnits;
+
+        /**
+         * Returns the fraction of the invoker's thread time (from zero to one) spent executing
+         * units over the period covered by this snapshot. An invoker that is near one and whose
+         * units spend much longer waiting than running is saturated; one that is well below one
+         * but has long wait times is being held up by a few slow units.
+         */
+        public float getUtilization ()
+        {
+            UnitProfile all = profiles.get(ALL_UNITS);
+            if (all == null || elapsed <= 0) {
+                return 0f;
+            }
+            return all.getRunTimes().getTotal() / (elapsed * 1000f * threads);
+        }
+
+        @Override public String toString ()
+        {
+            StringBuilder buf = new StringBuilder();
+            buf.append(name).append(": ").append(elapsed).append("ms, threads=").append(threads);
+            buf.append(", pending=").append(pendingUnits);
+            buf.append(", highWater=").append(queueHighWater);
+            buf.append(", utilization=").append(Math.round(getUtilization() * 100)).append("%");
+            for (Map.Entry<Object,UnitProfile> entry : profiles.entrySet()) {
+                Object key = entry.getKey();
+                buf.append("\n").append((key instanceof Class<?>) ?
+                                        ((Class<?>)key).getName() : key);
+                buf.append(" ").append(entry.getValue());
+            }
+            for (SlowUnitSample sample : slowUnits) {
+                buf.append("\nSlow unit: ").append(sample);
+            }
+            return buf.toString();
+        }
+    }
+
+    /** The key under which the profile of all units is recorded. */
+    public static final String ALL_UNITS = "all_units";
+
+    /** The key under which the time units spent waiting on the queue was formerly recorded.
+     * @deprecated see {@link #recordMetrics(Object,long)}. */
+    @Deprecated
+    public static final String QUEUE_WAIT_TIME = "queue_wait_time";
+
+    /** The maximum number of slow unit samples retained. */
+    public static final int MAX_SLOW_SAMPLES = 32;
+
     /**
      * Configures the default duration (in milliseconds) for an invoker unit to be reported as
      * "long". Long units will result in a warning message written to the log.
@@ -123,9 +362,20 @@ public class Invoker extends LoopingThread
      * Creates an invoker that will post results to the supplied result receiver.
      */
     public Invoker (String name, Executor resultReceiver)
+    {
+        this(name, resultReceiver, new Queue<Unit>());
+    }
+
+    /**
+     * Creates an invoker that will post results to the supplied result receiver and will queue
+     * its units on the supplied queue. Supply a {@link LockFreeQueue} to allow many threads to
+     * post units without contending for a lock.
+     */
+    public Invoker (String name, Executor resultReceiver, Queue<Unit> queue)
     {
         super(name);
         _receiver = resultReceiver;
+        _queue = queue;
     }
 
     /**
@@ -137,8 +387,120 @@ public class Invoker extends LoopingThread
         _longThreshold = millis;
     }
 
+    /**
+     * Configures whether this invoker operates in batching mode. In batching mode, the invoker
+     * removes every pending unit from its queue in a single operation, merges together those that
+     * implement {@link Mergeable} and then invokes the remaining units in order. Merging units
+     * changes the order in which their work is done, so only units that are safe to reorder in
+     * that way should implement {@link Mergeable}.
+     */
+    public void setBatching (boolean batching)
+    {
+        _batching = batching;
+    }
+
+    /**
+     * Divides this invoker's queue into lanes, one per supplied weight. Units wait in the lane
+     * reported by {@link Unit#getLane} and the lanes are serviced in weighted round robin order:
+     * each lane in turn may supply up to its weight in units before the next lane gets a turn,
+     * lanes with no waiting units are skipped and every lane gets a turn each round. Thus
+     * latency-sensitive units can be placed in a heavily weighted lane without starving units in
+     * the other lanes. Each unit's profile is recorded for its lane, under the key
+     * <code>lane:N</code> in {@link #getUnitProfiles}, in addition to the usual profiles for its
+     * class and for {@link #ALL_UNITS}.
+     *
+     * <p> This replaces the invoker's queue, so it must be called before any units are posted.
+     * Lanes cannot be combined with the {@link QueueLimiter.Policy#DROP_OLDEST} capacity policy,
+     * as the next unit to be taken from a lane queue is not necessarily the oldest.
+     *
+     * @exception IllegalStateException if units have already been posted to this invoker, or if
+     * its capacity is limited with the {@link QueueLimiter.Policy#DROP_OLDEST} policy.
+     */
+    public void setLanes (int... weights)
+    {
+        if (_queue.hasElements()) {
+            throw new IllegalStateException("Lanes must be configured before units are posted.");
+        }
+        QueueLimiter limiter = _limiter;
+        if (limiter != null && limiter.getPolicy() == QueueLimiter.Policy.DROP_OLDEST) {
+            throw new IllegalStateException("DROP_OLDEST cannot be used with lanes.");
+        }
+        _queue = new LaneQueue<Unit>(weights) {
+            @Override protected int getLane (Unit unit) {
+                return unit.getLane();
+            }
+        };
+        String[] laneKeys = new String[weights.length];
+        for (int ii = 0; ii < laneKeys.length; ii++) {
+            laneKeys[ii] = "lane:" + ii;
+        }
+        _laneKeys = laneKeys;
+    }
+
+    /**
+     * Limits the number of units that may be waiting on this invoker's queue. When a unit is
+     * posted to a full queue, the supplied policy determines whether the posting thread blocks,
+     * the unit is rejected, the oldest waiting unit is dropped or the unit is invoked directly on
+     * the posting thread. This should be called before any units are posted.
+     *
+     * <p> Units posted by the invoker's own thread are always queued under the {@link
+     * QueueLimiter.Policy#BLOCK} policy, even if the queue is full, as that thread cannot wait
+     * for itself to make room. The unit that shuts the invoker down is never dropped.
+     *
+     * @param capacity the maximum number of waiting units, or zero for no limit.
+     *
+     * @exception IllegalArgumentException if the policy is {@link
+     * QueueLimiter.Policy#DROP_OLDEST} and this invoker uses a single consumer queue or has been
+     * divided into lanes, which does not take its units in the order in which they were posted.
+     */
+    public void setCapacity (int capacity, QueueLimiter.Policy policy)
+    {
+        if (policy == QueueLimiter.Policy.DROP_OLDEST && _queue instanceof LockFreeQueue<?>) {
+            throw new IllegalArgumentException(
+                "DROP_OLDEST cannot be used with a single consumer queue.");
+        }
+        if (policy == QueueLimiter.Policy.DROP_OLDEST && _queue instanceof LaneQueue<?>) {
+            throw new IllegalArgumentException("DROP_OLDEST cannot be used with lanes.");
+        }
+        _limiter = (capacity == 0) ? null : new QueueLimiter(capacity, policy) {
+            @Override protected boolean isDroppable (Object item) {
+                // never discard the unit that shuts us down
+                return !(item instanceof ShutdownUnit);
+            }
+        };
+    }
+
+    /**
+     * Returns the limiter that bounds this invoker's queue, which can be used to obtain counts
+     * of dropped and rejected units, or null if the queue is unbounded.
+     */
+    public QueueLimiter getLimiter ()
+    {
+        return _limiter;
+    }
+
+    /**
+     * Returns the largest number of units that have been waiting on this invoker's queue at once
+     * since the invoker was created or since the last call to {@link #resetQueueHighWaterMark}.
+     */
+    public int getQueueHighWaterMark ()
+    {
+        return _queue.getHighWaterMark();
+    }
+
+    /**
+     * Resets the queue high water mark to the number of units currently waiting.
+     */
+    public void resetQueueHighWaterMark ()
+    {
+        _queue.resetHighWaterMark();
+    }
+
     /**
      * Posts a unit to this invoker for subsequent invocation on the invoker's thread.
+     *
+     * @exception java.util.concurrent.RejectedExecutionException if this invoker's queue is full
+     * and its capacity policy is {@link QueueLimiter.Policy#REJECT}.
      */
     public void postUnit (Unit unit)
     {
@@ -147,6 +509,19 @@ public class Invoker extends LoopingThread
         }
         // note the time
         unit.queueStamp = System.currentTimeMillis();
+        unit.queueNanos = System.nanoTime();
+        unit.queueDepth = _queue.size();
+        // make sure there's room for it (or run it ourselves if we're full and so configured)
+        QueueLimiter limiter = _limiter;
+        if (limiter != null) {
+            if (limiter.getPolicy() == QueueLimiter.Policy.BLOCK && isDispatchThread()) {
+                // blocking our own thread would deadlock, as it alone can make room
+                limiter.forceAdmit();
+            } else if (!limiter.admit(_queue)) {
+                invokeOnCaller(unit);
+                return;
+            }
+        }
         // and append it to the queue
         _queue.append(unit);
     }
@@ -162,6 +537,14 @@ public class Invoker extends LoopingThread
         return _queue.size();
     }
 
+    /**
+     * Returns the number of threads on which this invoker runs units.
+     */
+    public int getThreadCount ()
+    {
+        return 1;
+    }
+
     // from Executor
     public void execute (Runnable command)
     {
@@ -186,23 +569,129 @@ public class Invoker extends LoopingThread
     // from RunQueue
     public boolean isDispatchThread ()
     {
-        return (this == Thread.currentThread());
+        return (_dispatcher == Thread.currentThread());
+    }
+
+    @Override // from LoopingThread
+    protected void willStart ()
+    {
+        super.willStart();
+        _dispatcher = Thread.currentThread();
     }
 
     @Override
     public void iterate ()
     {
-        // pop the next item off of the queue
+        if (!_batching) {
+            // pop the next item off of the queue and invoke it
+            invokeUnit(takeUnit());
+            return;
+        }
+
+        // wait for at least one unit and then grab everything else that's pending
+        _batch.add(_queue.get());
+        int drained = 1 + _queue.drainTo(_batch);
+        QueueLimiter limiter = _limiter;
+        if (limiter != null) {
+            limiter.release(drained);
+        }
+        try {
+            mergeBatch();
+            for (int ii = 0, nn = _batch.size(); ii < nn; ii++) {
+                Unit unit = _batch.get(ii);
+                if (unit != null) {
+                    invokeUnit(unit);
+                }
+            }
+        } finally {
+            _batch.clear();
+        }
+    }
+
+    /**
+     * Removes the next unit from our queue, blocking until one is available.
+     */
+    protected Unit takeUnit ()
+    {
         Unit unit = _queue.get();
+        QueueLimiter limiter = _limiter;
+        if (limiter != null) {
+            limiter.release(1);
+        }
+        return unit;
+    }
+
+    /**
+     * Counts an internal unit that is about to be queued as admitted by our limiter, if we have
+     * one, without applying its policy. Such units are released when they are taken off the queue
+     * like any other, so they must be counted going on.
+     */
+    protected void forceAdmit ()
+    {
+        QueueLimiter limiter = _limiter;
+        if (limiter != null) {
+            limiter.forceAdmit();
+        }
+    }
 
-        long start;
+    /**
+     * Invokes the supplied unit on the thread that posted it. This is used when our queue is full
+     * and our capacity policy is {@link QueueLimiter.Policy#CALLER_RUNS}. Unit profiles are not
+     * recorded for such units.
+     */
+    protected void invokeOnCaller (Unit unit)
+    {
+        try {
+            if (unit.invoke()) {
+                _receiver.execute(unit);
+            }
+        } catch (Throwable t) {
+            log.warning("Invocation unit failed", "unit", unit, t);
+        }
+    }
+
+    /**
+     * Offers each unit in {@link #_batch} to the {@link Mergeable} units that precede it, clearing
+     * the entries for units that were merged.
+     */
+    protected void mergeBatch ()
+    {
+        for (int ii = 0, nn = _batch.size(); ii < nn; ii++) {
+            Unit unit = _batch.get(ii);
+            boolean merged = false;
+            for (int jj = 0, mm = _mergeables.size(); jj < mm && !merged; jj++) {
+                Unit prev = _mergeables.get(jj);
+                try {
+                    merged = ((Mergeable)prev).merge(unit);
+                } catch (Throwable t) {
+                    log.warning("Unit merge failed", "unit", prev, "other", unit, t);
+                }
+            }
+            if (merged) {
+                _batch.set(ii, null);
+            } else if (unit instanceof Mergeable) {
+                _mergeables.add(unit);
+            }
+        }
+        _mergeables.clear();
+    }
+
+    /**
+     * Invokes the supplied unit on the calling thread, recording profiling information and
+     * posting the unit to our result receiver if it so requests.
+     */
+    protected void invokeUnit (Unit unit)
+    {
+        long start, startNanos;
+        ActiveUnit active = null;
         if (PERF_TRACK) {
-            // record the time spent on the queue as a special unit
             start = System.currentTimeMillis();
-            // record the time spent on the queue as a special unit
-            recordMetrics("queue_wait_time", start - unit.queueStamp);
+            startNanos = System.nanoTime();
+            // make the unit visible to our slow unit sampler
+            active = getActiveUnit();
+            active.begin(unit, startNanos);
         } else {
-            start = 0L;
+            start = startNanos = 0L;
         }
 
         try {
@@ -211,10 +700,19 @@ public class Invoker extends LoopingThread
                 // if it returned true, post it to the receiver thread for result processing
                 _receiver.execute(unit);
             }
+            if (PERF_TRACK) {
+                recordMetrics(unit, (startNanos - unit.queueNanos) / 1000,
+                              (System.nanoTime() - startNanos) / 1000);
+            }
             didInvokeUnit(unit, start);
 
         } catch (Throwable t) {
             log.warning("Invocation unit failed", "unit", unit, t);
+
+        } finally {
+            if (active != null) {
+                active.end();
+            }
         }
     }
 
@@ -226,24 +724,90 @@ public class Invoker extends LoopingThread
     public void shutdown ()
     {
         _shutdownRequested = true;
-        _queue.append(new Unit() {
-            @Override public boolean invoke () {
-                _running = false;
-                return false;
-            }
-        });
+        forceAdmit();
+        _queue.append(new ShutdownUnit());
     }
 
     /**
-     * Sets the parameters of the unit profiling histogram. This only affects unit lasses that have
-     * not yet been run, so should be called early on in program initialization.
-     * @param bucketWidthMs size of time buckets, in milliseconds
-     * @param bucketCount number of time buckets
+     * Formerly configured the linear buckets of the unit profiling histograms. Unit profiles are
+     * now recorded in {@link LatencyHistogram}s, which need no configuration, so this does
+     * nothing.
      */
+    @Deprecated
     public void setProfilingParameters (int bucketWidthMs, int bucketCount)
     {
-        _profileBucketWidth = bucketWidthMs;
-        _profileBucketCount = bucketCount;
+    }
+
+    /**
+     * Returns a snapshot of the unit profiles recorded by this invoker. The profiles are keyed
+     * by unit class, with the profile of all units recorded under {@link #ALL_UNITS} (and that of
+     * the units in lane N under <code>lane:N</code> if lanes are configured). For compatibility,
+     * the wait times of all units are also recorded under the deprecated {@link #QUEUE_WAIT_TIME}.
+     * This may be called from any thread.
+     *
+     * @param reset if true, the profiles are cleared once the snapshot is taken, so that the next
+     * call reports only units invoked in the interim.
+     */
+    public Map<Object,UnitProfile> getUnitProfiles (boolean reset)
+    {
+        return snapshotProfiles(_tracker, reset);
+    }
+
+    /**
+     * Configures this invoker to capture the stack of any unit that is still running after the
+     * specified number of milliseconds, and to check for such units with the specified period.
+     * A unit that runs for several periods is sampled each period, which shows where it is
+     * spending its time. The most recent {@link #MAX_SLOW_SAMPLES} samples are retained and are
+     * reported by {@link #getSnapshot}.
+     *
+     * @param thresholdMillis the time after which a running unit is sampled, or zero to disable
+     * sampling.
+     */
+    public synchronized void setSlowUnitSampling (final long thresholdMillis, long periodMillis)
+    {
+        if (_sampler != null) {
+            _sampler.cancel();
+            _sampler = null;
+        }
+        if (thresholdMillis > 0) {
+            _sampler = new Interval(Interval.RUN_DIRECT) {
+                @Override public void expired () {
+                    sampleSlowUnits(thresholdMillis);
+                }
+            };
+            _sampler.schedule(periodMillis, true);
+        }
+    }
+
+    /**
+     * Returns a snapshot of this invoker's queue, its unit profiles and its slow unit samples,
+     * which may be polled periodically and logged or exported. This may be called from any
+     * thread.
+     *
+     * @param reset if true, the profiles, slow unit samples and queue high water mark are cleared
+     * once the snapshot is taken, so that the next snapshot covers only the interim.
+     */
+    public Snapshot getSnapshot (boolean reset)
+    {
+        Snapshot snap = new Snapshot();
+        snap.name = getName();
+        snap.when = System.currentTimeMillis();
+        snap.threads = getThreadCount();
+        snap.pendingUnits = getPendingUnits();
+        snap.queueHighWater = getQueueHighWaterMark();
+        snap.profiles = getUnitProfiles(reset);
+        synchronized (_samples) {
+            snap.elapsed = snap.when - _profileStart;
+            snap.slowUnits = new ArrayList<SlowUnitSample>(_samples);
+            if (reset) {
+                _samples.clear();
+                _profileStart = snap.when;
+            }
+        }
+        if (reset) {
+            resetQueueHighWaterMark();
+        }
+        return snap;
     }
 
     /**
@@ -275,13 +839,11 @@ public class Invoker extends LoopingThread
      */
     protected void didInvokeUnit (Unit unit, long start)
     {
-        // track some performance metrics
+        // report long runners (the unit's profile is recorded by invokeUnit)
         if (PERF_TRACK) {
             long duration = System.currentTimeMillis() - start;
             Object key = unit.getClass();
-            recordMetrics(key, duration);
 
-            // report long runners
             long thresh = unit.getLongThreshold();
             if (thresh == 0) {
                 // TODO: remove _defaultLongThreshold
@@ -294,6 +856,8 @@ public class Invoker extends LoopingThread
                 msg.append((duration >= 10*thresh) ? "Really long" : "Long");
                 msg.append(" invoker unit [unit=").append(unit);
                 msg.append(" (").append(key).append("), time=").append(duration).append("ms");
+                msg.append(", waited=").append(start - unit.queueStamp).append("ms");
+                msg.append(", depth=").append(unit.queueDepth);
                 if (unit.getDetail() != null) {
                     msg.append(", detail=").append(unit.getDetail());
                 }
@@ -302,56 +866,199 @@ public class Invoker extends LoopingThread
         }
     }
 
+    @Override // from LoopingThread
+    protected void didShutdown ()
+    {
+        super.didShutdown();
+        setSlowUnitSampling(0L, 0L);
+    }
+
+    /**
+     * Records the time (in microseconds) that the supplied unit spent waiting on the queue and
+     * executing, in the profile for its class, for all units and for its lane.
+     */
+    protected void recordMetrics (Unit unit, long waited, long ran)
+    {
+        getProfile(_tracker, unit.getClass()).record(waited, ran, unit.queueDepth);
+        getProfile(_tracker, ALL_UNITS).record(waited, ran, unit.queueDepth);
+        String[] laneKeys = _laneKeys;
+        if (laneKeys != null) {
+            int lane = Math.max(0, Math.min(unit.getLane(), laneKeys.length-1));
+            getProfile(_tracker, laneKeys[lane]).record(waited, ran, unit.queueDepth);
+        }
+
+        // let subclasses that still override the old hook see every unit
+        recordMetrics(unit.getClass(), ran / 1000);
+        recordMetrics(QUEUE_WAIT_TIME, waited / 1000);
+    }
+
+    /**
+     * Formerly recorded the duration (in milliseconds) of each unit in the profile for its class,
+     * and the time it spent waiting on the queue under {@link #QUEUE_WAIT_TIME}. This is still
+     * called with those values after each unit's profiles are recorded, so that overrides keep
+     * working. Unit classes are already profiled by then, so only the wait time is recorded here,
+     * as the wait times of the {@link #QUEUE_WAIT_TIME} profile; any other key that is not a
+     * class has the duration recorded as a run time in its profile.
+     *
+     * @deprecated override {@link #recordMetrics(Unit,long,long)} instead.
+     */
+    @Deprecated
     protected void recordMetrics (Object key, long duration)
     {
-        UnitProfile prof = _tracker.get(key);
+        if (QUEUE_WAIT_TIME.equals(key)) {
+            getProfile(_tracker, key).getWaitTimes().record(duration * 1000);
+        } else if (!(key instanceof Class<?>)) {
+            getProfile(_tracker, key).getRunTimes().record(duration * 1000);
+        }
+    }
+
+    /**
+     * Returns the profile for the specified key in the supplied tracker, creating it if
+     * necessary.
+     */
+    protected static UnitProfile getProfile (
+        ConcurrentHashMap<Object,UnitProfile> tracker, Object key)
+    {
+        UnitProfile prof = tracker.get(key);
         if (prof == null) {
-            _tracker.put(key, prof = new UnitProfile(_profileBucketWidth, _profileBucketCount));
+            UnitProfile nprof = new UnitProfile();
+            prof = tracker.putIfAbsent(key, nprof);
+            if (prof == null) {
+                prof = nprof;
+            }
         }
-        prof.record(duration);
+        return prof;
     }
 
-    /** Used to track profile information on invoked units. */
-    protected static class UnitProfile
+    /**
+     * Returns a snapshot of the profiles in the supplied tracker, optionally resetting them.
+     */
+    protected static Map<Object,UnitProfile> snapshotProfiles (
+        ConcurrentHashMap<Object,UnitProfile> tracker, boolean reset)
     {
-        public UnitProfile (int bucketWidth, int bucketCount) {
-            _histo = new Histogram(0, bucketWidth, bucketCount);
+        Map<Object,UnitProfile> snap = new HashMap<Object,UnitProfile>();
+        for (Map.Entry<Object,UnitProfile> entry : tracker.entrySet()) {
+            snap.put(entry.getKey(), entry.getValue().snapshot(reset));
         }
+        return snap;
+    }
+
+    /**
+     * Returns the record of the unit being run by the calling thread.
+     */
+    protected ActiveUnit getActiveUnit ()
+    {
+        return _active[0];
+    }
 
-        public void record (long duration) {
-            _totalElapsed += duration;
-            _histo.addValue((int)duration);
+    /**
+     * Captures the stack of each of our threads that has been running the same unit for longer
+     * than the specified number of milliseconds. Called on the timer thread.
+     */
+    protected void sampleSlowUnits (long thresholdMillis)
+    {
+        long now = System.nanoTime();
+        for (ActiveUnit active : _active) {
+            Unit unit = active.unit;
+            long started = active.started;
+            Thread thread = active.thread;
+            if (unit == null || thread == null || (now - started) / 1000000 < thresholdMillis) {
+                continue;
+            }
+            StackTraceElement[] stack = thread.getStackTrace();
+            // make sure the thread didn't move on to another unit while we got its stack
+            if (active.unit != unit || active.started != started) {
+                continue;
+            }
+            SlowUnitSample sample = new SlowUnitSample(
+                unit, thread, (System.nanoTime() - started) / 1000000, stack);
+            synchronized (_samples) {
+                if (_samples.size() >= MAX_SLOW_SAMPLES) {
+                    _samples.remove(0);
+                }
+                _samples.add(sample);
+            }
         }
+    }
 
-        public void clear () {
-            _totalElapsed = 0L;
-            _histo.clear();
+    /** Stops the invoker thread once every other queued unit has been invoked. */
+    protected class ShutdownUnit extends Unit
+    {
+        public ShutdownUnit () {
+            super("Invoker.shutdown");
         }
 
-        @Override public String toString () {
-            int count = _histo.size();
-            return _totalElapsed + "ms/" + count + " = " + (_totalElapsed/count) + "ms avg " +
-                StringUtil.toString(_histo.getBuckets());
+        @Override public boolean invoke () {
+            // a lane queue may hand us out ahead of units still waiting in other lanes, so go to
+            // the back of the line until they have all been invoked
+            if (_queue.hasElements()) {
+                forceAdmit();
+                _queue.append(this);
+            } else {
+                _running = false;
+            }
+            return false;
         }
+    }
 
-        protected Histogram _histo;
-        protected long _totalElapsed;
+    /** Tracks the unit being run by one of our threads, for the slow unit sampler. */
+    protected static class ActiveUnit
+    {
+        public volatile Thread thread;
+        public volatile long started;
+        public volatile Unit unit;
+
+        public void begin (Unit unit, long started) {
+            this.thread = Thread.currentThread();
+            this.started = started;
+            this.unit = unit;
+        }
+
+        public void end () {
+            this.unit = null;
+        }
     }
 
     /** The invoker's queue of units to be executed. */
-    protected Queue<Unit> _queue = new Queue<Unit>();
+    protected Queue<Unit> _queue;
+
+    /** The thread on which we're invoking units (== this unless we were started with a thread
+     * factory). */
+    protected Thread _dispatcher = this;
+
+    /** Limits the number of units waiting on our queue, or null. */
+    protected volatile QueueLimiter _limiter;
+
+    /** The keys with which the profiles of each lane are recorded, if we have lanes. */
+    protected String[] _laneKeys;
+
+    /** Whether or not we're in batching mode. */
+    protected volatile boolean _batching;
+
+    /** The units being processed in the current batch (only used by the invoker thread). */
+    protected ArrayList<Unit> _batch = new ArrayList<Unit>();
+
+    /** The mergeable units in the current batch (only used by the invoker thread). */
+    protected ArrayList<Unit> _mergeables = new ArrayList<Unit>();
 
     /** The result receiver with which we're working. */
     protected Executor _receiver;
 
-    /** Tracks the counts of invocations by unit's class. */
-    protected HashMap<Object,UnitProfile> _tracker = new HashMap<Object,UnitProfile>();
+    /** Tracks the profiles of units by class. */
+    protected ConcurrentHashMap<Object,UnitProfile> _tracker =
+        new ConcurrentHashMap<Object,UnitProfile>();
+
+    /** The units being run by each of our threads. */
+    protected ActiveUnit[] _active = { new ActiveUnit() };
+
+    /** Samples slow units, if so configured. */
+    protected Interval _sampler;
 
-    /** Default size of buckets to use when profiling unit times. */
-    protected int _profileBucketWidth = 50;
+    /** The most recent slow unit samples, oldest first. */
+    protected List<SlowUnitSample> _samples = new ArrayList<SlowUnitSample>();
 
-    /** Default number of buckets to use when profiling unit times. */
-    protected int _profileBucketCount = 10;
+    /** The time at which our profiles were last reset. */
+    protected long _profileStart = System.currentTimeMillis();
 
     /** The long threshold for this particular invoker. */
     protected long _longThreshold = 0L; // unset
@@ -5,19 +5,54 @@
 
 package com.samskivert.util;
 
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.samskivert.util.UtilLog.log;
 
 /**
  * A HashMap with LRU functionality and rudimentary performance tracking
  * facilities.
+ *
+ * <p> The map is safe for use by multiple threads. Entries are stored in a concurrent hash table
+ * and reads neither lock nor reorder anything: a read instead records the entry it found in a
+ * small per-thread-stripe buffer, and the buffered reads are replayed onto the LRU ordering (under
+ * a lock) by whichever thread next modifies the map or fills a buffer. Thus {@link #get} scales
+ * with the number of threads calling it. Under heavy contention a read may go unrecorded, which
+ * makes the eviction order approximately, rather than strictly, least recently used; a map used
+ * by a single thread evicts in exact LRU order.
+ *
+ * <p> By default entries are flushed in least recently used order. A map constructed with the
+ * {@link Policy#TINY_LFU} policy instead decides which entries to keep based on how often, as well
+ * as how recently, they have been used, so that one-off bulk reads (scans) do not flush the
+ * frequently used working set; see {@link Policy}.
+ *
+ * <p> Entries may be made to expire a fixed time after they are written (time-to-live) and/or after
+ * they have gone unread for a time (time-to-idle); see {@link #setExpiration} and {@link
+ * #put(Object,Object,long)}. Expired entries are no longer returned, but they are reclaimed (and
+ * removal observers notified) lazily: each modification of the map examines a few entries and
+ * removes those that have expired, and {@link #purgeExpired} removes them all. Entries that are
+ * read as they near their expiration can also be reloaded in the background, see {@link
+ * #setRefreshAhead}.
+ *
+ * <p> Modifications are serialized. Removal observers are notified while the map is locked, so
+ * they should be quick and must not wait on other threads that use the map. Null keys are not
+ * supported, and iteration is not in LRU order.
  */
-public class LRUHashMap<K,V> implements Map<K,V>
+public class LRUHashMap<K,V> extends AbstractMap<K,V>
+    implements Map<K,V>
 {
     /**
      * Used to return the "size" of a cache item for systems that wish to
@@ -44,6 +79,34 @@ public class LRUHashMap<K,V> implements Map<K,V>
         public void removedFromMap (LRUHashMap<K,V> map, V item);
     }
 
+    /**
+     * Loads the value for a key, used to refresh entries before they expire.
+     */
+    public static interface Loader<K,V>
+    {
+        /** Loads and returns the current value for the specified key. */
+        public V load (K key) throws Exception;
+    }
+
+    /**
+     * Determines which entries are flushed when the map exceeds its maximum size.
+     */
+    public enum Policy {
+        /** Flushes the least recently used entries. */
+        LRU,
+
+        /**
+         * Window TinyLFU. New entries enter a small LRU window (one percent of the maximum size).
+         * Entries that fall out of the window must compete for a place in the main region with
+         * that region's least recently used entry: whichever has been used less often, as
+         * estimated by a compact count-min sketch of recent accesses, is flushed. The main region
+         * is a segmented LRU, in which entries that are used again while on probation are
+         * promoted to a protected segment (eighty percent of the main region). Entries that are
+         * read only once, as by a scan, thus seldom displace entries that are read repeatedly.
+         */
+        TINY_LFU
+    }
+
     /**
      * Construct a LRUHashMap with the specified maximum size. All items
      * in the cache will be considered to have a size of one.
@@ -60,14 +123,28 @@ public class LRUHashMap<K,V> implements Map<K,V>
      */
     public LRUHashMap (int maxSize, ItemSizer<V> sizer)
     {
-        _delegate = new LinkedHashMap<K,V>(
-            Math.min(1024, Math.max(16, maxSize)), .75f, true);
+        this(maxSize, sizer, Policy.LRU);
+    }
+
+    /**
+     * Construct a LRUHashMap with the specified maximum total size, item sizer (which may be null
+     * if all items are of size one) and flush policy.
+     */
+    public LRUHashMap (int maxSize, ItemSizer<V> sizer, Policy policy)
+    {
+        _policy = policy;
+        _data = new ConcurrentHashMap<K,Node<K,V>>(Math.min(1024, Math.max(16, maxSize)));
         _maxSize = maxSize;
         _sizer = (sizer == null) ? new ItemSizer<V>() {
             public int computeSize (V item) {
                 return 1;
             }
         } : sizer;
+        initLists();
+        configureRegions();
+        for (int ii = 0; ii < _readBuffers.length; ii++) {
+            _readBuffers[ii] = new ReadBuffer();
+        }
     }
 
     /**
@@ -76,11 +153,18 @@ public class LRUHashMap<K,V> implements Map<K,V>
      */
     public void setMaxSize (int maxSize)
     {
-        // configure our new maximum size
-        _maxSize = maxSize;
+        _lock.lock();
+        try {
+            // configure our new maximum size
+            _maxSize = maxSize;
+            configureRegions();
 
-        // boot enough people to get below said size
-        flush();
+            // boot enough people to get below said size
+            drainReadBuffers();
+            flush();
+        } finally {
+            _lock.unlock();
+        }
     }
 
     /**
@@ -99,6 +183,59 @@ public class LRUHashMap<K,V> implements Map<K,V>
         _remobs = obs;
     }
 
+    /**
+     * Configures the default expiration of entries in this map. Entries added by {@link
+     * #put(Object,Object)} after this call expire <code>ttlMillis</code> after they were added,
+     * and all entries expire if they are not read for <code>idleMillis</code>. Either may be zero
+     * to disable that form of expiration.
+     */
+    public void setExpiration (long ttlMillis, long idleMillis)
+    {
+        _ttlMillis = ttlMillis;
+        _idleMillis = idleMillis;
+        if (ttlMillis > 0 || idleMillis > 0) {
+            _expiring = true;
+        }
+    }
+
+    /**
+     * Configures this map to reload entries that are read more than <code>refreshMillis</code>
+     * after they were written. The read returns the current value immediately and the entry is
+     * reloaded by the supplied loader on the supplied invoker; when the load completes, the new
+     * value replaces the old one (and its time-to-live begins anew). Thus entries that are read
+     * often are kept fresh, and readers never wait for them to be reloaded. If the load fails or
+     * yields null, the entry is left alone and will be refreshed again on a subsequent read.
+     *
+     * @param loader the loader to use, or null to disable refreshing.
+     * @param refreshMillis this should be less than the time-to-live of the entries.
+     */
+    public void setRefreshAhead (Loader<K,V> loader, Invoker invoker, long refreshMillis)
+    {
+        _refreshInvoker = invoker;
+        _refreshMillis = refreshMillis;
+        _loader = loader;
+        if (loader != null) {
+            _expiring = true;
+        }
+    }
+
+    /**
+     * Removes all expired entries from the map, notifying our removal observer of each.
+     *
+     * @return the number of entries removed.
+     */
+    public int purgeExpired ()
+    {
+        _lock.lock();
+        try {
+            drainReadBuffers();
+            _sweeper = null;
+            return sweep(_data.size(), now());
+        } finally {
+            _lock.unlock();
+        }
+    }
+
     /**
      * Used to temporarily disable flushing elements from the
      * cache. Generally this is only used to avoid undesired garbage
@@ -107,10 +244,16 @@ public class LRUHashMap<K,V> implements Map<K,V>
      */
     public void setCanFlush (boolean canFlush)
     {
-        _canFlush = canFlush;
-        if (_canFlush) {
-            // if we just reenabled flushing, flush
-            flush();
+        _lock.lock();
+        try {
+            _canFlush = canFlush;
+            if (_canFlush) {
+                // if we just reenabled flushing, flush
+                drainReadBuffers();
+                flush();
+            }
+        } finally {
+            _lock.unlock();
         }
     }
 
@@ -120,15 +263,19 @@ public class LRUHashMap<K,V> implements Map<K,V>
     public void setTracking (boolean track)
     {
         if (track != _tracking) {
-            _tracking = track;
             if (track) {
-                _seenKeys = new HashSet<K>();
-                _misses = _hits = 0;
+                _seenKeys = new ConcurrentHashMap<K,Boolean>();
+                _misses.set(0);
+                _hits.set(0);
+                _lookupTimes = new LatencyHistogram();
 
                 // oh boy, but to properly track we need to clear the hash
                 clear();
-            } else {
+            }
+            _tracking = track;
+            if (!track) {
                 _seenKeys = null;
+                _lookupTimes = null;
             }
         }
     }
@@ -141,13 +288,23 @@ public class LRUHashMap<K,V> implements Map<K,V>
      */
     public int[] getTrackedEffectiveness ()
     {
-        return new int[] {_hits, _misses};
+        return new int[] {_hits.get(), _misses.get()};
+    }
+
+    /**
+     * Returns a snapshot of the time (in nanoseconds) taken by calls to {@link #get} while
+     * tracking is enabled, or null if tracking is not enabled.
+     */
+    public LatencyHistogram getTrackedLookupTimes ()
+    {
+        LatencyHistogram times = _lookupTimes;
+        return (times == null) ? null : times.snapshot();
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public int size ()
     {
-        return _delegate.size();
+        return _data.size();
     }
 
     /**
@@ -157,73 +314,171 @@ public class LRUHashMap<K,V> implements Map<K,V>
      */
     public void adjustSize (int sizeDifference)
     {
-        _size += sizeDifference;
-        flush();
+        _lock.lock();
+        try {
+            _size += sizeDifference;
+            drainReadBuffers();
+            flush();
+        } finally {
+            _lock.unlock();
+        }
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public boolean isEmpty ()
     {
-        return _delegate.isEmpty();
+        return _data.isEmpty();
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public boolean containsKey (Object key)
     {
-        return _delegate.containsKey(key);
+        Node<K,V> node = _data.get(key);
+        return (node != null) && !(_expiring && isExpired(node, now()));
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public boolean containsValue (Object value)
     {
-        return _delegate.containsValue(value);
+        for (Node<K,V> node : _data.values()) {
+            if (value == null ? node.value == null : value.equals(node.value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public V get (Object key)
     {
-        V result = _delegate.get(key);
+        LatencyHistogram times = _lookupTimes;
+        if (_tracking && times != null) {
+            long start = System.nanoTime();
+            V result = trackedGet(key);
+            times.record(System.nanoTime() - start);
+            return result;
+        }
+        Node<K,V> node = readNode(key);
+        return (node == null) ? null : node.value;
+    }
 
-        if (_tracking) {
-            if (result == null) {
-                if (_seenKeys.contains(key)) {
-                    // only count a miss if we've seen the key before
-                    _misses++;
-                }
-            } else {
-                _hits++;
+    /**
+     * Looks up the specified key, updating our hit and miss counts.
+     */
+    protected V trackedGet (Object key)
+    {
+        Node<K,V> node = readNode(key);
+        if (node == null) {
+            Map<K,Boolean> seen = _seenKeys;
+            if (seen != null && seen.containsKey(key)) {
+                // only count a miss if we've seen the key before
+                _misses.incrementAndGet();
             }
+            return null;
         }
+        _hits.incrementAndGet();
+        return node.value;
+    }
 
-        return result;
+    /**
+     * Returns the unexpired node for the specified key, or null, noting that it was read.
+     */
+    protected Node<K,V> readNode (Object key)
+    {
+        Node<K,V> node = _data.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (_expiring) {
+            long now = now();
+            if (isExpired(node, now)) {
+                return null;
+            }
+            if (_idleMillis > 0) {
+                node.accessTime = now;
+            }
+            if (_loader != null && now - node.writeTime >= _refreshMillis) {
+                refresh(node);
+            }
+        }
+        recordRead(node);
+        return node;
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public V put (K key, V value)
     {
-        V result = _delegate.put(key, value);
+        return put(key, value, _ttlMillis);
+    }
 
-        if (_tracking) {
-            _seenKeys.add(key);
+    /**
+     * Maps the specified key to the specified value, which will expire after the specified
+     * number of milliseconds (or never, if <code>ttlMillis</code> is zero) rather than per the
+     * default configured via {@link #setExpiration}.
+     *
+     * @return the previous value mapped to the key, if any.
+     */
+    public V put (K key, V value, long ttlMillis)
+    {
+        if (ttlMillis > 0) {
+            _expiring = true;
         }
+        _lock.lock();
+        try {
+            // apply any pending reads before we (potentially) pick flush victims
+            drainReadBuffers();
 
-        // avoid fruitless NOOPs
-        if (result != value) {
-            // updated our computed "size"
-            _size += _sizer.computeSize(value);
-            entryRemoved(result);
-//         System.out.println("Added " + value + ": " + _size);
-        }
+            Map<K,Boolean> seen = _seenKeys;
+            if (_tracking && seen != null) {
+                seen.put(key, Boolean.TRUE);
+            }
 
-        // flush if needed
-        flush();
+            V result = null, previous = null;
+            int weight = _sizer.computeSize(value);
+            long now = now();
+            Node<K,V> node = _data.get(key);
+            if (node == null) {
+                node = new Node<K,V>(key, value);
+                node.weight = weight;
+                _data.put(key, node);
+                if (_sketch != null) {
+                    _sketch.increment(key.hashCode());
+                }
+                linkLast(_window, node, WINDOW);
+            } else {
+                result = node.value;
+                // an expired value is, as far as the caller is concerned, already gone
+                previous = (_expiring && isExpired(node, now)) ? null : result;
+                node.value = value;
+                reweigh(node, weight);
+                nodeAccessed(node);
+            }
+            node.writeTime = node.accessTime = now;
+            node.ttl = ttlMillis;
+            node.expireTime = (ttlMillis > 0) ? now + ttlMillis : Long.MAX_VALUE;
+
+            // avoid fruitless NOOPs
+            if (result != value) {
+                // updated our computed "size"
+                _size += weight;
+                entryRemoved(result);
+            }
+
+            // flush if needed, and reclaim a few expired entries while we're at it
+            flush();
+            if (_expiring) {
+                sweep(SWEEP_BATCH, now);
+            }
 
-        return result;
+            return previous;
+        } finally {
+            _lock.unlock();
+        }
     }
 
     /**
      * Flushes entries from the cache until we're back under our desired
-     * cache size.
+     * cache size. Must be called with the lock held.
      */
     protected void flush ()
     {
@@ -231,20 +486,53 @@ public class LRUHashMap<K,V> implements Map<K,V>
             return;
         }
 
-        // If we've exceeded our size, remove things until we're back
-        // under the required size.
-        if (_size > _maxSize) {
-            // This works because the entrySet iterator of a LinkedHashMap
-            // returns the entries in LRU order
-            Iterator<Map.Entry<K,V>> iter = _delegate.entrySet().iterator();
-            // don't remove the last entry, even if it's too big, because
-            // a cache with nothing in it sucks
-            for (int ii = size(); (ii > 1) && (_size > _maxSize); ii--) {
-                Map.Entry<K,V> entry = iter.next();
-                entryRemoved(entry.getValue());
-                iter.remove();
+        // move any overflow from the window into probation, where each such candidate must
+        // compete with the main region's eldest entry for a place (the LRU policy's window never
+        // overflows, so its flushes come straight from the window)
+        Node<K,V> candidate = null;
+        while (_windowWeight > _windowMax && _window.next != _window) {
+            Node<K,V> node = _window.next;
+            unlink(node);
+            linkLast(_probation, node, PROBATION);
+            if (candidate == null) {
+                candidate = node;
             }
         }
+
+        // If we've exceeded our size, remove things until we're back under the required size.
+        // Don't remove the last entry, even if it's too big, because a cache with nothing in it
+        // sucks.
+        while (_size > _maxSize && _data.size() > 1) {
+            Node<K,V> victim = null;
+            if (_probation.next != _probation && _probation.next != candidate) {
+                victim = _probation.next;
+            } else if (_protected.next != _protected) {
+                victim = _protected.next;
+            }
+
+            Node<K,V> evictee;
+            if (candidate == null) {
+                evictee = (victim != null) ? victim : _window.next;
+            } else if (victim != null && admit(candidate, victim)) {
+                evictee = victim;
+            } else {
+                evictee = candidate;
+                candidate = (candidate.next == _probation) ? null : candidate.next;
+            }
+            unlink(evictee);
+            _data.remove(evictee.key);
+            entryRemoved(evictee.value);
+        }
+    }
+
+    /**
+     * Returns true if the supplied candidate has been used more frequently than the victim and
+     * should thus displace it from the map.
+     */
+    protected boolean admit (Node<K,V> candidate, Node<K,V> victim)
+    {
+        return (_sketch.frequency(candidate.key.hashCode()) >
+                _sketch.frequency(victim.key.hashCode()));
     }
 
     /**
@@ -260,15 +548,32 @@ public class LRUHashMap<K,V> implements Map<K,V>
         }
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public V remove (Object key)
     {
-        V removed = _delegate.remove(key);
-        entryRemoved(removed);
-        return removed;
+        _lock.lock();
+        try {
+            Node<K,V> node = _data.remove(key);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            entryRemoved(node.value);
+            V value = node.value;
+            if (_expiring) {
+                long now = now();
+                if (isExpired(node, now)) {
+                    value = null; // as far as the caller is concerned, it was already gone
+                }
+                sweep(SWEEP_BATCH, now);
+            }
+            return value;
+        } finally {
+            _lock.unlock();
+        }
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public void putAll (Map<? extends K,? extends V> t)
     {
         for (Map.Entry<? extends K,? extends V> entry : t.entrySet()) {
@@ -276,64 +581,517 @@ public class LRUHashMap<K,V> implements Map<K,V>
         }
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public void clear ()
     {
-        // notify our removal observer if we have one
-        if (_remobs != null) {
-            for (Iterator<V> iter = _delegate.values().iterator();
-                 iter.hasNext(); ) {
-                _remobs.removedFromMap(this, iter.next());
-            }
-        }
+        _lock.lock();
+        try {
+            // discard any pending reads, they're all about to be moot
+            drainReadBuffers();
 
-        // then clear everything out
-        _delegate.clear();
-        _size = 0;
+            // notify our removal observer if we have one, then clear everything out
+            clearList(_window);
+            clearList(_probation);
+            clearList(_protected);
+            initLists();
+            _data.clear();
+            _sweeper = null;
+            _size = 0;
+        } finally {
+            _lock.unlock();
+        }
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public Set<K> keySet ()
     {
         // no modifying except through put() and remove()
-        return Collections.unmodifiableSet(_delegate.keySet());
+        return Collections.unmodifiableSet(_data.keySet());
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public Collection<V> values ()
     {
         // no modifying except through put() and remove()
-        return Collections.unmodifiableCollection(_delegate.values());
+        return new AbstractCollection<V>() {
+            @Override public Iterator<V> iterator () {
+                final Iterator<Node<K,V>> iter = _data.values().iterator();
+                return new Iterator<V>() {
+                    public boolean hasNext () {
+                        return iter.hasNext();
+                    }
+                    public V next () {
+                        return iter.next().value;
+                    }
+                    public void remove () {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+            @Override public int size () {
+                return _data.size();
+            }
+        };
     }
 
-    // documentation inherited from interface
+    @Override // from Map
     public Set<Map.Entry<K,V>> entrySet ()
     {
         // no modifying except through put() and remove()
-        return Collections.unmodifiableSet(_delegate.entrySet());
+        return new AbstractSet<Map.Entry<K,V>>() {
+            @Override public Iterator<Map.Entry<K,V>> iterator () {
+                final Iterator<Node<K,V>> iter = _data.values().iterator();
+                return new Iterator<Map.Entry<K,V>>() {
+                    public boolean hasNext () {
+                        return iter.hasNext();
+                    }
+                    public Map.Entry<K,V> next () {
+                        return iter.next();
+                    }
+                    public void remove () {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+            @Override public int size () {
+                return _data.size();
+            }
+        };
     }
 
-    @Override
-    public boolean equals (Object o)
+    /**
+     * Returns true if the supplied node has expired as of the specified time.
+     */
+    protected boolean isExpired (Node<K,V> node, long now)
     {
-        return _delegate.equals(o);
+        long idle = _idleMillis;
+        return (now >= node.expireTime) || (idle > 0 && now - node.accessTime >= idle);
+    }
+
+    /**
+     * Examines up to <code>limit</code> entries, continuing from where the last sweep left off,
+     * and removes those that have expired. Must be called with the lock held.
+     *
+     * @return the number of entries removed.
+     */
+    protected int sweep (int limit, long now)
+    {
+        int removed = 0;
+        for (int ii = 0; ii < limit; ii++) {
+            if (_sweeper == null || !_sweeper.hasNext()) {
+                _sweeper = _data.values().iterator();
+                if (!_sweeper.hasNext()) {
+                    break;
+                }
+            }
+            Node<K,V> node = _sweeper.next();
+            // the (weakly consistent) iterator may return nodes that have since been removed
+            if (node.next != null && isExpired(node, now)) {
+                unlink(node);
+                _data.remove(node.key);
+                entryRemoved(node.value);
+                removed++;
+            }
+        }
+        return removed;
     }
 
-    @Override
-    public int hashCode ()
+    /**
+     * Reloads the value of the supplied node on our refresh invoker, unless it is already being
+     * reloaded.
+     */
+    protected void refresh (final Node<K,V> node)
     {
-        return _delegate.hashCode();
+        final Loader<K,V> loader = _loader;
+        Invoker invoker = _refreshInvoker;
+        if (loader == null || invoker == null || !REFRESHING.compareAndSet(node, 0, 1)) {
+            return;
+        }
+        // note what we're refreshing, so that we don't clobber a value written in the meanwhile
+        final V stale = node.value;
+        final long written = node.writeTime;
+        Invoker.Unit unit = new Invoker.Unit("LRUHashMap.refresh") {
+            @Override public boolean invoke () {
+                try {
+                    V value = loader.load(node.key);
+                    if (value != null) {
+                        refreshed(node, stale, written, value);
+                    }
+                } catch (Exception e) {
+                    log.warning("Failed to refresh cache entry", "key", node.key, e);
+                } finally {
+                    node.refreshing = 0;
+                }
+                return false;
+            }
+        };
+        try {
+            invoker.postUnit(unit);
+        } catch (RuntimeException re) {
+            // the reader still has its value, so don't fail the read; we'll retry on a later one
+            log.warning("Failed to queue cache entry refresh", "key", node.key, re);
+            node.refreshing = 0;
+        }
     }
 
-    /** Since we can't override addEntry and removeEntryForKey in Sun's
-     * lovely collection classes, we have to delegate to a HashMap and
-     * reimplement a crapload of stuff so that we can provide our required
-     * size tracking support. Yay! I wish we could support code reuse as
-     * well as Sun does. */
-    protected LinkedHashMap<K,V> _delegate;
+    /**
+     * Replaces the value of the supplied node with its reloaded value, provided the node has not
+     * been removed and its value has not been rewritten since the reload began. A put of an
+     * existing key reuses its node, so the node's value and write time are checked as well.
+     */
+    protected void refreshed (Node<K,V> node, V stale, long written, V value)
+    {
+        _lock.lock();
+        try {
+            if (_data.get(node.key) == node && node.value == stale && node.writeTime == written) {
+                put(node.key, value, node.ttl);
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current time in milliseconds. Tests override this to control time.
+     */
+    protected long now ()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Records that the supplied node was read. The read is added to the buffer for the calling
+     * thread's stripe, and the buffers are drained if that one is getting full and nobody else is
+     * modifying the map. If the buffer is full, the read is simply dropped.
+     */
+    protected void recordRead (Node<K,V> node)
+    {
+        int hash = (int)Thread.currentThread().getId() * 0x9E3779B9;
+        ReadBuffer buffer = _readBuffers[(hash >>> 16) & (_readBuffers.length - 1)];
+        long writes = buffer.writes.get();
+        long pending = writes - buffer.reads;
+        if (pending < READ_BUFFER_SIZE && buffer.writes.compareAndSet(writes, writes + 1)) {
+            buffer.slots.lazySet((int)(writes & (READ_BUFFER_SIZE - 1)), node);
+            pending++;
+        }
+        // if we already hold the lock, we're being called back (by a removal observer, say) from
+        // the middle of a walk of our lists, which must not be reordered under it
+        if (pending >= READ_DRAIN_THRESHOLD && !_lock.isHeldByCurrentThread() && _lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                _lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays all buffered reads onto our LRU ordering. Must be called with the lock held.
+     */
+    protected void drainReadBuffers ()
+    {
+        for (ReadBuffer buffer : _readBuffers) {
+            long reads = buffer.reads, writes = buffer.writes.get();
+            for (; reads < writes; reads++) {
+                int idx = (int)(reads & (READ_BUFFER_SIZE - 1));
+                @SuppressWarnings("unchecked") Node<K,V> node = (Node<K,V>)buffer.slots.get(idx);
+                if (node == null) {
+                    break; // the reader has claimed the slot but not yet filled it
+                }
+                buffer.slots.lazySet(idx, null);
+                // the node may have been removed since it was read
+                if (node.next != null) {
+                    if (_sketch != null) {
+                        _sketch.increment(node.key.hashCode());
+                    }
+                    nodeAccessed(node);
+                }
+            }
+            buffer.reads = reads;
+        }
+    }
+
+    /**
+     * Moves the supplied (accessed) node to the most recently used end of its list, promoting it
+     * from probation to the protected segment if appropriate.
+     */
+    protected void nodeAccessed (Node<K,V> node)
+    {
+        unlink(node);
+        if (node.queue == WINDOW) {
+            linkLast(_window, node, WINDOW);
+            return;
+        }
+        linkLast(_protected, node, PROTECTED);
+        // demote the eldest protected entries if the protected segment is now too large
+        while (_protectedWeight > _protectedMax && _protected.next != node) {
+            Node<K,V> eldest = _protected.next;
+            unlink(eldest);
+            linkLast(_probation, eldest, PROBATION);
+        }
+    }
+
+    /**
+     * Updates the weight of the supplied (linked) node.
+     */
+    protected void reweigh (Node<K,V> node, int weight)
+    {
+        if (node.queue == WINDOW) {
+            _windowWeight += weight - node.weight;
+        } else if (node.queue == PROTECTED) {
+            _protectedWeight += weight - node.weight;
+        }
+        node.weight = weight;
+    }
+
+    /**
+     * Adds the supplied node to the most recently used end of the specified list.
+     */
+    protected void linkLast (Node<K,V> head, Node<K,V> node, byte queue)
+    {
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+        node.queue = queue;
+        if (queue == WINDOW) {
+            _windowWeight += node.weight;
+        } else if (queue == PROTECTED) {
+            _protectedWeight += node.weight;
+        }
+    }
+
+    /**
+     * Removes the supplied node from its list.
+     */
+    protected void unlink (Node<K,V> node)
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+        if (node.queue == WINDOW) {
+            _windowWeight -= node.weight;
+        } else if (node.queue == PROTECTED) {
+            _protectedWeight -= node.weight;
+        }
+    }
+
+    /**
+     * Unlinks all of the nodes in the specified list, notifying our removal observer of each.
+     * Leaves the list itself in an inconsistent state, to be reset by {@link #initLists}.
+     */
+    protected void clearList (Node<K,V> head)
+    {
+        for (Node<K,V> node = head.next; node != head; ) {
+            Node<K,V> next = node.next;
+            if (_remobs != null) {
+                _remobs.removedFromMap(this, node.value);
+            }
+            node.prev = node.next = null;
+            node = next;
+        }
+    }
+
+    /**
+     * Empties our lists.
+     */
+    protected void initLists ()
+    {
+        _window.prev = _window.next = _window;
+        _probation.prev = _probation.next = _probation;
+        _protected.prev = _protected.next = _protected;
+        _windowWeight = _protectedWeight = 0;
+    }
+
+    /**
+     * Sizes our window and protected segment (and frequency sketch) based on our maximum size.
+     */
+    protected void configureRegions ()
+    {
+        if (_policy == Policy.LRU) {
+            _windowMax = Integer.MAX_VALUE;
+            _protectedMax = 0;
+            return;
+        }
+        _windowMax = Math.max(1, _maxSize / 100);
+        _protectedMax = (int)((_maxSize - _windowMax) * 0.8f);
+        if (_sketch == null) {
+            _sketch = new FrequencySketch(_maxSize);
+        } else {
+            _sketch.ensureCapacity(_maxSize);
+        }
+    }
+
+    /** Holds a mapping and links it into our LRU list. */
+    protected static class Node<K,V> implements Map.Entry<K,V>
+    {
+        public final K key;
+        public volatile V value;
+
+        /** Our neighbors in our list, null if we're not in one. Guarded by the map's lock. */
+        public Node<K,V> prev, next;
+
+        /** Our size, and the list we're in. Guarded by the map's lock. */
+        public int weight;
+        public byte queue;
+
+        /** When we were last written and read, and when we expire (all in millis). */
+        public volatile long writeTime, accessTime, expireTime = Long.MAX_VALUE;
+
+        /** Our time-to-live, or zero. */
+        public volatile long ttl;
+
+        /** Set to one while we're being reloaded. */
+        public volatile int refreshing;
+
+        public Node (K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public K getKey () {
+            return key;
+        }
+
+        public V getValue () {
+            return value;
+        }
+
+        public V setValue (V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public boolean equals (Object other) {
+            if (!(other instanceof Map.Entry<?,?>)) {
+                return false;
+            }
+            Map.Entry<?,?> oentry = (Map.Entry<?,?>)other;
+            V value = this.value;
+            return key.equals(oentry.getKey()) &&
+                (value == null ? oentry.getValue() == null : value.equals(oentry.getValue()));
+        }
+
+        @Override public int hashCode () {
+            V value = this.value;
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override public String toString () {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Estimates how often keys have been accessed, using a count-min sketch of four bit counters.
+     * Each key's hash selects one counter in each of four rows, and its frequency is the smallest
+     * of them. Once the number of increments reaches ten times the sketch's capacity, all counters
+     * are halved so that the estimates reflect recent rather than all-time popularity.
+     */
+    protected static class FrequencySketch
+    {
+        public FrequencySketch (int expectedEntries) {
+            ensureCapacity(expectedEntries);
+        }
+
+        /**
+         * Enlarges the sketch, if necessary, to accurately estimate the frequencies of the
+         * specified number of entries. Enlarging the sketch discards its counts.
+         */
+        public void ensureCapacity (int expectedEntries) {
+            int entries = Math.max(16, Math.min(expectedEntries, MAX_ENTRIES));
+            int length = Integer.highestOneBit(entries - 1) << 1;
+            if (_table == null || _table.length < length) {
+                _table = new long[length];
+                _sampleSize = 10 * length;
+                _additions = 0;
+            }
+        }
+
+        /** Returns the estimated number of recent accesses of the key with the specified hash. */
+        public int frequency (int hash) {
+            int freq = 15;
+            for (int ii = 0; ii < 4; ii++) {
+                int rhash = rowHash(hash, ii);
+                int shift = (rhash >>> 28) << 2;
+                freq = Math.min(freq, (int)((_table[rhash & (_table.length - 1)] >>> shift) & 15));
+            }
+            return freq;
+        }
+
+        /** Records an access of the key with the specified hash. */
+        public void increment (int hash) {
+            boolean added = false;
+            for (int ii = 0; ii < 4; ii++) {
+                int rhash = rowHash(hash, ii);
+                int idx = rhash & (_table.length - 1), shift = (rhash >>> 28) << 2;
+                if (((_table[idx] >>> shift) & 15) != 15) {
+                    _table[idx] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++_additions >= _sampleSize) {
+                for (int ii = 0; ii < _table.length; ii++) {
+                    _table[ii] = (_table[ii] >>> 1) & 0x7777777777777777L;
+                }
+                _additions >>>= 1;
+            }
+        }
+
+        protected static int rowHash (int hash, int row) {
+            int h = (hash + ROW_SEEDS[row]) * 0x9E3779B9;
+            return h ^ (h >>> 15);
+        }
+
+        protected long[] _table;
+        protected int _sampleSize, _additions;
+
+        /** The most entries for which we size a sketch; 2MB of counters. */
+        protected static final int MAX_ENTRIES = 1 << 18;
+
+        protected static final int[] ROW_SEEDS = {
+            0x2C1B3C6D, 0x297A2D39, 0x6B43A9B5, 0x4D2F1E87 };
+    }
+
+    /** A ring buffer of recently read nodes, filled by readers and drained under the lock. */
+    protected static class ReadBuffer
+    {
+        /** The read nodes. */
+        public final AtomicReferenceArray<Object> slots =
+            new AtomicReferenceArray<Object>(READ_BUFFER_SIZE);
+
+        /** The number of slots ever claimed by readers. */
+        public final AtomicLong writes = new AtomicLong();
+
+        /** The number of slots ever drained. Written only under the map's lock. */
+        public volatile long reads;
+    }
+
+    /** Maps keys to the nodes that hold their values. */
+    protected ConcurrentHashMap<K,Node<K,V>> _data;
+
+    /** Determines which entries we flush. */
+    protected final Policy _policy;
+
+    /** The sentinels of our circular lists: the window into which new entries are added (which
+     * holds all entries under the LRU policy) and the probation and protected segments of our
+     * main region. The eldest node in each list follows its sentinel. */
+    protected Node<K,V> _window = new Node<K,V>(null, null),
+        _probation = new Node<K,V>(null, null), _protected = new Node<K,V>(null, null);
+
+    /** The total weight of the window and protected segment, and their maximums. */
+    protected int _windowWeight, _windowMax, _protectedWeight, _protectedMax;
+
+    /** Estimates how often keys are accessed, under the TinyLFU policy. */
+    protected FrequencySketch _sketch;
+
+    /** Guards our LRU list, our size and all modifications. */
+    protected ReentrantLock _lock = new ReentrantLock();
+
+    /** Buffers reads not yet applied to our LRU list, striped by thread. */
+    protected ReadBuffer[] _readBuffers = new ReadBuffer[READ_BUFFERS];
 
     /** The maximum size of this cache. */
-    protected int _maxSize;
+    protected volatile int _maxSize;
 
     /** The current size of this cache. */
     protected int _size;
@@ -342,13 +1100,50 @@ public class LRUHashMap<K,V> implements Map<K,V>
     protected boolean _canFlush = true;
 
     /** Notified when items are removed from the map, if non-null. */
-    protected RemovalObserver<K,V> _remobs;
+    protected volatile RemovalObserver<K,V> _remobs;
 
     /** Used to compute the size of items in this cache. */
     protected ItemSizer<V> _sizer;
 
+    /** Our default time-to-live and time-to-idle, in millis, or zero. */
+    protected volatile long _ttlMillis, _idleMillis;
+
+    /** Set once any form of expiration is configured, so that we needn't check the time
+     * otherwise. */
+    protected volatile boolean _expiring;
+
+    /** Used to refresh entries that are read once they're this old, if non-null. */
+    protected volatile Loader<K,V> _loader;
+    protected volatile Invoker _refreshInvoker;
+    protected volatile long _refreshMillis;
+
+    /** Tracks our progress through the map in sweeping out expired entries. */
+    protected Iterator<Node<K,V>> _sweeper;
+
     /** Tracking info. */
-    protected boolean _tracking;
-    protected HashSet<K> _seenKeys;
-    protected int _hits, _misses;
+    protected volatile boolean _tracking;
+    protected volatile ConcurrentHashMap<K,Boolean> _seenKeys;
+    protected final AtomicInteger _hits = new AtomicInteger(), _misses = new AtomicInteger();
+    protected volatile LatencyHistogram _lookupTimes;
+
+    /** Used to claim the right to refresh a node. */
+    @SuppressWarnings("rawtypes")
+    protected static final AtomicIntegerFieldUpdater<Node> REFRESHING =
+        AtomicIntegerFieldUpdater.newUpdater(Node.class, "refreshing");
+
+    /** The number of entries examined for expiration by each modification. */
+    protected static final int SWEEP_BATCH = 8;
+
+    /** Identifies the list a node is in. */
+    protected static final byte WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    /** The number of read buffers, enough that threads seldom contend for one. */
+    protected static final int READ_BUFFERS = Math.min(
+        64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1);
+
+    /** The number of reads each buffer can hold (must be a power of two). */
+    protected static final int READ_BUFFER_SIZE = 32;
+
+    /** Once a buffer holds this many reads, the reading thread tries to drain the buffers. */
+    protected static final int READ_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
 }
@@ -0,0 +1,226 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Collection;
+
+/**
+ * A {@link Queue} that divides its items into a number of lanes and removes them using weighted
+ * round robin: each lane in turn may supply up to its weight in items before the next lane gets
+ * a turn. Lanes that are empty are skipped, so no capacity is wasted, and every non-empty lane
+ * gets a turn each round, so no lane is starved. Items within a lane are removed in the order in
+ * which they were added.
+ *
+ * <p> Derived classes assign items to lanes by implementing {@link #getLane}.
+ */
+public abstract class LaneQueue<T> extends Queue<T>
+{
+    /**
+     * Creates a queue with one lane per supplied weight.
+     *
+     * @param weights the maximum number of consecutive items taken from each lane when it is that
+     * lane's turn. Lane zero gets the first turn.
+     */
+    public LaneQueue (int... weights)
+    {
+        super(0);
+        if (weights.length == 0) {
+            throw new IllegalArgumentException("Must have at least one lane.");
+        }
+        _weights = weights.clone();
+        @SuppressWarnings({ "unchecked", "rawtypes" }) Lane<T>[] lanes = new Lane[weights.length];
+        _lanes = lanes;
+        for (int ii = 0; ii < weights.length; ii++) {
+            if (weights[ii] < 1) {
+                throw new IllegalArgumentException("Lane weights must be positive.");
+            }
+            _lanes[ii] = new Lane<T>();
+        }
+        _credits = _weights[0];
+    }
+
+    /**
+     * Returns the number of lanes in this queue.
+     */
+    public int getLaneCount ()
+    {
+        return _lanes.length;
+    }
+
+    /**
+     * Returns the number of items waiting in the specified lane.
+     */
+    public synchronized int size (int lane)
+    {
+        return _lanes[lane].size;
+    }
+
+    @Override
+    public synchronized void clear ()
+    {
+        for (Lane<T> lane : _lanes) {
+            lane.clear();
+        }
+        _count = 0;
+    }
+
+    @Override
+    public synchronized void prepend (T item)
+    {
+        lane(item).prepend(item);
+        noteAdded(true);
+    }
+
+    @Override
+    protected void append0 (T item, boolean notify)
+    {
+        lane(item).append(item);
+        noteAdded(notify);
+    }
+
+    @Override
+    public synchronized T getNonBlocking ()
+    {
+        return (_count == 0) ? null : take();
+    }
+
+    @Override
+    public synchronized int drainTo (Collection<? super T> into)
+    {
+        int count = _count;
+        while (_count > 0) {
+            into.add(take());
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized T get ()
+    {
+        while (_count == 0) {
+            try { wait(); } catch (InterruptedException e) {}
+        }
+        return take();
+    }
+
+    @Override
+    public synchronized String toString ()
+    {
+        StringBuilder buf = new StringBuilder();
+        buf.append("[count=").append(_count);
+        for (int ii = 0; ii < _lanes.length; ii++) {
+            buf.append(", lane").append(ii).append("=").append(_lanes[ii].size);
+        }
+        return buf.append("]").toString();
+    }
+
+    /**
+     * Returns the lane (from zero to {@link #getLaneCount} minus one) in which the supplied item
+     * should be placed. Out of range values are clamped to the nearest lane.
+     */
+    protected abstract int getLane (T item);
+
+    /**
+     * Returns the lane for the supplied item.
+     */
+    protected Lane<T> lane (T item)
+    {
+        int lane = Math.max(0, Math.min(getLane(item), _lanes.length-1));
+        return _lanes[lane];
+    }
+
+    /**
+     * Notes that an item was added to one of our lanes. Must be called while synchronized.
+     */
+    protected void noteAdded (boolean notify)
+    {
+        _count++;
+        if (_count > _highWater) {
+            _highWater = _count;
+        }
+        if (notify) {
+            notify();
+        }
+    }
+
+    /**
+     * Removes the next item according to our weighted round robin schedule. Must be called while
+     * synchronized and only when the queue is not empty.
+     */
+    protected T take ()
+    {
+        while (_credits == 0 || _lanes[_lane].size == 0) {
+            _lane = (_lane + 1) % _lanes.length;
+            _credits = _weights[_lane];
+        }
+        _credits--;
+        _count--;
+        return _lanes[_lane].take();
+    }
+
+    /** A simple growable ring buffer holding the items in a single lane. */
+    protected static class Lane<T>
+    {
+        public int size;
+
+        public void append (T item) {
+            ensureRoom();
+            _items[(_start + size) % _items.length] = item;
+            size++;
+        }
+
+        public void prepend (T item) {
+            ensureRoom();
+            _start = (_start + _items.length - 1) % _items.length;
+            _items[_start] = item;
+            size++;
+        }
+
+        public T take () {
+            T item = _items[_start];
+            _items[_start] = null;
+            _start = (_start + 1) % _items.length;
+            size--;
+            return item;
+        }
+
+        public void clear () {
+            _items = newArray(4);
+            _start = size = 0;
+        }
+
+        protected void ensureRoom () {
+            if (size == _items.length) {
+                T[] items = newArray(size * 2);
+                for (int ii = 0; ii < size; ii++) {
+                    items[ii] = _items[(_start + ii) % _items.length];
+                }
+                _items = items;
+                _start = 0;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        protected static <T> T[] newArray (int size) {
+            return (T[])new Object[size];
+        }
+
+        protected T[] _items = Lane.<T>newArray(4);
+        protected int _start;
+    }
+
+    /** Our lanes, in the order in which they take turns. */
+    protected Lane<T>[] _lanes;
+
+    /** The weight of each lane. */
+    protected int[] _weights;
+
+    /** The lane whose turn it is. */
+    protected int _lane;
+
+    /** The number of items the current lane may yet supply on this turn. */
+    protected int _credits;
+}
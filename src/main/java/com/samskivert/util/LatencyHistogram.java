@@ -0,0 +1,308 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram for recording latencies (or any other non-negative values) over a very wide range
+ * with bounded relative error, in the manner of an HDR histogram. Values are placed into
+ * log-linear buckets: each power of two is divided into <code>2^precisionBits</code> linear
+ * sub-buckets, so a value is always reported to within <code>1/2^precisionBits</code> of its
+ * true value, whether it is a few nanoseconds or a few hours.
+ *
+ * <p> Recording a value is a handful of atomic operations and never allocates, so a histogram may
+ * be updated concurrently from any number of threads. {@link #snapshot} and {@link #merge} may
+ * also be called while values are being recorded: they see each bucket atomically but not all
+ * buckets at the same instant, which is fine for reporting purposes.
+ */
+public class LatencyHistogram
+{
+    /** The default number of precision bits, which yields roughly three percent error. */
+    public static final int DEFAULT_PRECISION_BITS = 5;
+
+    /**
+     * Creates a histogram with {@link #DEFAULT_PRECISION_BITS} precision.
+     */
+    public LatencyHistogram ()
+    {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * Creates a histogram with the specified precision.
+     *
+     * @param precisionBits the number of bits of precision with which values are recorded,
+     * between 1 and 10. Each additional bit halves the error and doubles the memory used.
+     */
+    public LatencyHistogram (int precisionBits)
+    {
+        if (precisionBits < 1 || precisionBits > 10) {
+            throw new IllegalArgumentException("Precision bits must be in [1, 10]: " +
+                                               precisionBits);
+        }
+        _precisionBits = precisionBits;
+        _subCount = 1 << precisionBits;
+        // one set of linear buckets for values below _subCount, then one set for each power of
+        // two from _subCount up to Long.MAX_VALUE
+        _counts = new AtomicLongArray((64 - precisionBits) * _subCount);
+    }
+
+    /**
+     * Returns the number of bits of precision with which this histogram records values.
+     */
+    public int getPrecisionBits ()
+    {
+        return _precisionBits;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     */
+    public void record (long value)
+    {
+        if (value < 0) {
+            value = 0;
+        }
+        _counts.incrementAndGet(bucketIndex(value));
+        _count.incrementAndGet();
+        _total.addAndGet(value);
+        for (long max; value > (max = _max.get()); ) {
+            if (_max.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds all of the values recorded in the supplied histogram to this histogram.
+     *
+     * @exception IllegalArgumentException if the other histogram has a different precision.
+     */
+    public void merge (LatencyHistogram other)
+    {
+        if (other._precisionBits != _precisionBits) {
+            throw new IllegalArgumentException(
+                "Cannot merge histograms of differing precision [ours=" + _precisionBits +
+                ", theirs=" + other._precisionBits + "]");
+        }
+        long count = 0;
+        for (int ii = 0, nn = _counts.length(); ii < nn; ii++) {
+            long bcount = other._counts.get(ii);
+            if (bcount != 0) {
+                _counts.addAndGet(ii, bcount);
+                count += bcount;
+            }
+        }
+        _count.addAndGet(count);
+        _total.addAndGet(other._total.get());
+        for (long max, omax = other._max.get(); omax > (max = _max.get()); ) {
+            if (_max.compareAndSet(max, omax)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of this histogram's current state.
+     */
+    public LatencyHistogram snapshot ()
+    {
+        return copy(false);
+    }
+
+    /**
+     * Returns a copy of this histogram's current state and clears this histogram. Values
+     * recorded concurrently with this call will end up either in the snapshot or in this
+     * histogram, but will not be lost.
+     */
+    public LatencyHistogram snapshotAndReset ()
+    {
+        return copy(true);
+    }
+
+    /**
+     * Clears all recorded values from this histogram.
+     */
+    public void reset ()
+    {
+        copy(true);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     */
+    public long getCount ()
+    {
+        return _count.get();
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     */
+    public long getTotal ()
+    {
+        return _total.get();
+    }
+
+    /**
+     * Returns the largest value recorded (exactly), or zero if no values have been recorded.
+     */
+    public long getMax ()
+    {
+        return _max.get();
+    }
+
+    /**
+     * Returns the (approximate) smallest value recorded, or zero if no values have been
+     * recorded.
+     */
+    public long getMin ()
+    {
+        for (int ii = 0, nn = _counts.length(); ii < nn; ii++) {
+            if (_counts.get(ii) != 0) {
+                return bucketLowValue(ii);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Returns the mean of the recorded values, or zero if no values have been recorded.
+     */
+    public double getMean ()
+    {
+        long count = _count.get();
+        return (count == 0) ? 0 : (_total.get() / (double)count);
+    }
+
+    /**
+     * Returns the value at or below which the specified percentage of recorded values fall. The
+     * returned value is the highest value that is equivalent (within this histogram's precision)
+     * to the true value, but never more than {@link #getMax}.
+     *
+     * @param percentile a percentage between 0 and 100, e.g. 99.9.
+     */
+    public long getValueAtPercentile (double percentile)
+    {
+        long count = 0;
+        for (int ii = 0, nn = _counts.length(); ii < nn; ii++) {
+            count += _counts.get(ii);
+        }
+        if (count == 0) {
+            return 0L;
+        }
+        double pct = Math.max(0, Math.min(percentile, 100));
+        long target = Math.max(1L, (long)Math.ceil(pct * count / 100));
+        long seen = 0;
+        for (int ii = 0, nn = _counts.length(); ii < nn; ii++) {
+            seen += _counts.get(ii);
+            if (seen >= target) {
+                return Math.min(bucketHighValue(ii), _max.get());
+            }
+        }
+        return _max.get();
+    }
+
+    /**
+     * Returns a summary of this histogram: the count, mean, common percentiles and maximum.
+     */
+    public String summarize ()
+    {
+        StringBuilder buf = new StringBuilder();
+        buf.append("count=").append(getCount());
+        buf.append(", mean=").append(Math.round(getMean()));
+        buf.append(", p50=").append(getValueAtPercentile(50));
+        buf.append(", p90=").append(getValueAtPercentile(90));
+        buf.append(", p99=").append(getValueAtPercentile(99));
+        buf.append(", p99.9=").append(getValueAtPercentile(99.9));
+        buf.append(", max=").append(getMax());
+        return buf.toString();
+    }
+
+    @Override
+    public String toString ()
+    {
+        return "[" + summarize() + "]";
+    }
+
+    /**
+     * Returns the index of the bucket that holds the supplied (non-negative) value.
+     */
+    protected int bucketIndex (long value)
+    {
+        if (value < _subCount) {
+            return (int)value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - _precisionBits;
+        // (value >>> shift) is in [_subCount, 2*_subCount)
+        return (shift * _subCount) + (int)(value >>> shift);
+    }
+
+    /**
+     * Returns the smallest value that is placed in the specified bucket.
+     */
+    protected long bucketLowValue (int index)
+    {
+        if (index < 2*_subCount) {
+            return index;
+        }
+        int shift = index / _subCount - 1;
+        return (long)(_subCount + index % _subCount) << shift;
+    }
+
+    /**
+     * Returns the largest value that is placed in the specified bucket.
+     */
+    protected long bucketHighValue (int index)
+    {
+        if (index < 2*_subCount) {
+            return index;
+        }
+        int shift = index / _subCount - 1;
+        return bucketLowValue(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * Copies our state into a new histogram, optionally clearing our buckets as we go.
+     */
+    protected LatencyHistogram copy (boolean reset)
+    {
+        LatencyHistogram copy = new LatencyHistogram(_precisionBits);
+        long count = 0;
+        for (int ii = 0, nn = _counts.length(); ii < nn; ii++) {
+            long bcount = reset ? _counts.getAndSet(ii, 0) : _counts.get(ii);
+            copy._counts.set(ii, bcount);
+            count += bcount;
+        }
+        if (reset) {
+            _count.addAndGet(-count);
+            copy._total.set(_total.getAndSet(0));
+            copy._max.set(_max.getAndSet(0));
+        } else {
+            copy._total.set(_total.get());
+            copy._max.set(_max.get());
+        }
+        copy._count.set(count);
+        return copy;
+    }
+
+    /** The number of precision bits and the corresponding number of sub-buckets. */
+    protected final int _precisionBits, _subCount;
+
+    /** The number of values in each bucket. */
+    protected final AtomicLongArray _counts;
+
+    /** The number of values recorded. */
+    protected final AtomicLong _count = new AtomicLong();
+
+    /** The sum of the values recorded. */
+    protected final AtomicLong _total = new AtomicLong();
+
+    /** The largest value recorded. */
+    protected final AtomicLong _max = new AtomicLong();
+}
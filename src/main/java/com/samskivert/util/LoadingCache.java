@@ -0,0 +1,342 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Combines an {@link LRUHashMap} with a loader that supplies the values for keys that are not in
+ * the map. At most one load is in progress for any key at a time: callers that request a key
+ * while it is being loaded wait for (or are given a future for) the result of that load, rather
+ * than each running the same, often expensive, load themselves.
+ *
+ * <pre>
+ * LoadingCache&lt;Integer,User&gt; users = new LoadingCache&lt;Integer,User&gt;(
+ *     new LRUHashMap&lt;Integer,User&gt;(1000), new LRUHashMap.Loader&lt;Integer,User&gt;() {
+ *         public User load (Integer userId) throws Exception {
+ *             return _userRepo.loadUser(userId);
+ *         }
+ *     });
+ * </pre>
+ *
+ * If the loader also implements {@link BatchLoader}, {@link #getAll} loads all of its missing
+ * keys with a single call. Values that load as null are returned but not cached, and loads that
+ * fail are reported to every caller waiting on them and are not cached either.
+ */
+public class LoadingCache<K,V>
+{
+    /**
+     * A loader that can load many values at once.
+     */
+    public static interface BatchLoader<K,V> extends LRUHashMap.Loader<K,V>
+    {
+        /**
+         * Loads the values for the specified keys. Keys with no value may be omitted from the
+         * returned map.
+         */
+        public Map<K,V> loadAll (Collection<K> keys) throws Exception;
+    }
+
+    /**
+     * Creates a loading cache that stores its values in the supplied map and loads them with the
+     * supplied loader.
+     */
+    public LoadingCache (LRUHashMap<K,V> map, LRUHashMap.Loader<K,V> loader)
+    {
+        _map = map;
+        _loader = loader;
+    }
+
+    /**
+     * Returns the map in which this cache stores its values.
+     */
+    public LRUHashMap<K,V> getMap ()
+    {
+        return _map;
+    }
+
+    /**
+     * Returns the value for the specified key, loading it (on the calling thread) if necessary or
+     * waiting for it if another thread is already loading it.
+     *
+     * @exception ExecutionException wrapping the exception thrown by the loader, if it failed.
+     */
+    public V get (K key)
+        throws InterruptedException, ExecutionException
+    {
+        V value = _map.get(key);
+        if (value != null) {
+            return value;
+        }
+        Promise<V> promise = new Promise<V>();
+        Promise<V> loading = _loading.putIfAbsent(key, promise);
+        if (loading != null) {
+            _coalesced.incrementAndGet();
+            return loading.get();
+        }
+        load(key, promise);
+        return promise.get();
+    }
+
+    /**
+     * Returns a future for the value of the specified key. If the value is not cached and not
+     * already being loaded, it is loaded on the supplied executor (which may be an {@link
+     * Invoker}). The result of a load is shared by every caller waiting on it, so the returned
+     * future cannot be cancelled: its <code>cancel</code> method does nothing and returns false.
+     */
+    public Future<V> getFuture (final K key, Executor executor)
+    {
+        final Promise<V> promise = new Promise<V>();
+        V value = _map.get(key);
+        if (value != null) {
+            promise.complete(value);
+            return promise;
+        }
+        Promise<V> loading = _loading.putIfAbsent(key, promise);
+        if (loading != null) {
+            _coalesced.incrementAndGet();
+            return loading;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run () {
+                    load(key, promise);
+                }
+            });
+        } catch (RuntimeException re) {
+            finish(key, promise, null, re);
+        }
+        return promise;
+    }
+
+    /**
+     * Returns the values for all of the specified keys that have one. Values that are not cached
+     * and not already being loaded by another thread are loaded on the calling thread, in a
+     * single batch if our loader is a {@link BatchLoader}.
+     *
+     * @exception ExecutionException wrapping the first exception thrown by a loader, if any
+     * failed.
+     */
+    public Map<K,V> getAll (Collection<? extends K> keys)
+        throws InterruptedException, ExecutionException
+    {
+        Map<K,V> result = new HashMap<K,V>();
+        Map<K,Promise<V>> waiting = new HashMap<K,Promise<V>>();
+        Map<K,Promise<V>> claimed = new HashMap<K,Promise<V>>();
+        for (K key : keys) {
+            V value = _map.get(key);
+            if (value != null) {
+                result.put(key, value);
+                continue;
+            }
+            if (claimed.containsKey(key) || waiting.containsKey(key)) {
+                continue; // duplicate key
+            }
+            Promise<V> promise = new Promise<V>();
+            Promise<V> loading = _loading.putIfAbsent(key, promise);
+            if (loading != null) {
+                _coalesced.incrementAndGet();
+                waiting.put(key, loading);
+            } else {
+                claimed.put(key, promise);
+            }
+        }
+
+        // load the keys we claimed, then collect the results of those that others are loading
+        if (!claimed.isEmpty()) {
+            if (_loader instanceof BatchLoader<?,?>) {
+                loadAll(claimed);
+            } else {
+                for (Map.Entry<K,Promise<V>> entry : claimed.entrySet()) {
+                    load(entry.getKey(), entry.getValue());
+                }
+            }
+            waiting.putAll(claimed);
+        }
+        for (Map.Entry<K,Promise<V>> entry : waiting.entrySet()) {
+            V value = entry.getValue().get();
+            if (value != null) {
+                result.put(entry.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the specified key from the cache. A load of the key that is in progress is not
+     * affected, and its result will be cached.
+     */
+    public void invalidate (K key)
+    {
+        _map.remove(key);
+    }
+
+    /**
+     * Returns the number of loads (or batch loads) performed.
+     */
+    public long getLoadCount ()
+    {
+        return _loadTimes.getCount();
+    }
+
+    /**
+     * Returns the number of loads (or batch loads) that failed.
+     */
+    public long getLoadFailures ()
+    {
+        return _failures.get();
+    }
+
+    /**
+     * Returns the number of requests for uncached values that were satisfied by waiting for a
+     * load already in progress, rather than by performing a load.
+     */
+    public long getCoalescedLoads ()
+    {
+        return _coalesced.get();
+    }
+
+    /**
+     * Returns a snapshot of the time (in nanoseconds) taken by each load (or batch load).
+     */
+    public LatencyHistogram getLoadTimes ()
+    {
+        return _loadTimes.snapshot();
+    }
+
+    /**
+     * Loads the value for a key whose load we have claimed, and delivers it to the supplied
+     * promise.
+     */
+    protected void load (K key, Promise<V> promise)
+    {
+        // the value may have been cached by a load that finished after our caller checked the
+        // map but before it claimed the key
+        V value = _map.get(key);
+        if (value != null) {
+            finish(key, promise, value, null);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            value = _loader.load(key);
+            _loadTimes.record(System.nanoTime() - start);
+            finish(key, promise, value, null);
+        } catch (Throwable t) {
+            _loadTimes.record(System.nanoTime() - start);
+            _failures.incrementAndGet();
+            finish(key, promise, null, t);
+        }
+    }
+
+    /**
+     * Loads the values for the supplied claimed keys with a single batch load, and delivers them
+     * to their promises.
+     */
+    protected void loadAll (Map<K,Promise<V>> claimed)
+    {
+        List<K> keys = new ArrayList<K>(claimed.size());
+        for (Map.Entry<K,Promise<V>> entry : claimed.entrySet()) {
+            V value = _map.get(entry.getKey());
+            if (value != null) {
+                finish(entry.getKey(), entry.getValue(), value, null);
+            } else {
+                keys.add(entry.getKey());
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        Map<K,V> values = null;
+        Throwable failure = null;
+        try {
+            values = ((BatchLoader<K,V>)_loader).loadAll(keys);
+        } catch (Throwable t) {
+            _failures.incrementAndGet();
+            failure = t;
+        }
+        _loadTimes.record(System.nanoTime() - start);
+        for (K key : keys) {
+            finish(key, claimed.get(key), (values == null) ? null : values.get(key), failure);
+        }
+    }
+
+    /**
+     * Caches a loaded value (if it is non-null), delivers the result of a load to its promise and
+     * releases our claim on the key.
+     */
+    protected void finish (K key, Promise<V> promise, V value, Throwable failure)
+    {
+        try {
+            // cache the value before releasing our claim, so that nobody misses in between
+            if (failure == null && value != null) {
+                _map.put(key, value);
+            }
+        } catch (RuntimeException re) {
+            failure = re;
+        } finally {
+            _loading.remove(key, promise);
+        }
+        if (failure != null) {
+            promise.fail(failure);
+        } else {
+            promise.complete(value);
+        }
+    }
+
+    /** A future whose result is supplied directly, rather than computed by running it. A promise
+     * may be shared by many callers, so it cannot be cancelled by any one of them. */
+    protected static class Promise<V> extends FutureTask<V>
+    {
+        public Promise () {
+            super(new Callable<V>() {
+                public V call () {
+                    throw new IllegalStateException("Promises are completed, not run");
+                }
+            });
+        }
+
+        public void complete (V value) {
+            set(value);
+        }
+
+        public void fail (Throwable cause) {
+            setException(cause);
+        }
+
+        @Override public boolean cancel (boolean mayInterruptIfRunning) {
+            return false;
+        }
+    }
+
+    /** The map in which we cache values. */
+    protected LRUHashMap<K,V> _map;
+
+    /** Loads values that are not in the map. */
+    protected LRUHashMap.Loader<K,V> _loader;
+
+    /** The results of the loads that are in progress, by key. */
+    protected ConcurrentHashMap<K,Promise<V>> _loading = new ConcurrentHashMap<K,Promise<V>>();
+
+    /** The time taken by each load. */
+    protected LatencyHistogram _loadTimes = new LatencyHistogram();
+
+    /** Our failure and coalesced request counts. */
+    protected AtomicLong _failures = new AtomicLong(), _coalesced = new AtomicLong();
+}
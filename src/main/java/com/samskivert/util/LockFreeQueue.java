@@ -0,0 +1,289 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Collection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link Queue} that allows any number of threads to append items without acquiring a lock, but
+ * which supports only a single consumer thread. Appends are a single atomic swap on the tail of a
+ * linked list of nodes and a consumer that is waiting for an item is parked and unparked rather
+ * than using wait/notify on the queue monitor.
+ *
+ * <p> This is suitable for the queue that feeds an {@link Invoker} or a {@link BasicRunQueue}
+ * where many threads post items and only the dispatch thread removes them. <em>Note:</em> {@link
+ * #get}, {@link #getNonBlocking}, {@link #drainTo}, {@link #waitForItem}, {@link #prepend} and
+ * {@link #clear} must only ever be called by the single consumer thread.
+ *
+ * <p> Null items are not permitted, as a null item could not be told apart from the null that
+ * {@link #getNonBlocking} returns when the queue is empty; appending one throws {@link
+ * NullPointerException}.
+ */
+public class LockFreeQueue<T> extends Queue<T>
+{
+    public static <T> LockFreeQueue<T> newLockFreeQueue ()
+    {
+        return new LockFreeQueue<T>();
+    }
+
+    public LockFreeQueue ()
+    {
+        super(0);
+        _head = new Node<T>(null);
+        _tail = new AtomicReference<Node<T>>(_head);
+    }
+
+    @Override
+    public void clear ()
+    {
+        while (poll() != null) {
+            // keep draining
+        }
+    }
+
+    @Override
+    public boolean hasElements ()
+    {
+        return (_itemCount.get() != 0);
+    }
+
+    @Override
+    public int size ()
+    {
+        return _itemCount.get();
+    }
+
+    /**
+     * Inserts the supplied item at the front of the queue. This must only be called by the
+     * consumer thread.
+     */
+    @Override
+    public void prepend (T item)
+    {
+        checkItem(item);
+        // our head node is the stub that precedes the first item; we place the item in the stub
+        // and link a new stub in front of it, which leaves the producers' view of the list intact
+        _head.item = item;
+        Node<T> stub = new Node<T>(null);
+        stub.next = _head;
+        _head = stub;
+        noteCount(_itemCount.incrementAndGet());
+    }
+
+    @Override
+    public void append (T item)
+    {
+        append0(item, true);
+    }
+
+    @Override
+    public void appendSilent (T item)
+    {
+        append0(item, false);
+    }
+
+    @Override
+    public void appendLoud (T item)
+    {
+        append0(item, true);
+    }
+
+    @Override
+    protected void append0 (T item, boolean notify)
+    {
+        checkItem(item);
+        Node<T> node = new Node<T>(item);
+        noteCount(_itemCount.incrementAndGet());
+        Node<T> prev = _tail.getAndSet(node);
+        // between the swap above and this link, the consumer will see the queue as empty; this is
+        // fine because we unpark the consumer only after the link is made
+        prev.next = node;
+
+        if (notify) {
+            Thread waiter = _waiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * Throws a {@link NullPointerException} if the supplied item is null.
+     */
+    protected static void checkItem (Object item)
+    {
+        if (item == null) {
+            throw new NullPointerException("LockFreeQueue does not permit null items.");
+        }
+    }
+
+    @Override
+    public int getHighWaterMark ()
+    {
+        return _highCount.get();
+    }
+
+    @Override
+    public void resetHighWaterMark ()
+    {
+        _highCount.set(_itemCount.get());
+    }
+
+    @Override
+    public T getNonBlocking ()
+    {
+        return poll();
+    }
+
+    @Override
+    public int drainTo (Collection<? super T> into)
+    {
+        int count = 0;
+        for (T item; (item = poll()) != null; count++) {
+            into.add(item);
+        }
+        return count;
+    }
+
+    @Override
+    public void waitForItem ()
+    {
+        while (_head.next == null) {
+            park(0L);
+        }
+    }
+
+    @Override
+    public T get (long maxwait)
+    {
+        T item = poll();
+        if (item != null) {
+            return item;
+        }
+        // like Object.wait(0), as used by our base class, a zero wait means wait indefinitely
+        if (maxwait == 0L) {
+            return get();
+        }
+
+        long deadline = System.nanoTime() + maxwait * 1000000L;
+        for (long remain = maxwait * 1000000L; remain > 0; ) {
+            park(remain);
+            if ((item = poll()) != null) {
+                return item;
+            }
+            remain = deadline - System.nanoTime();
+        }
+        return null;
+    }
+
+    @Override
+    public T get ()
+    {
+        T item;
+        while ((item = poll()) == null) {
+            park(0L);
+        }
+        return item;
+    }
+
+    @Override
+    public String toString ()
+    {
+        StringBuilder buf = new StringBuilder();
+        buf.append("[count=").append(_itemCount.get());
+        buf.append(", elements={");
+        int ii = 0;
+        for (Node<T> node = _head.next; node != null; node = node.next) {
+            if (ii++ > 0) buf.append(", ");
+            buf.append(node.item);
+        }
+        return buf.append("}]").toString();
+    }
+
+    /**
+     * Removes and returns the item at the head of the queue, or null if there are no (completely
+     * appended) items on the queue.
+     */
+    protected T poll ()
+    {
+        Node<T> next = _head.next;
+        if (next == null) {
+            return null;
+        }
+        // the node that held the item becomes our new stub
+        T item = next.item;
+        next.item = null;
+        _head = next;
+        _itemCount.decrementAndGet();
+        return item;
+    }
+
+    /**
+     * Updates our high water mark if the supplied count exceeds it.
+     */
+    protected void noteCount (int count)
+    {
+        for (int high; count > (high = _highCount.get()); ) {
+            if (_highCount.compareAndSet(high, count)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Parks the calling (consumer) thread until an item is appended or the specified number of
+     * nanoseconds elapse (zero means wait indefinitely).
+     */
+    protected void park (long nanos)
+    {
+        _waiter = Thread.currentThread();
+        try {
+            // recheck after publishing ourselves as the waiter so that we don't miss an append
+            // that happened between our failed poll and our becoming visible to producers
+            if (_head.next == null) {
+                if (nanos > 0) {
+                    LockSupport.parkNanos(this, nanos);
+                } else {
+                    LockSupport.park(this);
+                }
+                // like the monitor-based queue, we ignore interrupts while waiting
+                Thread.interrupted();
+            }
+        } finally {
+            _waiter = null;
+        }
+    }
+
+    /** Holds a single item in our linked list. */
+    protected static class Node<T>
+    {
+        public T item;
+        public volatile Node<T> next;
+
+        public Node (T item) {
+            this.item = item;
+        }
+    }
+
+    /** The stub node that precedes the first item on the queue. Only read by the consumer. */
+    protected Node<T> _head;
+
+    /** The most recently appended node, swapped atomically by producers. */
+    protected AtomicReference<Node<T>> _tail;
+
+    /** The number of items on the queue (approximate while appends are in progress). */
+    protected AtomicInteger _itemCount = new AtomicInteger();
+
+    /** The largest number of items that have been on the queue at once. */
+    protected AtomicInteger _highCount = new AtomicInteger();
+
+    /** The consumer thread, when it is parked waiting for an item. */
+    protected volatile Thread _waiter;
+}
@@ -0,0 +1,17 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+/**
+ * An interface similar to java.util.Iterable.
+ */
+public interface LongIterable
+{
+    /**
+     * Return a LongIterator over the longs in this object.
+     */
+    public LongIterator longIterator ();
+}
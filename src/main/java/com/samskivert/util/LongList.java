@@ -0,0 +1,640 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.Serializable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of longs, which stores its values in a <code>long[]</code> rather than boxing
+ * them. The array grows by half again whenever it fills, so appending is amortized constant time.
+ *
+ * <p> The list is also a <code>List&lt;Long&gt;</code> and a {@link LongIterable}. Use the
+ * methods that take and return <code>long</code>s ({@link #getLong}, {@link #add(long)}, {@link
+ * #removeAt}, etc.) to avoid boxing. Note that, as with any <code>List</code>, {@link #remove(int)}
+ * removes the value at an index; use {@link #removeValue} to remove a value. See {@link IntList}.
+ */
+public class LongList extends AbstractList<Long>
+    implements LongIterable, RandomAccess, Cloneable, Serializable
+{
+    /**
+     * Creates a list with the specified starting values.
+     */
+    public LongList (long[] values)
+    {
+        this(values.length);
+        addAll(values, 0, values.length);
+    }
+
+    /**
+     * Creates a list with the specified starting values.
+     *
+     * @throws NullPointerException if the collection contains any null values.
+     */
+    public LongList (Collection<Long> values)
+    {
+        this(values.size());
+        addAll(values);
+    }
+
+    /**
+     * Creates a list with the specified initial capacity.
+     */
+    public LongList (int initialCapacity)
+    {
+        _values = new long[initialCapacity];
+    }
+
+    /**
+     * Creates an empty list with the default initial capacity.
+     */
+    public LongList ()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the value at the specified index.
+     */
+    public long getLong (int index)
+    {
+        checkIndex(index);
+        return _values[index];
+    }
+
+    /**
+     * Replaces the value at the specified index.
+     *
+     * @return the value previously at that index.
+     */
+    public long setLong (int index, long value)
+    {
+        checkIndex(index);
+        long ovalue = _values[index];
+        _values[index] = value;
+        return ovalue;
+    }
+
+    /**
+     * Appends the specified value to the end of this list.
+     *
+     * @return true, as specified by {@link Collection#add}.
+     */
+    public boolean add (long value)
+    {
+        if (_size == _values.length) {
+            grow(_size + 1);
+        }
+        _values[_size++] = value;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Inserts the specified value at the specified index, shifting the value at that index (if
+     * any) and those after it up by one.
+     */
+    public void add (int index, long value)
+    {
+        if (index < 0 || index > _size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        }
+        if (_size == _values.length) {
+            grow(_size + 1);
+        }
+        System.arraycopy(_values, index, _values, index + 1, _size - index);
+        _values[index] = value;
+        _size++;
+        modCount++;
+    }
+
+    /**
+     * Appends all of the specified values to the end of this list.
+     *
+     * @return true if the list changed as a result of the call.
+     */
+    public boolean addAll (long[] values)
+    {
+        return addAll(values, 0, values.length);
+    }
+
+    /**
+     * Appends <code>length</code> values, starting at <code>offset</code>, from the supplied array
+     * to the end of this list.
+     *
+     * @return true if the list changed as a result of the call.
+     */
+    public boolean addAll (long[] values, int offset, int length)
+    {
+        if (length == 0) {
+            return false;
+        }
+        ensureCapacity(_size + length);
+        System.arraycopy(values, offset, _values, _size, length);
+        _size += length;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the value at the specified index, shifting those after it down by one.
+     *
+     * @return the removed value.
+     */
+    public long removeAt (int index)
+    {
+        checkIndex(index);
+        long value = _values[index];
+        System.arraycopy(_values, index + 1, _values, index, _size - index - 1);
+        _size--;
+        modCount++;
+        return value;
+    }
+
+    /**
+     * Removes the first occurrence of the specified value from this list.
+     *
+     * @return true if the value was found and removed.
+     */
+    public boolean removeValue (long value)
+    {
+        int index = indexOf(value);
+        if (index == -1) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Returns true if this list contains the specified value.
+     */
+    public boolean contains (long value)
+    {
+        return (indexOf(value) != -1);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the specified value in this list, or -1 if it
+     * is not in the list.
+     */
+    public int indexOf (long value)
+    {
+        for (int ii = 0; ii < _size; ii++) {
+            if (_values[ii] == value) {
+                return ii;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last occurrence of the specified value in this list, or -1 if it
+     * is not in the list.
+     */
+    public int lastIndexOf (long value)
+    {
+        for (int ii = _size - 1; ii >= 0; ii--) {
+            if (_values[ii] == value) {
+                return ii;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a new array containing the values in this list.
+     */
+    public long[] toLongArray ()
+    {
+        long[] values = new long[_size];
+        System.arraycopy(_values, 0, values, 0, _size);
+        return values;
+    }
+
+    /**
+     * Copies the values in this list into the supplied array at the specified offset.
+     *
+     * @return the supplied array.
+     */
+    public long[] toLongArray (long[] target, int offset)
+    {
+        System.arraycopy(_values, 0, target, offset, _size);
+        return target;
+    }
+
+    /**
+     * Sorts the values in this list into ascending order.
+     */
+    public void sort ()
+    {
+        Arrays.sort(_values, 0, _size);
+        modCount++;
+    }
+
+    /**
+     * Grows the capacity of this list, if necessary, such that it can hold at least the specified
+     * number of values without growing again.
+     */
+    public void ensureCapacity (int minCapacity)
+    {
+        if (minCapacity > _values.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Shrinks the capacity of this list to its current size.
+     */
+    public void trimToSize ()
+    {
+        if (_size < _values.length) {
+            long[] values = new long[_size];
+            System.arraycopy(_values, 0, values, 0, _size);
+            _values = values;
+        }
+    }
+
+    // from interface LongIterable
+    public LongIterator longIterator ()
+    {
+        return new AbstractLongIterator() {
+            public boolean hasNext () {
+                return (_pos < _size);
+            }
+
+            public long nextLong () {
+                if (modCount != _expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (_pos >= _size) {
+                    throw new NoSuchElementException();
+                }
+                _last = _pos;
+                return _values[_pos++];
+            }
+
+            @Override public void remove () {
+                if (_last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != _expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(_last);
+                _pos = _last;
+                _last = -1;
+                _expectedModCount = modCount;
+            }
+
+            protected int _pos, _last = -1;
+            protected int _expectedModCount = modCount;
+        };
+    }
+
+    @Override // from AbstractList<Long>
+    public Iterator<Long> iterator ()
+    {
+        return longIterator();
+    }
+
+    @Override // from AbstractList<Long>
+    public Long get (int index)
+    {
+        return getLong(index);
+    }
+
+    @Override // from AbstractList<Long>
+    public Long set (int index, Long value)
+    {
+        return setLong(index, value);
+    }
+
+    @Override // from AbstractList<Long>
+    public boolean add (Long value)
+    {
+        return add(value.longValue());
+    }
+
+    @Override // from AbstractList<Long>
+    public void add (int index, Long value)
+    {
+        add(index, value.longValue());
+    }
+
+    @Override // from AbstractList<Long>
+    public Long remove (int index)
+    {
+        return removeAt(index);
+    }
+
+    @Override // from AbstractCollection<Long>
+    public boolean addAll (Collection<? extends Long> c)
+    {
+        if (c instanceof LongList) {
+            LongList other = (LongList)c;
+            return addAll(other._values, 0, other._size);
+        }
+        ensureCapacity(_size + c.size());
+        if (c instanceof LongIterable) {
+            int osize = _size;
+            for (LongIterator iter = ((LongIterable)c).longIterator(); iter.hasNext(); ) {
+                add(iter.nextLong());
+            }
+            return (_size != osize);
+        }
+        return super.addAll(c);
+    }
+
+    @Override // from AbstractCollection<Long>
+    public boolean removeAll (Collection<?> c)
+    {
+        return batchRemove(c, false);
+    }
+
+    @Override // from AbstractCollection<Long>
+    public boolean retainAll (Collection<?> c)
+    {
+        return batchRemove(c, true);
+    }
+
+    @Override // from AbstractList<Long>
+    public void removeRange (int fromIndex, int toIndex)
+    {
+        if (fromIndex < 0 || toIndex > _size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                "From: " + fromIndex + ", To: " + toIndex + ", Size: " + _size);
+        }
+        System.arraycopy(_values, toIndex, _values, fromIndex, _size - toIndex);
+        _size -= (toIndex - fromIndex);
+        modCount++;
+    }
+
+    /**
+     * Returns a view of the portion of this list between <code>fromIndex</code> (inclusive) and
+     * <code>toIndex</code> (exclusive), which reads and writes this list's values directly rather
+     * than copying them. The view's values can be changed, and it can be cleared (which removes
+     * its values from this list), but its size can otherwise not be changed. If this list's size
+     * is changed other than through the view, the view becomes invalid.
+     */
+    @Override // from AbstractList<Long>
+    public SubList subList (int fromIndex, int toIndex)
+    {
+        if (fromIndex < 0 || toIndex > _size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                "From: " + fromIndex + ", To: " + toIndex + ", Size: " + _size);
+        }
+        return new SubList(fromIndex, toIndex - fromIndex);
+    }
+
+    @Override // from AbstractCollection<Long>
+    public int size ()
+    {
+        return _size;
+    }
+
+    @Override // from AbstractCollection<Long>
+    public boolean contains (Object o)
+    {
+        return (o instanceof Long) && contains(((Long)o).longValue());
+    }
+
+    @Override // from AbstractList<Long>
+    public int indexOf (Object o)
+    {
+        return (o instanceof Long) ? indexOf(((Long)o).longValue()) : -1;
+    }
+
+    @Override // from AbstractList<Long>
+    public int lastIndexOf (Object o)
+    {
+        return (o instanceof Long) ? lastIndexOf(((Long)o).longValue()) : -1;
+    }
+
+    @Override // from AbstractList<Long>
+    public void clear ()
+    {
+        _size = 0;
+        modCount++;
+    }
+
+    @Override // from AbstractList<Long>
+    public boolean equals (Object o)
+    {
+        if (o instanceof LongList) {
+            LongList other = (LongList)o;
+            if (other._size != _size) {
+                return false;
+            }
+            for (int ii = 0; ii < _size; ii++) {
+                if (_values[ii] != other._values[ii]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override // from AbstractList<Long>
+    public int hashCode ()
+    {
+        // as specified by List.hashCode() and Long.hashCode()
+        int h = 1;
+        for (int ii = 0; ii < _size; ii++) {
+            h = 31 * h + (int)(_values[ii] ^ (_values[ii] >>> 32));
+        }
+        return h;
+    }
+
+    @Override
+    public LongList clone ()
+    {
+        try {
+            LongList nlist = (LongList)super.clone();
+            nlist._values = toLongArray();
+            return nlist;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    /**
+     * A view of a portion of an {@link LongList}. See {@link LongList#subList}.
+     */
+    public class SubList extends AbstractList<Long>
+        implements LongIterable, RandomAccess
+    {
+        /**
+         * Returns the value at the specified index of this view.
+         */
+        public long getLong (int index)
+        {
+            return _values[toListIndex(index)];
+        }
+
+        /**
+         * Replaces the value at the specified index of this view.
+         *
+         * @return the value previously at that index.
+         */
+        public long setLong (int index, long value)
+        {
+            int lindex = toListIndex(index);
+            long ovalue = _values[lindex];
+            _values[lindex] = value;
+            return ovalue;
+        }
+
+        /**
+         * Returns a new array containing the values in this view.
+         */
+        public long[] toLongArray ()
+        {
+            checkModCount();
+            long[] values = new long[_length];
+            System.arraycopy(_values, _offset, values, 0, _length);
+            return values;
+        }
+
+        // from interface LongIterable
+        public LongIterator longIterator ()
+        {
+            checkModCount();
+            return new AbstractLongIterator() {
+                public boolean hasNext () {
+                    return (_pos < _length);
+                }
+                public long nextLong () {
+                    if (_pos >= _length) {
+                        throw new NoSuchElementException();
+                    }
+                    return getLong(_pos++);
+                }
+                protected int _pos;
+            };
+        }
+
+        @Override // from AbstractList<Long>
+        public Iterator<Long> iterator ()
+        {
+            return longIterator();
+        }
+
+        @Override // from AbstractList<Long>
+        public Long get (int index)
+        {
+            return getLong(index);
+        }
+
+        @Override // from AbstractList<Long>
+        public Long set (int index, Long value)
+        {
+            return setLong(index, value);
+        }
+
+        @Override // from AbstractCollection<Long>
+        public int size ()
+        {
+            checkModCount();
+            return _length;
+        }
+
+        @Override // from AbstractList<Long>
+        public void clear ()
+        {
+            checkModCount();
+            LongList.this.removeRange(_offset, _offset + _length);
+            _length = 0;
+            _expectedModCount = LongList.this.modCount;
+        }
+
+        protected SubList (int offset, int length)
+        {
+            _offset = offset;
+            _length = length;
+        }
+
+        protected int toListIndex (int index)
+        {
+            checkModCount();
+            if (index < 0 || index >= _length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _length);
+            }
+            return _offset + index;
+        }
+
+        protected void checkModCount ()
+        {
+            if (LongList.this.modCount != _expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        protected int _offset, _length;
+        protected int _expectedModCount = LongList.this.modCount;
+    }
+
+    /**
+     * Removes the values that are (or, if <code>retain</code> is true, are not) in the supplied
+     * collection, sliding the values that remain down over those removed.
+     */
+    protected boolean batchRemove (Collection<?> c, boolean retain)
+    {
+        LongSet set = (c instanceof LongSet) ? (LongSet)c : null;
+        int kept = 0;
+        for (int ii = 0; ii < _size; ii++) {
+            long value = _values[ii];
+            boolean found = (set != null) ? set.contains(value) : c.contains(value);
+            if (found == retain) {
+                _values[kept++] = value;
+            }
+        }
+        if (kept == _size) {
+            return false;
+        }
+        _size = kept;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Grows our values array by at least half again, and such that it can hold at least
+     * <code>minCapacity</code> values.
+     */
+    protected void grow (int minCapacity)
+    {
+        long[] values = new long[Math.max(minCapacity,
+                                        Math.max(DEFAULT_CAPACITY, _values.length * 3 / 2 + 1))];
+        System.arraycopy(_values, 0, values, 0, _size);
+        _values = values;
+    }
+
+    protected void checkIndex (int index)
+    {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        }
+    }
+
+    /** Our values; only the first {@link #_size} are meaningful. */
+    protected long[] _values;
+
+    /** The number of values in the list. */
+    protected int _size;
+
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    private static final long serialVersionUID = 1;
+}
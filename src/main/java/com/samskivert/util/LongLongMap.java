@@ -0,0 +1,696 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A long long map is like a long map, but with longs as values as well as keys. Be careful:
+ * {@link #get} and {@link #remove} return -1 to indicate that no previous mapping existed. Use
+ * {@link #getOrElse} and {@link #removeOrElse} to use a different "default" value.
+ *
+ * <p> The keys and values are stored in parallel long arrays using open addressing with linear
+ * probing, so no object is allocated per mapping and iterating over the keys or values allocates
+ * nothing per element.
+ */
+public class LongLongMap
+    implements Serializable
+{
+    public interface LongLongEntry extends LongMap.LongEntry<Long>
+    {
+        public long getLongValue ();
+
+        public long setLongValue (long value);
+    }
+
+    public final static int DEFAULT_BUCKETS = 16;
+
+    /**
+     * The default load factor.
+     */
+    public final static float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * Creates a map with the specified initial number of buckets and load factor. Load factors of
+     * one or more (which were meaningful when this map chained its entries) are replaced by the
+     * default.
+     */
+    public LongLongMap (int buckets, float loadFactor)
+    {
+        _loadFactor = (loadFactor > 0 && loadFactor < 1) ? loadFactor : DEFAULT_LOAD_FACTOR;
+        int capacity = DEFAULT_BUCKETS;
+        while (capacity < buckets) {
+            capacity <<= 1;
+        }
+        createBuckets(capacity);
+    }
+
+    public LongLongMap (int buckets)
+    {
+        this(buckets, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongLongMap ()
+    {
+        this(DEFAULT_BUCKETS, DEFAULT_LOAD_FACTOR);
+    }
+
+    public boolean isEmpty ()
+    {
+        return _size == 0;
+    }
+
+    /**
+     * Returns the number of mappings.
+     */
+    public int size ()
+    {
+        return _size;
+    }
+
+    /**
+     * Adds the supplied key/value mapping. Any previous mapping for that key will be overwritten.
+     */
+    public void put (long key, long value)
+    {
+        int idx = insertionIndex(key);
+        if (idx == ZERO) {
+            _zeroValue = value;
+        } else {
+            _values[idx] = value;
+        }
+    }
+
+    /**
+     * Returns the value mapped to the specified key or -1 if there is no mapping.
+     */
+    public long get (long key)
+    {
+        return getOrElse(key, -1);
+    }
+
+    /**
+     * Returns the value mapped to the specified key or the supplied default value if there is no
+     * mapping.
+     */
+    public long getOrElse (long key, long defval)
+    {
+        if (key == 0) {
+            return _hasZero ? _zeroValue : defval;
+        }
+        long[] keys = _keys;
+        int mask = keys.length - 1;
+        for (int idx = keyToIndex(key); ; idx = (idx + 1) & mask) {
+            long ikey = keys[idx];
+            if (ikey == key) {
+                return _values[idx];
+            } else if (ikey == 0) {
+                return defval;
+            }
+        }
+    }
+
+    /**
+     * Increments the value associated with the specified key by the
+     * specified amount. If the key has no previously assigned value, it
+     * will be set to the amount specified (as if incrementing from zero).
+     *
+     * @return the incremented value now stored for the key
+     */
+    public long increment (long key, long amount)
+    {
+        // a newly inserted mapping has a value of zero
+        int idx = insertionIndex(key);
+        if (idx == ZERO) {
+            return (_zeroValue += amount);
+        } else {
+            return (_values[idx] += amount);
+        }
+    }
+
+    /**
+     * Returns true if this map contains a mapping for the specified key.
+     *
+     * @deprecated use {@link #containsKey}.
+     */
+    @Deprecated
+    public boolean contains (long key)
+    {
+        return containsKey(key);
+    }
+
+    /**
+     * Returns true if this map contains a mapping for the specified key.
+     */
+    public boolean containsKey (long key)
+    {
+        return (key == 0) ? _hasZero : (indexOf(key) >= 0);
+    }
+
+    /**
+     * Removes the value mapped for the specified key.
+     *
+     * @return the value to which the key was mapped or -1 if there was no mapping for that key.
+     */
+    public long remove (long key)
+    {
+        return removeOrElse(key, -1);
+    }
+
+    /**
+     * Removes the value mapped for the specified key.
+     *
+     * @return the value to which the key was mapped or the supplied default value if there was no
+     * mapping for that key.
+     */
+    public long removeOrElse (long key, long defval)
+    {
+        long removed = removeImpl(key, defval);
+        checkShrink();
+        return removed;
+    }
+
+    /**
+     * Clears all mappings.
+     */
+    public void clear ()
+    {
+        _modCount++;
+        Arrays.fill(_keys, 0);
+        _hasZero = false;
+        _size = 0;
+    }
+
+    /**
+     * Ensure that the hash can comfortably hold the specified number of elements. Calling this
+     * method is not necessary, but can improve performance if done prior to adding many elements.
+     */
+    public void ensureCapacity (int minCapacity)
+    {
+        int size = capacityFor(minCapacity, _loadFactor);
+        if (size > _keys.length) {
+            resizeBuckets(size);
+        }
+    }
+
+    /**
+     * Turns the specified key into an index.
+     */
+    protected final int keyToIndex (long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32)) & (_keys.length - 1);
+    }
+
+    /**
+     * Returns the slot that holds the specified (non-zero) key, or -1 if it is not in the table.
+     */
+    protected int indexOf (long key)
+    {
+        long[] keys = _keys;
+        int mask = keys.length - 1;
+        for (int idx = keyToIndex(key); ; idx = (idx + 1) & mask) {
+            long ikey = keys[idx];
+            if (ikey == key) {
+                return idx;
+            } else if (ikey == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot that holds the specified key (or {@link #ZERO} for the zero key), adding
+     * a mapping to zero if there is no mapping for the key.
+     */
+    protected int insertionIndex (long key)
+    {
+        if (key == 0) {
+            if (!_hasZero) {
+                _hasZero = true;
+                _zeroValue = 0;
+                _size++;
+                _modCount++;
+            }
+            return ZERO;
+        }
+
+        long[] keys = _keys;
+        int mask = keys.length - 1;
+        int idx = keyToIndex(key);
+        for (long ikey; (ikey = keys[idx]) != 0; idx = (idx + 1) & mask) {
+            if (ikey == key) {
+                return idx;
+            }
+        }
+
+        // grow first if need be so that the slot we return remains valid
+        if (_size + 1 > _threshold) {
+            resizeBuckets(_keys.length * 2);
+            return insertionIndex(key);
+        }
+        keys[idx] = key;
+        _values[idx] = 0;
+        _size++;
+        _modCount++;
+        return idx;
+    }
+
+    /**
+     * Internal method for removing a mapping.
+     */
+    protected long removeImpl (long key, long defval)
+    {
+        if (key == 0) {
+            if (!_hasZero) {
+                return defval;
+            }
+            _hasZero = false;
+            _size--;
+            _modCount++;
+            return _zeroValue;
+        }
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return defval; // not found
+        }
+        long ovalue = _values[idx];
+        removeAt(idx);
+        return ovalue;
+    }
+
+    /**
+     * Removes the mapping in the specified slot, shifting any following mappings that would no
+     * longer be found back into the vacated slot. Does not shrink the table, so that our
+     * iterators may call this.
+     */
+    protected void removeAt (int idx)
+    {
+        long[] keys = _keys, values = _values;
+        int mask = keys.length - 1;
+        for (int last = idx; ; ) {
+            idx = (idx + 1) & mask;
+            long ikey = keys[idx];
+            if (ikey == 0) {
+                keys[last] = 0;
+                break;
+            }
+            // a key may move into the vacated slot if that slot lies (cyclically) between the key's
+            // home slot and its current slot
+            int home = keyToIndex(ikey);
+            if (last <= idx ? (home <= last || home > idx) : (home <= last && home > idx)) {
+                keys[last] = ikey;
+                values[last] = values[idx];
+                last = idx;
+            }
+        }
+        _size--;
+        _modCount++;
+    }
+
+    /**
+     * Check to see if we want to shrink the table.
+     */
+    protected void checkShrink ()
+    {
+        if ((_keys.length > DEFAULT_BUCKETS) &&
+                (_size < (int) (_keys.length * _loadFactor * .125))) {
+            resizeBuckets(Math.max(DEFAULT_BUCKETS, _keys.length >> 1));
+        }
+    }
+
+    /**
+     * Resize the hashtable.
+     *
+     * @param newsize The new number of buckets to allocate, which must be a power of two.
+     */
+    protected void resizeBuckets (int newsize)
+    {
+        long[] okeys = _keys, ovalues = _values;
+        createBuckets(newsize);
+
+        long[] keys = _keys;
+        int mask = newsize - 1;
+        for (int ii = 0; ii < okeys.length; ii++) {
+            long key = okeys[ii];
+            if (key != 0) {
+                int idx = keyToIndex(key);
+                while (keys[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = key;
+                _values[idx] = ovalues[ii];
+            }
+        }
+    }
+
+    /**
+     * (Re)creates our key and value arrays with the specified size, which must be a power of two.
+     */
+    protected void createBuckets (int size)
+    {
+        _keys = new long[size];
+        _values = new long[size];
+        // always leave at least one empty slot so that probes terminate
+        _threshold = Math.min((int)(size * _loadFactor), size - 1);
+    }
+
+    /**
+     * Returns the (power of two) number of buckets needed to hold the specified number of
+     * mappings at the specified load factor.
+     */
+    protected static int capacityFor (int mappings, float loadFactor)
+    {
+        int needed = (int)Math.ceil(mappings / loadFactor);
+        int capacity = DEFAULT_BUCKETS;
+        while (capacity < needed || capacity <= mappings) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    public LongIterator keys ()
+    {
+        return new KeyValueIterator(true);
+    }
+
+    public LongSet keySet ()
+    {
+        return new AbstractLongSet() {
+            public LongIterator longIterator () {
+                return LongLongMap.this.keys();
+            }
+
+            @Override public int size () {
+                return LongLongMap.this.size();
+            }
+
+            @Override public boolean contains (long t) {
+                return LongLongMap.this.containsKey(t);
+            }
+
+            @Override public boolean remove (long value) {
+                // we have to check for presence in the map separately because we have no "not in
+                // the set" return value
+                if (!LongLongMap.this.containsKey(value)) {
+                    return false;
+                }
+                LongLongMap.this.remove(value);
+                return true;
+            }
+        };
+    }
+
+    public LongIterator values ()
+    {
+        return new KeyValueIterator(false);
+    }
+
+    /**
+     * Get an array of the unique keys in this map.
+     */
+    public long[] getKeys ()
+    {
+        return toLongArray(true);
+    }
+
+    /**
+     * Get an array of the values that may be in this map.
+     * There may be duplicates.
+     */
+    public long[] getValues ()
+    {
+        return toLongArray(false);
+    }
+
+    @Override
+    public String toString ()
+    {
+        StringBuilder buf = new StringBuilder("[");
+        long[] keys = getKeys();
+        for (int ii = 0; ii < keys.length; ii++) {
+            if (ii > 0) {
+                buf.append(", ");
+            }
+            buf.append(keys[ii]).append("->").append(get(keys[ii]));
+        }
+        return buf.append("]").toString();
+    }
+
+    protected long[] toLongArray (boolean keys)
+    {
+        long[] ret = new long[_size];
+        int dex = 0;
+        if (_hasZero) {
+            ret[dex++] = keys ? 0 : _zeroValue;
+        }
+        for (int ii = 0; ii < _keys.length; ii++) {
+            if (_keys[ii] != 0) {
+                ret[dex++] = keys ? _keys[ii] : _values[ii];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get a set of all the entries in this map.
+     */
+    public Set<LongLongEntry> entrySet ()
+    {
+        return new AbstractSet<LongLongEntry>() {
+            @Override public int size () {
+                return _size;
+            }
+
+            @Override public Iterator<LongLongEntry> iterator() {
+                return new LongEntryIterator();
+            }
+        };
+    }
+
+    /**
+     * Save the state of this instance to a stream (i.e., serialize it).
+     */
+    private void writeObject (ObjectOutputStream s)
+        throws IOException
+    {
+        s.writeFloat(_loadFactor);
+
+        // write out size (number of mappings)
+        s.writeInt(_size);
+
+        // write out keys and values
+        for (LongLongEntry entry : entrySet()) {
+            s.writeLong(entry.getLongKey());
+            s.writeLong(entry.getLongValue());
+        }
+    }
+
+    /**
+     * Reconstitute the <tt>LongLongMap</tt> instance from a stream (i.e.,
+     * deserialize it).
+     */
+    private void readObject (ObjectInputStream s)
+         throws IOException, ClassNotFoundException
+    {
+        _loadFactor = s.readFloat();
+
+        // read in size (number of mappings)
+        int size = s.readInt();
+        createBuckets(capacityFor(size, _loadFactor));
+
+        // read the keys and values
+        for (int i=0; i<size; i++) {
+            put(s.readLong(), s.readLong());
+        }
+    }
+
+    /** A mapping returned by our entry iterator. */
+    protected class Entry implements LongLongEntry
+    {
+        public Entry (long key, long value) {
+            _key = key;
+            _value = value;
+        }
+
+        public Long getKey () {
+            return Long.valueOf(_key);
+        }
+
+        public long getLongKey () {
+            return _key;
+        }
+
+        public Long getValue () {
+            return Long.valueOf(_value);
+        }
+
+        public long getLongValue () {
+            return _value;
+        }
+
+        public Long setValue (Long v) {
+            return Long.valueOf(setLongValue(v.longValue()));
+        }
+
+        public long setLongValue (long v) {
+            // the key is mapped, so this does not change the structure of the table
+            long oldVal = _value;
+            put(_key, _value = v);
+            return oldVal;
+        }
+
+        @Override public boolean equals (Object o) {
+            if (o instanceof LongLongEntry) {
+                LongLongEntry that = (LongLongEntry) o;
+                return (_key == that.getLongKey()) && (_value == that.getLongValue());
+            }
+            return false;
+        }
+
+        @Override public int hashCode () {
+            return (int)(_key ^ (_key >>> 32));
+        }
+
+        protected long _key, _value;
+    }
+
+    /**
+     * Iterates over the slots that contain mappings. Iteration begins just after an empty slot
+     * and proceeds forward; removing a mapping only ever shifts not yet visited mappings back
+     * into the vacated slot, so we revisit that slot after a removal and see every mapping
+     * exactly once.
+     */
+    protected abstract class SlotIterator
+    {
+        public SlotIterator () {
+            _remaining = _size;
+            _zeroPending = _hasZero;
+            while (_keys[_idx++] != 0); // there is always at least one empty slot
+        }
+
+        public boolean hasNext () {
+            checkMods();
+            return _remaining > 0;
+        }
+
+        public void remove () {
+            checkMods();
+            if (_last == NONE) {
+                throw new IllegalStateException("LongLongMapIterator");
+            }
+            if (_last == ZERO) {
+                removeImpl(0, -1);
+            } else {
+                removeAt(_last);
+                _idx--; // revisit the slot into which a later mapping may have shifted
+            }
+            _last = NONE;
+            _expectedMods = _modCount;
+        }
+
+        /** Returns the slot of the next mapping, or {@link #ZERO} for the zero key. */
+        protected int nextSlot () {
+            checkMods();
+            if (_remaining <= 0) {
+                throw new NoSuchElementException("LongLongMapIterator");
+            }
+            _remaining--;
+            if (_zeroPending) {
+                _zeroPending = false;
+                return (_last = ZERO);
+            }
+            long[] keys = _keys;
+            int mask = keys.length - 1;
+            while (keys[_idx & mask] == 0) {
+                _idx++;
+            }
+            return (_last = (_idx++ & mask));
+        }
+
+        protected long keyAt (int slot) {
+            return (slot == ZERO) ? 0 : _keys[slot];
+        }
+
+        protected long valueAt (int slot) {
+            return (slot == ZERO) ? _zeroValue : _values[slot];
+        }
+
+        protected void checkMods () {
+            if (_modCount != _expectedMods) {
+                throw new ConcurrentModificationException("LongLongMapIterator");
+            }
+        }
+
+        protected int _idx, _remaining, _last = NONE;
+        protected boolean _zeroPending;
+        protected int _expectedMods = _modCount;
+    }
+
+    protected class LongEntryIterator extends SlotIterator
+        implements Iterator<LongLongEntry>
+    {
+        public LongLongEntry next () {
+            int slot = nextSlot();
+            return new Entry(keyAt(slot), valueAt(slot));
+        }
+    }
+
+    /** Iterates over our keys or values without allocating. */
+    protected class KeyValueIterator extends SlotIterator
+        implements LongIterator
+    {
+        public KeyValueIterator (boolean keys) {
+            _wantKeys = keys;
+        }
+
+        public long nextLong () {
+            int slot = nextSlot();
+            return _wantKeys ? keyAt(slot) : valueAt(slot);
+        }
+
+        public Long next () {
+            return Long.valueOf(nextLong());
+        }
+
+        protected boolean _wantKeys;
+    }
+
+    /** The keys of our mappings, zero marks an empty slot. */
+    protected transient long[] _keys;
+
+    /** The values of our mappings, parallel to {@link #_keys}. */
+    protected transient long[] _values;
+
+    /** The value mapped to the zero key, which cannot be stored in {@link #_keys}. */
+    protected transient long _zeroValue;
+
+    /** Whether or not we have a mapping for the zero key. */
+    protected transient boolean _hasZero;
+
+    /** The number of mappings beyond which we grow the table. */
+    protected transient int _threshold;
+
+    private int _size;
+    protected float _loadFactor;
+    protected transient int _modCount = 0;
+
+    /** Used by our iterators to indicate the zero key's mapping or no mapping at all. */
+    protected static final int ZERO = -1, NONE = -2;
+
+    /** Change this if the fields or inheritance hierarchy ever changes. */
+    private static final long serialVersionUID = 1;
+}
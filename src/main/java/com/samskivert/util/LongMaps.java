@@ -0,0 +1,61 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Map;
+
+/**
+ * Provides static methods for creating mutable {@code LongMap} instances easily.
+ * You can replace code like:
+ *
+ * <p>{@code LongMap<String> map = new HashLongMap<String>();}
+ *
+ * <p>with just:
+ *
+ * <p>{@code LongMap<String> map = LongMaps.newHashLongMap();}
+ */
+public class LongMaps
+{
+    /**
+     * Creates a {@code HashLongMap} instance.
+     *
+     * @return a newly-created, initially-empty {@code HashLongMap}
+     */
+    public static <V> HashLongMap<V> newHashLongMap()
+    {
+        return new HashLongMap<V>();
+    }
+
+    /**
+     * Creates a {@code HashLongMap} instance containing the mappings in the supplied (boxed) map.
+     *
+     * @throws NullPointerException if the map contains a null key.
+     */
+    public static <V> HashLongMap<V> newHashLongMap(Map<Long, ? extends V> from)
+    {
+        HashLongMap<V> map = new HashLongMap<V>();
+        map.ensureCapacity(from.size());
+        for (Map.Entry<Long, ? extends V> entry : from.entrySet()) {
+            map.put(entry.getKey().longValue(), entry.getValue());
+        }
+        return map;
+    }
+
+    /**
+     * Creates a {@code LongLongMap} instance containing the mappings in the supplied (boxed) map.
+     *
+     * @throws NullPointerException if the map contains a null key or value.
+     */
+    public static LongLongMap newLongLongMap(Map<Long,Long> from)
+    {
+        LongLongMap map = new LongLongMap();
+        map.ensureCapacity(from.size());
+        for (Map.Entry<Long,Long> entry : from.entrySet()) {
+            map.put(entry.getKey().longValue(), entry.getValue().longValue());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,232 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+/**
+ * Utility methods for working with LongSets.
+ */
+public class LongSets
+{
+    /** Uninstantiable. */
+    private LongSets () {}
+
+    /**
+     * Create a new LongSet, initially empty.
+     */
+    public static LongSet create ()
+    {
+        return new HashLongSet();
+    }
+
+    /**
+     * Create a new LongSet, initially containing the specified longs.
+     */
+    public static LongSet create (long... longs)
+    {
+        checkNotNull(longs);
+        return new HashLongSet(longs);
+    }
+
+    /**
+     * Create a new LongSet, initially containing the longs in the specified LongSet.
+     */
+    public static LongSet create (LongSet from)
+    {
+        checkNotNull(from);
+        HashLongSet set = new HashLongSet(from.size());
+        set.addAll(from);
+        return set;
+    }
+
+    /**
+     * Create a new LongSet, initially containing the longs in the specified Collection<Long>.
+     */
+    public static LongSet create (Collection<Long> from)
+    {
+        checkNotNull(from);
+        return new HashLongSet(from);
+    }
+
+    /**
+     * Create a new LongSet containing the supplied ints, widened to longs.
+     */
+    public static LongSet create (IntSet from)
+    {
+        checkNotNull(from);
+        HashLongSet set = new HashLongSet(from.size());
+        for (Interator it = from.interator(); it.hasNext(); ) {
+            set.add(it.nextInt());
+        }
+        return set;
+    }
+
+    /**
+     * Return an <b>immutable</b> empty LongSet.
+     */
+    public static LongSet emptyLongSet ()
+    {
+        return EMPTY_LONGSET;
+    }
+
+    /**
+     * Return an unmodifiable view of the specified LongSet
+     */
+    public static LongSet unmodifiableLongSet (LongSet s)
+    {
+        checkNotNull(s);
+        return new UnmodifiableLongSetView(s);
+    }
+
+    /**
+     * Create a new LongSet containing the longs that are contained in <b>all</b>
+     * of the specified sets. The returned set may be further modified per your needs.
+     */
+    public static LongSet and (LongSet... sets)
+    {
+        checkNotNull(sets);
+        LongSet result = create();
+        int len = sets.length;
+        if (len > 0) {
+            OUTER:
+            for (LongIterator it = sets[0].longIterator(); it.hasNext(); ) {
+                long val = it.nextLong();
+                for (int ii = 1; ii < len; ii++) {
+                    if (!sets[ii].contains(val)) {
+                        continue OUTER;
+                    }
+                }
+                result.add(val);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create a new LongSet containing the longs that are contained in <b>any</b>
+     * of the specified sets. The returned set may be further modified per your needs.
+     */
+    public static LongSet or (LongSet... sets)
+    {
+        checkNotNull(sets);
+        LongSet result = create();
+        for (LongSet set : sets) {
+            result.addAll(set);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new LongSet, initially populated with longs contained in set1 but not in set2.
+     * Set2 may also contain elements not present in set1, these are ignored.
+     */
+    public static LongSet difference (LongSet set1, LongSet set2)
+    {
+        checkNotNull(set1);
+        checkNotNull(set2);
+        LongSet result = create();
+        for (LongIterator it = set1.longIterator(); it.hasNext(); ) {
+            long val = it.nextLong();
+            if (!set2.contains(val)) {
+                result.add(val);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Validate the specified argument.
+     */
+    protected static void checkNotNull (Object o)
+    {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * Validate the specified arguments.
+     */
+    protected static void checkNotNull (Object[] array)
+    {
+        checkNotNull((Object)array);
+        for (Object o : array) {
+            checkNotNull(o);
+        }
+    }
+
+    /** The immutable empty LongSet. */
+    protected static final LongSet EMPTY_LONGSET = new EmptyLongSet();
+
+    /**
+     * An extension to AbstractLongSet that implements a "true" immutable LongSet.
+     * That is, calling removeAll() with an empty Collection will still throw an Exception.
+     */
+    protected static abstract class AbstractImmutableLongSet extends AbstractLongSet
+    {
+        // the following are overridden so that they don't appear to work if given empty collections
+        // or an improper Object key
+        @Override public boolean remove (Object o) { throw new UnsupportedOperationException(); }
+        @Override public boolean addAll (Collection<? extends Long> c) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public boolean removeAll (Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public boolean retainAll (Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void clear () {
+            throw new UnsupportedOperationException();
+        }
+    } // end: class AbstractImmutableLongSet
+
+    /**
+     * The empty LongSet.
+     */
+    protected static class EmptyLongSet extends AbstractImmutableLongSet
+    {
+        @Override public boolean contains (long value) { return false; }
+        @Override public int size () { return 0; }
+        @Override public boolean isEmpty () { return true; }
+
+        public LongIterator longIterator () {
+            return EMPTY_ITERATOR;
+        }
+
+        protected static final LongIterator EMPTY_ITERATOR = new AbstractLongIterator() {
+            public boolean hasNext () { return false; }
+            public long nextLong () { throw new NoSuchElementException(); }
+        };
+    } // end: class EmptyLongSet
+
+    /**
+     * An immutable view of another LongSet.
+     */
+    protected static class UnmodifiableLongSetView extends AbstractImmutableLongSet
+    {
+        public UnmodifiableLongSetView (LongSet s) {
+            _s = s;
+        }
+
+        @Override public boolean contains (long value) { return _s.contains(value); }
+        @Override public int size () { return _s.size(); }
+        @Override public boolean isEmpty () { return _s.isEmpty(); }
+
+        public LongIterator longIterator () {
+            return new AbstractLongIterator() {
+                public boolean hasNext () { return _i.hasNext(); }
+                public long nextLong () { return _i.nextLong(); }
+
+                protected LongIterator _i = _s.longIterator();
+            };
+        }
+
+        protected LongSet _s;
+    } // end: class UnmodifiableLongSetView
+}
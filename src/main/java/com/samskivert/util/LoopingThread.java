@@ -5,6 +5,8 @@
 
 package com.samskivert.util;
 
+import java.util.concurrent.ThreadFactory;
+
 import static com.samskivert.util.UtilLog.log;
 
 /**
@@ -29,6 +31,23 @@ public class LoopingThread extends Thread
         super(name);
     }
 
+    /**
+     * Runs this thread's loop on a thread obtained from the supplied factory rather than on this
+     * thread itself. This allows, for example, the loop to be run on a virtual thread (see {@link
+     * ThreadFactories#virtual}). Note that in this case this thread object is never started, so
+     * {@link #isAlive}, {@link #join} and friends do not reflect the state of the loop; use
+     * {@link #isRunning} instead.
+     *
+     * @return the thread on which the loop will run.
+     */
+    public Thread start (ThreadFactory factory)
+    {
+        _factory = factory;
+        Thread thread = factory.newThread(this);
+        thread.start();
+        return thread;
+    }
+
     /**
      * Requests that this thread shut itself down. The running flag will be cleared and if this
      * function is being called by an external thread, the derived-class-specific kick function
@@ -135,4 +154,7 @@ public class LoopingThread extends Thread
     }
 
     protected volatile boolean _running;
+
+    /** The factory used to create the thread on which we're running, if any. */
+    protected ThreadFactory _factory;
 }
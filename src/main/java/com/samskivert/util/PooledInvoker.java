@@ -0,0 +1,330 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * An invoker that runs its units on a pool of threads rather than on a single thread. Units that
+ * report the same {@link Invoker.Unit#getOrderingKey} are invoked one at a time in the order in
+ * which they were posted, while units with different keys (or no key at all) are invoked in
+ * parallel. Results are delivered to the result receiver just as with a standard invoker.
+ *
+ * <p> The invoker's own thread serves as one of the workers, the remaining workers are started
+ * when the invoker thread starts (using the invoker's thread factory if it was started with
+ * one). Unit profiles are recorded both for the pool as a whole (see {@link #getUnitProfiles})
+ * and for each individual worker (see {@link #getWorkerUnitProfiles}).
+ *
+ * <p> <em>Note:</em> the queue used by a pooled invoker has many consumers, so it must not be a
+ * {@link LockFreeQueue}.
+ */
+public class PooledInvoker extends Invoker
+{
+    /**
+     * Creates a pooled invoker that will run units on the specified number of threads and post
+     * results to the supplied result receiver.
+     */
+    public PooledInvoker (String name, Executor resultReceiver, int threads)
+    {
+        super(name, resultReceiver);
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invoker pool must have at least one thread.");
+        }
+        _active = new ActiveUnit[threads];
+        _active[0] = new ActiveUnit();
+        _workerTrackers.add(new ConcurrentHashMap<Object,UnitProfile>());
+        for (int ii = 1; ii < threads; ii++) {
+            _workers.add(new Worker(name + "-" + ii, ii));
+            _workerTrackers.add(new ConcurrentHashMap<Object,UnitProfile>());
+            _active[ii] = new ActiveUnit();
+        }
+    }
+
+    @Override // from Invoker
+    public int getThreadCount ()
+    {
+        return _workers.size() + 1;
+    }
+
+    /**
+     * Returns a snapshot of the unit profiles recorded by the specified worker, in the same form
+     * as {@link #getUnitProfiles}. Worker zero is the invoker thread itself.
+     */
+    public Map<Object,UnitProfile> getWorkerUnitProfiles (int worker, boolean reset)
+    {
+        return snapshotProfiles(_workerTrackers.get(worker), reset);
+    }
+
+    @Override // from Invoker
+    public void postUnit (Unit unit)
+    {
+        if (shutdownRequested()) {
+            throw new IllegalStateException("Cannot post units to shutdown invoker.");
+        }
+        unit.queueStamp = System.currentTimeMillis();
+        unit.queueNanos = System.nanoTime();
+        unit.queueDepth = _queue.size();
+        QueueLimiter limiter = _limiter;
+        if (limiter != null) {
+            if (limiter.getPolicy() == QueueLimiter.Policy.BLOCK && isDispatchThread()) {
+                // if every worker blocked, none would be left to make room
+                limiter.forceAdmit();
+            } else {
+                limiter.admit(_queue);
+            }
+        }
+
+        boolean queued = false;
+        try {
+            Object key = unit.getOrderingKey();
+            synchronized (_strands) {
+                if (_shutdownPosted) {
+                    throw new IllegalStateException("Cannot post units to shutdown invoker.");
+                }
+                _outstanding++;
+                if (key != null) {
+                    LinkedList<Unit> strand = _strands.get(key);
+                    if (strand != null) {
+                        // a unit with this key is queued or running, so wait behind it
+                        strand.add(unit);
+                        _backlogged++;
+                        queued = true;
+                        return;
+                    }
+                    _strands.put(key, new LinkedList<Unit>());
+                }
+            }
+            _queue.appendLoud(unit);
+            queued = true;
+
+        } finally {
+            // give back our admission if the unit never made it into the queue
+            if (!queued && limiter != null) {
+                limiter.release(1);
+            }
+        }
+    }
+
+    /**
+     * Batching is not supported by pooled invokers, as it would funnel all pending units through
+     * a single thread.
+     *
+     * @exception UnsupportedOperationException if batching is requested.
+     */
+    @Override // from Invoker
+    public void setBatching (boolean batching)
+    {
+        if (batching) {
+            throw new UnsupportedOperationException("Pooled invokers do not support batching.");
+        }
+    }
+
+    /**
+     * Limits the number of units that may be waiting to be invoked, including those waiting
+     * behind other units with the same ordering key. Only the {@link QueueLimiter.Policy#BLOCK}
+     * and {@link QueueLimiter.Policy#REJECT} policies are supported, as the others would break
+     * the ordering of units with the same key.
+     */
+    @Override // from Invoker
+    public void setCapacity (int capacity, QueueLimiter.Policy policy)
+    {
+        if (policy != QueueLimiter.Policy.BLOCK && policy != QueueLimiter.Policy.REJECT) {
+            throw new UnsupportedOperationException(
+                "Pooled invokers do not support the " + policy + " policy.");
+        }
+        super.setCapacity(capacity, policy);
+    }
+
+    @Override // from Invoker
+    public int getPendingUnits ()
+    {
+        synchronized (_strands) {
+            return _queue.size() + _backlogged;
+        }
+    }
+
+    @Override // from Invoker
+    public boolean isDispatchThread ()
+    {
+        return (_workerIndex.get() != null);
+    }
+
+    /**
+     * Shuts down the invoker and its workers once all currently queued units (including those
+     * waiting behind other units with the same ordering key) have been processed.
+     */
+    @Override // from Invoker
+    public void shutdown ()
+    {
+        _shutdownRequested = true;
+        synchronized (_strands) {
+            if (_outstanding == 0) {
+                postShutdownUnits();
+            }
+        }
+    }
+
+    @Override // from LoopingThread
+    protected void willStart ()
+    {
+        super.willStart();
+        _workerIndex.set(0);
+        for (Worker worker : _workers) {
+            if (_factory == null) {
+                worker.start();
+            } else {
+                worker.start(_factory);
+            }
+        }
+    }
+
+    @Override // from Invoker
+    protected void invokeUnit (Unit unit)
+    {
+        try {
+            super.invokeUnit(unit);
+        } finally {
+            if (!(unit instanceof ShutdownUnit)) {
+                unitCompleted(unit);
+            }
+        }
+    }
+
+    /**
+     * Called after a unit has been invoked to release the next unit waiting on its ordering key
+     * and to finish our shutdown if it was waiting on this unit.
+     */
+    protected void unitCompleted (Unit unit)
+    {
+        Unit next = null;
+        Object key = unit.getOrderingKey();
+        synchronized (_strands) {
+            if (key != null) {
+                LinkedList<Unit> strand = _strands.get(key);
+                if (strand == null || strand.isEmpty()) {
+                    _strands.remove(key);
+                } else {
+                    next = strand.removeFirst();
+                    _backlogged--;
+                }
+            }
+            if (--_outstanding == 0 && shutdownRequested()) {
+                postShutdownUnits();
+            }
+        }
+        if (next != null) {
+            _queue.appendLoud(next);
+        }
+    }
+
+    /**
+     * Queues up one unit per thread, each of which will cause the thread that processes it to
+     * exit. Must be called while synchronized on {@link #_strands}.
+     */
+    protected void postShutdownUnits ()
+    {
+        if (_shutdownPosted) {
+            return;
+        }
+        _shutdownPosted = true;
+        for (int ii = 0, nn = getThreadCount(); ii < nn; ii++) {
+            forceAdmit();
+            _queue.appendLoud(new ShutdownUnit());
+        }
+    }
+
+    @Override // from Invoker
+    protected void recordMetrics (Unit unit, long waited, long ran)
+    {
+        // record the metrics for the worker on whose thread we're running
+        ConcurrentHashMap<Object,UnitProfile> tracker = _workerTrackers.get(workerIndex());
+        getProfile(tracker, unit.getClass()).record(waited, ran, unit.queueDepth);
+        getProfile(tracker, ALL_UNITS).record(waited, ran, unit.queueDepth);
+        // and for the pool as a whole
+        super.recordMetrics(unit, waited, ran);
+    }
+
+    @Override // from Invoker
+    protected ActiveUnit getActiveUnit ()
+    {
+        return _active[workerIndex()];
+    }
+
+    /**
+     * Returns the index of the worker on whose thread we're running.
+     */
+    protected int workerIndex ()
+    {
+        Integer index = _workerIndex.get();
+        return (index == null) ? 0 : index;
+    }
+
+    /** Runs units from our queue on an additional thread. */
+    protected class Worker extends LoopingThread
+    {
+        /** The index of this worker in {@link #_workerTrackers}. */
+        public final int index;
+
+        public Worker (String name, int index) {
+            super(name);
+            this.index = index;
+        }
+
+        @Override protected void willStart () {
+            super.willStart();
+            _workerIndex.set(index);
+        }
+
+        @Override protected void iterate () {
+            invokeUnit(takeUnit());
+        }
+    }
+
+    /** Causes the thread that invokes it to exit. */
+    protected class ShutdownUnit extends Invoker.ShutdownUnit
+    {
+        @Override public boolean invoke () {
+            Integer index = _workerIndex.get();
+            if (index == null || index == 0) {
+                _running = false;
+            } else {
+                _workers.get(index-1).shutdown();
+            }
+            return false;
+        }
+    }
+
+    /** Our additional worker threads. */
+    protected List<Worker> _workers = new ArrayList<Worker>();
+
+    /** The index of the worker running on the current thread; zero for the invoker itself and
+     * null for threads that are not ours. */
+    protected ThreadLocal<Integer> _workerIndex = new ThreadLocal<Integer>();
+
+    /** Tracks unit profiles for each thread; index zero is the invoker thread itself. */
+    protected List<ConcurrentHashMap<Object,UnitProfile>> _workerTrackers =
+        new ArrayList<ConcurrentHashMap<Object,UnitProfile>>();
+
+    /** Maps the ordering key of every queued or running keyed unit to the units waiting behind
+     * it. Also used to synchronize access to our accounting. */
+    protected HashMap<Object,LinkedList<Unit>> _strands = new HashMap<Object,LinkedList<Unit>>();
+
+    /** The number of units posted but not yet completed. */
+    protected int _outstanding;
+
+    /** The number of units waiting behind another unit with the same ordering key. */
+    protected int _backlogged;
+
+    /** Whether we've queued up the units that shut down our threads. */
+    protected boolean _shutdownPosted;
+}
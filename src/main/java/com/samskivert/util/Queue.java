@@ -5,6 +5,8 @@
 
 package com.samskivert.util;
 
+import java.util.Collection;
+
 /**
  * A queue implementation that is more efficient than a wrapper around
  * java.util.Vector. Allows adding and removing elements to/from the
@@ -60,6 +62,9 @@ public class Queue<T>
 
         _items[_start] = item;
         _count++;
+        if (_count > _highWater) {
+            _highWater = _count;
+        }
 
         if (_count == 1) {
             notify();
@@ -112,12 +117,34 @@ public class Queue<T>
         _items[_end] = item;
         _end = (_end + 1) % _size;
         _count++;
+        if (_count > _highWater) {
+            _highWater = _count;
+        }
 
         if (notify) {
             notify();
         }
     }
 
+    /**
+     * Returns the largest number of items that have been on the queue at
+     * once since the queue was created or since the last call to {@link
+     * #resetHighWaterMark}.
+     */
+    public synchronized int getHighWaterMark ()
+    {
+        return _highWater;
+    }
+
+    /**
+     * Resets the high water mark to the number of items currently on the
+     * queue.
+     */
+    public synchronized void resetHighWaterMark ()
+    {
+        _highWater = _count;
+    }
+
     /**
      * Returns the next item on the queue or null if the queue is
      * empty. This method will not block waiting for an item to be added
@@ -139,6 +166,31 @@ public class Queue<T>
         return retval;
     }
 
+    /**
+     * Removes every item currently on the queue and adds them, in order, to the supplied
+     * collection. This method will not block waiting for items to be added to the queue.
+     *
+     * @return the number of items removed from the queue.
+     */
+    public synchronized int drainTo (Collection<? super T> into)
+    {
+        int count = _count;
+        for (int ii = 0; ii < count; ii++) {
+            into.add(_items[_start]);
+            _items[_start] = null;
+            _start = (_start + 1) % _size;
+        }
+        _count = 0;
+
+        // if we grew large to accommodate a burst, go back to our suggested size
+        if ((_size > MIN_SHRINK_SIZE) && (_size > _suggestedSize)) {
+            _size = _suggestedSize;
+            _start = _end = 0;
+            _items = newArray(_size);
+        }
+        return count;
+    }
+
     /**
      * Blocks the current thread waiting for an item to be added to the
      * queue. If the queue is currently non-empty, this function will
@@ -333,4 +385,5 @@ public class Queue<T>
     protected int _count = 0;
     protected int _start = 0, _end = 0;
     protected int _suggestedSize, _size = 0;
+    protected int _highWater;
 }
@@ -0,0 +1,216 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limits the number of items that may be waiting on a {@link Queue} and decides what happens to
+ * an item that is posted when the queue is at capacity. Used by {@link Invoker} and {@link
+ * BasicRunQueue} to provide backpressure or shed load rather than allowing their queues to grow
+ * without bound.
+ *
+ * <p> Producers call {@link #admit} before appending an item to the queue and the consumer calls
+ * {@link #release} after removing items from the queue.
+ */
+public class QueueLimiter
+{
+    /** The actions that may be taken when an item is posted to a queue that is at capacity. */
+    public enum Policy {
+        /** The posting thread blocks until there is room on the queue. */
+        BLOCK,
+        /** A {@link RejectedExecutionException} is thrown to the posting thread. */
+        REJECT,
+        /** The oldest item on the queue is discarded to make room for the new item. This policy
+         * removes items from the queue on the posting thread, so it must not be used with a
+         * single consumer queue like {@link LockFreeQueue}. */
+        DROP_OLDEST,
+        /** The item is not queued, but is instead run directly on the posting thread. */
+        CALLER_RUNS
+    }
+
+    /**
+     * Creates a limiter that allows at most <code>capacity</code> items to be waiting on the
+     * queue.
+     */
+    public QueueLimiter (int capacity, Policy policy)
+    {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        _capacity = capacity;
+        _policy = policy;
+    }
+
+    /**
+     * Returns the maximum number of items allowed to be waiting on the queue.
+     */
+    public int getCapacity ()
+    {
+        return _capacity;
+    }
+
+    /**
+     * Returns the action taken when an item is posted to a full queue.
+     */
+    public Policy getPolicy ()
+    {
+        return _policy;
+    }
+
+    /**
+     * Called before appending an item to the supplied queue. If the queue is at capacity, the
+     * configured policy is applied: the caller may block, the oldest item may be removed from the
+     * queue, or the item may be rejected.
+     *
+     * @return true if the item should be appended to the queue, false if it should instead be run
+     * by the caller.
+     *
+     * @exception RejectedExecutionException if the queue is full and the policy is {@link
+     * Policy#REJECT}.
+     */
+    public synchronized boolean admit (Queue<?> queue)
+    {
+        while (_pending >= _capacity) {
+            switch (_policy) {
+            case REJECT:
+                _rejected++;
+                throw new RejectedExecutionException(
+                    "Queue at capacity [capacity=" + _capacity + "].");
+
+            case CALLER_RUNS:
+                _callerRuns++;
+                return false;
+
+            case DROP_OLDEST:
+                Object oldest = queue.getNonBlocking();
+                if (oldest != null && !isDroppable(oldest)) {
+                    // drop the next oldest item instead, and put this one back where it was
+                    Object next = queue.getNonBlocking();
+                    restore(queue, oldest);
+                    oldest = next;
+                }
+                if (oldest != null) {
+                    _dropped++;
+                    _pending--;
+                    continue;
+                }
+                // the consumer has removed the items but not yet released them, so wait for it
+                // to do so just as we would when blocking
+                break;
+
+            default:
+            case BLOCK:
+                break;
+            }
+
+            _waiters++;
+            try {
+                wait();
+            } catch (InterruptedException ie) {
+                // keep waiting, just like Queue.get()
+            } finally {
+                _waiters--;
+            }
+        }
+        _pending++;
+        return true;
+    }
+
+    /**
+     * Counts an item as admitted without applying our policy, even if the queue is at capacity.
+     * Used for items posted by the consumer itself, which would deadlock if it blocked waiting
+     * for room on its own queue, and for internal items that must not be rejected or dropped.
+     * Every item counted here must be {@link #release}d when it is taken off the queue, like any
+     * other admitted item.
+     */
+    public synchronized void forceAdmit ()
+    {
+        _pending++;
+    }
+
+    /**
+     * Called by the consumer after removing the specified number of items from the queue.
+     */
+    public synchronized void release (int count)
+    {
+        _pending = Math.max(0, _pending - count);
+        if (_waiters > 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of admitted items that have not yet been released.
+     */
+    public synchronized int getPending ()
+    {
+        return _pending;
+    }
+
+    /**
+     * Returns the number of items that have been discarded due to {@link Policy#DROP_OLDEST}.
+     */
+    public synchronized long getDropped ()
+    {
+        return _dropped;
+    }
+
+    /**
+     * Returns the number of items that have been rejected due to {@link Policy#REJECT}.
+     */
+    public synchronized long getRejected ()
+    {
+        return _rejected;
+    }
+
+    /**
+     * Returns the number of items that were run by their caller due to {@link
+     * Policy#CALLER_RUNS}.
+     */
+    public synchronized long getCallerRuns ()
+    {
+        return _callerRuns;
+    }
+
+    @Override
+    public synchronized String toString ()
+    {
+        return "[capacity=" + _capacity + ", policy=" + _policy + ", pending=" + _pending +
+            ", dropped=" + _dropped + ", rejected=" + _rejected + ", callerRuns=" + _callerRuns +
+            "]";
+    }
+
+    /**
+     * Returns whether the supplied item may be discarded by the {@link Policy#DROP_OLDEST}
+     * policy. Derived classes can protect items that must not be lost, such as an item that
+     * shuts down the consumer.
+     */
+    protected boolean isDroppable (Object item)
+    {
+        return true;
+    }
+
+    /**
+     * Returns an item we declined to drop to the head of the supplied queue.
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T> void restore (Queue<T> queue, Object item)
+    {
+        queue.prepend((T)item);
+    }
+
+    protected final int _capacity;
+    protected final Policy _policy;
+
+    /** The number of admitted items that have not yet been released. */
+    protected int _pending;
+
+    /** The number of producers waiting for room on the queue. */
+    protected int _waiters;
+
+    protected long _dropped, _rejected, _callerRuns;
+}
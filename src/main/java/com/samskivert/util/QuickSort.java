@@ -422,4 +422,579 @@ public class QuickSort
             sort(a, hi+1, hi0, comp);
         }
     }
+
+    /**
+     * Extracts an int sort key from an object.
+     */
+    public static interface IntKey<T>
+    {
+        /** Returns the sort key of the supplied object. */
+        public int getKey (T value);
+    }
+
+    /**
+     * Extracts a long sort key from an object.
+     */
+    public static interface LongKey<T>
+    {
+        /** Returns the sort key of the supplied object. */
+        public long getKey (T value);
+    }
+
+    /**
+     * Sorts the supplied array of objects from least to greatest key, using the supplied key
+     * extractor.
+     *
+     * @see #sortByIntKey(Object[],int,int,IntKey)
+     */
+    public static <T> void sortByIntKey (T[] a, IntKey<? super T> key)
+    {
+        sortByIntKey(a, 0, a.length - 1, key);
+    }
+
+    /**
+     * Sorts the specified subset of the supplied array of objects from least to greatest key. The
+     * keys are extracted (once per object) into a parallel array, which is radix sorted, so the
+     * sort makes no comparator calls and boxes nothing. The sort is stable.
+     *
+     * @param lo0 the index of the lowest element to be included in the sort.
+     * @param hi0 the index of the highest element to be included in the sort.
+     */
+    public static <T> void sortByIntKey (T[] a, int lo0, int hi0, IntKey<? super T> key)
+    {
+        int n = hi0 - lo0 + 1;
+        if (n < 2) {
+            return;
+        }
+        // pack each key (biased so that it sorts as unsigned) above its element's index; as the
+        // indices start out ordered and radix sorting is stable, we need only sort the keys
+        long[] packed = new long[n];
+        for (int ii = 0; ii < n; ii++) {
+            packed[ii] = ((long)(key.getKey(a[lo0 + ii]) ^ Integer.MIN_VALUE) << 32) | ii;
+        }
+        radixSort(packed, new long[n], n, 4, 8);
+        permute(a, lo0, packed);
+    }
+
+    /**
+     * Sorts the supplied array of objects from least to greatest key, using the supplied key
+     * extractor.
+     *
+     * @see #sortByLongKey(Object[],int,int,LongKey)
+     */
+    public static <T> void sortByLongKey (T[] a, LongKey<? super T> key)
+    {
+        sortByLongKey(a, 0, a.length - 1, key);
+    }
+
+    /**
+     * Sorts the specified subset of the supplied array of objects from least to greatest key. The
+     * keys are extracted (once per object) into a parallel array, which is radix sorted, so the
+     * sort makes no comparator calls and boxes nothing. The sort is stable.
+     *
+     * @param lo0 the index of the lowest element to be included in the sort.
+     * @param hi0 the index of the highest element to be included in the sort.
+     */
+    public static <T> void sortByLongKey (T[] a, int lo0, int hi0, LongKey<? super T> key)
+    {
+        int n = hi0 - lo0 + 1;
+        if (n < 2) {
+            return;
+        }
+        long[] keys = new long[n];
+        long[] order = new long[n];
+        for (int ii = 0; ii < n; ii++) {
+            keys[ii] = key.getKey(a[lo0 + ii]) ^ Long.MIN_VALUE;
+            order[ii] = ii;
+        }
+        radixSort(keys, order, new long[n], new long[n], n);
+        permute(a, lo0, order);
+    }
+
+    /**
+     * Sorts the supplied array of ints from least to greatest using a radix sort.
+     */
+    public static void radixSort (int[] a)
+    {
+        radixSort(a, 0, a.length - 1);
+    }
+
+    /**
+     * Sorts the specified subset of the supplied array of ints from least to greatest using a
+     * least significant digit radix sort, which takes time linear in the number of values (and
+     * skips digits in which all of the values agree) but needs a temporary array as large as the
+     * range being sorted.
+     *
+     * @param lo0 the index of the lowest element to be included in the sort.
+     * @param hi0 the index of the highest element to be included in the sort.
+     */
+    public static void radixSort (int[] a, int lo0, int hi0)
+    {
+        int n = hi0 - lo0 + 1;
+        if (n < RADIX_THRESHOLD) {
+            insertionSort(a, lo0, hi0);
+            return;
+        }
+        // flip the sign bits so that the values sort as unsigned
+        int[] values = new int[n];
+        for (int ii = 0; ii < n; ii++) {
+            values[ii] = a[lo0 + ii] ^ Integer.MIN_VALUE;
+        }
+        radixSort(values, new int[n], n);
+        for (int ii = 0; ii < n; ii++) {
+            a[lo0 + ii] = values[ii] ^ Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Sorts the supplied array of longs from least to greatest using a radix sort.
+     */
+    public static void radixSort (long[] a)
+    {
+        radixSort(a, 0, a.length - 1);
+    }
+
+    /**
+     * Sorts the specified subset of the supplied array of longs from least to greatest using a
+     * least significant digit radix sort, which takes time linear in the number of values (and
+     * skips digits in which all of the values agree) but needs a temporary array as large as the
+     * range being sorted.
+     *
+     * @param lo0 the index of the lowest element to be included in the sort.
+     * @param hi0 the index of the highest element to be included in the sort.
+     */
+    public static void radixSort (long[] a, int lo0, int hi0)
+    {
+        int n = hi0 - lo0 + 1;
+        if (n < RADIX_THRESHOLD) {
+            insertionSort(a, lo0, hi0);
+            return;
+        }
+        // flip the sign bits so that the values sort as unsigned
+        long[] values = new long[n];
+        for (int ii = 0; ii < n; ii++) {
+            values[ii] = a[lo0 + ii] ^ Long.MIN_VALUE;
+        }
+        radixSort(values, new long[n], n, 0, 8);
+        for (int ii = 0; ii < n; ii++) {
+            a[lo0 + ii] = values[ii] ^ Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Sorts the specified subset of the supplied array from least to greatest, using the supplied
+     * comparator and a dual pivot quick sort, which partitions around two pivots at a time and so
+     * makes fewer passes over the array than {@link #sort(Object[],int,int,Comparator)}. Like that
+     * sort, it allocates nothing and is not stable.
+     *
+     * @param lo0 the index of the lowest element to be included in the sort.
+     * @param hi0 the index of the highest element to be included in the sort.
+     */
+    public static <T> void dualPivotSort (T[] a, int lo0, int hi0, Comparator<? super T> comp)
+    {
+        // we recurse into the two smaller parts of each partition and loop on the largest, which
+        // keeps the recursion depth logarithmic
+        while (hi0 - lo0 >= INSERTION_THRESHOLD) {
+            // choose the elements at the one and two third points as pivots and move them to the
+            // ends
+            int third = (hi0 - lo0) / 3;
+            swap(a, lo0, lo0 + third);
+            swap(a, hi0, hi0 - third);
+            if (comp.compare(a[lo0], a[hi0]) > 0) {
+                swap(a, lo0, hi0);
+            }
+            T p1 = a[lo0], p2 = a[hi0];
+
+            // partition into [< p1][p1 <= x <= p2][> p2]
+            int less = lo0 + 1, great = hi0 - 1;
+            for (int kk = less; kk <= great; kk++) {
+                if (comp.compare(a[kk], p1) < 0) {
+                    swap(a, kk, less++);
+                } else if (comp.compare(a[kk], p2) > 0) {
+                    while (kk < great && comp.compare(a[great], p2) > 0) {
+                        great--;
+                    }
+                    swap(a, kk, great--);
+                    if (comp.compare(a[kk], p1) < 0) {
+                        swap(a, kk, less++);
+                    }
+                }
+            }
+            swap(a, lo0, less - 1);
+            swap(a, hi0, great + 1);
+            int llo = lo0, lhi = less - 2, rlo = great + 2, rhi = hi0;
+
+            if (comp.compare(p1, p2) == 0) {
+                // if the pivots are equal, so is everything between them
+                great = less - 1;
+
+            } else if (great - less > (hi0 - lo0) / 2) {
+                // the middle part is large, which happens when many elements equal a pivot (as
+                // with few distinct keys), so move those elements to its ends and leave them be;
+                // otherwise it would shrink by only the two pivots each pass
+                while (less <= great && comp.compare(a[less], p1) == 0) {
+                    less++;
+                }
+                while (great >= less && comp.compare(a[great], p2) == 0) {
+                    great--;
+                }
+                for (int kk = less; kk <= great; kk++) {
+                    if (comp.compare(a[kk], p1) == 0) {
+                        swap(a, kk, less++);
+                    } else if (comp.compare(a[kk], p2) == 0) {
+                        while (kk < great && comp.compare(a[great], p2) == 0) {
+                            great--;
+                        }
+                        swap(a, kk, great--);
+                        if (comp.compare(a[kk], p1) == 0) {
+                            swap(a, kk, less++);
+                        }
+                    }
+                }
+            }
+
+            int lsize = lhi - llo, msize = great - less, rsize = rhi - rlo;
+            if (lsize >= msize && lsize >= rsize) {
+                dualPivotSort(a, less, great, comp);
+                dualPivotSort(a, rlo, rhi, comp);
+                lo0 = llo;
+                hi0 = lhi;
+            } else if (msize >= rsize) {
+                dualPivotSort(a, llo, lhi, comp);
+                dualPivotSort(a, rlo, rhi, comp);
+                lo0 = less;
+                hi0 = great;
+            } else {
+                dualPivotSort(a, llo, lhi, comp);
+                dualPivotSort(a, less, great, comp);
+                lo0 = rlo;
+                hi0 = rhi;
+            }
+        }
+        insertionSort(a, lo0, hi0 + 1, lo0 + 1, comp);
+    }
+
+    /**
+     * Sorts the specified subset of the supplied array from least to greatest, using the supplied
+     * comparator and a natural merge sort in the manner of TimSort: the array is broken into runs
+     * of elements that are already in order (or in strictly reverse order, which are reversed),
+     * short runs are extended with a binary insertion sort and the runs are then merged. Arrays
+     * that are already partially sorted are thus sorted in close to linear time. The sort is
+     * stable, but allocates a temporary array as large as the range being sorted.
+     *
+     * @param lo0 the index of the lowest element to be included in the sort.
+     * @param hi0 the index of the highest element to be included in the sort.
+     */
+    public static <T> void stableSort (T[] a, int lo0, int hi0, Comparator<? super T> comp)
+    {
+        int end = hi0 + 1, n = end - lo0;
+        if (n < 2) {
+            return;
+        }
+
+        // find (or make) the runs, each of which is at least MIN_RUN long, save perhaps the last
+        int[] starts = new int[n / MIN_RUN + 2];
+        int count = 0;
+        for (int lo = lo0; lo < end; ) {
+            int runEnd = findRun(a, lo, end, comp);
+            if (runEnd - lo < MIN_RUN) {
+                int forced = Math.min(end, lo + MIN_RUN);
+                insertionSort(a, lo, forced, runEnd, comp);
+                runEnd = forced;
+            }
+            starts[count++] = lo;
+            lo = runEnd;
+        }
+        starts[count] = end;
+
+        // merge pairs of adjacent runs until only one remains
+        @SuppressWarnings("unchecked") T[] tmp = (T[])new Object[n];
+        while (count > 1) {
+            int merged = 0;
+            for (int rr = 0; rr < count; rr += 2) {
+                if (rr + 1 < count) {
+                    merge(a, starts[rr], starts[rr + 1], starts[rr + 2], tmp, comp);
+                }
+                starts[merged++] = starts[rr];
+            }
+            starts[merged] = end;
+            count = merged;
+        }
+    }
+
+    /**
+     * Returns the (exclusive) end of the run that begins at <code>lo</code>, reversing the run
+     * first if it is strictly descending.
+     */
+    protected static <T> int findRun (T[] a, int lo, int end, Comparator<? super T> comp)
+    {
+        int hi = lo + 1;
+        if (hi == end) {
+            return end;
+        }
+        if (comp.compare(a[hi++], a[lo]) < 0) {
+            while (hi < end && comp.compare(a[hi], a[hi - 1]) < 0) {
+                hi++;
+            }
+            for (int ii = lo, jj = hi - 1; ii < jj; ii++, jj--) {
+                swap(a, ii, jj);
+            }
+        } else {
+            while (hi < end && comp.compare(a[hi], a[hi - 1]) >= 0) {
+                hi++;
+            }
+        }
+        return hi;
+    }
+
+    /**
+     * Sorts <code>a[lo, end)</code> by binary insertion, given that <code>a[lo, sorted)</code> is
+     * already sorted. Equal elements stay in their original order.
+     */
+    protected static <T> void insertionSort (
+        T[] a, int lo, int end, int sorted, Comparator<? super T> comp)
+    {
+        for (int ii = Math.max(sorted, lo + 1); ii < end; ii++) {
+            T value = a[ii];
+            // insert after any elements equal to our value to keep the sort stable
+            int left = upperBound(a, lo, ii, value, comp);
+            System.arraycopy(a, left, a, left + 1, ii - left);
+            a[left] = value;
+        }
+    }
+
+    /**
+     * Merges the sorted runs <code>a[lo, mid)</code> and <code>a[mid, end)</code>.
+     */
+    protected static <T> void merge (
+        T[] a, int lo, int mid, int end, T[] tmp, Comparator<? super T> comp)
+    {
+        // if the runs are already in order, there's nothing to do
+        if (comp.compare(a[mid - 1], a[mid]) <= 0) {
+            return;
+        }
+        // elements of the left run that are no greater than the first of the right, and those of
+        // the right run that are no less than the last of the left, are already in place
+        lo = upperBound(a, lo, mid, a[mid], comp);
+        end = lowerBound(a, mid, end, a[mid - 1], comp);
+        int llen = mid - lo;
+        System.arraycopy(a, lo, tmp, 0, llen);
+        int ii = 0, jj = mid, kk = lo;
+        while (ii < llen && jj < end) {
+            // take from the right run only if strictly less, which keeps the merge stable
+            a[kk++] = (comp.compare(a[jj], tmp[ii]) < 0) ? a[jj++] : tmp[ii++];
+        }
+        System.arraycopy(tmp, ii, a, kk, llen - ii);
+    }
+
+    /**
+     * Returns the index of the first element of the sorted range <code>a[lo, hi)</code> that is
+     * greater than <code>value</code>, or <code>hi</code>.
+     */
+    protected static <T> int upperBound (
+        T[] a, int lo, int hi, T value, Comparator<? super T> comp)
+    {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comp.compare(value, a[mid]) < 0) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index of the first element of the sorted range <code>a[lo, hi)</code> that is
+     * no less than <code>value</code>, or <code>hi</code>.
+     */
+    protected static <T> int lowerBound (
+        T[] a, int lo, int hi, T value, Comparator<? super T> comp)
+    {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comp.compare(a[mid], value) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Rearranges <code>a[lo0, lo0 + order.length)</code> such that the element at each offset
+     * is the one that was at the offset given by the low 32 bits of the corresponding element of
+     * <code>order</code>.
+     */
+    protected static <T> void permute (T[] a, int lo0, long[] order)
+    {
+        Object[] src = new Object[order.length];
+        System.arraycopy(a, lo0, src, 0, order.length);
+        for (int ii = 0; ii < order.length; ii++) {
+            @SuppressWarnings("unchecked") T value = (T)src[(int)order[ii]];
+            a[lo0 + ii] = value;
+        }
+    }
+
+    /**
+     * Sorts <code>values[0, n)</code> as unsigned longs by their bytes from <code>firstByte</code>
+     * (inclusive) to <code>lastByte</code> (exclusive), least significant first.
+     */
+    protected static void radixSort (long[] values, long[] buf, int n, int firstByte, int lastByte)
+    {
+        long[] orig = values;
+        int[][] counts = countDigits(values, n, firstByte, lastByte);
+        for (int bb = firstByte; bb < lastByte; bb++) {
+            int[] count = counts[bb - firstByte];
+            int shift = bb * 8;
+            if (count[(int)(values[0] >>> shift) & 0xFF] == n) {
+                continue; // every value has the same digit here
+            }
+            toOffsets(count);
+            for (int ii = 0; ii < n; ii++) {
+                long value = values[ii];
+                buf[count[(int)(value >>> shift) & 0xFF]++] = value;
+            }
+            long[] tmp = values;
+            values = buf;
+            buf = tmp;
+        }
+        // if we finished in the buffer, copy back into the caller's array
+        if (values != orig) {
+            System.arraycopy(values, 0, orig, 0, n);
+        }
+    }
+
+    /**
+     * Sorts <code>values[0, n)</code> as unsigned ints.
+     */
+    protected static void radixSort (int[] values, int[] buf, int n)
+    {
+        int[] orig = values;
+        int[][] counts = new int[4][256];
+        for (int ii = 0; ii < n; ii++) {
+            int value = values[ii];
+            counts[0][value & 0xFF]++;
+            counts[1][(value >>> 8) & 0xFF]++;
+            counts[2][(value >>> 16) & 0xFF]++;
+            counts[3][value >>> 24]++;
+        }
+        for (int bb = 0; bb < 4; bb++) {
+            int[] count = counts[bb];
+            int shift = bb * 8;
+            if (count[(values[0] >>> shift) & 0xFF] == n) {
+                continue;
+            }
+            toOffsets(count);
+            for (int ii = 0; ii < n; ii++) {
+                int value = values[ii];
+                buf[count[(value >>> shift) & 0xFF]++] = value;
+            }
+            int[] tmp = values;
+            values = buf;
+            buf = tmp;
+        }
+        if (values != orig) {
+            System.arraycopy(values, 0, orig, 0, n);
+        }
+    }
+
+    /**
+     * Sorts <code>keys[0, n)</code> as unsigned longs, rearranging <code>order</code> in step.
+     */
+    protected static void radixSort (long[] keys, long[] order, long[] kbuf, long[] obuf, int n)
+    {
+        int[][] counts = countDigits(keys, n, 0, 8);
+        long[] okeys = keys, oorder = order;
+        for (int bb = 0; bb < 8; bb++) {
+            int[] count = counts[bb];
+            int shift = bb * 8;
+            if (count[(int)(keys[0] >>> shift) & 0xFF] == n) {
+                continue;
+            }
+            toOffsets(count);
+            for (int ii = 0; ii < n; ii++) {
+                long key = keys[ii];
+                int pos = count[(int)(key >>> shift) & 0xFF]++;
+                kbuf[pos] = key;
+                obuf[pos] = order[ii];
+            }
+            long[] tmp = keys;
+            keys = kbuf;
+            kbuf = tmp;
+            tmp = order;
+            order = obuf;
+            obuf = tmp;
+        }
+        if (order != oorder) {
+            System.arraycopy(keys, 0, okeys, 0, n);
+            System.arraycopy(order, 0, oorder, 0, n);
+        }
+    }
+
+    /**
+     * Counts the occurrences of each value of each of the specified bytes of the supplied values.
+     */
+    protected static int[][] countDigits (long[] values, int n, int firstByte, int lastByte)
+    {
+        int[][] counts = new int[lastByte - firstByte][256];
+        for (int ii = 0; ii < n; ii++) {
+            long value = values[ii];
+            for (int bb = firstByte; bb < lastByte; bb++) {
+                counts[bb - firstByte][(int)(value >>> (bb * 8)) & 0xFF]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Converts digit counts into the offset at which the first value with each digit belongs.
+     */
+    protected static void toOffsets (int[] count)
+    {
+        for (int ii = 0, sum = 0; ii < 256; ii++) {
+            int c = count[ii];
+            count[ii] = sum;
+            sum += c;
+        }
+    }
+
+    protected static void insertionSort (int[] a, int lo0, int hi0)
+    {
+        for (int ii = lo0 + 1; ii <= hi0; ii++) {
+            int value = a[ii], jj = ii - 1;
+            for (; jj >= lo0 && a[jj] > value; jj--) {
+                a[jj + 1] = a[jj];
+            }
+            a[jj + 1] = value;
+        }
+    }
+
+    protected static void insertionSort (long[] a, int lo0, int hi0)
+    {
+        for (int ii = lo0 + 1; ii <= hi0; ii++) {
+            long value = a[ii];
+            int jj = ii - 1;
+            for (; jj >= lo0 && a[jj] > value; jj--) {
+                a[jj + 1] = a[jj];
+            }
+            a[jj + 1] = value;
+        }
+    }
+
+    protected static <T> void swap (T[] a, int ii, int jj)
+    {
+        T t = a[ii]; a[ii] = a[jj]; a[jj] = t;
+    }
+
+    /** Ranges smaller than this are insertion sorted rather than radix sorted. */
+    protected static final int RADIX_THRESHOLD = 64;
+
+    /** Ranges smaller than this are insertion sorted by {@link #dualPivotSort}. */
+    protected static final int INSERTION_THRESHOLD = 27;
+
+    /** The minimum length of the runs merged by {@link #stableSort}. */
+    protected static final int MIN_RUN = 32;
 }
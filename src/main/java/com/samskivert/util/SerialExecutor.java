@@ -8,6 +8,7 @@ package com.samskivert.util;
 import java.util.ArrayList;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
 
 import static com.samskivert.util.UtilLog.log;
 
@@ -15,8 +16,11 @@ import static com.samskivert.util.UtilLog.log;
  * Executes tasks serially, but each one on a separate thread. If a task times
  * out, the executor will attempt to interrupt the thread and abort the task,
  * but will abandon the thread in any case after the abort attempt so that
- * subsequent tasks can be processed. The threads created are daemon threads so
- * that they will not block the eventual termination of the virtual machine.
+ * subsequent tasks can be processed. By default, the threads created are daemon
+ * threads so that they will not block the eventual termination of the virtual
+ * machine. A different {@link ThreadFactory} may be supplied, for example one
+ * obtained from {@link ThreadFactories#virtual} to avoid the cost of creating a
+ * platform thread for every task.
  */
 public class SerialExecutor
     implements Executor
@@ -75,9 +79,19 @@ public class SerialExecutor
      * Construct the SerialExecutor, using the specified timeout for posted Runnables.
      */
     public SerialExecutor (Executor receiver, long runnableTimeout)
+    {
+        this(receiver, runnableTimeout, ThreadFactories.platform("SerialExecutor", true));
+    }
+
+    /**
+     * Construct the SerialExecutor, using the specified timeout for posted Runnables and
+     * creating the threads on which tasks are executed with the supplied factory.
+     */
+    public SerialExecutor (Executor receiver, long runnableTimeout, ThreadFactory factory)
     {
         _receiver = receiver;
         _runnableTimeout = runnableTimeout;
+        _factory = factory;
     }
 
     // from Executor
@@ -132,14 +146,14 @@ public class SerialExecutor
         if (_executingNow) {
             // start up a thread to execute the task in question
             ExecutorTask task = _queue.remove(0);
-            final ExecutorThread thread = new ExecutorThread(task);
-            thread.start();
+            final ExecutorRunner runner = new ExecutorRunner(task);
+            runner.start(_factory);
 
             // start up a timer that will abort this thread after the specified timeout
             new Interval(Interval.RUN_DIRECT) {
                 @Override public void expired () {
                     // this will NOOP if the task has already completed
-                    thread.abort();
+                    runner.abort();
                 }
             }.schedule(task.getTimeout());
         }
@@ -148,14 +162,19 @@ public class SerialExecutor
     /**
      * The basic processing unit of the Executor.
      */
-    protected class ExecutorThread extends Thread
+    protected class ExecutorRunner implements Runnable
     {
-        public ExecutorThread (ExecutorTask task)
+        public ExecutorRunner (ExecutorTask task)
         {
-            setDaemon(true);
             _task = task;
         }
 
+        public synchronized void start (ThreadFactory factory)
+        {
+            _thread = factory.newThread(this);
+            _thread.start();
+        }
+
         public synchronized void abort ()
         {
             if (_task != null) {
@@ -178,11 +197,12 @@ public class SerialExecutor
 
                 // finally interrupt the thread in hopes of waking it up from
                 // it's hangitude
-                interrupt();
+                _thread.interrupt();
             }
         }
 
-        @Override public void run ()
+        // from interface Runnable
+        public void run ()
         {
             final ExecutorTask task = _task;
             try {
@@ -212,11 +232,45 @@ public class SerialExecutor
         }
 
         protected ExecutorTask _task;
+        protected Thread _thread;
+    }
+
+    /**
+     * Formerly the thread on which each task was executed. Tasks are now executed by an {@link
+     * ExecutorRunner} on a thread from our factory, and this class is no longer used by the
+     * executor; it remains so that code which refers to it continues to compile and run.
+     *
+     * @deprecated use {@link ExecutorRunner}.
+     */
+    @Deprecated
+    protected class ExecutorThread extends Thread
+    {
+        public ExecutorThread (ExecutorTask task)
+        {
+            setDaemon(true);
+            _runner = new ExecutorRunner(task);
+            _runner._thread = this;
+        }
+
+        public void abort ()
+        {
+            _runner.abort();
+        }
+
+        @Override public void run ()
+        {
+            _runner.run();
+        }
+
+        protected ExecutorRunner _runner;
     }
 
     /** The receiver to which we post a unit to process results. */
     protected Executor _receiver;
 
+    /** Used to create the threads on which we execute tasks. */
+    protected ThreadFactory _factory;
+
     /** True if there is a thread currently executing a task. */
     protected boolean _executingNow = false;
 
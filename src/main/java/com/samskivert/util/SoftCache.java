@@ -5,34 +5,57 @@
 
 package com.samskivert.util;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 
 /**
  * Implements a {@link SoftReference} cache wherein the values in the hashmap are not prevented
- * from being garbage collected.
+ * from being garbage collected. A cache may alternatively be created with weak values, which are
+ * collected as soon as they are no longer strongly referenced elsewhere.
+ *
+ * <p> The references to collected values are queued by the garbage collector, and the map entries
+ * that hold them are purged from the map (during each put and remove) so that a cache under
+ * memory pressure sheds its entries, and not just its values. Once many entries have been purged,
+ * the underlying map is rebuilt so that its table shrinks as well. The cache also tracks its hit
+ * and miss counts and the number of entries that were collected.
  */
 public class SoftCache<K,V>
 {
     public SoftCache (int initialCapacity, float loadFactor)
     {
-        _map = new HashMap<K,SoftReference<V>>(initialCapacity, loadFactor);
+        this(initialCapacity, loadFactor, false);
+    }
+
+    /**
+     * Creates a cache with soft or weak values.
+     *
+     * @param weakValues if true, values are weakly rather than softly referenced.
+     */
+    public SoftCache (int initialCapacity, float loadFactor, boolean weakValues)
+    {
+        _map = new HashMap<K,Reference<V>>(initialCapacity, loadFactor);
+        _loadFactor = loadFactor;
+        _weakValues = weakValues;
     }
 
     public SoftCache (int initialCapacity)
     {
-        _map = new HashMap<K,SoftReference<V>>(initialCapacity);
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
     }
 
     public SoftCache ()
     {
-        _map = new HashMap<K,SoftReference<V>>();
+        this(DEFAULT_CAPACITY);
     }
 
     /**
-     * Returns a reference to the underlying map.
+     * Returns a reference to the underlying map. The map may be replaced with a smaller one as
+     * collected entries are purged, so callers should not retain it.
      */
-    public HashMap<K,SoftReference<V>> getMap ()
+    public HashMap<K,Reference<V>> getMap ()
     {
         return _map;
     }
@@ -42,7 +65,8 @@ public class SoftCache<K,V>
      */
     public boolean containsKey (K key)
     {
-        return (get(key) != null);
+        Reference<V> ref = _map.get(key);
+        return (ref != null && ref.get() != null);
     }
 
     /**
@@ -51,13 +75,19 @@ public class SoftCache<K,V>
     public V get (K key)
     {
         V value = null;
-        SoftReference<V> ref = _map.get(key);
+        Reference<V> ref = _map.get(key);
         if (ref != null) {
             value = ref.get();
             if (value == null) {
                 _map.remove(key);
+                _collected++;
             }
         }
+        if (value == null) {
+            _misses++;
+        } else {
+            _hits++;
+        }
         return value;
     }
 
@@ -66,7 +96,9 @@ public class SoftCache<K,V>
      */
     public V put (K key, V value)
     {
-        SoftReference<V> old = _map.put(key, createReference(value));
+        purge();
+        Reference<V> old = _map.put(key, createReference(key, value));
+        _peakSize = Math.max(_peakSize, _map.size());
         return (old == null) ? null : old.get();
     }
 
@@ -76,26 +108,186 @@ public class SoftCache<K,V>
      */
     public V remove (K key)
     {
-        SoftReference<V> ref = _map.remove(key);
+        purge();
+        Reference<V> ref = _map.remove(key);
         return (ref == null) ? null : ref.get();
     }
 
+    /**
+     * Returns the number of entries in the cache. This includes entries whose values have been
+     * collected but which have not yet been purged.
+     */
+    public int size ()
+    {
+        return _map.size();
+    }
+
     /**
      * Clears all mappings.
      */
     public void clear ()
     {
         _map.clear();
+        // the references we've dropped no longer matter, so discard any that are queued
+        while (_queue.poll() != null) {
+            // nothing doing
+        }
     }
 
     /**
-     * Creates and returns a {@link SoftReference} to the supplied value.  Subclasses can override
-     * to return custom subclasses.
+     * Returns the number of calls to {@link #get} that returned a value.
      */
+    public long getHits ()
+    {
+        return _hits;
+    }
+
+    /**
+     * Returns the number of calls to {@link #get} that did not return a value.
+     */
+    public long getMisses ()
+    {
+        return _misses;
+    }
+
+    /**
+     * Returns the fraction of calls to {@link #get} that returned a value, or zero if there have
+     * been none.
+     */
+    public float getHitRate ()
+    {
+        long lookups = _hits + _misses;
+        return (lookups == 0) ? 0f : (float)_hits / lookups;
+    }
+
+    /**
+     * Returns the number of entries that were removed because their values were collected.
+     */
+    public long getCollectedCount ()
+    {
+        return _collected;
+    }
+
+    /**
+     * Removes all entries whose values have been collected (and whose references have thus been
+     * queued) from the map, and shrinks the map if it is now much smaller than it once was.
+     */
+    public void purge ()
+    {
+        for (Reference<? extends V> ref; (ref = _queue.poll()) != null; ) {
+            @SuppressWarnings("unchecked") K key = ((KeyedReference<K>)ref).getKey();
+            // the key may since have been removed, or remapped to a new value
+            if (_map.get(key) == ref) {
+                _map.remove(key);
+                _collected++;
+            }
+        }
+
+        // HashMap never shrinks its table, so copy our entries into a new map if we're using
+        // only a small fraction of the capacity we once needed
+        int size = _map.size();
+        if (_peakSize > SHRINK_MIN_PEAK && size < _peakSize / 4) {
+            HashMap<K,Reference<V>> map = new HashMap<K,Reference<V>>(
+                Math.max(DEFAULT_CAPACITY, (int)(size / _loadFactor) + 1), _loadFactor);
+            map.putAll(_map);
+            _map = map;
+            _peakSize = size;
+        }
+    }
+
+    /**
+     * Creates and returns a reference to the supplied value, which must be registered with our
+     * reference queue and implement {@link KeyedReference}. Subclasses can override to return
+     * custom subclasses of {@link SoftValue} or {@link WeakValue}. Soft values are obtained from
+     * {@link #createReference(Object)}, so that subclasses which override it still work.
+     */
+    protected Reference<V> createReference (K key, V value)
+    {
+        if (_weakValues) {
+            return new WeakValue<K,V>(key, value, _queue);
+        }
+        @SuppressWarnings("deprecation") SoftReference<V> ref = createReference(value);
+        if (ref instanceof SoftValue<?,?>) {
+            @SuppressWarnings("unchecked") SoftValue<K,V> sref = (SoftValue<K,V>)ref;
+            sref._key = key;
+        }
+        return ref;
+    }
+
+    /**
+     * Creates and returns a {@link SoftReference} to the supplied value. If the reference is a
+     * {@link SoftValue} registered with our reference queue, its key is filled in by {@link
+     * #createReference(Object,Object)} and its entry is purged once the value is collected. Other
+     * references work as well, but their entries are only removed when they are next looked up.
+     *
+     * @deprecated override {@link #createReference(Object,Object)} instead.
+     */
+    @Deprecated
     protected SoftReference<V> createReference (V value)
     {
-        return new SoftReference<V>(value);
+        return new SoftValue<K,V>(null, value, _queue);
+    }
+
+    /** Implemented by our references, so that we know which entry to purge when one is
+     * queued. */
+    protected static interface KeyedReference<K>
+    {
+        /** Returns the key of the entry that holds this reference. */
+        public K getKey ();
+    }
+
+    /** A soft reference to a value that knows its key. */
+    protected static class SoftValue<K,V> extends SoftReference<V>
+        implements KeyedReference<K>
+    {
+        public SoftValue (K key, V value, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            _key = key;
+        }
+
+        public K getKey () {
+            return _key;
+        }
+
+        protected K _key;
+    }
+
+    /** A weak reference to a value that knows its key. */
+    protected static class WeakValue<K,V> extends WeakReference<V>
+        implements KeyedReference<K>
+    {
+        public WeakValue (K key, V value, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            _key = key;
+        }
+
+        public K getKey () {
+            return _key;
+        }
+
+        protected K _key;
     }
 
-    protected HashMap<K,SoftReference<V>> _map;
+    protected HashMap<K,Reference<V>> _map;
+
+    /** The queue to which the garbage collector adds our references once it clears them. */
+    protected ReferenceQueue<V> _queue = new ReferenceQueue<V>();
+
+    /** Whether our values are weakly, rather than softly, referenced. */
+    protected boolean _weakValues;
+
+    /** The load factor with which we (re)create our map. */
+    protected float _loadFactor;
+
+    /** The largest our map has been since it was last rebuilt. */
+    protected int _peakSize;
+
+    /** Statistics. */
+    protected long _hits, _misses, _collected;
+
+    protected static final int DEFAULT_CAPACITY = 16;
+    protected static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /** We don't bother rebuilding maps that have never held more than this many entries. */
+    protected static final int SHRINK_MIN_PEAK = 64;
 }
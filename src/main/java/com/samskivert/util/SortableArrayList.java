@@ -23,6 +23,22 @@ import com.samskivert.annotation.ReplacedBy;
     reason="It depends on whether you want to add elements then sort them, or ensure things are always sorted; and whether duplicates are OK. See the documentation for each to understand the differences.")
 public class SortableArrayList<T> extends BaseArrayList<T>
 {
+    /** The algorithms with which a list may be sorted. */
+    public static enum Algorithm
+    {
+        /** A quick sort ({@link QuickSort#sort(Object[],int,int,Comparator)}), which allocates
+         * nothing but is not stable. */
+        QUICK,
+
+        /** A dual pivot quick sort ({@link QuickSort#dualPivotSort}), which allocates nothing and
+         * makes fewer passes over the elements than {@link #QUICK}, but is not stable. */
+        DUAL_PIVOT,
+
+        /** A natural merge sort ({@link QuickSort#stableSort}), which is stable and very fast on
+         * lists that are already partially sorted, but allocates a copy of the elements. */
+        STABLE;
+    }
+
     /**
      * Sorts the elements in this list with the supplied element
      * comparator using the quick sort algorithm (which does not involve
@@ -31,8 +47,51 @@ public class SortableArrayList<T> extends BaseArrayList<T>
      */
     public void sort (Comparator<? super T> comp)
     {
-        if (_size > 1) {
+        sort(comp, Algorithm.QUICK);
+    }
+
+    /**
+     * Sorts the elements in this list with the supplied element
+     * comparator using the specified algorithm. The elements must all be
+     * mutually comparable.
+     */
+    public void sort (Comparator<? super T> comp, Algorithm algo)
+    {
+        if (_size < 2) {
+            return;
+        }
+        switch (algo) {
+        case DUAL_PIVOT:
+            QuickSort.dualPivotSort(_elements, 0, _size-1, comp);
+            break;
+        case STABLE:
+            QuickSort.stableSort(_elements, 0, _size-1, comp);
+            break;
+        default:
             QuickSort.sort(_elements, 0, _size-1, comp);
+            break;
+        }
+    }
+
+    /**
+     * Sorts the elements in this list from least to greatest int key,
+     * extracting each element's key just once. The sort is stable.
+     */
+    public void sortByIntKey (QuickSort.IntKey<? super T> key)
+    {
+        if (_size > 1) {
+            QuickSort.sortByIntKey(_elements, 0, _size-1, key);
+        }
+    }
+
+    /**
+     * Sorts the elements in this list from least to greatest long key,
+     * extracting each element's key just once. The sort is stable.
+     */
+    public void sortByLongKey (QuickSort.LongKey<? super T> key)
+    {
+        if (_size > 1) {
+            QuickSort.sortByLongKey(_elements, 0, _size-1, key);
         }
     }
 
@@ -0,0 +1,145 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A thread-safe counter that remains cheap to update when many threads update it at once. The
+ * count is kept in a single field until two threads collide updating it, at which point it is
+ * spread over a set of cells, each on its own cache line, and each thread adds to the cell for
+ * its stripe. Reading the count sums the field and the cells, so reads are more expensive than
+ * updates, which suits counters that are updated often and read occasionally, like statistics.
+ *
+ * <p> The sum returned by {@link #sum} is not an atomic snapshot if the counter is being updated
+ * concurrently, but {@link #sumThenReset} never loses an update: every addition is reflected in
+ * exactly one of the values it returns, or in the current count.
+ */
+public class StripedCounter
+{
+    /**
+     * Creates a counter with a count of zero.
+     */
+    public StripedCounter ()
+    {
+    }
+
+    /**
+     * Creates a counter with the specified initial count.
+     */
+    public StripedCounter (long initial)
+    {
+        _base = initial;
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment ()
+    {
+        add(1);
+    }
+
+    /**
+     * Subtracts one from the count.
+     */
+    public void decrement ()
+    {
+        add(-1);
+    }
+
+    /**
+     * Adds the specified amount to the count.
+     */
+    public void add (long amount)
+    {
+        AtomicLongArray cells = _cells;
+        if (cells == null) {
+            long base = _base;
+            if (BASE.compareAndSet(this, base, base + amount)) {
+                return;
+            }
+            // we collided with another thread, so switch to striping
+            cells = createCells();
+        }
+        int hash = (int)Thread.currentThread().getId() * 0x9E3779B9;
+        cells.addAndGet(((hash >>> 16) & (STRIPES - 1)) * PADDING, amount);
+    }
+
+    /**
+     * Returns the current count.
+     */
+    public long sum ()
+    {
+        long sum = _base;
+        AtomicLongArray cells = _cells;
+        if (cells != null) {
+            for (int ii = 0; ii < STRIPES; ii++) {
+                sum += cells.get(ii * PADDING);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the current count and resets it to zero.
+     */
+    public long sumThenReset ()
+    {
+        long sum = BASE.getAndSet(this, 0);
+        AtomicLongArray cells = _cells;
+        if (cells != null) {
+            for (int ii = 0; ii < STRIPES; ii++) {
+                sum += cells.getAndSet(ii * PADDING, 0);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Resets the count to zero. Updates made while the reset is in progress may or may not be
+     * cleared.
+     */
+    public void reset ()
+    {
+        sumThenReset();
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.valueOf(sum());
+    }
+
+    /**
+     * Creates our cells, if another thread has not already done so.
+     */
+    protected synchronized AtomicLongArray createCells ()
+    {
+        if (_cells == null) {
+            _cells = new AtomicLongArray(STRIPES * PADDING);
+        }
+        return _cells;
+    }
+
+    /** The count, or the part of it that was accumulated before we started striping. */
+    protected volatile long _base;
+
+    /** The per-stripe counts, created when threads first collide. */
+    protected volatile AtomicLongArray _cells;
+
+    /** Used to update {@link #_base} atomically. */
+    protected static final AtomicLongFieldUpdater<StripedCounter> BASE =
+        AtomicLongFieldUpdater.newUpdater(StripedCounter.class, "_base");
+
+    /** The number of stripes over which a contended count is spread (a power of two). */
+    protected static final int STRIPES = Math.min(
+        64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+
+    /** The distance between cells, so that each occupies its own 64 byte cache line. */
+    protected static final int PADDING = 8;
+}
@@ -0,0 +1,85 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.lang.reflect.Method;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.samskivert.util.UtilLog.log;
+
+/**
+ * {@link ThreadFactory} related utility methods. These are used to configure the threads on
+ * which {@link Invoker}, {@link SerialExecutor} and other services run their code.
+ */
+public class ThreadFactories
+{
+    /**
+     * Returns a factory that creates standard (platform) threads named <code>prefix-N</code>.
+     *
+     * @param daemon whether or not the created threads should be daemon threads.
+     */
+    public static ThreadFactory platform (final String prefix, final boolean daemon)
+    {
+        return new ThreadFactory() {
+            public Thread newThread (Runnable r) {
+                Thread thread = new Thread(r, prefix + "-" + _count.incrementAndGet());
+                thread.setDaemon(daemon);
+                return thread;
+            }
+            protected AtomicInteger _count = new AtomicInteger();
+        };
+    }
+
+    /**
+     * Returns a factory that creates virtual threads named <code>prefix-N</code> if the JVM
+     * supports them. Otherwise, returns a factory that creates daemon platform threads (virtual
+     * threads are always daemon threads). Virtual threads are cheap to create and block, so they
+     * are well suited to running a task per thread.
+     */
+    public static ThreadFactory virtual (String prefix)
+    {
+        if (VIRTUAL_BUILDER != null) {
+            try {
+                Object builder = VIRTUAL_BUILDER.invoke(null);
+                builder = BUILDER_NAME.invoke(builder, prefix + "-", 1L);
+                return (ThreadFactory)BUILDER_FACTORY.invoke(builder);
+            } catch (Exception e) {
+                log.warning("Failed to create virtual thread factory", "prefix", prefix, e);
+            }
+        }
+        return platform(prefix, true);
+    }
+
+    /**
+     * Returns true if the JVM on which we're running supports virtual threads.
+     */
+    public static boolean virtualThreadsSupported ()
+    {
+        return (VIRTUAL_BUILDER != null);
+    }
+
+    /** Thread.ofVirtual() and the Thread.Builder methods we need, if available. */
+    protected static final Method VIRTUAL_BUILDER, BUILDER_NAME, BUILDER_FACTORY;
+    static {
+        Method ofVirtual = null, name = null, factory = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> bclass = Class.forName("java.lang.Thread$Builder");
+            name = bclass.getMethod("name", String.class, Long.TYPE);
+            factory = bclass.getMethod("factory");
+            // virtual threads are a preview feature in some JVMs and will fail here if disabled
+            ofVirtual.invoke(null);
+        } catch (Exception e) {
+            // no virtual threads in this JVM
+            ofVirtual = null;
+        }
+        VIRTUAL_BUILDER = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+    }
+}
@@ -0,0 +1,365 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+
+import static com.samskivert.util.UtilLog.log;
+
+/**
+ * A hashed timing wheel scheduler, used in place of {@link java.util.Timer} where very large
+ * numbers of tasks are scheduled and cancelled. Scheduling and cancelling a task are constant time
+ * operations (a task is linked into or unlinked from the bucket for the tick on which it expires)
+ * and a cancelled task is removed from the wheel immediately rather than lingering until its
+ * expiration time.
+ *
+ * <p> Time is divided into ticks of a fixed duration and tasks are run no earlier than their
+ * scheduled time and no more than roughly one tick late. The wheel may be split into a number of
+ * shards, each with its own thread and its own lock, so that scheduling from many threads does
+ * not contend on a single lock and expiring tasks are spread across multiple threads. Tasks are
+ * run directly on the shard thread, so they must complete quickly.
+ */
+public class TimingWheel
+{
+    /**
+     * A task that can be scheduled on a timing wheel.
+     */
+    public static abstract class Task implements Runnable
+    {
+        /**
+         * Called on the timing wheel's thread when this task expires.
+         */
+        public abstract void run ();
+
+        /**
+         * Cancels this task. If the task is scheduled, it is removed from its wheel immediately.
+         *
+         * @return true if the task was removed from its wheel, false if it was not scheduled,
+         * was already cancelled or had already expired (and does not repeat). A task that has
+         * expired but not yet been run will not be run once it is cancelled.
+         */
+        public boolean cancel ()
+        {
+            // mark ourselves cancelled before checking for a shard: either a concurrent schedule
+            // sees the mark and refuses us, or we see its shard and remove ourselves from it
+            _cancelled = true;
+            Shard shard = _shard;
+            if (shard == null) {
+                return false;
+            }
+            synchronized (shard) {
+                return shard.remove(this);
+            }
+        }
+
+        /** Our scheduling state, managed by our shard. */
+        protected volatile Shard _shard;
+        protected Task _prev, _next;
+        protected long _expireTick, _nextTime, _period;
+        protected boolean _fixedRate, _linked, _overflowed;
+        protected volatile boolean _cancelled;
+    }
+
+    /**
+     * Creates a timing wheel with the specified configuration.
+     *
+     * @param name the name prefix for the shard threads.
+     * @param tickMillis the duration of a single tick in milliseconds.
+     * @param ticksPerWheel the number of buckets in each shard's wheel (rounded up to a power of
+     * two). Tasks scheduled further in the future than one rotation wait in an overflow wheel,
+     * which has a bucket for each rotation, and are moved into the wheel when the rotation on
+     * which they expire begins, so that they are not revisited on every rotation until then.
+     * @param shards the number of independent wheels (and threads) over which to spread tasks.
+     */
+    public TimingWheel (String name, long tickMillis, int ticksPerWheel, int shards)
+    {
+        if (tickMillis < 1 || ticksPerWheel < 1 || shards < 1) {
+            throw new IllegalArgumentException(
+                "Invalid wheel configuration [tick=" + tickMillis + ", ticks=" + ticksPerWheel +
+                ", shards=" + shards + "]");
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        _shards = new Shard[shards];
+        for (int ii = 0; ii < shards; ii++) {
+            _shards[ii] = new Shard((shards == 1) ? name : (name + "-" + ii), tickMillis, size);
+            _shards[ii].start();
+        }
+    }
+
+    /**
+     * Schedules the supplied task to run once after the specified delay.
+     *
+     * @exception IllegalStateException if the task is already scheduled or was cancelled, or if
+     * this wheel has been shut down.
+     */
+    public void schedule (Task task, long delay)
+    {
+        schedule(task, delay, 0L, false);
+    }
+
+    /**
+     * Schedules the supplied task to run after the specified initial delay and then repeatedly
+     * with the specified period.
+     *
+     * @param fixedRate if true, each subsequent run is scheduled relative to the time at which
+     * the previous run was scheduled, otherwise relative to the time at which it actually ran.
+     *
+     * @exception IllegalStateException if the task is already scheduled or was cancelled, or if
+     * this wheel has been shut down.
+     */
+    public void schedule (Task task, long initialDelay, long period, boolean fixedRate)
+    {
+        if (initialDelay < 0) {
+            throw new IllegalArgumentException("Negative delay.");
+        }
+        if (period < 0) {
+            throw new IllegalArgumentException("Negative period.");
+        }
+        // spread scheduling threads across our shards so that a given thread mostly uses one lock
+        Shard shard = _shards[(int)(Thread.currentThread().getId() % _shards.length)];
+        synchronized (shard) {
+            if (!shard.isRunning()) {
+                throw new IllegalStateException("Timing wheel already shut down.");
+            }
+            if (task._shard != null || task._cancelled) {
+                throw new IllegalStateException("Task already scheduled or cancelled.");
+            }
+            task._shard = shard;
+            task._period = period;
+            task._fixedRate = fixedRate;
+            shard.add(task, System.currentTimeMillis() + initialDelay);
+        }
+    }
+
+    /**
+     * Returns the number of tasks currently scheduled on this wheel.
+     */
+    public int size ()
+    {
+        int size = 0;
+        for (Shard shard : _shards) {
+            synchronized (shard) {
+                size += shard._count;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Shuts down this wheel's threads. Tasks that are still scheduled will not be run.
+     */
+    public void shutdown ()
+    {
+        for (Shard shard : _shards) {
+            shard.shutdown();
+        }
+    }
+
+    /** A single wheel, with its own lock and thread. */
+    protected static class Shard extends LoopingThread
+    {
+        public Shard (String name, long tickMillis, int size) {
+            super(name);
+            setDaemon(true);
+            _tickMillis = tickMillis;
+            _buckets = new Task[size];
+            _overflow = new Task[size];
+            _mask = size - 1;
+            _bits = Integer.numberOfTrailingZeros(size);
+            _start = System.currentTimeMillis();
+            // we consider ourselves running from the start so that tasks may be scheduled
+            // before our thread gets going
+            _running = true;
+        }
+
+        /** Schedules the task to expire at the specified time. Must be called while synchronized
+         * on this shard. */
+        public void add (Task task, long when) {
+            if (_count == 0) {
+                // we've been idle, so we may not have been keeping up with time
+                _tick = Math.max(_tick, (System.currentTimeMillis() - _start) / _tickMillis);
+                notify();
+            }
+            task._nextTime = when;
+            // round up so that we never run a task early
+            long tick = (when - _start + _tickMillis - 1) / _tickMillis;
+            task._expireTick = Math.max(tick, _tick + 1);
+            link(task);
+            _count++;
+        }
+
+        /** Removes the task from this shard. Must be called while synchronized on this shard. */
+        public boolean remove (Task task) {
+            if (!task._linked) {
+                return false;
+            }
+            unlink(task);
+            _count--;
+            return true;
+        }
+
+        /** Links the task into the wheel bucket for the tick on which it expires if that tick is
+         * no more than one rotation away (so that the bucket will not be visited before it is
+         * due), otherwise into the overflow bucket for the rotation on which it expires. */
+        protected void link (Task task) {
+            task._overflowed = (task._expireTick - _tick > _buckets.length);
+            Task[] buckets = task._overflowed ? _overflow : _buckets;
+            int idx = bucketIndex(task);
+            Task head = buckets[idx];
+            task._prev = null;
+            task._next = head;
+            if (head != null) {
+                head._prev = task;
+            }
+            buckets[idx] = task;
+            task._linked = true;
+        }
+
+        /** Unlinks the task from its bucket. */
+        protected void unlink (Task task) {
+            if (task._prev != null) {
+                task._prev._next = task._next;
+            } else {
+                (task._overflowed ? _overflow : _buckets)[bucketIndex(task)] = task._next;
+            }
+            if (task._next != null) {
+                task._next._prev = task._prev;
+            }
+            task._prev = task._next = null;
+            task._linked = false;
+        }
+
+        /** Returns the index of the bucket that holds (or will hold) the supplied task. */
+        protected int bucketIndex (Task task) {
+            long tick = task._expireTick;
+            return (int)((task._overflowed ? (tick >>> _bits) : tick) & _mask);
+        }
+
+        @Override // from LoopingThread
+        public void shutdown () {
+            synchronized (this) {
+                super.shutdown();
+            }
+        }
+
+        @Override // from LoopingThread
+        protected void kick () {
+            notify();
+        }
+
+        @Override // from LoopingThread
+        protected void iterate () {
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                long target = (now - _start) / _tickMillis;
+                if (_count == 0) {
+                    _tick = Math.max(_tick, target);
+                } else if (target - _tick > _buckets.length) {
+                    // we fell more than a full rotation behind (a long GC or suspension), so
+                    // sweep every bucket once rather than visiting each missed tick
+                    _tick = target;
+                    for (int ii = 0; ii < _overflow.length; ii++) {
+                        cascade(ii);
+                    }
+                    for (int ii = 0; ii < _buckets.length; ii++) {
+                        expire(ii);
+                    }
+                } else {
+                    while (_tick < target) {
+                        _tick++;
+                        if ((_tick & _mask) == 0) {
+                            // a new rotation is starting, so bring in the tasks that expire on it
+                            cascade((int)((_tick >>> _bits) & _mask));
+                        }
+                        expire((int)(_tick & _mask));
+                    }
+                }
+
+                if (_expired.isEmpty() && isRunning()) {
+                    try {
+                        if (_count == 0) {
+                            wait();
+                        } else {
+                            wait(Math.max(1L, _start + (_tick+1) * _tickMillis - now));
+                        }
+                    } catch (InterruptedException ie) {
+                        // loop around and check the time
+                    }
+                    return;
+                }
+            }
+
+            // run the expired tasks outside the lock so that they can schedule and cancel
+            for (int ii = 0, nn = _expired.size(); ii < nn; ii++) {
+                Task task = _expired.get(ii);
+                if (task._cancelled) {
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.warning("Timing wheel task failed", "task", task, t);
+                }
+            }
+            _expired.clear();
+        }
+
+        /** Moves the tasks in the specified bucket that are due to {@link #_expired}, rescheduling
+         * those that repeat. */
+        protected void expire (int idx) {
+            long now = System.currentTimeMillis();
+            for (Task task = _buckets[idx], next; task != null; task = next) {
+                next = task._next;
+                if (task._expireTick > _tick) {
+                    continue; // only when sweeping every bucket after falling behind
+                }
+                remove(task);
+                _expired.add(task);
+                if (task._period > 0) {
+                    add(task, task._fixedRate ? task._nextTime + task._period : now + task._period);
+                }
+            }
+        }
+
+        /** Moves the tasks in the specified overflow bucket that are now within one rotation of
+         * expiring into the wheel. Tasks more than a full turn of the overflow wheel away stay
+         * put until a later turn. */
+        protected void cascade (int idx) {
+            for (Task task = _overflow[idx], next; task != null; task = next) {
+                next = task._next;
+                if (task._expireTick - _tick <= _buckets.length) {
+                    unlink(task);
+                    link(task);
+                }
+            }
+        }
+
+        protected final long _tickMillis, _start;
+        protected final int _mask, _bits;
+
+        /** The wheel, with a bucket per tick, holding the tasks due within one rotation. */
+        protected final Task[] _buckets;
+
+        /** The overflow wheel, with a bucket per rotation of {@link #_buckets}, holding the tasks
+         * due on later rotations. */
+        protected final Task[] _overflow;
+
+        /** The last tick we processed. */
+        protected long _tick;
+
+        /** The number of tasks scheduled on this shard. */
+        protected int _count;
+
+        /** Tasks that have expired and are waiting to be run (only used by our thread). */
+        protected ArrayList<Task> _expired = new ArrayList<Task>();
+    }
+
+    /** Our independent wheels. */
+    protected Shard[] _shards;
+}
@@ -0,0 +1,67 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.swing.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import com.samskivert.util.ThreadFactories;
+
+/**
+ * Tests the {@link TaskMaster} class.
+ */
+public class TaskMasterTest
+{
+    @After
+    public void restoreFactory ()
+    {
+        TaskMaster.setThreadFactory(ThreadFactories.platform("TaskMaster", false));
+    }
+
+    @Test
+    public void testThreadFactory ()
+        throws InterruptedException
+    {
+        final ThreadFactory platform = ThreadFactories.platform("test", true);
+        final Thread[] created = new Thread[1];
+        TaskMaster.setThreadFactory(new ThreadFactory() {
+            public Thread newThread (Runnable r) {
+                return created[0] = platform.newThread(r);
+            }
+        });
+
+        final Thread[] ranOn = new Thread[1];
+        final Object[] result = new Object[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        TaskMaster.invokeTask("test", new Task() {
+            public Object invoke () {
+                ranOn[0] = Thread.currentThread();
+                return "done";
+            }
+            public boolean abort () {
+                return false;
+            }
+        }, new TaskObserver() {
+            public void taskCompleted (String name, Object value) {
+                result[0] = value;
+                done.countDown();
+            }
+            public void taskFailed (String name, Throwable exception) {
+                result[0] = exception;
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("done", result[0]);
+        assertSame(created[0], ranOn[0]);
+        assertEquals("test-1", ranOn[0].getName());
+    }
+}
@@ -6,6 +6,11 @@
 package com.samskivert.util;
 
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -139,4 +144,180 @@ public class ArrayUtilTest
         work = ArrayUtil.splice(work, 2, 2);
         assertEquals("(0, 1)", StringUtil.toString(work));
     }
+
+    @Test
+    public void testSortedSetOps ()
+    {
+        Random rand = new Random(11);
+        // include pairs of very different sizes so that we exercise galloping
+        int[][] sizes = { { 0, 10 }, { 50, 50 }, { 1000, 900 }, { 10, 5000 }, { 4000, 7 } };
+        for (int[] size : sizes) {
+            TreeSet<Integer> sa = randomSet(rand, size[0]), sb = randomSet(rand, size[1]);
+            int[] a = toArray(sa), b = toArray(sb);
+
+            TreeSet<Integer> expect = new TreeSet<Integer>(sa);
+            expect.addAll(sb);
+            int[] dest = new int[a.length + b.length];
+            int count = ArrayUtil.union(a, a.length, b, b.length, dest);
+            assertArrayEquals(toArray(expect), ArrayUtil.splice(dest, count));
+
+            expect = new TreeSet<Integer>(sa);
+            expect.retainAll(sb);
+            assertEquals(expect.size(), ArrayUtil.intersectionSize(a, a.length, b, b.length));
+            assertEquals(expect.size(), ArrayUtil.intersectionSize(b, b.length, a, a.length));
+            int[] work = a.clone();
+            count = ArrayUtil.intersect(work, work.length, b, b.length, work);
+            assertArrayEquals(toArray(expect), ArrayUtil.splice(work, count));
+            work = b.clone();
+            count = ArrayUtil.intersect(a, a.length, work, work.length, work);
+            assertArrayEquals(toArray(expect), ArrayUtil.splice(work, count));
+
+            expect = new TreeSet<Integer>(sa);
+            expect.removeAll(sb);
+            work = a.clone();
+            count = ArrayUtil.difference(work, work.length, b, b.length, work);
+            assertArrayEquals(toArray(expect), ArrayUtil.splice(work, count));
+        }
+    }
+
+    protected static TreeSet<Integer> randomSet (Random rand, int size)
+    {
+        TreeSet<Integer> set = new TreeSet<Integer>();
+        while (set.size() < size) {
+            set.add(rand.nextInt(20000) - 10000);
+        }
+        return set;
+    }
+
+    protected static int[] toArray (TreeSet<Integer> set)
+    {
+        int[] values = new int[set.size()];
+        int idx = 0;
+        for (Integer value : set) {
+            values[idx++] = value;
+        }
+        return values;
+    }
+
+    @Test
+    public void testParallelSort ()
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Random rand = new Random(42);
+            for (int n : new int[] { 100, ArrayUtil.PARALLEL_SORT_THRESHOLD, 200001 }) {
+                int[] ia = new int[n];
+                long[] la = new long[n];
+                double[] da = new double[n];
+                Integer[] oa = new Integer[n];
+                for (int ii = 0; ii < n; ii++) {
+                    ia[ii] = rand.nextInt();
+                    la[ii] = rand.nextLong();
+                    da[ii] = (ii % 100 == 0) ? -0.0 : rand.nextGaussian();
+                    oa[ii] = rand.nextInt(1000);
+                }
+                da[0] = Double.NaN;
+
+                int[] iexpect = ia.clone();
+                long[] lexpect = la.clone();
+                double[] dexpect = da.clone();
+                Arrays.sort(iexpect);
+                Arrays.sort(lexpect);
+                Arrays.sort(dexpect);
+                ArrayUtil.parallelSort(ia, pool, 4);
+                ArrayUtil.parallelSort(la, pool, 4);
+                ArrayUtil.parallelSort(da, pool, 4);
+                assertTrue(Arrays.equals(iexpect, ia));
+                assertTrue(Arrays.equals(lexpect, la));
+                assertTrue(Arrays.equals(dexpect, da));
+
+                // sort by hundreds, which should leave equal elements in their original order
+                Comparator<Integer> comp = new Comparator<Integer>() {
+                    public int compare (Integer a, Integer b) {
+                        return a / 100 - b / 100;
+                    }
+                };
+                Integer[] oexpect = oa.clone();
+                Arrays.sort(oexpect, comp);
+                ArrayUtil.parallelSort(oa, comp, pool, 4);
+                assertTrue(Arrays.equals(oexpect, oa));
+            }
+
+            // exceptions thrown by the comparator on any thread are rethrown to the caller
+            Integer[] oa = new Integer[100000];
+            Arrays.fill(oa, 1);
+            try {
+                ArrayUtil.parallelSort(oa, new Comparator<Integer>() {
+                    public int compare (Integer a, Integer b) {
+                        throw new IllegalStateException("boom");
+                    }
+                }, pool, 4);
+                fail("expected comparator exception");
+            } catch (IllegalStateException ise) {
+                assertEquals("boom", ise.getMessage());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchedSearch ()
+    {
+        Random rand = new Random(42);
+        int[] array = new int[10000];
+        Integer[] oarray = new Integer[array.length];
+        for (int ii = 0; ii < array.length; ii++) {
+            array[ii] = rand.nextInt(20000);
+        }
+        Arrays.sort(array);
+        for (int ii = 0; ii < array.length; ii++) {
+            oarray[ii] = array[ii];
+        }
+        Comparator<Integer> comp = new Comparator<Integer>() {
+            public int compare (Integer a, Integer b) {
+                return a.compareTo(b);
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (int pass = 0; pass < 2; pass++) {
+                // search for sorted keys, then for keys in random order
+                int[] keys = new int[20000];
+                Integer[] okeys = new Integer[keys.length];
+                for (int ii = 0; ii < keys.length; ii++) {
+                    keys[ii] = rand.nextInt(22000) - 1000;
+                }
+                if (pass == 0) {
+                    Arrays.sort(keys);
+                }
+                for (int ii = 0; ii < keys.length; ii++) {
+                    okeys[ii] = keys[ii];
+                }
+
+                // search only part of the array so that the bounds are exercised
+                int offset = 100, length = array.length - 200;
+                int[] results = new int[keys.length], presults = new int[keys.length];
+                int[] oresults = new int[keys.length];
+                ArrayUtil.binarySearch(array, offset, length, keys, results);
+                ArrayUtil.binarySearch(array, offset, length, keys, presults, pool, 4);
+                ArrayUtil.binarySearch(oarray, offset, length, okeys, comp, oresults);
+                for (int ii = 0; ii < keys.length; ii++) {
+                    int expect = offset;
+                    while (expect < offset + length && array[expect] < keys[ii]) {
+                        expect++;
+                    }
+                    if (expect == offset + length || array[expect] != keys[ii]) {
+                        expect = -(expect + 1);
+                    }
+                    assertEquals(expect, results[ii]);
+                    assertEquals(expect, presults[ii]);
+                    assertEquals(expect, oresults[ii]);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
@@ -0,0 +1,60 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link BasicRunQueue} class.
+ */
+public class BasicRunQueueTest
+{
+    @Test
+    public void testBlockFromDispatchThread ()
+        throws InterruptedException
+    {
+        // a runnable that posts to its own full run queue must not block the only thread that
+        // can make room
+        final BasicRunQueue queue = new BasicRunQueue("test");
+        queue.setCapacity(1, QueueLimiter.Policy.BLOCK);
+        final int[] ran = new int[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        queue.postRunnable(new Runnable() {
+            public void run () {
+                for (int ii = 0; ii < 3; ii++) {
+                    queue.postRunnable(new Runnable() {
+                        public void run () {
+                            ran[0]++;
+                        }
+                    });
+                }
+                queue.postRunnable(new Runnable() {
+                    public void run () {
+                        done.countDown();
+                    }
+                });
+            }
+        });
+        queue.start();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, ran[0]);
+        assertEquals(0, queue.getLimiter().getPending());
+
+        // the runnable queued to wake the thread for shutdown bypasses the capacity limit
+        queue.postRunnable(new Runnable() {
+            public void run () {
+                // nothing
+            }
+        });
+        queue.shutdown();
+        queue.join(5000L);
+        assertFalse(queue.isAlive());
+    }
+}
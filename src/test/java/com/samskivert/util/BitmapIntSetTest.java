@@ -0,0 +1,184 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class BitmapIntSetTest extends IntSetTestBase
+{
+    @Override
+    protected AbstractIntSet createSet ()
+    {
+        return new BitmapIntSet();
+    }
+
+    @Override
+    protected AbstractIntSet createSet (int[] values)
+    {
+        return new BitmapIntSet(values);
+    }
+
+    @Test
+    public void testRandomOps ()
+    {
+        // mix sparse and dense chunks so that containers convert back and forth
+        Random rand = new Random(42);
+        BitmapIntSet set = new BitmapIntSet();
+        TreeSet<Integer> expect = new TreeSet<Integer>();
+        for (int ii = 0; ii < 200000; ii++) {
+            int value = randomValue(rand);
+            if (rand.nextInt(3) == 0) {
+                assertEquals(expect.remove(value), set.remove(value));
+            } else {
+                assertEquals(expect.add(value), set.add(value));
+            }
+            assertEquals(expect.size(), set.size());
+        }
+        assertEquals(expect, set);
+        assertTrue(Arrays.equals(toArray(expect), set.toIntArray()));
+
+        // optimizing changes the representation but not the contents
+        set.addRange(-70000, 70000);
+        expect.addAll(range(-70000, 70000));
+        set.optimize();
+        assertEquals(expect, set);
+        assertTrue(Arrays.equals(toArray(expect), set.toIntArray()));
+
+        // remove every third value via the iterator
+        int count = 0;
+        for (Interator iter = set.interator(); iter.hasNext(); ) {
+            int value = iter.nextInt();
+            if (count++ % 3 == 0) {
+                iter.remove();
+                expect.remove(value);
+            }
+        }
+        assertEquals(expect, set);
+        assertEquals(expect.size(), set.size());
+    }
+
+    @Test
+    public void testSetOps ()
+    {
+        Random rand = new Random(7);
+        BitmapIntSet a = new BitmapIntSet(), b = new BitmapIntSet();
+        TreeSet<Integer> ea = new TreeSet<Integer>(), eb = new TreeSet<Integer>();
+        for (int ii = 0; ii < 50000; ii++) {
+            int value = randomValue(rand);
+            a.add(value);
+            ea.add(value);
+            value = randomValue(rand);
+            b.add(value);
+            eb.add(value);
+        }
+        b.addRange(1000, 300000);
+        eb.addAll(range(1000, 300000));
+        b.optimize();
+
+        TreeSet<Integer> expect = new TreeSet<Integer>(ea);
+        expect.retainAll(eb);
+        assertEquals(expect, a.and(b));
+        assertEquals(expect, b.and(a));
+        assertEquals(expect.size(), a.and(b).size());
+
+        expect = new TreeSet<Integer>(ea);
+        expect.addAll(eb);
+        assertEquals(expect, a.or(b));
+        assertEquals(expect, b.or(a));
+        assertEquals(expect.size(), a.or(b).size());
+
+        expect = new TreeSet<Integer>(ea);
+        expect.removeAll(eb);
+        assertEquals(expect, a.andNot(b));
+        assertEquals(expect.size(), a.andNot(b).size());
+
+        // the in-place variants and make sure the operands are left alone
+        BitmapIntSet c = a.clone();
+        assertTrue(c.removeAll(b));
+        assertEquals(expect, c);
+        assertFalse(c.removeAll(b));
+        assertTrue(c.addAll(b));
+        assertTrue(c.retainAll(b));
+        assertEquals(eb, c);
+        assertEquals(ea, a);
+        assertEquals(eb, b);
+    }
+
+    @Test
+    public void testConversion ()
+        throws Exception
+    {
+        ArrayIntSet aset = new ArrayIntSet(new int[] { -5, Integer.MIN_VALUE, 3, 65536, 65535,
+                                                       Integer.MAX_VALUE, 0, -65537 });
+        BitmapIntSet bset = new BitmapIntSet(aset);
+        assertEquals(aset, bset);
+        assertTrue(Arrays.equals(aset.toIntArray(), bset.toIntArray()));
+        assertEquals(aset, bset.toArrayIntSet());
+
+        // a dense range compresses well, and better still as runs
+        BitmapIntSet dense = new BitmapIntSet();
+        for (int ii = 0; ii < 1000000; ii++) {
+            dense.add(ii);
+        }
+        assertTrue(dense.getSizeInBytes() < 1000000 / 4);
+        assertTrue(dense.optimize());
+        assertTrue(dense.getSizeInBytes() < 1000);
+        assertEquals(1000000, dense.size());
+        assertTrue(dense.contains(999999));
+        assertFalse(dense.contains(1000000));
+
+        // round trip through serialization
+        dense.remove(500000);
+        bset.addAll(dense);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream oout = new ObjectOutputStream(bout);
+        oout.writeObject(bset);
+        oout.close();
+        ObjectInputStream oin = new ObjectInputStream(
+            new ByteArrayInputStream(bout.toByteArray()));
+        BitmapIntSet rset = (BitmapIntSet)oin.readObject();
+        assertEquals(bset, rset);
+        assertEquals(bset.size(), rset.size());
+        assertFalse(rset.contains(500000));
+    }
+
+    protected static int randomValue (Random rand)
+    {
+        switch (rand.nextInt(3)) {
+        case 0: return rand.nextInt();
+        case 1: return rand.nextInt(10000) - 5000;
+        default: return 200000 + rand.nextInt(12000);
+        }
+    }
+
+    protected static TreeSet<Integer> range (int first, int last)
+    {
+        TreeSet<Integer> set = new TreeSet<Integer>();
+        for (int ii = first; ii <= last; ii++) {
+            set.add(ii);
+        }
+        return set;
+    }
+
+    protected static int[] toArray (TreeSet<Integer> set)
+    {
+        int[] values = new int[set.size()];
+        int idx = 0;
+        for (Integer value : set) {
+            values[idx++] = value;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,124 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Map;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ConcurrentCountMap}, {@link ConcurrentIntCountMap} and {@link StripedCounter}
+ * classes.
+ */
+public class ConcurrentCountMapTest
+{
+    @Test
+    public void testCounts ()
+    {
+        ConcurrentCountMap<String> counts = new ConcurrentCountMap<String>();
+        counts.increment("a");
+        counts.add("b", 5);
+        counts.decrement("b");
+        counts.add("c", 0);
+        assertEquals(1, counts.getCount("a"));
+        assertEquals(4, counts.getCount("b"));
+        assertEquals(0, counts.getCount("d"));
+        assertTrue(counts.containsKey("c"));
+        assertEquals(5, counts.getTotalCount());
+
+        Map<String, Long> drained = counts.drain();
+        assertEquals(2, drained.size());
+        assertEquals(Long.valueOf(4), drained.get("b"));
+        assertEquals(0, counts.getTotalCount());
+        assertEquals(3, counts.size());
+        counts.increment("b");
+        counts.compress();
+        assertEquals(1, counts.size());
+        assertEquals(Long.valueOf(1), counts.snapshot().get("b"));
+
+        ConcurrentIntCountMap icounts = new ConcurrentIntCountMap(4);
+        for (int ii = -50; ii < 50; ii++) {
+            assertEquals(ii, icounts.add(ii, ii));
+            assertEquals(ii + 1, icounts.increment(ii));
+        }
+        assertEquals(100, icounts.size());
+        assertEquals(50, icounts.getTotalCount());
+        assertEquals(-9, icounts.getCount(-10));
+        IntIntMap idrained = icounts.drain();
+        assertEquals(100, idrained.size());
+        assertEquals(11, idrained.get(10));
+        assertTrue(icounts.isEmpty());
+        assertEquals(0, icounts.getCount(10));
+    }
+
+    @Test
+    public void testStripeSpread ()
+    {
+        // sequential keys should be spread evenly over the stripes, and within each stripe
+        ConcurrentIntCountMap icounts = new ConcurrentIntCountMap(16);
+        for (int ii = 0; ii < 16000; ii++) {
+            icounts.increment(ii);
+        }
+        for (ConcurrentIntCountMap.Stripe stripe : icounts._stripes) {
+            int size = stripe.counts.size();
+            assertTrue("uneven stripe " + size, size > 500 && size < 1500);
+        }
+        assertEquals(16000, icounts.size());
+
+        // a single stripe works too
+        icounts = new ConcurrentIntCountMap(1);
+        icounts.add(-7, 3);
+        assertEquals(3, icounts.getCount(-7));
+    }
+
+    @Test
+    public void testConcurrentUpdates ()
+        throws Exception
+    {
+        final ConcurrentCountMap<Integer> counts = new ConcurrentCountMap<Integer>();
+        final ConcurrentIntCountMap icounts = new ConcurrentIntCountMap();
+        final StripedCounter counter = new StripedCounter();
+        final int threads = 4, iters = 50000, keys = 10;
+
+        // drain the counts while they are being updated; no update should be lost
+        Thread[] updaters = new Thread[threads];
+        for (int tt = 0; tt < threads; tt++) {
+            updaters[tt] = new Thread() {
+                @Override public void run () {
+                    for (int ii = 0; ii < iters; ii++) {
+                        counts.increment(ii % keys);
+                        icounts.increment(ii % keys);
+                        counter.increment();
+                    }
+                }
+            };
+            updaters[tt].start();
+        }
+        long total = 0, itotal = 0, ctotal = 0;
+        while (true) {
+            boolean alive = false;
+            for (Thread updater : updaters) {
+                alive |= updater.isAlive();
+            }
+            for (long count : counts.drain().values()) {
+                total += count;
+            }
+            for (int count : icounts.drain().getValues()) {
+                itotal += count;
+            }
+            ctotal += counter.sumThenReset();
+            if (!alive) {
+                break;
+            }
+            Thread.sleep(1);
+        }
+        assertEquals(threads * iters, total);
+        assertEquals(threads * iters, itotal);
+        assertEquals(threads * iters, ctotal);
+        assertEquals(0, counter.sum());
+    }
+}
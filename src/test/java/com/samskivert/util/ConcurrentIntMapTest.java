@@ -0,0 +1,178 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ConcurrentIntMap} class.
+ */
+public class ConcurrentIntMapTest
+{
+    @Test
+    public void testRandomOps ()
+    {
+        Random rand = new Random(42);
+        ConcurrentIntMap<Integer> map = new ConcurrentIntMap<Integer>(4, 4);
+        Map<Integer,Integer> expect = new HashMap<Integer,Integer>();
+        for (int ii = 0; ii < 100000; ii++) {
+            int key = rand.nextInt(2000) - 1000;
+            Integer value = Integer.valueOf(ii % 7);
+            switch (rand.nextInt(6)) {
+            case 0:
+                assertEquals(expect.put(key, value), map.put(key, value));
+                break;
+            case 1:
+                assertEquals(expect.remove(key), map.remove(key));
+                break;
+            case 2:
+                Integer ovalue = expect.get(key);
+                if (ovalue == null) {
+                    expect.put(key, value);
+                }
+                assertEquals(ovalue, map.putIfAbsent(key, value));
+                break;
+            case 3:
+                boolean mapped = value.equals(expect.get(key));
+                if (mapped) {
+                    expect.remove(key);
+                }
+                assertEquals(mapped, map.remove(key, value));
+                break;
+            case 4:
+                Integer cvalue = expect.get(key);
+                boolean matches = (cvalue != null) && cvalue.equals(ii % 5);
+                if (matches) {
+                    expect.put(key, value);
+                }
+                assertEquals(matches, map.replace(key, Integer.valueOf(ii % 5), value));
+                break;
+            default:
+                assertEquals(expect.containsKey(key), map.containsKey(key));
+                assertEquals(expect.get(key), map.get(key));
+                break;
+            }
+            assertEquals(expect.size(), map.size());
+        }
+        assertEquals(expect, map);
+        assertEquals(new HashMap<Integer,Integer>(map), expect);
+
+        // remove half of the entries via the key iterator
+        int count = 0;
+        for (Interator iter = map.intKeySet().interator(); iter.hasNext(); ) {
+            int key = iter.nextInt();
+            if (count++ % 2 == 0) {
+                iter.remove();
+                expect.remove(key);
+            }
+        }
+        assertEquals(expect, map);
+
+        // and check that entries write through
+        for (IntMap.IntEntry<Integer> entry : map.intEntrySet()) {
+            entry.setValue(entry.getIntKey());
+        }
+        for (Map.Entry<Integer,Integer> entry : map.entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue());
+        }
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.values().iterator().hasNext());
+    }
+
+    @Test
+    public void testComputeIfAbsent ()
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        ConcurrentIntMap.Creator<String> creator = new ConcurrentIntMap.Creator<String>() {
+            public String create (int key) {
+                calls.incrementAndGet();
+                return (key < 0) ? null : ("v" + key);
+            }
+        };
+        ConcurrentIntMap<String> map = new ConcurrentIntMap<String>();
+        assertEquals("v3", map.computeIfAbsent(3, creator));
+        assertEquals("v3", map.computeIfAbsent(3, creator));
+        assertEquals(1, calls.get());
+        assertNull(map.computeIfAbsent(-1, creator));
+        assertFalse(map.containsKey(-1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testForeignKeys ()
+    {
+        // keys that aren't Integers are simply not present, as with any other map
+        ConcurrentIntMap<String> map = new ConcurrentIntMap<String>();
+        map.put(3, "three");
+        assertTrue(map.containsKey((Object)Integer.valueOf(3)));
+        assertFalse(map.containsKey((Object)"3"));
+        assertFalse(map.containsKey((Object)null));
+        assertNull(map.get("3"));
+        assertNull(map.remove("3"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testConcurrentUpdates ()
+        throws InterruptedException
+    {
+        final int threads = 8, keys = 5000;
+        final ConcurrentIntMap<AtomicInteger> map = new ConcurrentIntMap<AtomicInteger>();
+        final ConcurrentIntMap.Creator<AtomicInteger> creator =
+            new ConcurrentIntMap.Creator<AtomicInteger>() {
+            public AtomicInteger create (int key) {
+                return new AtomicInteger();
+            }
+        };
+        final CountDownLatch start = new CountDownLatch(1), done = new CountDownLatch(threads);
+        for (int tt = 0; tt < threads; tt++) {
+            final int seed = tt;
+            new Thread() {
+                @Override public void run () {
+                    try {
+                        start.await();
+                        Random rand = new Random(seed);
+                        for (int ii = 0; ii < keys; ii++) {
+                            map.computeIfAbsent(ii, creator).incrementAndGet();
+                            // churn some other keys while we're at it, iterating concurrently
+                            int other = keys + rand.nextInt(keys);
+                            if (map.putIfAbsent(other, new AtomicInteger()) != null) {
+                                map.remove(other);
+                            }
+                            if (ii % 1000 == 0) {
+                                for (Iterator<AtomicInteger> iter = map.values().iterator();
+                                     iter.hasNext(); ) {
+                                    assertNotNull(iter.next());
+                                }
+                            }
+                        }
+                    } catch (InterruptedException ie) {
+                        // fall through
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        // every thread incremented every low key exactly once, in a single shared counter
+        for (int ii = 0; ii < keys; ii++) {
+            assertEquals(threads, map.get(ii).get());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link DependencyGraph} class.
+ */
+public class DependencyGraphTest
+{
+    @Test
+    public void testRemoveAvailable ()
+    {
+        DependencyGraph<String> graph = createGraph();
+        List<String> order = new ArrayList<String>();
+        while (!graph.isEmpty()) {
+            order.add(graph.removeAvailableElement());
+        }
+        checkOrder(order);
+    }
+
+    @Test
+    public void testExecute ()
+        throws Exception
+    {
+        DependencyGraph<String> graph = createGraph();
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        DependencyGraph.Action<String> action = new DependencyGraph.Action<String>() {
+            public void run (String element) throws Exception {
+                // the db is slow, everything else is quick
+                Thread.sleep(element.equals("db") ? 100L : 10L);
+                order.add(element);
+            }
+        };
+        DependencyGraph.Report<String> report = graph.execute(4, action);
+        assertEquals(6, order.size());
+        checkOrder(order);
+        // the graph is left intact
+        assertEquals(6, graph.size());
+
+        // the slow chain determines the elapsed time
+        assertEquals(Arrays.asList("config", "db", "users", "web"), report.getCriticalPath());
+        assertTrue(report.getElapsed() < report.getSerialTime());
+        assertTrue(report.getDuration("db") >= 100L);
+        assertTrue(report.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testExecuteFailure ()
+        throws Exception
+    {
+        DependencyGraph<String> graph = createGraph();
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        try {
+            graph.execute(2, new DependencyGraph.Action<String>() {
+                public void run (String element) throws Exception {
+                    if (element.equals("db")) {
+                        throw new Exception("no database");
+                    }
+                    ran.add(element);
+                }
+            });
+            fail("Execution should have failed.");
+        } catch (DependencyGraph.FailedException fe) {
+            assertEquals("no database", fe.getCause().getMessage());
+            DependencyGraph.Report<?> report = fe.getReport();
+            assertEquals(1, report.getFailures().size());
+            // nothing that depends on the database was run
+            assertTrue(report.getSkipped().contains("users"));
+            assertTrue(report.getSkipped().contains("web"));
+            assertFalse(ran.contains("users"));
+            assertFalse(ran.contains("web"));
+        }
+    }
+
+    /**
+     * Creates a graph of startup steps: web needs users and cache, users needs the db, and
+     * the db and log need the config.
+     */
+    protected DependencyGraph<String> createGraph ()
+    {
+        DependencyGraph<String> graph = new DependencyGraph<String>();
+        for (String step : STEPS) {
+            graph.add(step);
+        }
+        graph.addDependency("db", "config");
+        graph.addDependency("log", "config");
+        graph.addDependency("users", "db");
+        graph.addDependency("web", "users");
+        graph.addDependency("web", "cache");
+        return graph;
+    }
+
+    protected void checkOrder (List<String> order)
+    {
+        assertTrue(order.indexOf("config") < order.indexOf("db"));
+        assertTrue(order.indexOf("config") < order.indexOf("log"));
+        assertTrue(order.indexOf("db") < order.indexOf("users"));
+        assertTrue(order.indexOf("users") < order.indexOf("web"));
+        assertTrue(order.indexOf("cache") < order.indexOf("web"));
+    }
+
+    protected static final String[] STEPS = { "web", "users", "db", "log", "config", "cache" };
+}
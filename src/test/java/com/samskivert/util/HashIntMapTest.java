@@ -6,8 +6,15 @@
 package com.samskivert.util;
 
 import java.io.*;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -93,6 +100,98 @@ public class HashIntMapTest
         }
     }
 
+    @Test
+    public void testRandomOps ()
+    {
+        // compare against a standard map, with a small key range so that we get lots of
+        // collisions, removals that shift entries and use of the zero key
+        Random rand = new Random(42);
+        HashIntMap<Integer> table = new HashIntMap<Integer>();
+        Map<Integer,Integer> expect = new HashMap<Integer,Integer>();
+        for (int ii = 0; ii < 100000; ii++) {
+            int key = rand.nextInt(2000) - 1000;
+            switch (rand.nextInt(3)) {
+            case 0:
+                assertEquals(expect.put(key, ii), table.put(key, Integer.valueOf(ii)));
+                break;
+            case 1:
+                assertEquals(expect.remove(key), table.remove(key));
+                break;
+            default:
+                assertEquals(expect.get(key), table.get(key));
+                assertEquals(expect.containsKey(key), table.containsKey(key));
+                break;
+            }
+            assertEquals(expect.size(), table.size());
+        }
+        assertEquals(expect, table);
+        assertEquals(table, expect);
+
+        // remove every other entry via the iterator and make sure we see every entry once
+        Map<Integer,Integer> seen = new HashMap<Integer,Integer>();
+        int count = 0;
+        for (Iterator<IntMap.IntEntry<Integer>> iter = table.intEntrySet().iterator();
+             iter.hasNext(); ) {
+            IntMap.IntEntry<Integer> entry = iter.next();
+            assertNull(seen.put(entry.getIntKey(), entry.getValue()));
+            if (count++ % 2 == 0) {
+                iter.remove();
+                expect.remove(entry.getIntKey());
+            }
+        }
+        assertEquals(count, seen.size());
+        assertEquals(expect, table);
+
+        // the internal iteration should see every remaining entry once
+        final Map<Integer,Integer> visited = new HashMap<Integer,Integer>();
+        table.forEachEntry(new IntObjectConsumer<Integer>() {
+            public void accept (int key, Integer value) {
+                assertNull(visited.put(key, value));
+            }
+        });
+        assertEquals(expect, visited);
+        assertEquals(expect.keySet(),
+                     IntSets.create(IntSets.toIntArray(table.intKeySet(), new int[0])));
+
+        // the helper visits the same entries, whether or not it knows the map's class
+        final Map<Integer,Integer> hvisited = new HashMap<Integer,Integer>();
+        IntObjectConsumer<Integer> hop = new IntObjectConsumer<Integer>() {
+            public void accept (int key, Integer value) {
+                assertNull(hvisited.put(key, value));
+            }
+        };
+        IntMaps.forEachEntry(table, hop);
+        assertEquals(expect, hvisited);
+        hvisited.clear();
+        @SuppressWarnings("unchecked") IntMap<Integer> plain = (IntMap<Integer>)
+            Proxy.newProxyInstance(IntMap.class.getClassLoader(), new Class<?>[] { IntMap.class },
+                                   delegateTo(table));
+        IntMaps.forEachEntry(plain, hop);
+        assertEquals(expect, hvisited);
+
+        // and that entries write through to the map
+        for (IntMap.IntEntry<Integer> entry : table.intEntrySet()) {
+            entry.setValue(-entry.getIntKey());
+        }
+        for (int key : table.intKeySet()) {
+            assertEquals(Integer.valueOf(-key), table.get(key));
+        }
+        assertEquals(table, table.clone());
+    }
+
+    /**
+     * Returns a handler that passes every call on to the supplied target, for creating an
+     * implementation of an interface that is not one of our own classes.
+     */
+    protected static InvocationHandler delegateTo (final Object target)
+    {
+        return new InvocationHandler() {
+            public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+                return method.invoke(target, args);
+            }
+        };
+    }
+
     protected void populateTable (HashIntMap<Integer> table)
     {
         for (int ii = 10; ii < 20; ii++) {
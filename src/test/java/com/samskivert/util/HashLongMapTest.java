@@ -0,0 +1,88 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link HashLongMap} class.
+ */
+public class HashLongMapTest
+{
+    @Test
+    public void testRandomOps ()
+    {
+        Random rand = new Random(42);
+        HashLongMap<String> table = new HashLongMap<String>();
+        Map<Long,String> expect = new HashMap<Long,String>();
+        for (int ii = 0; ii < 100000; ii++) {
+            // keys that differ only in their high words must not collide
+            long key = ((long)(rand.nextInt(40) - 20) << 40) + rand.nextInt(50);
+            String value = String.valueOf(ii);
+            switch (rand.nextInt(3)) {
+            case 0:
+                assertEquals(expect.put(key, value), table.put(key, value));
+                break;
+            case 1:
+                assertEquals(expect.remove(key), table.remove(key));
+                break;
+            default:
+                assertEquals(expect.containsKey(key), table.containsKey(key));
+                assertEquals(expect.get(key), table.get(key));
+                break;
+            }
+            assertEquals(expect.size(), table.size());
+        }
+        assertEquals(expect, table);
+
+        // remove half of the entries via the key iterator
+        int count = 0;
+        for (LongIterator iter = table.keys(); iter.hasNext(); ) {
+            long key = iter.nextLong();
+            if (count++ % 2 == 0) {
+                iter.remove();
+                expect.remove(key);
+            }
+        }
+        assertEquals(expect, table);
+        assertEquals(expect, LongMaps.newHashLongMap(expect));
+
+        // make sure entries write through
+        for (LongMap.LongEntry<String> entry : table.longEntrySet()) {
+            entry.setValue(String.valueOf(entry.getLongKey()));
+        }
+        for (LongIterator iter = table.keys(); iter.hasNext(); ) {
+            long key = iter.nextLong();
+            assertEquals(String.valueOf(key), table.get(key));
+        }
+    }
+
+    @Test
+    public void testSerialization ()
+        throws Exception
+    {
+        HashLongMap<String> table = new HashLongMap<String>();
+        for (long ii = -100; ii < 100; ii++) {
+            table.put(ii * Integer.MAX_VALUE, String.valueOf(ii));
+        }
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bout);
+        out.writeObject(table);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bout.toByteArray()));
+        @SuppressWarnings("unchecked") HashLongMap<String> copy =
+            (HashLongMap<String>)in.readObject();
+        assertEquals(table, copy);
+        assertEquals("-7", copy.get(-7L * Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,71 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link HashLongSet} class.
+ */
+public class HashLongSetTest
+{
+    @Test
+    public void testRandomOps ()
+    {
+        Random rand = new Random(42);
+        HashLongSet set = new HashLongSet();
+        Set<Long> expect = new HashSet<Long>();
+        for (int ii = 0; ii < 100000; ii++) {
+            long value = ((long)(rand.nextInt(40) - 20) << 40) + rand.nextInt(50);
+            switch (rand.nextInt(3)) {
+            case 0:
+                assertEquals(expect.add(value), set.add(value));
+                break;
+            case 1:
+                assertEquals(expect.remove(value), set.remove(value));
+                break;
+            default:
+                assertEquals(expect.contains(value), set.contains(value));
+                break;
+            }
+            assertEquals(expect.size(), set.size());
+        }
+        assertEquals(expect, set);
+        assertEquals(set, expect);
+        assertEquals(expect.hashCode(), set.hashCode());
+        assertEquals(set, set.clone());
+    }
+
+    @Test
+    public void testOps ()
+    {
+        LongSet set1 = LongSets.create(1L, 2L, 3L, 5L, 1L << 40, 19L, 35L);
+        LongSet set2 = LongSets.create(3L, 4L, 5L, 11L, 1L << 40, 19L, 25L);
+
+        long[] and = LongSets.and(set1, set2).toLongArray();
+        Arrays.sort(and);
+        assertTrue(Arrays.equals(new long[] { 3L, 5L, 19L, 1L << 40 }, and));
+        assertEquals(10, LongSets.or(set1, set2).size());
+        assertEquals(LongSets.create(1L, 2L, 35L), LongSets.difference(set1, set2));
+        assertEquals(LongSets.create(-1L, 7L), LongSets.create(IntSets.create(7, -1)));
+        assertTrue(LongSets.emptyLongSet().isEmpty());
+
+        LongSet view = LongSets.unmodifiableLongSet(set1);
+        assertTrue(view.contains(1L << 40));
+        try {
+            view.add(7L);
+            fail("unmodifiable set allowed add");
+        } catch (UnsupportedOperationException uoe) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,164 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+/**
+ * Compares full scans of the int collections via their iterators with scans via their
+ * <code>forEach</code> methods, reporting the time taken and the bytes allocated per scan. The
+ * allocation counts are only available on VMs that provide per-thread allocation statistics.
+ */
+public class IntForEachBenchmark
+{
+    public static void main (String[] args)
+    {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        Random rand = new Random(42);
+        final HashIntMap<Integer> hmap = new HashIntMap<Integer>();
+        final IntIntMap imap = new IntIntMap();
+        final HashIntSet hset = new HashIntSet();
+        final ArrayIntSet aset = new ArrayIntSet();
+        final BitmapIntSet bset = new BitmapIntSet();
+        Integer value = Integer.valueOf(1);
+        for (int ii = 0; ii < count; ii++) {
+            int key = rand.nextInt(count * 10);
+            hmap.put(key, value);
+            imap.put(key, ii);
+            hset.add(key);
+            aset.add(key);
+            bset.add(key);
+        }
+
+        final Summer sum = new Summer();
+        final int[] reuse = new int[count];
+        Scan[] scans = {
+            new Scan("HashIntMap.intKeySet() interator") { public void run () {
+                for (Interator it = hmap.intKeySet().interator(); it.hasNext(); ) {
+                    sum.total += it.nextInt();
+                }
+            }},
+            new Scan("IntSets.forEachInt(HashIntMap.intKeySet())") { public void run () {
+                IntSets.forEachInt(hmap.intKeySet(), sum);
+            }},
+            new Scan("HashIntMap.forEachEntry") { public void run () {
+                hmap.forEachEntry(sum);
+            }},
+            new Scan("IntIntMap.keys()") { public void run () {
+                for (Interator it = imap.keys(); it.hasNext(); ) {
+                    sum.total += it.nextInt();
+                }
+            }},
+            new Scan("IntIntMap.entrySet()") { public void run () {
+                for (IntIntMap.IntIntEntry entry : imap.entrySet()) {
+                    sum.total += entry.getIntKey() + entry.getIntValue();
+                }
+            }},
+            new Scan("IntIntMap.forEachEntry") { public void run () {
+                imap.forEachEntry(sum);
+            }},
+            new Scan("IntIntMap.getKeys(reuse)") { public void run () {
+                sum.total += imap.getKeys(reuse)[0];
+            }},
+            new Scan("HashIntSet interator") { public void run () {
+                for (Interator it = hset.interator(); it.hasNext(); ) {
+                    sum.total += it.nextInt();
+                }
+            }},
+            new Scan("HashIntSet.forEachInt") { public void run () {
+                hset.forEachInt(sum);
+            }},
+            new Scan("HashIntSet.toIntArray(reuse)") { public void run () {
+                sum.total += hset.toIntArray(reuse)[0];
+            }},
+            new Scan("ArrayIntSet.forEachInt") { public void run () {
+                aset.forEachInt(sum);
+            }},
+            new Scan("BitmapIntSet interator") { public void run () {
+                for (Interator it = bset.interator(); it.hasNext(); ) {
+                    sum.total += it.nextInt();
+                }
+            }},
+            new Scan("BitmapIntSet.forEachInt") { public void run () {
+                bset.forEachInt(sum);
+            }},
+        };
+
+        // warm up each scan, then measure it
+        for (Scan scan : scans) {
+            measure(scan, 200);
+        }
+        for (Scan scan : scans) {
+            long[] result = measure(scan, 200);
+            System.out.println(scan.name + ": " + (result[0] / 200 / 1000) + "us/scan, " +
+                               ((result[1] < 0) ? "?" : String.valueOf(result[1] / 200)) +
+                               " bytes/scan");
+        }
+        System.out.println("(checksum " + sum.total + ")");
+    }
+
+    /**
+     * Runs the supplied scan the specified number of times, returning the nanoseconds elapsed
+     * and the bytes allocated (or -1 if unknown).
+     */
+    protected static long[] measure (Scan scan, int iters)
+    {
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int ii = 0; ii < iters; ii++) {
+            scan.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long after = allocatedBytes();
+        return new long[] { elapsed, (bytes < 0 || after < 0) ? -1 : after - bytes };
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread thus far, or -1 if the VM does not
+     * provide that statistic.
+     */
+    protected static long allocatedBytes ()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            Method getter = Class.forName("com.sun.management.ThreadMXBean").getMethod(
+                "getThreadAllocatedBytes", Long.TYPE);
+            return (Long)getter.invoke(bean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    protected static abstract class Scan implements Runnable
+    {
+        public final String name;
+
+        public Scan (String name) {
+            this.name = name;
+        }
+    }
+
+    protected static class Summer
+        implements IntConsumer, IntIntConsumer, IntObjectConsumer<Integer>
+    {
+        public long total;
+
+        public void accept (int value) {
+            total += value;
+        }
+
+        public void accept (int key, int value) {
+            total += key + value;
+        }
+
+        public void accept (int key, Integer value) {
+            total += key + value;
+        }
+    }
+}
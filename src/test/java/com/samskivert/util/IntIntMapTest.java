@@ -0,0 +1,156 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.*;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link IntIntMap} class.
+ */
+public class IntIntMapTest
+{
+    @Test
+    public void testRandomOps ()
+    {
+        Random rand = new Random(42);
+        IntIntMap table = new IntIntMap();
+        Map<Integer,Integer> expect = new HashMap<Integer,Integer>();
+        for (int ii = 0; ii < 100000; ii++) {
+            int key = rand.nextInt(2000) - 1000;
+            switch (rand.nextInt(4)) {
+            case 0:
+                table.put(key, ii);
+                expect.put(key, ii);
+                break;
+            case 1:
+                Integer ovalue = expect.remove(key);
+                assertEquals((ovalue == null) ? -2 : ovalue, table.removeOrElse(key, -2));
+                break;
+            case 2:
+                Integer value = expect.get(key);
+                expect.put(key, ((value == null) ? 0 : value) + 3);
+                assertEquals((int)expect.get(key), table.increment(key, 3));
+                break;
+            default:
+                assertEquals(expect.containsKey(key), table.containsKey(key));
+                assertEquals(expect.containsKey(key) ? expect.get(key) : -2,
+                             table.getOrElse(key, -2));
+                break;
+            }
+            assertEquals(expect.size(), table.size());
+        }
+        checkContents(expect, table);
+
+        // remove half of the entries via the key iterator
+        int count = 0;
+        for (Interator iter = table.keys(); iter.hasNext(); ) {
+            int key = iter.nextInt();
+            if (count++ % 2 == 0) {
+                iter.remove();
+                expect.remove(key);
+            }
+        }
+        assertEquals(count, expect.size() + (count+1)/2);
+        checkContents(expect, table);
+
+        // make sure entries write through
+        for (IntIntMap.IntIntEntry entry : table.entrySet()) {
+            entry.setIntValue(entry.getIntKey() * 2);
+            expect.put(entry.getIntKey(), entry.getIntKey() * 2);
+        }
+        checkContents(expect, table);
+    }
+
+    @Test
+    public void testForEachModification ()
+    {
+        final IntIntMap table = new IntIntMap();
+        for (int ii = 0; ii < 100; ii++) {
+            table.put(ii, ii);
+        }
+        try {
+            table.forEachKey(new IntConsumer() {
+                public void accept (int key) {
+                    table.remove(key);
+                }
+            });
+            fail("expected ConcurrentModificationException");
+        } catch (ConcurrentModificationException cme) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSerialization ()
+        throws Exception
+    {
+        IntIntMap table = new IntIntMap();
+        for (int ii = -100; ii < 100; ii++) {
+            table.put(ii, ii * 3);
+        }
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bout);
+        out.writeObject(table);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bout.toByteArray()));
+        IntIntMap copy = (IntIntMap)in.readObject();
+        assertEquals(200, copy.size());
+        for (int ii = -100; ii < 100; ii++) {
+            assertEquals(ii * 3, copy.get(ii));
+        }
+    }
+
+    protected void checkContents (Map<Integer,Integer> expect, IntIntMap table)
+    {
+        assertEquals(expect.size(), table.size());
+        int[] keys = table.getKeys();
+        assertEquals(expect.size(), keys.length);
+        for (int key : keys) {
+            assertEquals((int)expect.get(key), table.get(key));
+        }
+        int total = 0;
+        for (Interator iter = table.values(); iter.hasNext(); ) {
+            total += iter.nextInt();
+        }
+        int etotal = 0;
+        for (int value : expect.values()) {
+            etotal += value;
+        }
+        assertEquals(etotal, total);
+
+        // the internal iterations should see the same mappings
+        final Map<Integer,Integer> seen = new HashMap<Integer,Integer>();
+        table.forEachEntry(new IntIntConsumer() {
+            public void accept (int key, int value) {
+                assertNull(seen.put(key, value));
+            }
+        });
+        assertEquals(expect, seen);
+        final int[] vtotal = new int[1];
+        table.forEachValue(new IntConsumer() {
+            public void accept (int value) {
+                vtotal[0] += value;
+            }
+        });
+        assertEquals(etotal, vtotal[0]);
+        int[] reuse = new int[keys.length + 1];
+        reuse[keys.length] = 42;
+        assertSame(reuse, table.getKeys(reuse));
+        assertEquals(42, reuse[keys.length]);
+        for (int ii = 0; ii < keys.length; ii++) {
+            assertEquals(keys[ii], reuse[ii]);
+        }
+        assertEquals(table.keySet(), new ArrayIntSet(keys));
+    }
+}
@@ -0,0 +1,161 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link IntList}, {@link LongList} and {@link FloatList} classes.
+ */
+public class IntListTest
+{
+    @Test
+    public void testRandomOps ()
+    {
+        // perform the same operations on an IntList and an ArrayList and compare the results
+        Random rand = new Random(42);
+        IntList list = new IntList(0);
+        List<Integer> expect = new ArrayList<Integer>();
+        for (int ii = 0; ii < 20000; ii++) {
+            int value = rand.nextInt(100);
+            switch (rand.nextInt(6)) {
+            case 0: case 1: case 2:
+                list.add(value);
+                expect.add(value);
+                break;
+            case 3:
+                int index = rand.nextInt(expect.size() + 1);
+                list.add(index, value);
+                expect.add(index, value);
+                break;
+            case 4:
+                assertEquals(expect.remove((Integer)value), list.removeValue(value));
+                break;
+            default:
+                if (!expect.isEmpty()) {
+                    index = rand.nextInt(expect.size());
+                    assertEquals(expect.remove(index).intValue(), list.removeAt(index));
+                }
+                break;
+            }
+        }
+        assertEquals(expect, list);
+        assertEquals(list, expect);
+        assertEquals(expect.hashCode(), list.hashCode());
+        assertEquals(expect.indexOf(42), list.indexOf(42));
+        assertEquals(expect.lastIndexOf(42), list.lastIndexOf(42));
+
+        list.trimToSize();
+        assertEquals(expect, list);
+        assertEquals(list, list.clone());
+        assertArrayEquals(IntListUtil.unbox(expect), list.toIntArray());
+    }
+
+    @Test
+    public void testBulkOps ()
+    {
+        IntList list = new IntList(new int[] { 5, 1, 4, 1, 5, 9, 2, 6 });
+        list.addAll(new int[] { 0, 3, 5, 8, 9 }, 1, 3);
+        assertArrayEquals(new int[] { 5, 1, 4, 1, 5, 9, 2, 6, 3, 5, 8 }, list.toIntArray());
+
+        // removing an IntSet's values tests them without boxing
+        assertTrue(list.removeAll(new ArrayIntSet(new int[] { 1, 5 })));
+        assertArrayEquals(new int[] { 4, 9, 2, 6, 3, 8 }, list.toIntArray());
+        assertTrue(list.retainAll(Arrays.asList(2, 3, 4, 100)));
+        assertArrayEquals(new int[] { 4, 2, 3 }, list.toIntArray());
+        assertFalse(list.retainAll(Arrays.asList(2, 3, 4)));
+
+        // interoperate with the sets and list utilities
+        list.addAll(new IntList(new int[] { 3, 7 }));
+        assertEquals(new ArrayIntSet(new int[] { 2, 3, 4, 7 }), new ArrayIntSet(list));
+        assertEquals(IntSets.create(2, 3, 4, 7), IntSets.create(list));
+        list.addAll(IntSets.create(11));
+        list.sort();
+        assertArrayEquals(new int[] { 2, 3, 3, 4, 7, 11 }, list.toIntArray());
+        assertEquals(list, IntListUtil.asList(list.toIntArray()));
+
+        // removing values via the iterator
+        for (Interator iter = list.interator(); iter.hasNext(); ) {
+            if (iter.nextInt() % 2 == 1) {
+                iter.remove();
+            }
+        }
+        assertArrayEquals(new int[] { 2, 4 }, list.toIntArray());
+    }
+
+    @Test
+    public void testSubList ()
+    {
+        IntList list = new IntList();
+        for (int ii = 0; ii < 10; ii++) {
+            list.add(ii);
+        }
+        IntList.SubList view = list.subList(2, 6);
+        assertEquals(Arrays.asList(2, 3, 4, 5), view);
+        assertEquals(4, view.getInt(2));
+
+        // changes are written through to the list
+        view.setInt(0, 20);
+        assertEquals(20, list.getInt(2));
+        list.setInt(3, 30);
+        assertEquals(30, view.getInt(1));
+        assertArrayEquals(new int[] { 20, 30, 4, 5 }, view.toIntArray());
+
+        // clearing the view removes its values from the list
+        list.subList(7, 9).clear();
+        assertArrayEquals(new int[] { 0, 1, 20, 30, 4, 5, 6, 9 }, list.toIntArray());
+
+        // the view is invalidated by structural changes to the list
+        try {
+            view.getInt(0);
+            fail("expected ConcurrentModificationException");
+        } catch (ConcurrentModificationException cme) {
+            // expected
+        }
+        try {
+            list.subList(0, 3).add(3);
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException uoe) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLongAndFloatLists ()
+    {
+        LongList llist = new LongList();
+        for (long ii = 0; ii < 1000; ii++) {
+            llist.add(ii << 32);
+        }
+        assertEquals(1000, llist.size());
+        assertEquals(999L << 32, llist.getLong(999));
+        assertTrue(llist.removeValue(5L << 32));
+        assertEquals(-1, llist.indexOf(5L << 32));
+        assertEquals(LongSets.create(llist.toLongArray()), LongSets.create(llist));
+        List<Long> lexpect = new ArrayList<Long>(llist);
+        assertEquals(lexpect.hashCode(), llist.hashCode());
+        llist.subList(0, 10).clear();
+        assertEquals(989, llist.size());
+        assertEquals(11L << 32, llist.getLong(0));
+
+        FloatList flist = new FloatList(new float[] { 1.5f, Float.NaN, -0f, 0f });
+        assertEquals(1, flist.indexOf(Float.NaN));
+        assertEquals(2, flist.indexOf(-0f));
+        assertEquals(3, flist.indexOf(0f));
+        assertEquals(Arrays.asList(1.5f, Float.NaN, -0f, 0f), flist);
+        assertEquals(Arrays.asList(1.5f, Float.NaN, -0f, 0f).hashCode(), flist.hashCode());
+        flist.removeAt(1);
+        flist.add(0, 3f);
+        assertTrue(Arrays.equals(new float[] { 3f, 1.5f, -0f, 0f }, flist.toFloatArray()));
+    }
+}
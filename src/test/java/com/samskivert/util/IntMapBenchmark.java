@@ -0,0 +1,142 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Measures the time taken by get, put and remove on {@link HashIntMap}, {@link IntIntMap} and a
+ * {@link HashMap} of {@link Integer}s, along with the heap consumed by each.
+ */
+public class IntMapBenchmark
+{
+    public static void main (String[] args)
+    {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int[] keys = new int[count];
+        Random rand = new Random(42);
+        for (int ii = 0; ii < count; ii++) {
+            keys[ii] = rand.nextInt();
+        }
+
+        // warm up each implementation, then measure it
+        for (int ii = 0; ii < 5; ii++) {
+            runHashIntMap(keys, false);
+            runIntIntMap(keys, false);
+            runHashMap(keys, false);
+        }
+        runHashIntMap(keys, true);
+        runIntIntMap(keys, true);
+        runHashMap(keys, true);
+    }
+
+    protected static void runHashIntMap (int[] keys, boolean report)
+    {
+        long before = usedMemory();
+        HashIntMap<Integer> map = new HashIntMap<Integer>();
+        Integer value = Integer.valueOf(1);
+        long start = System.nanoTime();
+        for (int key : keys) {
+            map.put(key, value);
+        }
+        long put = System.nanoTime() - start;
+        long mem = usedMemory() - before;
+        start = System.nanoTime();
+        int found = 0;
+        for (int key : keys) {
+            if (map.get(key) != null) {
+                found++;
+            }
+        }
+        long get = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int key : keys) {
+            map.remove(key);
+        }
+        long remove = System.nanoTime() - start;
+        if (report) {
+            report("HashIntMap", keys.length, put, get, remove, mem, found);
+        }
+    }
+
+    protected static void runIntIntMap (int[] keys, boolean report)
+    {
+        long before = usedMemory();
+        IntIntMap map = new IntIntMap();
+        long start = System.nanoTime();
+        for (int key : keys) {
+            map.put(key, 1);
+        }
+        long put = System.nanoTime() - start;
+        long mem = usedMemory() - before;
+        start = System.nanoTime();
+        int found = 0;
+        for (int key : keys) {
+            found += map.get(key);
+        }
+        long get = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int key : keys) {
+            map.remove(key);
+        }
+        long remove = System.nanoTime() - start;
+        if (report) {
+            report("IntIntMap", keys.length, put, get, remove, mem, found);
+        }
+    }
+
+    protected static void runHashMap (int[] keys, boolean report)
+    {
+        long before = usedMemory();
+        HashMap<Integer,Integer> map = new HashMap<Integer,Integer>();
+        Integer value = Integer.valueOf(1);
+        long start = System.nanoTime();
+        for (int key : keys) {
+            map.put(key, value);
+        }
+        long put = System.nanoTime() - start;
+        long mem = usedMemory() - before;
+        start = System.nanoTime();
+        int found = 0;
+        for (int key : keys) {
+            if (map.get(key) != null) {
+                found++;
+            }
+        }
+        long get = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int key : keys) {
+            map.remove(key);
+        }
+        long remove = System.nanoTime() - start;
+        if (report) {
+            report("HashMap", keys.length, put, get, remove, mem, found);
+        }
+    }
+
+    protected static long usedMemory ()
+    {
+        Runtime rt = Runtime.getRuntime();
+        for (int ii = 0; ii < 3; ii++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    protected static void report (String name, int count, long put, long get, long remove,
+                                  long mem, int found)
+    {
+        System.out.println(name + " (" + found + " found): put " + nsPerOp(put, count) +
+                           "ns, get " + nsPerOp(get, count) + "ns, remove " +
+                           nsPerOp(remove, count) + "ns, " + (mem / count) + " bytes/entry");
+    }
+
+    protected static String nsPerOp (long nanos, int count)
+    {
+        return String.valueOf(Math.round(nanos * 10.0 / count) / 10.0);
+    }
+}
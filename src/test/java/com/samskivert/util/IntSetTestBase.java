@@ -5,6 +5,7 @@
 
 package com.samskivert.util;
 
+import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.Set;
@@ -92,6 +93,56 @@ public abstract class IntSetTestBase
         }
     }
 
+    @Test
+    public void testForEach ()
+    {
+        AbstractIntSet set = createSet(new int[] { 3, 5, 5, 9, 5, 7, 1, -2, 70000 });
+        for (int ii = 100000; ii < 110000; ii += 2) {
+            set.add(ii);
+        }
+        final Set<Integer> seen = new TreeSet<Integer>();
+        set.forEachInt(new IntConsumer() {
+            public void accept (int value) {
+                assertTrue("visited once", seen.add(value));
+            }
+        });
+        assertEquals(set, seen);
+
+        // a large enough array is filled and returned, a smaller one is ignored
+        int size = set.size();
+        int[] reuse = new int[size + 1];
+        reuse[size] = 42;
+        assertSame(reuse, set.toIntArray(reuse));
+        assertEquals(42, reuse[size]);
+        assertEquals(set, createSet(set.toIntArray(new int[1])));
+        int[] values = set.toIntArray();
+        Arrays.sort(values);
+        Arrays.sort(reuse, 0, size);
+        for (int ii = 0; ii < size; ii++) {
+            assertEquals(values[ii], reuse[ii]);
+        }
+
+        // the helpers work on any set, including those that are not one of our own classes
+        IntSet plain = (IntSet)Proxy.newProxyInstance(
+            IntSet.class.getClassLoader(), new Class<?>[] { IntSet.class },
+            HashIntMapTest.delegateTo(set));
+        IntSet[] others = { plain, Collections.synchronizedIntSet(set),
+                            IntSets.unmodifiableIntSet(plain) };
+        for (IntSet other : others) {
+            seen.clear();
+            IntSets.forEachInt(other, new IntConsumer() {
+                public void accept (int value) {
+                    assertTrue("visited once", seen.add(value));
+                }
+            });
+            assertEquals(set, seen);
+            reuse[size] = 42;
+            assertSame(reuse, IntSets.toIntArray(other, reuse));
+            assertEquals(42, reuse[size]);
+            assertEquals(set, createSet(IntSets.toIntArray(other, null)));
+        }
+    }
+
     protected abstract AbstractIntSet createSet ();
 
     protected abstract AbstractIntSet createSet (int[] values);
@@ -0,0 +1,321 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link Invoker} class.
+ */
+public class InvokerTest
+    implements Executor
+{
+    @Test
+    public void testBatching ()
+        throws InterruptedException
+    {
+        Invoker invoker = new Invoker("test", this);
+        invoker.setBatching(true);
+
+        // queue up writes to a few records before starting the invoker so that they're drained
+        // in a single batch
+        final List<String> writes = new ArrayList<String>();
+        for (int ii = 0; ii < 10; ii++) {
+            invoker.postUnit(new WriteUnit("rec" + (ii % 3), ii, writes));
+        }
+        invoker.postUnit(new Invoker.Unit() {
+            @Override public boolean invoke () {
+                writes.add("plain");
+                return false;
+            }
+        });
+        invoker.start();
+        invoker.shutdown();
+        invoker.join(5000L);
+
+        // each record should have been written once with its latest value
+        assertEquals(4, writes.size());
+        assertEquals("rec0=9", writes.get(0));
+        assertEquals("rec1=7", writes.get(1));
+        assertEquals("rec2=8", writes.get(2));
+        assertEquals("plain", writes.get(3));
+    }
+
+    @Test
+    public void testCapacity ()
+    {
+        // the invoker is not started, so posted units simply accumulate
+        Invoker invoker = new Invoker("test", this);
+        invoker.setCapacity(3, QueueLimiter.Policy.REJECT);
+        final List<String> writes = new ArrayList<String>();
+        for (int ii = 0; ii < 3; ii++) {
+            invoker.postUnit(new WriteUnit("rec", ii, writes));
+        }
+        try {
+            invoker.postUnit(new WriteUnit("rec", 3, writes));
+            fail("Unit should have been rejected.");
+        } catch (RejectedExecutionException ree) {
+            // expected
+        }
+        assertEquals(1, invoker.getLimiter().getRejected());
+        assertEquals(3, invoker.getQueueHighWaterMark());
+
+        invoker = new Invoker("test", this);
+        invoker.setCapacity(2, QueueLimiter.Policy.DROP_OLDEST);
+        for (int ii = 0; ii < 5; ii++) {
+            invoker.postUnit(new WriteUnit("rec", ii, writes));
+        }
+        assertEquals(2, invoker.getPendingUnits());
+        assertEquals(3, invoker.getLimiter().getDropped());
+
+        invoker = new Invoker("test", this);
+        invoker.setCapacity(1, QueueLimiter.Policy.CALLER_RUNS);
+        invoker.postUnit(new WriteUnit("rec", 0, writes));
+        invoker.postUnit(new WriteUnit("rec", 1, writes));
+        assertEquals(1, invoker.getPendingUnits());
+        assertEquals(1, writes.size());
+        assertEquals("rec=1", writes.get(0));
+    }
+
+    @Test
+    public void testCapacityEdgeCases ()
+        throws InterruptedException
+    {
+        // a unit that posts to its own full invoker must not block the only thread that can
+        // make room
+        final Invoker invoker = new Invoker("test", this);
+        invoker.setCapacity(1, QueueLimiter.Policy.BLOCK);
+        final List<String> writes = new ArrayList<String>();
+        final CountDownLatch done = new CountDownLatch(1);
+        invoker.postUnit(new Invoker.Unit() {
+            @Override public boolean invoke () {
+                for (int ii = 0; ii < 3; ii++) {
+                    invoker.postUnit(new WriteUnit("rec" + ii, ii, writes));
+                }
+                invoker.postUnit(new Invoker.Unit() {
+                    @Override public boolean invoke () {
+                        done.countDown();
+                        return false;
+                    }
+                });
+                return false;
+            }
+        });
+        invoker.start();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, writes.size());
+        invoker.shutdown();
+        invoker.join(5000L);
+        assertFalse(invoker.isAlive());
+
+        // the shutdown unit is never the one dropped to make room
+        Invoker dropper = new Invoker("test", this);
+        dropper.setCapacity(2, QueueLimiter.Policy.DROP_OLDEST);
+        dropper.shutdown();
+        dropper.forceAdmit();
+        dropper._queue.append(new WriteUnit("rec", 0, writes));
+        assertTrue(dropper.getLimiter().admit(dropper._queue));
+        assertEquals(1, dropper.getLimiter().getDropped());
+        assertEquals(1, dropper.getPendingUnits());
+        dropper.start();
+        dropper.join(5000L);
+        assertFalse(dropper.isAlive());
+        assertEquals(3, writes.size());
+
+        // a lane queue does not give up its units oldest first, so it can't drop the oldest
+        Invoker laned = new Invoker("test", this);
+        laned.setLanes(1, 1);
+        try {
+            laned.setCapacity(2, QueueLimiter.Policy.DROP_OLDEST);
+            fail("DROP_OLDEST should not be allowed with lanes.");
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+        laned = new Invoker("test", this);
+        laned.setCapacity(2, QueueLimiter.Policy.DROP_OLDEST);
+        try {
+            laned.setLanes(1, 1);
+            fail("Lanes should not be allowed with DROP_OLDEST.");
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShutdownWithLanes ()
+        throws InterruptedException
+    {
+        // the shutdown unit goes in lane zero, which gets the first turn, but the units waiting in
+        // the other lane must still be invoked before the invoker stops
+        Invoker invoker = new Invoker("test", this);
+        invoker.setLanes(1, 1);
+        final List<String> writes = new ArrayList<String>();
+        for (int ii = 0; ii < 5; ii++) {
+            invoker.postUnit(new WriteUnit("rec", ii, writes) {
+                @Override public int getLane () {
+                    return 1;
+                }
+            });
+        }
+        invoker.shutdown();
+        invoker.start();
+        invoker.join(5000L);
+        assertFalse(invoker.isAlive());
+        assertEquals(5, writes.size());
+
+        // the shutdown unit is counted by our limiter each time it goes back in line, so the
+        // limiter does not lose track of the units that remain
+        invoker = new Invoker("test", this);
+        invoker.setLanes(1, 1);
+        invoker.setCapacity(10, QueueLimiter.Policy.REJECT);
+        for (int ii = 0; ii < 5; ii++) {
+            invoker.postUnit(new WriteUnit("rec", ii, writes) {
+                @Override public int getLane () {
+                    return 1;
+                }
+            });
+        }
+        invoker.shutdown();
+        assertEquals(6, invoker.getLimiter().getPending());
+        invoker.start();
+        invoker.join(5000L);
+        assertFalse(invoker.isAlive());
+        assertEquals(10, writes.size());
+        assertEquals(0, invoker.getLimiter().getPending());
+    }
+
+    @Test
+    public void testUnitProfiles ()
+        throws InterruptedException
+    {
+        Invoker invoker = new Invoker("test", this);
+        List<String> writes = new ArrayList<String>();
+        for (int ii = 0; ii < 5; ii++) {
+            invoker.postUnit(new WriteUnit("rec", ii, writes));
+        }
+        invoker.start();
+        invoker.shutdown();
+        invoker.join(5000L);
+
+        Map<Object,Invoker.UnitProfile> profs = invoker.getUnitProfiles(true);
+        Invoker.UnitProfile prof = profs.get(WriteUnit.class);
+        assertEquals(5, prof.getRunTimes().getCount());
+        assertEquals(5, prof.getWaitTimes().getCount());
+        // the units were all posted before the invoker started, so the queue grew to four
+        assertEquals(4, prof.getQueueDepths().getMax());
+        // the shutdown unit is also profiled
+        assertEquals(6, profs.get(Invoker.ALL_UNITS).getRunTimes().getCount());
+        // and the profiles were reset
+        prof = invoker.getUnitProfiles(false).get(WriteUnit.class);
+        assertEquals(0, prof.getRunTimes().getCount());
+    }
+
+    @Test @SuppressWarnings("deprecation")
+    public void testLegacyMetricsHook ()
+        throws InterruptedException
+    {
+        // subclasses that override the old hook still see every unit
+        final List<Object> keys = new ArrayList<Object>();
+        Invoker invoker = new Invoker("test", this) {
+            @Override protected void recordMetrics (Object key, long duration) {
+                keys.add(key);
+                super.recordMetrics(key, duration);
+            }
+        };
+        invoker.postUnit(new WriteUnit("rec", 0, new ArrayList<String>()));
+        invoker.start();
+        invoker.shutdown();
+        invoker.join(5000L);
+        assertTrue(keys.contains(WriteUnit.class));
+        assertTrue(keys.contains(Invoker.QUEUE_WAIT_TIME));
+
+        // the wait times are recorded under the old key, and the unit's class isn't profiled twice
+        Map<Object,Invoker.UnitProfile> profs = invoker.getUnitProfiles(false);
+        assertEquals(2, profs.get(Invoker.QUEUE_WAIT_TIME).getWaitTimes().getCount());
+        assertEquals(1, profs.get(WriteUnit.class).getRunTimes().getCount());
+
+        // waits and depths are kept coarse to save memory, run times are not
+        Invoker.UnitProfile prof = profs.get(WriteUnit.class);
+        assertTrue(prof.getWaitTimes().getPrecisionBits() < prof.getRunTimes().getPrecisionBits());
+        assertTrue(prof.getQueueDepths().getPrecisionBits() <
+                   prof.getRunTimes().getPrecisionBits());
+    }
+
+    @Test
+    public void testSlowUnitSampling ()
+        throws InterruptedException
+    {
+        Invoker invoker = new Invoker("test", this);
+        invoker.setSlowUnitSampling(20L, 10L);
+        invoker.postUnit(new Invoker.Unit("sleeper") {
+            @Override public boolean invoke () {
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException ie) {
+                    // no matter
+                }
+                return false;
+            }
+        });
+        invoker.start();
+        invoker.shutdown();
+        invoker.join(5000L);
+
+        Invoker.Snapshot snap = invoker.getSnapshot(true);
+        assertEquals(1, snap.threads);
+        assertEquals(0, snap.pendingUnits);
+        assertFalse(snap.slowUnits.isEmpty());
+        Invoker.SlowUnitSample sample = snap.slowUnits.get(0);
+        assertEquals("sleeper", sample.unit);
+        assertTrue(sample.elapsed >= 20L);
+        assertTrue(sample.toString().contains("Thread.sleep"));
+        assertTrue(snap.getUtilization() > 0f);
+        assertTrue(invoker.getSnapshot(false).slowUnits.isEmpty());
+    }
+
+    // from Executor
+    public void execute (Runnable command)
+    {
+        command.run();
+    }
+
+    protected static class WriteUnit extends Invoker.Unit
+        implements Invoker.Mergeable
+    {
+        public WriteUnit (String record, int value, List<String> writes) {
+            _record = record;
+            _value = value;
+            _writes = writes;
+        }
+
+        public boolean merge (Invoker.Unit other) {
+            if (other instanceof WriteUnit && ((WriteUnit)other)._record.equals(_record)) {
+                _value = ((WriteUnit)other)._value;
+                return true;
+            }
+            return false;
+        }
+
+        @Override public boolean invoke () {
+            _writes.add(_record + "=" + _value);
+            return false;
+        }
+
+        protected String _record;
+        protected int _value;
+        protected List<String> _writes;
+    }
+}
@@ -0,0 +1,79 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the throughput of concurrent cache lookups on an {@link LRUHashMap} and on a
+ * synchronized access-ordered {@link LinkedHashMap}, with increasing numbers of threads.
+ */
+public class LRUHashMapBenchmark
+{
+    public static void main (String[] args)
+        throws InterruptedException
+    {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0]) :
+            Runtime.getRuntime().availableProcessors();
+        final int size = 10000;
+
+        LRUHashMap<Integer,Integer> lru = new LRUHashMap<Integer,Integer>(size);
+        Map<Integer,Integer> linked = Collections.synchronizedMap(
+            new LinkedHashMap<Integer,Integer>(size, .75f, true));
+        for (int ii = 0; ii < size; ii++) {
+            lru.put(ii, ii);
+            linked.put(ii, ii);
+        }
+
+        // warm up, then measure
+        for (int ii = 0; ii < 3; ii++) {
+            run(lru, maxThreads, size);
+            run(linked, maxThreads, size);
+        }
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.println(threads + " threads: LRUHashMap " + run(lru, threads, size) +
+                               " gets/us, synchronized LinkedHashMap " +
+                               run(linked, threads, size) + " gets/us");
+        }
+    }
+
+    protected static long run (final Map<Integer,Integer> map, int threads, final int size)
+        throws InterruptedException
+    {
+        final int gets = 2000000;
+        final CountDownLatch start = new CountDownLatch(1), done = new CountDownLatch(threads);
+        for (int tt = 0; tt < threads; tt++) {
+            final int seed = tt;
+            new Thread() {
+                @Override public void run () {
+                    Random rand = new Random(seed);
+                    int[] keys = new int[1024];
+                    for (int ii = 0; ii < keys.length; ii++) {
+                        keys[ii] = rand.nextInt(size);
+                    }
+                    try {
+                        start.await();
+                        for (int ii = 0; ii < gets; ii++) {
+                            map.get(keys[ii & 1023]);
+                        }
+                    } catch (InterruptedException ie) {
+                        // fall through
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (long)threads * gets * 1000 / (System.nanoTime() - began);
+    }
+}
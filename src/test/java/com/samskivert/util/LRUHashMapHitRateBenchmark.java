@@ -0,0 +1,96 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Replays synthetic access traces against {@link LRUHashMap}s using the LRU and TinyLFU policies
+ * and reports the hit rate of each. The traces are a zipfian distribution over a large key space,
+ * and the same distribution interrupted periodically by scans of keys that are never read again.
+ */
+public class LRUHashMapHitRateBenchmark
+{
+    public static void main (String[] args)
+    {
+        int keys = 100000, accesses = 2000000;
+        int[] zipf = zipfTrace(new Random(42), keys, 0.9, accesses);
+        int[] scans = scanTrace(zipf, 50000, 20000);
+        for (int cacheSize : new int[] { 500, 2000, 10000 }) {
+            for (LRUHashMap.Policy policy : LRUHashMap.Policy.values()) {
+                System.out.println(policy + " size " + cacheSize +
+                                   ": zipf " + hitRate(zipf, cacheSize, policy) +
+                                   "%, zipf with scans " + hitRate(scans, cacheSize, policy) + "%");
+            }
+        }
+    }
+
+    /**
+     * Returns the percentage of reads in the supplied trace that hit in a cache of the specified
+     * size and policy, which is populated on each miss.
+     */
+    protected static String hitRate (int[] trace, int cacheSize, LRUHashMap.Policy policy)
+    {
+        LRUHashMap<Integer,Integer> map = new LRUHashMap<Integer,Integer>(
+            cacheSize, null, policy);
+        int hits = 0;
+        for (int key : trace) {
+            if (map.get(key) != null) {
+                hits++;
+            } else {
+                map.put(key, key);
+            }
+        }
+        return String.format("%.2f", hits * 100.0 / trace.length);
+    }
+
+    /**
+     * Generates a trace of accesses to keys whose popularity follows a zipfian distribution with
+     * the specified exponent.
+     */
+    protected static int[] zipfTrace (Random rand, int keys, double exponent, int accesses)
+    {
+        double[] cdf = new double[keys];
+        double total = 0;
+        for (int ii = 0; ii < keys; ii++) {
+            cdf[ii] = (total += 1 / Math.pow(ii + 1, exponent));
+        }
+        // scramble the keys so that popularity doesn't correlate with key order
+        int[] ids = new int[keys];
+        for (int ii = 0; ii < keys; ii++) {
+            ids[ii] = ii;
+        }
+        ArrayUtil.shuffle(ids, rand);
+
+        int[] trace = new int[accesses];
+        for (int ii = 0; ii < accesses; ii++) {
+            int idx = Arrays.binarySearch(cdf, rand.nextDouble() * total);
+            trace[ii] = ids[Math.min(keys - 1, (idx < 0) ? -(idx + 1) : idx)];
+        }
+        return trace;
+    }
+
+    /**
+     * Returns a copy of the supplied trace in which a scan of previously unseen keys of the
+     * specified length is inserted every <code>interval</code> accesses.
+     */
+    protected static int[] scanTrace (int[] trace, int interval, int scanLength)
+    {
+        int scans = trace.length / interval;
+        int[] result = new int[trace.length + scans * scanLength];
+        int next = Integer.MAX_VALUE / 2, rr = 0;
+        for (int ii = 0; ii < trace.length; ii++) {
+            if (ii > 0 && ii % interval == 0) {
+                for (int ss = 0; ss < scanLength; ss++) {
+                    result[rr++] = next++;
+                }
+            }
+            result[rr++] = trace[ii];
+        }
+        return ArrayUtil.splice(result, rr);
+    }
+}
@@ -5,6 +5,15 @@
 
 package com.samskivert.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -42,4 +51,279 @@ public class LRUHashMapTest
         map.put("three.3", 3);
         assertTrue("size == 2", map.size() == 2);
     }
+
+    @Test
+    public void testLRUOrder ()
+    {
+        LRUHashMap<Integer,String> map = new LRUHashMap<Integer,String>(3);
+        map.put(1, "one");
+        map.put(2, "two");
+        map.put(3, "three");
+        // touch 1 so that 2 becomes the eldest
+        assertEquals("one", map.get(1));
+        map.put(4, "four");
+        assertFalse(map.containsKey(2));
+        assertTrue(map.containsKey(1));
+
+        // with flushing disabled we grow, and flush back down when reenabled
+        map.setCanFlush(false);
+        map.put(5, "five");
+        map.put(6, "six");
+        assertEquals(5, map.size());
+        assertEquals("three", map.get(3));
+        map.setCanFlush(true);
+        assertEquals(3, map.size());
+        assertTrue(map.containsKey(3));
+        assertTrue(map.containsKey(6));
+    }
+
+    @Test
+    public void testReadsFromRemovalObserver ()
+    {
+        // an observer that reads from the map while entries are being evicted must not cause
+        // the lists being walked by the eviction to be reordered under it
+        final boolean[] observing = new boolean[1];
+        final int[] drains = new int[2];
+        final LRUHashMap<Integer,Integer> map = new LRUHashMap<Integer,Integer>(
+            50, null, LRUHashMap.Policy.TINY_LFU) {
+            @Override protected void drainReadBuffers () {
+                drains[observing[0] ? 1 : 0]++;
+                super.drainReadBuffers();
+            }
+        };
+        map.setRemovalObserver(new LRUHashMap.RemovalObserver<Integer,Integer>() {
+            public void removedFromMap (LRUHashMap<Integer,Integer> rmap, Integer value) {
+                observing[0] = true;
+                for (int ii = 0; ii < 500; ii++) {
+                    rmap.get(ii);
+                }
+                observing[0] = false;
+            }
+        });
+        for (int ii = 0; ii < 500; ii++) {
+            map.put(ii, ii);
+        }
+        assertTrue(drains[0] > 0);
+        assertEquals(0, drains[1]);
+        assertEquals(50, map.size());
+        int count = 0;
+        for (Integer key : map.keySet()) {
+            assertEquals(key, map.get(key));
+            count++;
+        }
+        assertEquals(50, count);
+    }
+
+    @Test
+    public void testConcurrentAccess ()
+        throws InterruptedException
+    {
+        final int threads = 8, maxSize = 500;
+        final LRUHashMap<Integer,Integer> map = new LRUHashMap<Integer,Integer>(maxSize);
+        final AtomicInteger removed = new AtomicInteger();
+        map.setRemovalObserver(new LRUHashMap.RemovalObserver<Integer,Integer>() {
+            public void removedFromMap (LRUHashMap<Integer,Integer> m, Integer item) {
+                removed.incrementAndGet();
+            }
+        });
+        map.setTracking(true);
+        final AtomicInteger puts = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int tt = 0; tt < threads; tt++) {
+            final int seed = tt;
+            new Thread() {
+                @Override public void run () {
+                    try {
+                        Random rand = new Random(seed);
+                        for (int ii = 0; ii < 50000; ii++) {
+                            int key = rand.nextInt(1000);
+                            Integer value = map.get(key);
+                            if (value == null) {
+                                if (map.put(key, key) == null) {
+                                    puts.incrementAndGet();
+                                }
+                            } else {
+                                assertEquals(key, value.intValue());
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+
+        // every value added was either flushed, replaced or is still in the map
+        assertTrue(map.size() <= maxSize);
+        assertTrue(puts.get() - removed.get() <= map.size());
+        int[] hitsMisses = map.getTrackedEffectiveness();
+        assertTrue(hitsMisses[0] > 0);
+        assertTrue(hitsMisses[0] + hitsMisses[1] <= threads * 50000);
+        map.clear();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testTinyLFUResistsScans ()
+    {
+        LRUHashMap<Integer,Integer> lru = new LRUHashMap<Integer,Integer>(100);
+        LRUHashMap<Integer,Integer> lfu = new LRUHashMap<Integer,Integer>(
+            100, null, LRUHashMap.Policy.TINY_LFU);
+        for (LRUHashMap<Integer,Integer> map : Arrays.asList(lru, lfu)) {
+            // establish a frequently used working set, then scan a lot of one-off keys
+            for (int round = 0; round < 10; round++) {
+                for (int key = 0; key < 50; key++) {
+                    read(map, key);
+                }
+            }
+            for (int key = 1000; key < 11000; key++) {
+                read(map, key);
+            }
+            assertTrue(map.size() <= 100);
+        }
+        assertEquals(0, countPresent(lru, 50));
+        assertTrue(countPresent(lfu, 50) >= 45);
+    }
+
+    protected static void read (LRUHashMap<Integer,Integer> map, int key)
+    {
+        if (map.get(key) == null) {
+            map.put(key, key);
+        }
+    }
+
+    protected static int countPresent (LRUHashMap<Integer,Integer> map, int keys)
+    {
+        int count = 0;
+        for (int key = 0; key < keys; key++) {
+            if (map.containsKey(key)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testExpiration ()
+    {
+        ClockedMap<String,String> map = new ClockedMap<String,String>(100);
+        final List<String> removed = new ArrayList<String>();
+        map.setRemovalObserver(new LRUHashMap.RemovalObserver<String,String>() {
+            public void removedFromMap (LRUHashMap<String,String> m, String item) {
+                removed.add(item);
+            }
+        });
+        map.setExpiration(1000L, 300L);
+        map.put("a", "A");
+        map.put("b", "B", 0L); // never dies of old age, only of idleness
+        map.put("c", "C");
+
+        // reading keeps entries from idling out, but not from expiring
+        for (int ii = 0; ii < 4; ii++) {
+            map.time += 200;
+            assertEquals("A", map.get("a"));
+            assertEquals("B", map.get("b"));
+        }
+        map.time += 250;
+        assertEquals("B", map.get("b"));
+        assertNull(map.get("a"));
+        assertFalse(map.containsKey("a"));
+        assertNull(map.get("c"));
+
+        // expired entries linger until swept, and are then reported as removed
+        assertEquals(3, map.size());
+        assertTrue(removed.isEmpty());
+        assertEquals(2, map.purgeExpired());
+        assertEquals(1, map.size());
+        assertEquals(Arrays.asList("A", "C"), sorted(removed));
+
+        // modifications sweep expired entries a few at a time
+        map.setExpiration(0L, 0L);
+        for (int ii = 0; ii < 50; ii++) {
+            map.put("t" + ii, "T", 100L);
+        }
+        map.time += 100;
+        removed.clear();
+        for (int ii = 0; ii < 10; ii++) {
+            map.put("k" + ii, "K");
+        }
+        assertEquals(50, removed.size());
+        assertEquals(11, map.size());
+    }
+
+    @Test
+    public void testRefreshAhead ()
+        throws InterruptedException
+    {
+        ClockedMap<String,String> map = new ClockedMap<String,String>(100);
+        final AtomicInteger loads = new AtomicInteger();
+        Executor receiver = new Executor() {
+            public void execute (Runnable command) {
+                command.run();
+            }
+        };
+        Invoker invoker = new Invoker("refresher", receiver);
+        map.setExpiration(1000L, 0L);
+        map.setRefreshAhead(new LRUHashMap.Loader<String,String>() {
+            public String load (String key) {
+                return key + loads.incrementAndGet();
+            }
+        }, invoker, 800L);
+
+        map.put("a", "a0");
+        map.time += 500;
+        assertEquals("a0", map.get("a"));
+
+        // once the entry is old enough, reads still return the old value without blocking, and
+        // queue up a single reload
+        map.time += 400;
+        assertEquals("a0", map.get("a"));
+        assertEquals("a0", map.get("a"));
+        invoker.start();
+        invoker.shutdown();
+        invoker.join(5000L);
+        assertEquals(1, loads.get());
+
+        // the reloaded value replaced the old one and lives anew
+        map.time += 500;
+        assertEquals("a1", map.get("a"));
+
+        // a value put while a reload is in flight is not clobbered by the reload
+        invoker = new Invoker("refresher", receiver);
+        map.setRefreshAhead(new LRUHashMap.Loader<String,String>() {
+            public String load (String key) {
+                return key + loads.incrementAndGet();
+            }
+        }, invoker, 800L);
+        map.time += 300;
+        assertEquals("a1", map.get("a"));
+        map.put("a", "mine");
+        invoker.start();
+        invoker.shutdown();
+        invoker.join(5000L);
+        assertEquals(2, loads.get());
+        assertEquals("mine", map.get("a"));
+    }
+
+    protected static List<String> sorted (List<String> values)
+    {
+        List<String> sorted = new ArrayList<String>(values);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /** An LRU hash map whose clock we control. */
+    protected static class ClockedMap<K,V> extends LRUHashMap<K,V>
+    {
+        public long time = 100000L;
+
+        public ClockedMap (int maxSize) {
+            super(maxSize);
+        }
+
+        @Override protected long now () {
+            return time;
+        }
+    }
 }
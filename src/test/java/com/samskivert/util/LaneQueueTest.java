@@ -0,0 +1,48 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LaneQueue} class.
+ */
+public class LaneQueueTest
+{
+    @Test
+    public void testWeightedOrder ()
+    {
+        // items are strings whose first character is their lane
+        LaneQueue<String> queue = new LaneQueue<String>(3, 1) {
+            @Override protected int getLane (String item) {
+                return item.charAt(0) - '0';
+            }
+        };
+        for (int ii = 0; ii < 8; ii++) {
+            queue.append("0" + ii);
+        }
+        for (int ii = 0; ii < 4; ii++) {
+            queue.append("1" + ii);
+        }
+        assertEquals(12, queue.size());
+        assertEquals(4, queue.size(1));
+
+        StringBuilder order = new StringBuilder();
+        while (queue.hasElements()) {
+            order.append(queue.get()).append(" ");
+        }
+        assertEquals("00 01 02 10 03 04 05 11 06 07 12 13 ", order.toString());
+        assertNull(queue.getNonBlocking());
+        assertEquals(12, queue.getHighWaterMark());
+
+        // an empty lane gives up its turn
+        queue.append("10");
+        queue.append("11");
+        assertEquals("10", queue.get());
+        assertEquals("11", queue.get());
+    }
+}
@@ -0,0 +1,103 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LatencyHistogram} class.
+ */
+public class LatencyHistogramTest
+{
+    @Test
+    public void testPercentiles ()
+    {
+        LatencyHistogram histo = new LatencyHistogram();
+        for (int ii = 1; ii <= 1000; ii++) {
+            histo.record(ii);
+        }
+        assertEquals(1000, histo.getCount());
+        assertEquals(500500, histo.getTotal());
+        assertEquals(1000, histo.getMax());
+        assertEquals(1, histo.getMin());
+        assertWithin(500, histo.getValueAtPercentile(50));
+        assertWithin(990, histo.getValueAtPercentile(99));
+        assertEquals(1000, histo.getValueAtPercentile(100));
+
+        // small values are recorded exactly
+        histo = new LatencyHistogram();
+        histo.record(3);
+        histo.record(-5);
+        assertEquals(0, histo.getValueAtPercentile(50));
+        assertEquals(3, histo.getValueAtPercentile(100));
+
+        // and large values with bounded error
+        histo = new LatencyHistogram();
+        histo.record(Long.MAX_VALUE / 3);
+        assertWithin(Long.MAX_VALUE / 3, histo.getValueAtPercentile(50));
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testMergeAndSnapshot ()
+    {
+        LatencyHistogram one = new LatencyHistogram(), two = new LatencyHistogram();
+        for (int ii = 0; ii < 100; ii++) {
+            one.record(10);
+            two.record(10000);
+        }
+        one.merge(two);
+        assertEquals(200, one.getCount());
+        assertEquals(10000, one.getMax());
+        assertEquals(10, one.getValueAtPercentile(50));
+        assertWithin(10000, one.getValueAtPercentile(51));
+
+        LatencyHistogram snap = one.snapshotAndReset();
+        assertEquals(200, snap.getCount());
+        assertEquals(0, one.getCount());
+        assertEquals(0, one.getMax());
+        assertEquals(0, one.getValueAtPercentile(50));
+
+        try {
+            one.merge(new LatencyHistogram(3));
+            fail("Merging histograms of different precision should fail.");
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentRecord ()
+        throws InterruptedException
+    {
+        final LatencyHistogram histo = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int ii = 0; ii < threads.length; ii++) {
+            threads[ii] = new Thread() {
+                @Override public void run () {
+                    for (int vv = 0; vv < 10000; vv++) {
+                        histo.record(vv);
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histo.getCount());
+        assertEquals(40000, histo.snapshot().getCount());
+        assertEquals(9999, histo.getMax());
+    }
+
+    protected static void assertWithin (long expected, long actual)
+    {
+        // the default precision guarantees error of at most 1/32
+        assertTrue("Expected ~" + expected + ", got " + actual,
+                   Math.abs(actual - expected) <= expected / 32);
+    }
+}
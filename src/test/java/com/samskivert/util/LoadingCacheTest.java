@@ -0,0 +1,154 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LoadingCache} class.
+ */
+public class LoadingCacheTest
+{
+    @Test
+    public void testCoalescing ()
+        throws Exception
+    {
+        // a loader that blocks until we've piled up some concurrent requests
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final LoadingCache<String,String> cache = new LoadingCache<String,String>(
+            new LRUHashMap<String,String>(10), new LRUHashMap.Loader<String,String>() {
+            public String load (String key) throws Exception {
+                loads.incrementAndGet();
+                release.await();
+                return key.toUpperCase();
+            }
+        });
+
+        final int threads = 5;
+        final String[] results = new String[threads];
+        Thread[] readers = new Thread[threads];
+        for (int ii = 0; ii < threads; ii++) {
+            final int idx = ii;
+            readers[ii] = new Thread() {
+                @Override public void run () {
+                    try {
+                        results[idx] = cache.get("key");
+                    } catch (Exception e) {
+                        results[idx] = e.toString();
+                    }
+                }
+            };
+            readers[ii].start();
+        }
+        while (cache.getCoalescedLoads() < threads - 1) {
+            Thread.sleep(5);
+        }
+        Future<String> future = cache.getFuture("key", new Executor() {
+            public void execute (Runnable command) {
+                fail("Should not have started another load");
+            }
+        });
+        // one caller cancelling its future must not cancel the load shared with the others
+        assertFalse(future.cancel(true));
+        assertFalse(future.isCancelled());
+        release.countDown();
+        for (Thread reader : readers) {
+            reader.join(5000L);
+        }
+
+        assertEquals(1, loads.get());
+        for (String result : results) {
+            assertEquals("KEY", result);
+        }
+        assertEquals("KEY", future.get());
+        assertEquals(threads, cache.getCoalescedLoads());
+        assertEquals(1, cache.getLoadCount());
+
+        // now it's cached
+        assertEquals("KEY", cache.get("key"));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testFailures ()
+        throws Exception
+    {
+        final AtomicInteger loads = new AtomicInteger();
+        LoadingCache<Integer,String> cache = new LoadingCache<Integer,String>(
+            new LRUHashMap<Integer,String>(10), new LRUHashMap.Loader<Integer,String>() {
+            public String load (Integer key) throws Exception {
+                if (loads.incrementAndGet() == 1) {
+                    throw new Exception("Database is down");
+                }
+                return (key < 0) ? null : String.valueOf(key);
+            }
+        });
+        try {
+            cache.get(1);
+            fail("Expected load failure");
+        } catch (ExecutionException ee) {
+            assertEquals("Database is down", ee.getCause().getMessage());
+        }
+        assertEquals(1, cache.getLoadFailures());
+
+        // failures and nulls aren't cached
+        assertEquals("1", cache.get(1));
+        assertNull(cache.get(-1));
+        assertNull(cache.get(-1));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testBatchLoad ()
+        throws Exception
+    {
+        final AtomicInteger batches = new AtomicInteger();
+        LoadingCache<Integer,String> cache = new LoadingCache<Integer,String>(
+            new LRUHashMap<Integer,String>(100), new LoadingCache.BatchLoader<Integer,String>() {
+            public String load (Integer key) {
+                throw new AssertionError("Should load in batches");
+            }
+            public Map<Integer,String> loadAll (Collection<Integer> keys) {
+                batches.incrementAndGet();
+                Map<Integer,String> values = new HashMap<Integer,String>();
+                for (Integer key : keys) {
+                    if (key % 2 == 0) {
+                        values.put(key, "v" + key);
+                    }
+                }
+                return values;
+            }
+        });
+        cache.getMap().put(2, "cached");
+
+        Map<Integer,String> values = cache.getAll(Arrays.asList(1, 2, 3, 4, 6, 4));
+        assertEquals(3, values.size());
+        assertEquals("cached", values.get(2));
+        assertEquals("v4", values.get(4));
+        assertEquals("v6", values.get(6));
+        assertEquals(1, batches.get());
+        assertEquals(1, cache.getLoadCount());
+
+        // the even keys are now cached, the odd ones (which had no value) are not
+        values = cache.getAll(Arrays.asList(4, 6));
+        assertEquals(2, values.size());
+        assertEquals(1, batches.get());
+        cache.getAll(Arrays.asList(1, 4));
+        assertEquals(2, batches.get());
+    }
+}
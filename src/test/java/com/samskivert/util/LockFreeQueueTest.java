@@ -0,0 +1,124 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LockFreeQueue} class.
+ */
+public class LockFreeQueueTest
+{
+    @Test
+    public void testOrdering ()
+    {
+        LockFreeQueue<Integer> queue = LockFreeQueue.newLockFreeQueue();
+        assertFalse(queue.hasElements());
+        assertNull(queue.getNonBlocking());
+
+        for (int ii = 0; ii < 10; ii++) {
+            queue.append(ii);
+        }
+        assertEquals(10, queue.size());
+        queue.prepend(-1);
+        assertEquals(11, queue.size());
+
+        assertEquals(-1, queue.get().intValue());
+        for (int ii = 0; ii < 10; ii++) {
+            assertEquals(ii, queue.get().intValue());
+        }
+        assertFalse(queue.hasElements());
+
+        // prepend to an empty queue and then append behind it
+        queue.prepend(1);
+        queue.append(2);
+        assertEquals(1, queue.getNonBlocking().intValue());
+        assertEquals(2, queue.getNonBlocking().intValue());
+        assertNull(queue.getNonBlocking());
+    }
+
+    @Test
+    public void testNullItems ()
+    {
+        // a null item would look like an empty queue, so it is refused without being queued
+        LockFreeQueue<Integer> queue = LockFreeQueue.newLockFreeQueue();
+        try {
+            queue.append(null);
+            fail("Null item should have been refused.");
+        } catch (NullPointerException npe) {
+            // expected
+        }
+        try {
+            queue.prepend(null);
+            fail("Null item should have been refused.");
+        } catch (NullPointerException npe) {
+            // expected
+        }
+        assertFalse(queue.hasElements());
+        assertEquals(0, queue.size());
+        queue.append(1);
+        assertEquals(Integer.valueOf(1), queue.getNonBlocking());
+        assertNull(queue.getNonBlocking());
+    }
+
+    @Test
+    public void testTimedGet ()
+    {
+        LockFreeQueue<String> queue = LockFreeQueue.newLockFreeQueue();
+        long start = System.currentTimeMillis();
+        assertNull(queue.get(50L));
+        assertTrue(System.currentTimeMillis() - start >= 40L);
+        queue.append("one");
+        assertEquals("one", queue.get(50L));
+
+        // as with Queue, a zero wait blocks until an item arrives
+        final LockFreeQueue<String> fqueue = queue;
+        new Thread() {
+            @Override public void run () {
+                try {
+                    Thread.sleep(50L);
+                } catch (InterruptedException ie) {
+                    // just append early
+                }
+                fqueue.append("two");
+            }
+        }.start();
+        assertEquals("two", queue.get(0L));
+    }
+
+    @Test
+    public void testProducers ()
+        throws InterruptedException
+    {
+        final LockFreeQueue<int[]> queue = LockFreeQueue.newLockFreeQueue();
+        final int producers = 4, count = 50000;
+
+        Thread[] threads = new Thread[producers];
+        for (int pp = 0; pp < producers; pp++) {
+            final int id = pp;
+            threads[pp] = new Thread() {
+                @Override public void run () {
+                    for (int ii = 0; ii < count; ii++) {
+                        queue.append(new int[] { id, ii });
+                    }
+                }
+            };
+            threads[pp].start();
+        }
+
+        // make sure we see every item and that each producer's items arrive in order
+        int[] next = new int[producers];
+        for (int ii = 0; ii < producers * count; ii++) {
+            int[] item = queue.get();
+            assertEquals(next[item[0]]++, item[1]);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(queue.hasElements());
+    }
+}
@@ -0,0 +1,91 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LongLongMap} class.
+ */
+public class LongLongMapTest
+{
+    @Test
+    public void testRandomOps ()
+    {
+        Random rand = new Random(42);
+        LongLongMap table = new LongLongMap();
+        Map<Long,Long> expect = new HashMap<Long,Long>();
+        for (int ii = 0; ii < 100000; ii++) {
+            long key = ((long)(rand.nextInt(40) - 20) << 40) + rand.nextInt(50);
+            long amount = (long)ii << 33;
+            switch (rand.nextInt(4)) {
+            case 0:
+                table.put(key, amount);
+                expect.put(key, amount);
+                break;
+            case 1:
+                Long ovalue = expect.remove(key);
+                assertEquals((ovalue == null) ? -2L : ovalue, table.removeOrElse(key, -2L));
+                break;
+            case 2:
+                Long value = expect.get(key);
+                expect.put(key, ((value == null) ? 0L : value) + amount);
+                assertEquals((long)expect.get(key), table.increment(key, amount));
+                break;
+            default:
+                assertEquals(expect.containsKey(key), table.containsKey(key));
+                assertEquals(expect.containsKey(key) ? expect.get(key) : -2L,
+                             table.getOrElse(key, -2L));
+                break;
+            }
+            assertEquals(expect.size(), table.size());
+        }
+        checkContents(expect, table);
+
+        // remove half of the entries via the key iterator
+        int count = 0;
+        for (LongIterator iter = table.keys(); iter.hasNext(); ) {
+            long key = iter.nextLong();
+            if (count++ % 2 == 0) {
+                iter.remove();
+                expect.remove(key);
+            }
+        }
+        checkContents(expect, table);
+        checkContents(expect, LongMaps.newLongLongMap(expect));
+
+        // make sure entries write through
+        for (LongLongMap.LongLongEntry entry : table.entrySet()) {
+            entry.setLongValue(entry.getLongKey() * 2);
+            expect.put(entry.getLongKey(), entry.getLongKey() * 2);
+        }
+        checkContents(expect, table);
+    }
+
+    protected void checkContents (Map<Long,Long> expect, LongLongMap table)
+    {
+        assertEquals(expect.size(), table.size());
+        long[] keys = table.getKeys();
+        assertEquals(expect.size(), keys.length);
+        for (long key : keys) {
+            assertEquals((long)expect.get(key), table.get(key));
+        }
+        long total = 0;
+        for (LongIterator iter = table.values(); iter.hasNext(); ) {
+            total += iter.nextLong();
+        }
+        long etotal = 0;
+        for (long value : expect.values()) {
+            etotal += value;
+        }
+        assertEquals(etotal, total);
+    }
+}
@@ -0,0 +1,117 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares {@link ArrayUtil#parallelSort} with sequential sorts of the same arrays, and batched
+ * {@link ArrayUtil#binarySearch(int[],int,int,int[],int[])} with separate searches for each key.
+ */
+public class ParallelSortBenchmark
+{
+    public static void main (String[] args)
+    {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 10000000;
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) :
+            Runtime.getRuntime().availableProcessors();
+        Random rand = new Random(42);
+        int[] ints = new int[count];
+        Integer[] objs = new Integer[count / 10];
+        for (int ii = 0; ii < count; ii++) {
+            ints[ii] = rand.nextInt();
+        }
+        for (int ii = 0; ii < objs.length; ii++) {
+            objs[ii] = rand.nextInt();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int ii = 0; ii < 3; ii++) {
+                runSorts(ints, objs, pool, threads, false);
+            }
+            runSorts(ints, objs, pool, threads, true);
+        } finally {
+            pool.shutdown();
+        }
+
+        int[] sorted = ints.clone();
+        Arrays.sort(sorted);
+        for (int ii = 0; ii < 5; ii++) {
+            runSearches(sorted, rand, false);
+        }
+        runSearches(sorted, rand, true);
+    }
+
+    protected static void runSorts (
+        int[] ints, Integer[] objs, ExecutorService pool, int threads, boolean report)
+    {
+        int[] ia = ints.clone();
+        long start = System.nanoTime();
+        Arrays.sort(ia);
+        long ijdk = System.nanoTime() - start;
+
+        ia = ints.clone();
+        start = System.nanoTime();
+        ArrayUtil.parallelSort(ia, pool, 1);
+        long iseq = System.nanoTime() - start;
+
+        ia = ints.clone();
+        start = System.nanoTime();
+        ArrayUtil.parallelSort(ia, pool, threads);
+        long ipar = System.nanoTime() - start;
+
+        Integer[] oa = objs.clone();
+        start = System.nanoTime();
+        Arrays.sort(oa, Comparators.comparable());
+        long ojdk = System.nanoTime() - start;
+
+        oa = objs.clone();
+        start = System.nanoTime();
+        ArrayUtil.parallelSort(oa, Comparators.comparable(), pool, threads);
+        long opar = System.nanoTime() - start;
+
+        if (report) {
+            System.out.println(ints.length + " ints: Arrays.sort " + ms(ijdk) + ", sequential " +
+                               ms(iseq) + ", parallel (" + threads + ") " + ms(ipar));
+            System.out.println(objs.length + " objects: Arrays.sort " + ms(ojdk) +
+                               ", parallel (" + threads + ") " + ms(opar));
+        }
+    }
+
+    protected static void runSearches (int[] sorted, Random rand, boolean report)
+    {
+        int[] keys = new int[sorted.length / 10];
+        for (int ii = 0; ii < keys.length; ii++) {
+            keys[ii] = rand.nextInt();
+        }
+        Arrays.sort(keys);
+        int[] results = new int[keys.length];
+
+        long start = System.nanoTime();
+        for (int ii = 0; ii < keys.length; ii++) {
+            results[ii] = Arrays.binarySearch(sorted, keys[ii]);
+        }
+        long separate = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ArrayUtil.binarySearch(sorted, 0, sorted.length, keys, results);
+        long batched = System.nanoTime() - start;
+
+        if (report) {
+            System.out.println(keys.length + " sorted keys: separate searches " + ms(separate) +
+                               ", batched " + ms(batched));
+        }
+    }
+
+    protected static String ms (long nanos)
+    {
+        return (Math.round(nanos / 100000.0) / 10.0) + "ms";
+    }
+}
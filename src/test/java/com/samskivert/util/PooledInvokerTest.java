@@ -0,0 +1,72 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.concurrent.Executor;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link PooledInvoker} class.
+ */
+public class PooledInvokerTest
+    implements Executor
+{
+    @Test
+    public void testOrdering ()
+        throws InterruptedException
+    {
+        final int keys = 8, perKey = 200;
+        PooledInvoker invoker = new PooledInvoker("test", this, 4);
+        invoker.start();
+
+        final List<int[]> invoked = Collections.synchronizedList(new ArrayList<int[]>());
+        for (int ii = 0; ii < perKey; ii++) {
+            for (int kk = 0; kk < keys; kk++) {
+                final int key = kk, seq = ii;
+                invoker.postUnit(new Invoker.Unit() {
+                    @Override public boolean invoke () {
+                        invoked.add(new int[] { key, seq });
+                        return true;
+                    }
+                    @Override public Object getOrderingKey () {
+                        return key;
+                    }
+                });
+            }
+        }
+        invoker.shutdown();
+        invoker.join(10000L);
+        assertFalse(invoker.isAlive());
+
+        // every unit should have been invoked with each key's units in posted order
+        assertEquals(keys * perKey, invoked.size());
+        int[] next = new int[keys];
+        for (int[] unit : invoked) {
+            assertEquals(next[unit[0]]++, unit[1]);
+        }
+
+        // and every result should have been delivered
+        int results = 0;
+        while (_results.getNonBlocking() != null) {
+            results++;
+        }
+        assertEquals(keys * perKey, results);
+    }
+
+    // from Executor
+    public void execute (Runnable command)
+    {
+        _results.append(command);
+    }
+
+    protected Queue<Runnable> _results = new Queue<Runnable>();
+}
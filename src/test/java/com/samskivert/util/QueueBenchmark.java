@@ -0,0 +1,64 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+/**
+ * Compares the throughput of {@link Queue} and {@link LockFreeQueue} when many producer threads
+ * are appending to a queue that is drained by a single consumer.
+ */
+public class QueueBenchmark
+{
+    public static void main (String[] args)
+        throws InterruptedException
+    {
+        int producers = (args.length > 0) ? Integer.parseInt(args[0]) : 16;
+        int count = (args.length > 1) ? Integer.parseInt(args[1]) : 250000;
+
+        // warm up both implementations, then measure them
+        for (int ii = 0; ii < 3; ii++) {
+            run(new Queue<Object>(), producers, count);
+            run(new LockFreeQueue<Object>(), producers, count);
+        }
+        report("Queue", run(new Queue<Object>(), producers, count), producers * count);
+        report("LockFreeQueue", run(new LockFreeQueue<Object>(), producers, count),
+               producers * count);
+    }
+
+    protected static long run (final Queue<Object> queue, int producers, final int count)
+        throws InterruptedException
+    {
+        final Object item = new Object();
+        Thread[] threads = new Thread[producers];
+        for (int pp = 0; pp < producers; pp++) {
+            threads[pp] = new Thread() {
+                @Override public void run () {
+                    for (int ii = 0; ii < count; ii++) {
+                        queue.append(item);
+                    }
+                }
+            };
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int ii = 0, nn = producers * count; ii < nn; ii++) {
+            queue.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return elapsed;
+    }
+
+    protected static void report (String name, long nanos, int items)
+    {
+        System.out.println(name + ": " + items + " items in " + (nanos / 1000000L) + "ms, " +
+                           (long)(items / (nanos / 1e9)) + " items/s");
+    }
+}
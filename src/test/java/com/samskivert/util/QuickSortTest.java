@@ -5,7 +5,9 @@
 
 package com.samskivert.util;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Random;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -82,6 +84,151 @@ public class QuickSortTest
         // " random arrays");
     }
 
+    @Test
+    public void testRadixSort ()
+    {
+        Random rand = new Random(42);
+        for (int n : new int[] { 0, 1, 2, 63, 64, 65, 1000, 100000 }) {
+            int[] ia = new int[n];
+            long[] la = new long[n];
+            for (int ii = 0; ii < n; ii++) {
+                // mix full range values with a narrow range so that some passes are skipped
+                ia[ii] = (ii % 2 == 0) ? rand.nextInt() : rand.nextInt(100) - 50;
+                la[ii] = (ii % 2 == 0) ? rand.nextLong() : rand.nextInt(100) - 50;
+            }
+            int[] iexpect = ia.clone();
+            long[] lexpect = la.clone();
+            Arrays.sort(iexpect);
+            Arrays.sort(lexpect);
+            QuickSort.radixSort(ia);
+            QuickSort.radixSort(la);
+            assertTrue("int radix " + n, Arrays.equals(iexpect, ia));
+            assertTrue("long radix " + n, Arrays.equals(lexpect, la));
+        }
+
+        // sort just the middle of an array
+        int[] a = { 9, 8, 7, 6, 5, 4, 3, 2, 1, 0 };
+        QuickSort.radixSort(a, 2, 7);
+        assertArrayEquals(new int[] { 9, 8, 2, 3, 4, 5, 6, 7, 1, 0 }, a);
+    }
+
+    @Test
+    public void testKeySort ()
+    {
+        Random rand = new Random(42);
+        Integer[] a = new Integer[5000];
+        for (int ii = 0; ii < a.length; ii++) {
+            a[ii] = rand.nextInt(2000) - 1000;
+        }
+
+        // sort by absolute value, which should keep equal keys in their original order
+        Integer[] expect = a.clone();
+        Arrays.sort(expect, new Comparator<Integer>() {
+            public int compare (Integer x, Integer y) {
+                return Math.abs(x) - Math.abs(y);
+            }
+        });
+        Integer[] ia = a.clone(), la = a.clone();
+        QuickSort.sortByIntKey(ia, new QuickSort.IntKey<Integer>() {
+            public int getKey (Integer value) {
+                return Math.abs(value);
+            }
+        });
+        QuickSort.sortByLongKey(la, new QuickSort.LongKey<Integer>() {
+            public long getKey (Integer value) {
+                return Math.abs(value) * (long)Integer.MAX_VALUE;
+            }
+        });
+        assertTrue(Arrays.equals(expect, ia));
+        assertTrue(Arrays.equals(expect, la));
+
+        // negative keys sort before positive
+        Arrays.sort(expect);
+        QuickSort.sortByIntKey(ia, new QuickSort.IntKey<Integer>() {
+            public int getKey (Integer value) {
+                return value;
+            }
+        });
+        assertTrue(Arrays.equals(expect, ia));
+    }
+
+    @Test
+    public void testComparatorSorts ()
+    {
+        Random rand = new Random(42);
+        // order only by tens, so that we can check stability by the units
+        Comparator<Integer> tens = new Comparator<Integer>() {
+            public int compare (Integer x, Integer y) {
+                return x / 10 - y / 10;
+            }
+        };
+        for (int n : new int[] { 0, 1, 2, 10, 31, 32, 33, 100, 1000, 10000 }) {
+            for (int pattern = 0; pattern < 4; pattern++) {
+                Integer[] a = new Integer[n];
+                for (int ii = 0; ii < n; ii++) {
+                    switch (pattern) {
+                    case 0: a[ii] = rand.nextInt(10000); break; // random
+                    case 1: a[ii] = ii * 10 + rand.nextInt(40); break; // nearly ascending
+                    case 2: a[ii] = (n - ii) * 10; break; // descending
+                    default: a[ii] = rand.nextInt(5) * 10; break; // many duplicates
+                    }
+                }
+
+                Integer[] expect = a.clone();
+                Arrays.sort(expect, tens); // stable
+                Integer[] sa = a.clone();
+                QuickSort.stableSort(sa, 0, n - 1, tens);
+                assertTrue("stable " + n + "/" + pattern, Arrays.equals(expect, sa));
+
+                Arrays.sort(expect);
+                Integer[] da = a.clone();
+                QuickSort.dualPivotSort(da, 0, n - 1, new Comparator<Integer>() {
+                    public int compare (Integer x, Integer y) {
+                        return x.compareTo(y);
+                    }
+                });
+                assertTrue("dual pivot " + n + "/" + pattern, Arrays.equals(expect, da));
+
+                ComparableArrayList<Integer> list = new ComparableArrayList<Integer>();
+                for (Integer value : a) {
+                    list.add(value);
+                }
+                for (SortableArrayList.Algorithm algo : SortableArrayList.Algorithm.values()) {
+                    list.sort(algo);
+                    assertTrue(algo + " " + n, Arrays.equals(expect, list.toArray()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDualPivotFewKeys ()
+    {
+        Comparator<Integer> natural = new Comparator<Integer>() {
+            public int compare (Integer x, Integer y) {
+                return x.compareTo(y);
+            }
+        };
+        // sorted input with few distinct keys once recursed linearly deep, in quadratic time
+        int n = 200000;
+        for (int keys = 2; keys <= 3; keys++) {
+            Integer[] a = new Integer[n];
+            for (int ii = 0; ii < n; ii++) {
+                a[ii] = ii * keys / n;
+            }
+            Integer[] expect = a.clone();
+            QuickSort.dualPivotSort(a, 0, n - 1, natural);
+            assertTrue("sorted " + keys, Arrays.equals(expect, a));
+
+            // and the same keys in reverse order
+            for (int ii = 0; ii < n; ii++) {
+                a[ii] = expect[n - 1 - ii];
+            }
+            QuickSort.dualPivotSort(a, 0, n - 1, natural);
+            assertTrue("reversed " + keys, Arrays.equals(expect, a));
+        }
+    }
+
     private static int rand (int n)
     {
         return (int)(Math.random() * n);
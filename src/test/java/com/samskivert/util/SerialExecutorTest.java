@@ -5,7 +5,11 @@
 
 package com.samskivert.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -64,6 +68,38 @@ public class SerialExecutorTest
         assertCount("_doubleints", _doubleints, 0);
     }
 
+    @Test
+    public void testThreadFactory ()
+    {
+        // tasks are run on threads from the supplied factory
+        final List<String> names = new ArrayList<String>();
+        ThreadFactory factory = new ThreadFactory() {
+            public Thread newThread (Runnable r) {
+                names.add("task-" + names.size());
+                return new Thread(r, names.get(names.size()-1));
+            }
+        };
+        SerialExecutor executor = new SerialExecutor(this, 1000L, factory);
+        final List<String> ranOn = new ArrayList<String>();
+        for (int ii = 0; ii < 2; ii++) {
+            executor.addTask(new Sleeper(0L, false) {
+                @Override public void executeTask () {
+                    synchronized (ranOn) {
+                        ranOn.add(Thread.currentThread().getName());
+                    }
+                    super.executeTask();
+                }
+            });
+        }
+        for (int ii = 0; ii < 2; ii++) {
+            _queue.get().run();
+        }
+        assertEquals(2, _results);
+        synchronized (ranOn) {
+            assertEquals(names, ranOn);
+        }
+    }
+
     protected void assertCount (String field, int value, int expected)
     {
         assertTrue(field + " != " + expected + " (" + value + ")",
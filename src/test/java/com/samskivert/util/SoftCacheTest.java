@@ -0,0 +1,91 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link SoftCache} class.
+ */
+public class SoftCacheTest
+{
+    @Test
+    public void testStats ()
+    {
+        SoftCache<String,String> cache = new SoftCache<String,String>();
+        String value = "value";
+        cache.put("key", value);
+        assertEquals(value, cache.get("key"));
+        assertNull(cache.get("missing"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5f, cache.getHitRate(), 0.001f);
+        assertEquals(value, cache.remove("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPurge ()
+        throws InterruptedException
+    {
+        SoftCache<Integer,Object> cache = new SoftCache<Integer,Object>(16, 0.75f, true);
+        Object[] kept = new Object[10];
+        for (int ii = 0; ii < 1000; ii++) {
+            Object value = new Object();
+            if (ii < kept.length) {
+                kept[ii] = value;
+            }
+            cache.put(ii, value);
+        }
+        assertEquals(1000, cache.size());
+
+        // wait for the collector to clear and queue our unreferenced weak values
+        for (int ii = 0; ii < 50 && cache.size() > kept.length; ii++) {
+            System.gc();
+            Thread.sleep(10);
+            cache.purge();
+        }
+
+        // the entries whose values were collected are gone, without anyone looking them up
+        assertEquals(kept.length, cache.size());
+        assertEquals(1000 - kept.length, cache.getCollectedCount());
+        for (int ii = 0; ii < kept.length; ii++) {
+            assertSame(kept[ii], cache.get(ii));
+        }
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test @SuppressWarnings("deprecation")
+    public void testLegacyCreateReference ()
+    {
+        // soft values are keyed so that they can be purged
+        SoftCache<String,String> cache = new SoftCache<String,String>();
+        cache.put("key", "value");
+        Reference<String> ref = cache.getMap().get("key");
+        assertEquals("key", ((SoftCache.KeyedReference<?>)ref).getKey());
+
+        // and subclasses that override the old factory method still have it called
+        final List<String> created = new ArrayList<String>();
+        cache = new SoftCache<String,String>() {
+            @Override protected SoftReference<String> createReference (String value) {
+                created.add(value);
+                return new SoftReference<String>(value);
+            }
+        };
+        cache.put("key", "value");
+        assertEquals(1, created.size());
+        assertEquals("value", created.get(0));
+        assertEquals("value", cache.get("key"));
+        cache.purge();
+        assertEquals(1, cache.size());
+    }
+}
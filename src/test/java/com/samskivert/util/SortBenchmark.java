@@ -0,0 +1,128 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Compares the time taken by the sorts in {@link QuickSort}, and by {@link Arrays#sort}, to sort
+ * random and nearly sorted arrays of objects by an int key, and random arrays of ints and longs.
+ */
+public class SortBenchmark
+{
+    public static void main (String[] args)
+    {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        Random rand = new Random(42);
+        Item[] random = new Item[count], nearly = new Item[count];
+        int[] ints = new int[count];
+        long[] longs = new long[count];
+        for (int ii = 0; ii < count; ii++) {
+            random[ii] = new Item(rand.nextInt());
+            // sorted, save that one element in a hundred is out of place
+            nearly[ii] = new Item((rand.nextInt(100) == 0) ? rand.nextInt() : ii);
+            ints[ii] = rand.nextInt();
+            longs[ii] = rand.nextLong();
+        }
+
+        // warm up each sort, then measure it
+        for (int ii = 0; ii < 5; ii++) {
+            runObjects(random, "random", false);
+            runObjects(nearly, "nearly sorted", false);
+            runPrimitives(ints, longs, false);
+        }
+        runObjects(random, "random", true);
+        runObjects(nearly, "nearly sorted", true);
+        runPrimitives(ints, longs, true);
+    }
+
+    protected static void runObjects (Item[] items, String desc, boolean report)
+    {
+        long start = System.nanoTime();
+        QuickSort.sort(items.clone(), 0, items.length - 1, COMP);
+        long quick = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        QuickSort.dualPivotSort(items.clone(), 0, items.length - 1, COMP);
+        long dual = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        QuickSort.stableSort(items.clone(), 0, items.length - 1, COMP);
+        long stable = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        QuickSort.sortByIntKey(items.clone(), KEY);
+        long keyed = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Arrays.sort(items.clone(), COMP);
+        long jdk = System.nanoTime() - start;
+
+        if (report) {
+            System.out.println(items.length + " " + desc + " objects: quick " + ms(quick) +
+                               ", dual pivot " + ms(dual) + ", stable " + ms(stable) +
+                               ", int key " + ms(keyed) + ", Arrays.sort " + ms(jdk));
+        }
+    }
+
+    protected static void runPrimitives (int[] ints, long[] longs, boolean report)
+    {
+        int[] ia = ints.clone();
+        long start = System.nanoTime();
+        QuickSort.radixSort(ia);
+        long iradix = System.nanoTime() - start;
+
+        ia = ints.clone();
+        start = System.nanoTime();
+        Arrays.sort(ia);
+        long ijdk = System.nanoTime() - start;
+
+        long[] la = longs.clone();
+        start = System.nanoTime();
+        QuickSort.radixSort(la);
+        long lradix = System.nanoTime() - start;
+
+        la = longs.clone();
+        start = System.nanoTime();
+        Arrays.sort(la);
+        long ljdk = System.nanoTime() - start;
+
+        if (report) {
+            System.out.println(ints.length + " ints: radix " + ms(iradix) +
+                               ", Arrays.sort " + ms(ijdk));
+            System.out.println(longs.length + " longs: radix " + ms(lradix) +
+                               ", Arrays.sort " + ms(ljdk));
+        }
+    }
+
+    protected static String ms (long nanos)
+    {
+        return (Math.round(nanos / 100000.0) / 10.0) + "ms";
+    }
+
+    protected static class Item
+    {
+        public final int key;
+
+        public Item (int key) {
+            this.key = key;
+        }
+    }
+
+    protected static final Comparator<Item> COMP = new Comparator<Item>() {
+        public int compare (Item a, Item b) {
+            return (a.key < b.key) ? -1 : ((a.key == b.key) ? 0 : 1);
+        }
+    };
+
+    protected static final QuickSort.IntKey<Item> KEY = new QuickSort.IntKey<Item>() {
+        public int getKey (Item item) {
+            return item.key;
+        }
+    };
+}
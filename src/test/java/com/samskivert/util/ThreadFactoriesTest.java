@@ -0,0 +1,89 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ThreadFactories} class and {@link LoopingThread#start(ThreadFactory)}.
+ */
+public class ThreadFactoriesTest
+{
+    @Test
+    public void testPlatform ()
+    {
+        ThreadFactory factory = ThreadFactories.platform("test", true);
+        Thread one = factory.newThread(NOOP), two = factory.newThread(NOOP);
+        assertEquals("test-1", one.getName());
+        assertEquals("test-2", two.getName());
+        assertTrue(one.isDaemon());
+        assertFalse(ThreadFactories.platform("test", false).newThread(NOOP).isDaemon());
+    }
+
+    @Test
+    public void testVirtual ()
+        throws Exception
+    {
+        ThreadFactory factory = ThreadFactories.virtual("test");
+        Thread thread = factory.newThread(NOOP);
+        assertEquals("test-1", thread.getName());
+        // virtual threads are always daemons, and so are the platform threads we fall back to
+        assertTrue(thread.isDaemon());
+        if (ThreadFactories.virtualThreadsSupported()) {
+            assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+        } else {
+            // Thread.ofVirtual is missing, so we must have fallen back to platform threads
+            assertEquals("test-2", factory.newThread(NOOP).getName());
+        }
+
+        // either way the threads run what they're given
+        final CountDownLatch ran = new CountDownLatch(1);
+        factory.newThread(new Runnable() {
+            public void run () {
+                ran.countDown();
+            }
+        }).start();
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLoopingThreadStart ()
+        throws InterruptedException
+    {
+        final CountDownLatch iterated = new CountDownLatch(3);
+        final Thread[] loopThread = new Thread[1];
+        LoopingThread looper = new LoopingThread("looper") {
+            @Override protected void iterate () {
+                loopThread[0] = Thread.currentThread();
+                iterated.countDown();
+                if (iterated.getCount() == 0) {
+                    shutdown();
+                }
+            }
+        };
+        Thread thread = looper.start(ThreadFactories.platform("test", true));
+        assertTrue(iterated.await(5, TimeUnit.SECONDS));
+        thread.join(5000L);
+        assertFalse(thread.isAlive());
+        assertFalse(looper.isRunning());
+
+        // the loop ran on the factory's thread, and the looping thread itself was never started
+        assertSame(thread, loopThread[0]);
+        assertEquals("test-1", thread.getName());
+        assertFalse(looper.isAlive());
+    }
+
+    protected static final Runnable NOOP = new Runnable() {
+        public void run () {
+            // nothing
+        }
+    };
+}
@@ -0,0 +1,83 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Compares the schedule and cancel throughput of {@link TimingWheel} with that of {@link Timer},
+ * which {@link Interval} previously used, for a large number of long-lived tasks.
+ */
+public class TimingWheelBenchmark
+{
+    public static void main (String[] args)
+    {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 500000;
+        long[] delays = new long[count];
+        Random rand = new Random(42);
+        for (int ii = 0; ii < count; ii++) {
+            delays[ii] = 60000L + rand.nextInt(600000);
+        }
+
+        for (int ii = 0; ii < 3; ii++) {
+            boolean report = (ii == 2);
+            runTimer(delays, report);
+            runWheel(delays, report);
+        }
+    }
+
+    protected static void runTimer (long[] delays, boolean report)
+    {
+        Timer timer = new Timer("bench", true);
+        TimerTask[] tasks = new TimerTask[delays.length];
+        long start = System.nanoTime();
+        for (int ii = 0; ii < delays.length; ii++) {
+            timer.schedule(tasks[ii] = new TimerTask() {
+                @Override public void run () {}
+            }, delays[ii]);
+        }
+        long scheduled = System.nanoTime();
+        for (TimerTask task : tasks) {
+            task.cancel();
+        }
+        // cancelled tasks remain in the timer's queue until purged
+        timer.purge();
+        long cancelled = System.nanoTime();
+        timer.cancel();
+        if (report) {
+            report("Timer", delays.length, scheduled - start, cancelled - scheduled);
+        }
+    }
+
+    protected static void runWheel (long[] delays, boolean report)
+    {
+        TimingWheel wheel = new TimingWheel("bench", Interval.TIMER_TICK, 512, 1);
+        TimingWheel.Task[] tasks = new TimingWheel.Task[delays.length];
+        long start = System.nanoTime();
+        for (int ii = 0; ii < delays.length; ii++) {
+            wheel.schedule(tasks[ii] = new TimingWheel.Task() {
+                @Override public void run () {}
+            }, delays[ii]);
+        }
+        long scheduled = System.nanoTime();
+        for (TimingWheel.Task task : tasks) {
+            task.cancel();
+        }
+        long cancelled = System.nanoTime();
+        wheel.shutdown();
+        if (report) {
+            report("TimingWheel", delays.length, scheduled - start, cancelled - scheduled);
+        }
+    }
+
+    protected static void report (String name, int count, long schedNanos, long cancelNanos)
+    {
+        System.out.println(name + ": schedule " + (long)(count / (schedNanos / 1e9)) + "/s, " +
+                           "cancel " + (long)(count / (cancelNanos / 1e9)) + "/s");
+    }
+}
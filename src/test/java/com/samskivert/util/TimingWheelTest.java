@@ -0,0 +1,139 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link TimingWheel} class.
+ */
+public class TimingWheelTest
+{
+    @Test
+    public void testScheduleAndCancel ()
+        throws InterruptedException
+    {
+        TimingWheel wheel = new TimingWheel("test", 5L, 16, 2);
+        final AtomicInteger runs = new AtomicInteger();
+        final long start = System.currentTimeMillis();
+        final long[] ranAt = new long[1];
+
+        // schedule one task beyond a full rotation of the wheel and one that we'll cancel
+        wheel.schedule(new TimingWheel.Task() {
+            @Override public void run () {
+                ranAt[0] = System.currentTimeMillis();
+                runs.incrementAndGet();
+            }
+        }, 150L);
+        TimingWheel.Task cancelled = new TimingWheel.Task() {
+            @Override public void run () {
+                runs.addAndGet(100);
+            }
+        };
+        wheel.schedule(cancelled, 50L);
+        assertEquals(2, wheel.size());
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, wheel.size());
+
+        // a task cancelled before it is scheduled (perhaps by another thread) is refused, rather
+        // than staying on the wheel
+        TimingWheel.Task early = new TimingWheel.Task() {
+            @Override public void run () {
+                runs.addAndGet(100);
+            }
+        };
+        assertFalse(early.cancel());
+        try {
+            wheel.schedule(early, 0L, 10L, false);
+            fail("Cancelled task should not be scheduled.");
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+        assertEquals(1, wheel.size());
+
+        Thread.sleep(400L);
+        assertEquals(1, runs.get());
+        assertTrue(ranAt[0] - start >= 150L);
+        assertEquals(0, wheel.size());
+        wheel.shutdown();
+    }
+
+    @Test
+    public void testRepeat ()
+        throws InterruptedException
+    {
+        TimingWheel wheel = new TimingWheel("test", 5L, 16, 1);
+        final AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Task task = new TimingWheel.Task() {
+            @Override public void run () {
+                runs.incrementAndGet();
+            }
+        };
+        wheel.schedule(task, 20L, 20L, true);
+        Thread.sleep(210L);
+        assertTrue(task.cancel());
+        int count = runs.get();
+        assertTrue("runs " + count, count >= 8 && count <= 11);
+        Thread.sleep(60L);
+        assertEquals(count, runs.get());
+        wheel.shutdown();
+    }
+
+    @Test
+    public void testLongDelays ()
+        throws InterruptedException
+    {
+        // a tiny wheel, so that most tasks are more than one rotation (4ms) away, and some more
+        // than a full turn of the overflow wheel (16ms) away
+        TimingWheel wheel = new TimingWheel("test", 1L, 4, 1);
+        final long start = System.currentTimeMillis();
+        final long[] delays = { 1, 3, 4, 5, 9, 15, 16, 17, 33, 60, 95 };
+        final long[] ranAt = new long[delays.length];
+        final CountDownLatch done = new CountDownLatch(delays.length);
+        for (int ii = 0; ii < delays.length; ii++) {
+            final int idx = ii;
+            wheel.schedule(new TimingWheel.Task() {
+                @Override public void run () {
+                    ranAt[idx] = System.currentTimeMillis();
+                    done.countDown();
+                }
+            }, delays[ii]);
+        }
+
+        // the tasks that are not due on this rotation wait in the overflow wheel, where they are
+        // not visited as the wheel turns
+        TimingWheel.Shard shard = wheel._shards[0];
+        synchronized (shard) {
+            int waiting = 0;
+            for (TimingWheel.Task task : shard._buckets) {
+                for (; task != null; task = task._next) {
+                    assertTrue(task._expireTick - shard._tick <= shard._buckets.length);
+                    waiting++;
+                }
+            }
+            for (TimingWheel.Task task : shard._overflow) {
+                for (; task != null; task = task._next) {
+                    assertTrue(task._expireTick - shard._tick > shard._buckets.length);
+                    waiting++;
+                }
+            }
+            assertEquals(wheel.size(), waiting);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int ii = 0; ii < delays.length; ii++) {
+            assertTrue("task " + delays[ii] + " early", ranAt[ii] - start >= delays[ii]);
+        }
+        assertEquals(0, wheel.size());
+        wheel.shutdown();
+    }
+}